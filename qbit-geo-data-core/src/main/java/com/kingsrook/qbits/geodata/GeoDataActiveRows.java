@@ -0,0 +1,80 @@
+/*******************************************************************************
+ ** Reads all active rows of a geo table - only the fields asked for - paging
+ ** through them by id, for building in-memory indexes of synced data.
+ ** (Optionally inactive rows too, for lookups of ids that may still be
+ ** referenced after their rows were deactivated.)
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public class GeoDataActiveRows
+{
+   public static final int PAGE_SIZE = 10_000;
+
+
+
+   /*******************************************************************************
+    ** Read a table's active rows, in id order, with the given fields (and id).
+    *******************************************************************************/
+   public static List<QRecord> read(String tableName, Set<String> fieldNames) throws QException
+   {
+      return read(tableName, fieldNames, false);
+   }
+
+
+
+   /*******************************************************************************
+    ** Read a table's rows, in id order, with the given fields (and id) - all
+    ** of them if includeInactive, else just the active ones.
+    *******************************************************************************/
+   public static List<QRecord> read(String tableName, Set<String> fieldNames, boolean includeInactive) throws QException
+   {
+      Set<String> fieldsWithId = new HashSet<>(fieldNames);
+      fieldsWithId.add("id");
+
+      List<QRecord> records = new ArrayList<>();
+      Serializable lastId = null;
+      while(true)
+      {
+         QQueryFilter filter = new QQueryFilter()
+            .withOrderBy(new QFilterOrderBy("id"))
+            .withLimit(PAGE_SIZE);
+         if(!includeInactive)
+         {
+            filter.withCriteria(new QFilterCriteria("isActive", QCriteriaOperator.EQUALS, true));
+         }
+         if(lastId != null)
+         {
+            filter.withCriteria(new QFilterCriteria("id", QCriteriaOperator.GREATER_THAN, lastId));
+         }
+
+         QueryInput queryInput = new QueryInput();
+         queryInput.setTableName(tableName);
+         queryInput.setFilter(filter);
+         queryInput.setFieldNamesToInclude(fieldsWithId);
+
+         List<QRecord> page = new QueryAction().execute(queryInput).getRecords();
+         records.addAll(page);
+         if(page.size() < PAGE_SIZE)
+         {
+            return records;
+         }
+         lastId = page.get(page.size() - 1).getValue("id");
+      }
+   }
+}
@@ -5,6 +5,8 @@
  ** - Table prefixing for multi-instance deployment
  ** - Selective table enablement (countries, states, cities)
  ** - Country filtering for regional deployments
+ ** - A minimum city population, applied by the sync
+ ** - In-memory possible value translation (see GeoDataPossibleValueCache)
  *******************************************************************************/
 package com.kingsrook.qbits.geodata;
 
@@ -13,6 +15,7 @@ import java.util.ArrayList;
 import java.util.List;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
 import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitConfig;
+import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitMetaData;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
 import com.kingsrook.qbits.geodata.model.City;
 import com.kingsrook.qbits.geodata.model.Country;
@@ -27,6 +30,8 @@ public class GeoDataQBitConfig implements QBitConfig
    private Boolean      enableStateProvinces = true;
    private Boolean      enableCities         = true;
    private List<String> countryFilter;  // Limit to specific alpha2 codes
+   private Boolean      cachePossibleValues  = false;
+   private Integer      minCityPopulation;
 
 
 
@@ -55,6 +60,37 @@ public class GeoDataQBitConfig implements QBitConfig
       {
          errors.add("enableCountries must be true when enableStateProvinces is true (states reference countries)");
       }
+
+      if(minCityPopulation != null && minCityPopulation < 0)
+      {
+         errors.add("minCityPopulation must not be negative");
+      }
+
+      if(countryFilter != null)
+      {
+         for(String code : countryFilter)
+         {
+            if(code == null || !code.trim().matches("[A-Za-z]{2}"))
+            {
+               errors.add("countryFilter must hold alpha-2 country codes: " + code);
+            }
+         }
+      }
+
+      if(Boolean.TRUE.equals(cachePossibleValues) && qInstance.getQBits() != null)
+      {
+         ///////////////////////////////////////////////////////////////////////
+         // a translation of one id does not name its source, and ids are     //
+         // assigned per table - so only one instance's sources can be cached //
+         ///////////////////////////////////////////////////////////////////////
+         for(QBitMetaData qBit : qInstance.getQBits().values())
+         {
+            if(qBit.getConfig() instanceof GeoDataQBitConfig other && other != this && Boolean.TRUE.equals(other.getCachePossibleValues()))
+            {
+               errors.add("cachePossibleValues can only be enabled on one GeoDataQBit instance (it is already enabled for prefix " + other.getTableNamePrefix() + ")");
+            }
+         }
+      }
    }
 
 
@@ -176,4 +212,30 @@ public class GeoDataQBitConfig implements QBitConfig
       this.countryFilter = countryFilter;
       return this;
    }
+
+
+   public Boolean getCachePossibleValues()
+   {
+      return cachePossibleValues;
+   }
+
+
+   public GeoDataQBitConfig withCachePossibleValues(Boolean cachePossibleValues)
+   {
+      this.cachePossibleValues = cachePossibleValues;
+      return this;
+   }
+
+
+   public Integer getMinCityPopulation()
+   {
+      return minCityPopulation;
+   }
+
+
+   public GeoDataQBitConfig withMinCityPopulation(Integer minCityPopulation)
+   {
+      this.minCityPopulation = minCityPopulation;
+      return this;
+   }
 }
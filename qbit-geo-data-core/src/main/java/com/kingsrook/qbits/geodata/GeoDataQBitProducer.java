@@ -14,7 +14,9 @@ import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducerHelper;
 import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducerInterface;
 import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducerOutput;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeReference;
 import com.kingsrook.qqq.backend.core.model.metadata.possiblevalues.QPossibleValueSource;
+import com.kingsrook.qqq.backend.core.model.metadata.possiblevalues.QPossibleValueSourceType;
 import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitMetaData;
 import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitProducer;
 import com.kingsrook.qqq.backend.core.model.metadata.qbits.SourceQBitAware;
@@ -22,6 +24,7 @@ import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
 import com.kingsrook.qbits.geodata.model.City;
 import com.kingsrook.qbits.geodata.model.Country;
 import com.kingsrook.qbits.geodata.model.StateProvince;
+import com.kingsrook.qbits.geodata.possiblevalues.GeoDataPossibleValueProvider;
 
 
 public class GeoDataQBitProducer implements QBitProducer
@@ -99,12 +102,25 @@ public class GeoDataQBitProducer implements QBitProducer
          ///////////////////////////////////////////////////////////////////////
          if(output instanceof QPossibleValueSource pvs)
          {
-            String prefixedName = config.applyPrefix(pvs.getName());
+            String baseName = pvs.getName();
+            String prefixedName = config.applyPrefix(baseName);
             pvs.setName(prefixedName);
             if(pvs.getTableName() != null)
             {
                pvs.setTableName(config.applyPrefix(pvs.getTableName()));
             }
+
+            /////////////////////////////////////////////////////////////////////
+            // Optionally translate from memory instead of the table          //
+            /////////////////////////////////////////////////////////////////////
+            Class<? extends GeoDataPossibleValueProvider> providerClass = GeoDataPossibleValueProvider.getProviderClass(baseName);
+            if(Boolean.TRUE.equals(config.getCachePossibleValues()) && providerClass != null)
+            {
+               pvs.setType(QPossibleValueSourceType.CUSTOM);
+               pvs.setTableName(null);
+               pvs.setCustomCodeReference(new QCodeReference(providerClass));
+               GeoDataPossibleValueProvider.register(baseName, prefixedName);
+            }
          }
 
          ///////////////////////////////////////////////////////////////////////
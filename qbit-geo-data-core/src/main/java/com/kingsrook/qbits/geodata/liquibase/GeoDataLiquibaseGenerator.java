@@ -4,23 +4,46 @@
  ** Reads the bundled changelog template and generates a final changelog with:
  ** - Prefix substitution for table/constraint/index names
  ** - Section removal for disabled entities
+ ** - The sync state table, whenever any entity is enabled
+ **
+ ** generateWithData() also writes the bundled data, as one CSV file per
+ ** enabled table (in a "<prefix>-data" directory next to the changelog), and
+ ** appends a loadData changeset per file, so a deployment lands schema and
+ ** data in one Liquibase update.  Rows are read as the sync reads them (with
+ ** the config's country filter and minimum city population), given ids in
+ ** source order, their foreign keys resolved to those ids, and stamped with
+ ** the sync's row hash - so the first sync after the update matches every
+ ** row, and writes nothing.  Each load runs once, and only into an empty
+ ** table (otherwise it is marked ran): later data changes - a newer QBit
+ ** version, or a changed filter - are reconciled by the sync, not by
+ ** re-running the load.
  *******************************************************************************/
 package com.kingsrook.qbits.geodata.liquibase;
 
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.Serializable;
+import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
 import com.kingsrook.qqq.backend.core.utils.StringUtils;
 import com.kingsrook.qbits.geodata.GeoDataQBitConfig;
-
+import com.kingsrook.qbits.geodata.sync.GeoDataKeyResolver;
+import com.kingsrook.qbits.geodata.sync.GeoDataRowHasher;
+import com.kingsrook.qbits.geodata.sync.GeoDataRowSource;
+import com.kingsrook.qbits.geodata.sync.GeoDataSyncStep;
+import com.kingsrook.qbits.geodata.sync.GeoDataSyncTable;
 import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
 
@@ -34,6 +57,20 @@ public class GeoDataLiquibaseGenerator
       Pattern.DOTALL
    );
 
+   private static final String DATA_DIRECTORY  = "${prefix}-data";
+   private static final String END_OF_CHANGELOG = "</databaseChangeLog>";
+
+   //////////////////////////////////////////////////////////////////////////////
+   // the columns loaded into each table, as field names, in file order        //
+   //////////////////////////////////////////////////////////////////////////////
+   private static final Map<GeoDataSyncTable, List<String>> DATA_FIELDS = Map.of(
+      GeoDataSyncTable.COUNTRY, List.of("id", "alpha2Code", "alpha3Code", "numericCode", "name", "officialName", "isActive", GeoDataRowHasher.FIELD_ROW_HASH),
+      GeoDataSyncTable.STATE_PROVINCE, List.of("id", "countryId", "code", "name", "subdivisionType", "isActive", GeoDataRowHasher.FIELD_ROW_HASH),
+      GeoDataSyncTable.CITY, List.of("id", "stateProvinceId", "name", "asciiName", "population", "latitude", "longitude", "timezone", "isActive", GeoDataRowHasher.FIELD_ROW_HASH)
+   );
+
+   private static final Set<String> NUMERIC_FIELDS = Set.of("id", "countryId", "stateProvinceId", "numericCode", "population", "latitude", "longitude", GeoDataRowHasher.FIELD_ROW_HASH);
+
 
 
    /*******************************************************************************
@@ -71,6 +108,187 @@ public class GeoDataLiquibaseGenerator
 
 
 
+   /*******************************************************************************
+    ** Generate a Liquibase changelog, plus loadData changesets for the bundled
+    ** data of each enabled table, writing the data's CSV files to a
+    ** "<prefix>-data" directory next to the changelog.  Tables whose data is
+    ** not bundled, or has no rows for the config, get no data changeset.
+    **
+    ** @param config the QBit configuration with prefix and enabled tables
+    ** @param outputPath the path to write the generated changelog
+    ** @throws IOException if the template or data cannot be read, or output
+    ** cannot be written
+    *******************************************************************************/
+   public static void generateWithData(GeoDataQBitConfig config, Path outputPath) throws IOException
+   {
+      String template = loadTemplate();
+      Path dataDirectory = outputPath.getParent().resolve(substitutePrefix(DATA_DIRECTORY, config.getTableNamePrefix()));
+      Files.createDirectories(dataDirectory);
+
+      StringBuilder dataChangeSets = new StringBuilder();
+      GeoDataKeyResolver keyResolver = new GeoDataKeyResolver();
+      for(GeoDataSyncTable table : GeoDataSyncTable.values())
+      {
+         if(!config.getEnabledTableNames().contains(table.getTableName()))
+         {
+            continue;
+         }
+
+         try
+         {
+            if(!GeoDataRowSource.isBundled(table))
+            {
+               LOG.warn("No bundled data for table - not generating a data changeset", logPair("table", table.getTableName()));
+               continue;
+            }
+
+            TableData tableData = buildCsv(table, config, keyResolver);
+            if(tableData.rowCount() == 0)
+            {
+               LOG.info("No rows to load for table - not generating a data changeset", logPair("table", table.getTableName()));
+               continue;
+            }
+
+            String fileName = table.getDatasetName() + ".csv";
+            Files.writeString(dataDirectory.resolve(fileName), tableData.csv(), StandardCharsets.UTF_8);
+            dataChangeSets.append(buildLoadDataChangeSet(table, fileName, tableData.rowCount()));
+         }
+         catch(QException e)
+         {
+            throw new IOException("Error reading bundled data for " + table.getTableName(), e);
+         }
+      }
+
+      String result = processTemplate(template.replace(END_OF_CHANGELOG, dataChangeSets + END_OF_CHANGELOG), config);
+
+      Files.createDirectories(outputPath.getParent());
+      Files.writeString(outputPath, result, StandardCharsets.UTF_8);
+
+      LOG.info("Generated Liquibase changelog with data", logPair("outputPath", outputPath), logPair("dataDirectory", dataDirectory));
+   }
+
+
+
+   /*******************************************************************************
+    ** Build a table's CSV file: a header of column names, then a row per
+    ** source row whose parent is known (as loaded earlier in the same run),
+    ** with ids assigned in source order and registered with the key resolver
+    ** for the tables after it.
+    *******************************************************************************/
+   private static TableData buildCsv(GeoDataSyncTable table, GeoDataQBitConfig config, GeoDataKeyResolver keyResolver) throws QException
+   {
+      List<String> fields = DATA_FIELDS.get(table);
+      StringBuilder csv = new StringBuilder();
+      for(int i = 0; i < fields.size(); i++)
+      {
+         csv.append(i == 0 ? "" : ",").append(toColumnName(fields.get(i)));
+      }
+      csv.append('\n');
+
+      int rowCount = 0;
+      int unresolved = 0;
+      Set<String> countryFilter = GeoDataSyncStep.toCountryFilter(config.getCountryFilter());
+      try(GeoDataRowSource reader = GeoDataRowSource.open(table, countryFilter, config.getMinCityPopulation()))
+      {
+         while(reader.hasNext())
+         {
+            QRecord row = reader.next();
+            String partition = table.getPartitionValue(row);
+            if(!keyResolver.resolve(table, row))
+            {
+               unresolved++;
+               continue;
+            }
+
+            //////////////////////////////////////////////////////////////////
+            // hashed just as the sync hashes it, once foreign keys resolve //
+            //////////////////////////////////////////////////////////////////
+            row.setValue(GeoDataRowHasher.FIELD_ROW_HASH, GeoDataRowHasher.hash(row));
+            row.setValue("id", ++rowCount);
+            row.setValue("isActive", true);
+            keyResolver.register(table, partition, row);
+
+            for(int i = 0; i < fields.size(); i++)
+            {
+               csv.append(i == 0 ? "" : ",").append(toCsvValue(fields.get(i), row.getValue(fields.get(i))));
+            }
+            csv.append('\n');
+         }
+      }
+
+      if(unresolved > 0)
+      {
+         LOG.warn("Skipped source rows whose parent is not loaded", logPair("table", table.getTableName()), logPair("unresolved", unresolved));
+      }
+      return new TableData(csv.toString(), rowCount);
+   }
+
+
+
+   /*******************************************************************************
+    ** Build the loadData changeset for a table's CSV file.  It only loads
+    ** into an empty table, and then moves the id sequence past the loaded
+    ** ids (MySQL does so by itself).
+    *******************************************************************************/
+   private static String buildLoadDataChangeSet(GeoDataSyncTable table, String fileName, int rowCount)
+   {
+      String dbTableName = "${prefix}_" + toColumnName(table.getTableName());
+      String changeSetId = "${prefix}-load-" + toColumnName(table.getTableName()).replace('_', '-') + "-data";
+
+      StringBuilder xml = new StringBuilder();
+      xml.append("   <changeSet id=\"").append(changeSetId).append("\" author=\"geo-data-qbit\">\n");
+      xml.append("      <preConditions onFail=\"MARK_RAN\">\n");
+      xml.append("         <sqlCheck expectedResult=\"0\">SELECT COUNT(*) FROM ").append(dbTableName).append("</sqlCheck>\n");
+      xml.append("      </preConditions>\n");
+      xml.append("      <comment>").append(rowCount).append(" rows</comment>\n");
+      xml.append("      <loadData tableName=\"").append(dbTableName).append("\" file=\"").append(DATA_DIRECTORY).append('/').append(fileName).append("\" relativeToChangelogFile=\"true\">\n");
+      for(String field : DATA_FIELDS.get(table))
+      {
+         String type = field.equals("isActive") ? "BOOLEAN" : NUMERIC_FIELDS.contains(field) ? "NUMERIC" : "STRING";
+         xml.append("         <column name=\"").append(toColumnName(field)).append("\" type=\"").append(type).append("\"/>\n");
+      }
+      xml.append("      </loadData>\n");
+      xml.append("      <sql dbms=\"postgresql\">SELECT setval(pg_get_serial_sequence('").append(dbTableName).append("', 'id'), ").append(rowCount).append(")</sql>\n");
+      xml.append("      <sql dbms=\"h2\">ALTER TABLE ").append(dbTableName).append(" ALTER COLUMN id RESTART WITH ").append(rowCount + 1).append("</sql>\n");
+      xml.append("   </changeSet>\n\n");
+      return xml.toString();
+   }
+
+
+
+   /*******************************************************************************
+    ** Format a value for a CSV file: NULL for null, strings quoted (with
+    ** quotes doubled), decimals in plain notation.
+    *******************************************************************************/
+   private static String toCsvValue(String field, Serializable value)
+   {
+      if(value == null)
+      {
+         return "NULL";
+      }
+      if(value instanceof BigDecimal bd)
+      {
+         return bd.toPlainString();
+      }
+      if(NUMERIC_FIELDS.contains(field) || value instanceof Boolean)
+      {
+         return value.toString();
+      }
+      return '"' + value.toString().replace("\"", "\"\"") + '"';
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the column name of a field (or table) name: camelCase to snake_case.
+    *******************************************************************************/
+   static String toColumnName(String fieldName)
+   {
+      return fieldName.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+   }
+
+
+
    /*******************************************************************************
     ** Load the changelog template from classpath resources.
     *******************************************************************************/
@@ -111,6 +329,13 @@ public class GeoDataLiquibaseGenerator
       {
          sectionsToRemove.add("city");
       }
+      if(config.getEnabledTableNames().isEmpty())
+      {
+         //////////////////////////////////////////////////////////////////////
+         // Nothing to sync - no need for the sync state table either        //
+         //////////////////////////////////////////////////////////////////////
+         sectionsToRemove.add("syncState");
+      }
 
       /////////////////////////////////////////////////////////////////////////
       // Remove disabled sections                                            //
@@ -131,24 +356,34 @@ public class GeoDataLiquibaseGenerator
          result = sb.toString();
       }
 
-      /////////////////////////////////////////////////////////////////////////
-      // Substitute prefix placeholder                                       //
-      /////////////////////////////////////////////////////////////////////////
-      String prefix = config.getTableNamePrefix();
+      return substitutePrefix(result, config.getTableNamePrefix());
+   }
+
+
+
+   /*******************************************************************************
+    ** Substitute the prefix placeholder - or, with no prefix, remove it (and
+    ** the underscore or hyphen after it).
+    *******************************************************************************/
+   private static String substitutePrefix(String text, String prefix)
+   {
       if(StringUtils.hasContent(prefix))
       {
-         result = result.replace("${prefix}", prefix);
-      }
-      else
-      {
-         //////////////////////////////////////////////////////////////////////////
-         // No prefix configured - remove the prefix and underscore              //
-         //////////////////////////////////////////////////////////////////////////
-         result = result.replace("${prefix}_", "");
-         result = result.replace("${prefix}-", "");
-         result = result.replace("${prefix}", "");
+         return text.replace("${prefix}", prefix);
       }
 
-      return result;
+      return text
+         .replace("${prefix}_", "")
+         .replace("${prefix}-", "")
+         .replace("${prefix}", "");
+   }
+
+
+
+   /*******************************************************************************
+    ** A table's CSV file content, and its number of rows.
+    *******************************************************************************/
+   private record TableData(String csv, int rowCount)
+   {
    }
 }
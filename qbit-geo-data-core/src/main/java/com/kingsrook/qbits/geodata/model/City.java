@@ -43,6 +43,9 @@ public class City extends QRecordEntity
    @QField(maxLength = 50, label = "Time Zone")
    private String timezone;
 
+   @QField(label = "Row Hash")
+   private Long rowHash;
+
    @QField
    private Boolean isActive = true;
 
@@ -114,6 +117,13 @@ public class City extends QRecordEntity
    }
 
 
+   public City withRowHash(Long rowHash)
+   {
+      this.rowHash = rowHash;
+      return this;
+   }
+
+
    public City withIsActive(Boolean isActive)
    {
       this.isActive = isActive;
@@ -188,6 +198,12 @@ public class City extends QRecordEntity
    }
 
 
+   public Long getRowHash()
+   {
+      return rowHash;
+   }
+
+
    public Boolean getIsActive()
    {
       return isActive;
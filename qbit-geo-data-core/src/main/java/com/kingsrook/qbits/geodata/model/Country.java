@@ -36,6 +36,9 @@ public class Country extends QRecordEntity
    @QField(maxLength = 100, label = "Official Name")
    private String officialName;
 
+   @QField(label = "Row Hash")
+   private Long rowHash;
+
    @QField
    private Boolean isActive = true;
 
@@ -93,6 +96,13 @@ public class Country extends QRecordEntity
    }
 
 
+   public Country withRowHash(Long rowHash)
+   {
+      this.rowHash = rowHash;
+      return this;
+   }
+
+
    public Country withIsActive(Boolean isActive)
    {
       this.isActive = isActive;
@@ -155,6 +165,12 @@ public class Country extends QRecordEntity
    }
 
 
+   public Long getRowHash()
+   {
+      return rowHash;
+   }
+
+
    public Boolean getIsActive()
    {
       return isActive;
@@ -0,0 +1,162 @@
+/*******************************************************************************
+ ** Sync state entity - one row per synced geo dataset (per table prefix).
+ **
+ ** Records the fingerprint of the bundled data (and sync options) that the
+ ** table was last synced from, so the sync process can skip tables whose
+ ** source has not changed since the last run - and, while a sync of the
+ ** table is incomplete, its checkpoint (the fingerprint being synced to, and
+ ** the last partition synced), so the next run can resume from it.
+ ** Natural key: datasetName (e.g., "country", "stateProvince", "city")
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.model;
+
+
+import java.time.Instant;
+import com.kingsrook.qqq.backend.core.model.data.QField;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.producers.annotations.QMetaDataProducingEntity;
+
+
+@QMetaDataProducingEntity(produceTableMetaData = true)
+public class GeoDataSyncState extends QRecordEntity
+{
+   public static final String TABLE_NAME = "geoDataSyncState";
+
+   @QField(isPrimaryKey = true)
+   private Integer id;
+
+   @QField(isRequired = true, maxLength = 50, label = "Dataset Name")
+   private String datasetName;
+
+   @QField(maxLength = 64)
+   private String checksum;
+
+   @QField(maxLength = 50)
+   private String version;
+
+   @QField(label = "Last Sync Date")
+   private Instant lastSyncDate;
+
+   @QField(maxLength = 100)
+   private String checkpoint;
+
+   @QField
+   private Instant createDate;
+
+   @QField
+   private Instant modifyDate;
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Fluent setters                                                           //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public GeoDataSyncState withId(Integer id)
+   {
+      this.id = id;
+      return this;
+   }
+
+
+   public GeoDataSyncState withDatasetName(String datasetName)
+   {
+      this.datasetName = datasetName;
+      return this;
+   }
+
+
+   public GeoDataSyncState withChecksum(String checksum)
+   {
+      this.checksum = checksum;
+      return this;
+   }
+
+
+   public GeoDataSyncState withVersion(String version)
+   {
+      this.version = version;
+      return this;
+   }
+
+
+   public GeoDataSyncState withLastSyncDate(Instant lastSyncDate)
+   {
+      this.lastSyncDate = lastSyncDate;
+      return this;
+   }
+
+
+   public GeoDataSyncState withCheckpoint(String checkpoint)
+   {
+      this.checkpoint = checkpoint;
+      return this;
+   }
+
+
+   public GeoDataSyncState withCreateDate(Instant createDate)
+   {
+      this.createDate = createDate;
+      return this;
+   }
+
+
+   public GeoDataSyncState withModifyDate(Instant modifyDate)
+   {
+      this.modifyDate = modifyDate;
+      return this;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public Integer getId()
+   {
+      return id;
+   }
+
+
+   public String getDatasetName()
+   {
+      return datasetName;
+   }
+
+
+   public String getChecksum()
+   {
+      return checksum;
+   }
+
+
+   public String getVersion()
+   {
+      return version;
+   }
+
+
+   public Instant getLastSyncDate()
+   {
+      return lastSyncDate;
+   }
+
+
+   public String getCheckpoint()
+   {
+      return checkpoint;
+   }
+
+
+   public Instant getCreateDate()
+   {
+      return createDate;
+   }
+
+
+   public Instant getModifyDate()
+   {
+      return modifyDate;
+   }
+}
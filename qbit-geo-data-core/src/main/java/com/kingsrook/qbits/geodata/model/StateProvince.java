@@ -33,6 +33,9 @@ public class StateProvince extends QRecordEntity
    @QField(maxLength = 50, label = "Type")
    private String subdivisionType;  // "State", "Province", "Territory", etc.
 
+   @QField(label = "Row Hash")
+   private Long rowHash;
+
    @QField
    private Boolean isActive = true;
 
@@ -83,6 +86,13 @@ public class StateProvince extends QRecordEntity
    }
 
 
+   public StateProvince withRowHash(Long rowHash)
+   {
+      this.rowHash = rowHash;
+      return this;
+   }
+
+
    public StateProvince withIsActive(Boolean isActive)
    {
       this.isActive = isActive;
@@ -139,6 +149,12 @@ public class StateProvince extends QRecordEntity
    }
 
 
+   public Long getRowHash()
+   {
+      return rowHash;
+   }
+
+
    public Boolean getIsActive()
    {
       return isActive;
@@ -0,0 +1,257 @@
+/*******************************************************************************
+ ** In-memory possible-value translations (id -> label) of a geo table, for
+ ** its possible value source - so rendering a page of records that show
+ ** countryId, stateProvinceId or city fields costs no label queries.
+ **
+ ** A cache holds every row of its table (inactive ones too, as records may
+ ** still reference them) as parallel arrays: ids and labels in id order,
+ ** for binary-search lookups, and row positions sorted by normalized label
+ ** (see GeoNameFolding), so a search term's matches are one contiguous
+ ** range.  Searches only return active rows.
+ **
+ ** One cache is held per table name - which is also its (prefixed) possible
+ ** value source's name - built on first use, or up front with warm().  The
+ ** geo data sync step calls refreshIfLoaded() after it writes a table, which
+ ** also builds the caches of sources served by GeoDataPossibleValueProvider.
+ ** Caches never change once built, so any number of threads can share one.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.possiblevalues;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.GeoDataActiveRows;
+import com.kingsrook.qbits.geodata.matching.GeoNameFolding;
+import com.kingsrook.qbits.geodata.sync.GeoDataSyncTable;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataPossibleValueCache
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataPossibleValueCache.class);
+
+   public static final String LABEL_FIELD = "name";
+
+   private static final Map<String, GeoDataPossibleValueCache> caches = new ConcurrentHashMap<>();
+
+   private final int[]     ids;
+   private final String[]  labels;
+   private final boolean[] active;
+   private final int[]     byLabel;
+   private final String[]  normalizedLabels;
+
+
+
+   /*******************************************************************************
+    ** Constructor - from rows holding id, name and isActive (rows without an
+    ** id are left out; rows without isActive count as active).
+    *******************************************************************************/
+   GeoDataPossibleValueCache(Collection<QRecord> records)
+   {
+      List<QRecord> withIds = new ArrayList<>(records.size());
+      for(QRecord record : records)
+      {
+         if(record.getValueInteger("id") != null)
+         {
+            withIds.add(record);
+         }
+      }
+      withIds.sort(Comparator.comparing(record -> record.getValueInteger("id")));
+
+      int size = withIds.size();
+      ids = new int[size];
+      labels = new String[size];
+      active = new boolean[size];
+      String[] normalized = new String[size];
+      for(int i = 0; i < size; i++)
+      {
+         QRecord record = withIds.get(i);
+         ids[i] = record.getValueInteger("id");
+         labels[i] = record.getValueString(LABEL_FIELD);
+         active[i] = !Boolean.FALSE.equals(record.getValueBoolean("isActive"));
+         normalized[i] = labels[i] == null ? "" : GeoNameFolding.normalize(labels[i]);
+      }
+
+      byLabel = IntStream.range(0, size).boxed()
+         .sorted(Comparator.comparing((Integer i) -> normalized[i]).thenComparing(i -> ids[i]))
+         .mapToInt(Integer::intValue).toArray();
+      normalizedLabels = new String[size];
+      for(int i = 0; i < size; i++)
+      {
+         normalizedLabels[i] = normalized[byLabel[i]];
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the cache of a table, building it on first use.
+    *******************************************************************************/
+   public static GeoDataPossibleValueCache get(String tableName) throws QException
+   {
+      GeoDataPossibleValueCache cache = caches.get(tableName);
+      return cache != null ? cache : rebuild(tableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the cache of a table if it has been built, else null.
+    *******************************************************************************/
+   public static GeoDataPossibleValueCache getIfLoaded(String tableName)
+   {
+      return caches.get(tableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** (Re)build the cache of a table from all its rows.
+    *******************************************************************************/
+   public static GeoDataPossibleValueCache rebuild(String tableName) throws QException
+   {
+      long start = System.currentTimeMillis();
+      List<QRecord> records = GeoDataActiveRows.read(tableName, Set.of(LABEL_FIELD, "isActive"), true);
+
+      GeoDataPossibleValueCache cache = new GeoDataPossibleValueCache(records);
+      caches.put(tableName, cache);
+
+      LOG.info("Built possible value cache", logPair("table", tableName), logPair("values", cache.size()), logPair("millis", System.currentTimeMillis() - start));
+      return cache;
+   }
+
+
+
+   /*******************************************************************************
+    ** Build the caches of all of a table name prefix's tables now, rather than
+    ** on the first translation (e.g., at startup, or after a sync).
+    *******************************************************************************/
+   public static void warm(String tableNamePrefix) throws QException
+   {
+      for(GeoDataSyncTable table : GeoDataSyncTable.values())
+      {
+         rebuild(table.getTableName(tableNamePrefix));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Rebuild the cache of a table if it has been built, or if its possible
+    ** value source is served from the cache - e.g., after a sync has changed
+    ** the table's rows, so the first page rendered after it is not the one to
+    ** pay for the build.
+    *******************************************************************************/
+   public static void refreshIfLoaded(String tableName) throws QException
+   {
+      if(caches.containsKey(tableName) || GeoDataPossibleValueProvider.isRegistered(tableName))
+      {
+         rebuild(tableName);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Drop the cache of a table (if built), so the next get() rebuilds it.
+    *******************************************************************************/
+   public static void clear(String tableName)
+   {
+      caches.remove(tableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the label of an id, or null if there is no such row.
+    *******************************************************************************/
+   public String getLabel(int id)
+   {
+      int index = Arrays.binarySearch(ids, id);
+      return index < 0 ? null : labels[index];
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if there is a row with an id (active or not).
+    *******************************************************************************/
+   public boolean contains(int id)
+   {
+      return Arrays.binarySearch(ids, id) >= 0;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the ids of the active rows whose label starts with text (ignoring
+    ** case and accents), ordered by label - skipping the first skip matches,
+    ** and returning at most limit (null for no limit).
+    *******************************************************************************/
+   public List<Integer> search(String text, int skip, Integer limit)
+   {
+      String prefix = text == null ? "" : GeoNameFolding.normalize(text);
+      int from = firstAtOrAfter(prefix);
+
+      List<Integer> results = new ArrayList<>();
+      int skipped = 0;
+      for(int i = from; i < normalizedLabels.length && normalizedLabels[i].startsWith(prefix); i++)
+      {
+         if(limit != null && results.size() >= limit)
+         {
+            break;
+         }
+
+         int index = byLabel[i];
+         if(active[index] && skipped++ >= skip)
+         {
+            results.add(ids[index]);
+         }
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the first position (in label order) whose label is not before prefix.
+    *******************************************************************************/
+   private int firstAtOrAfter(String prefix)
+   {
+      int lo = 0;
+      int hi = normalizedLabels.length;
+      while(lo < hi)
+      {
+         int mid = (lo + hi) >>> 1;
+         if(normalizedLabels[mid].compareTo(prefix) < 0)
+         {
+            lo = mid + 1;
+         }
+         else
+         {
+            hi = mid;
+         }
+      }
+      return lo;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the number of rows cached.
+    *******************************************************************************/
+   public int size()
+   {
+      return ids.length;
+   }
+}
@@ -0,0 +1,322 @@
+/*******************************************************************************
+ ** Custom possible value provider for the geo tables' possible value
+ ** sources, answering from GeoDataPossibleValueCache instead of querying the
+ ** tables.  GeoDataQBitProducer switches the sources to it when the config's
+ ** cachePossibleValues is true.
+ **
+ ** Searches (including QQQ's by-id-list translations of a page of records)
+ ** carry their possible value source's name, which is the cached table's
+ ** name.  Single-id translations (getPossibleValue) do not, so the nested
+ ** subclass for each table (as the code reference) names the unprefixed
+ ** table, and the id is looked up in the one source registered for it.
+ ** Ids are assigned per table, so the same id in two prefixes' tables
+ ** usually names different rows - which is why GeoDataQBitConfig allows
+ ** cachePossibleValues on one instance only.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.possiblevalues;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import com.kingsrook.qqq.backend.core.actions.values.QCustomPossibleValueProvider;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.values.SearchPossibleValueSourceInput;
+import com.kingsrook.qqq.backend.core.model.metadata.possiblevalues.QPossibleValue;
+import com.kingsrook.qbits.geodata.model.City;
+import com.kingsrook.qbits.geodata.model.Country;
+import com.kingsrook.qbits.geodata.model.StateProvince;
+import com.kingsrook.qbits.geodata.typeahead.GeoDataTypeaheadIndexes;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public abstract class GeoDataPossibleValueProvider implements QCustomPossibleValueProvider<Integer>
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataPossibleValueProvider.class);
+
+   private static final Map<String, String> sourceByTable = new ConcurrentHashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Get the unprefixed name of the table this provider serves.
+    *******************************************************************************/
+   protected abstract String getBaseTableName();
+
+
+
+   /*******************************************************************************
+    ** Get the provider class for an unprefixed table name, or null if it is not
+    ** a geo table with a possible value source.
+    *******************************************************************************/
+   public static Class<? extends GeoDataPossibleValueProvider> getProviderClass(String baseTableName)
+   {
+      return switch(baseTableName)
+      {
+         case Country.TABLE_NAME -> CountryProvider.class;
+         case StateProvince.TABLE_NAME -> StateProvinceProvider.class;
+         case City.TABLE_NAME -> CityProvider.class;
+         default -> null;
+      };
+   }
+
+
+
+   /*******************************************************************************
+    ** Register a (prefixed) possible value source name as the one served by
+    ** the provider of an unprefixed table, replacing any registered before.
+    *******************************************************************************/
+   public static void register(String baseTableName, String possibleValueSourceName)
+   {
+      sourceByTable.put(baseTableName, possibleValueSourceName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a (prefixed) possible value source name has been registered.
+    *******************************************************************************/
+   public static boolean isRegistered(String possibleValueSourceName)
+   {
+      return sourceByTable.containsValue(possibleValueSourceName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Translate one id - see the class comment for how its source is found.
+    *******************************************************************************/
+   @Override
+   public QPossibleValue<Integer> getPossibleValue(Serializable idValue)
+   {
+      Integer id = toId(idValue);
+      String sourceName = sourceByTable.get(getBaseTableName());
+      if(id == null || sourceName == null)
+      {
+         return null;
+      }
+
+      try
+      {
+         GeoDataPossibleValueCache cache = GeoDataPossibleValueCache.get(sourceName);
+         return cache.contains(id) ? new QPossibleValue<>(id, cache.getLabel(id)) : null;
+      }
+      catch(QException e)
+      {
+         LOG.warn("Error building possible value cache", e, logPair("table", sourceName));
+         return null;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Search a possible value source: by id list, label list, or search term
+    ** (a label prefix, or an id).  Cities and states/provinces matching a
+    ** label prefix come most populous first; countries in label order.
+    *******************************************************************************/
+   @Override
+   public List<QPossibleValue<Integer>> search(SearchPossibleValueSourceInput input) throws QException
+   {
+      GeoDataPossibleValueCache cache = GeoDataPossibleValueCache.get(input.getPossibleValueSourceName());
+      List<QPossibleValue<Integer>> results = new ArrayList<>();
+
+      if(input.getIdList() != null)
+      {
+         for(Serializable idValue : input.getIdList())
+         {
+            Integer id = toId(idValue);
+            if(id != null && cache.contains(id))
+            {
+               results.add(new QPossibleValue<>(id, cache.getLabel(id)));
+            }
+         }
+         return results;
+      }
+
+      if(input.getLabelList() != null)
+      {
+         for(String label : input.getLabelList())
+         {
+            for(Integer id : label == null ? List.<Integer>of() : cache.search(label, 0, null))
+            {
+               if(label.equalsIgnoreCase(cache.getLabel(id)))
+               {
+                  results.add(new QPossibleValue<>(id, cache.getLabel(id)));
+               }
+            }
+         }
+         return results;
+      }
+
+      int skip = input.getSkip() == null ? 0 : input.getSkip();
+      Integer termId = toId(input.getSearchTerm());
+      if(termId != null && cache.contains(termId) && skip == 0)
+      {
+         results.add(new QPossibleValue<>(termId, cache.getLabel(termId)));
+      }
+
+      Integer limit = input.getLimit() == null ? null : Math.max(input.getLimit() - results.size(), 0);
+      for(Integer id : searchLabels(input.getPossibleValueSourceName(), cache, input.getSearchTerm(), skip, limit))
+      {
+         results.add(new QPossibleValue<>(id, cache.getLabel(id)));
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the ids of the active rows whose label starts with text, skipping
+    ** the first skip and returning at most limit (null for no limit) - in
+    ** label order, unless a subclass ranks them otherwise.
+    *******************************************************************************/
+   protected List<Integer> searchLabels(String possibleValueSourceName, GeoDataPossibleValueCache cache, String text, int skip, Integer limit) throws QException
+   {
+      return cache.search(text, skip, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the table name prefix of a (prefixed) possible value source name, or
+    ** null if it has none.
+    *******************************************************************************/
+   protected String getTableNamePrefix(String possibleValueSourceName)
+   {
+      String suffix = "_" + getBaseTableName();
+      if(possibleValueSourceName == null || !possibleValueSourceName.endsWith(suffix) || possibleValueSourceName.length() == suffix.length())
+      {
+         return null;
+      }
+      return possibleValueSourceName.substring(0, possibleValueSourceName.length() - suffix.length());
+   }
+
+
+
+   /*******************************************************************************
+    ** Skip the first skip of a list of ids, returning at most limit (null for
+    ** no limit) of the rest.
+    *******************************************************************************/
+   private static List<Integer> page(List<Integer> ids, int skip, Integer limit)
+   {
+      int from = Math.min(skip, ids.size());
+      int to = limit == null ? ids.size() : (int) Math.min((long) from + limit, ids.size());
+      return ids.subList(from, to);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get how many ids to search for, to leave limit (null for no limit) after
+    ** skipping the first skip.
+    *******************************************************************************/
+   private static int toSearchLimit(int skip, Integer limit)
+   {
+      return limit == null ? Integer.MAX_VALUE : (int) Math.min((long) skip + limit, Integer.MAX_VALUE);
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert an id value (an Integer, or a String of one) to an int id, or
+    ** null if it is not one.
+    *******************************************************************************/
+   private static Integer toId(Serializable idValue)
+   {
+      if(idValue instanceof Integer integer)
+      {
+         return integer;
+      }
+      if(idValue instanceof Number number)
+      {
+         return number.intValue();
+      }
+      if(idValue instanceof String string)
+      {
+         try
+         {
+            return Integer.valueOf(string.trim());
+         }
+         catch(NumberFormatException e)
+         {
+            return null;
+         }
+      }
+      return null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Provider for the country possible value sources.
+    *******************************************************************************/
+   public static class CountryProvider extends GeoDataPossibleValueProvider
+   {
+      @Override
+      protected String getBaseTableName()
+      {
+         return Country.TABLE_NAME;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Provider for the state/province possible value sources, whose searches
+    ** rank the most populous states/provinces first (by the prefix's
+    ** GeoDataTypeaheadIndexes).
+    *******************************************************************************/
+   public static class StateProvinceProvider extends GeoDataPossibleValueProvider
+   {
+      @Override
+      protected String getBaseTableName()
+      {
+         return StateProvince.TABLE_NAME;
+      }
+
+
+
+      @Override
+      protected List<Integer> searchLabels(String possibleValueSourceName, GeoDataPossibleValueCache cache, String text, int skip, Integer limit) throws QException
+      {
+         String prefix = getTableNamePrefix(possibleValueSourceName);
+         if(prefix == null)
+         {
+            return super.searchLabels(possibleValueSourceName, cache, text, skip, limit);
+         }
+         return page(GeoDataTypeaheadIndexes.get(prefix).searchStateProvinces(text, null, toSearchLimit(skip, limit)), skip, limit);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Provider for the city possible value sources, whose searches rank the
+    ** most populous cities first (by the prefix's GeoDataTypeaheadIndexes).
+    *******************************************************************************/
+   public static class CityProvider extends GeoDataPossibleValueProvider
+   {
+      @Override
+      protected String getBaseTableName()
+      {
+         return City.TABLE_NAME;
+      }
+
+
+
+      @Override
+      protected List<Integer> searchLabels(String possibleValueSourceName, GeoDataPossibleValueCache cache, String text, int skip, Integer limit) throws QException
+      {
+         String prefix = getTableNamePrefix(possibleValueSourceName);
+         if(prefix == null)
+         {
+            return super.searchLabels(possibleValueSourceName, cache, text, skip, limit);
+         }
+         return page(GeoDataTypeaheadIndexes.get(prefix).searchCities(text, null, null, toSearchLimit(skip, limit)), skip, limit);
+      }
+   }
+}
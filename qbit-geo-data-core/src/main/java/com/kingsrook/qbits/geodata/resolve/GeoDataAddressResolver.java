@@ -0,0 +1,362 @@
+/*******************************************************************************
+ ** Resolves raw, free-text country and state/province strings (as found in
+ ** imported addresses - "U.S.A.", "Deutschland", "Calif.", "CA") to the ids
+ ** of a prefix's synced rows, a whole batch at a time.
+ **
+ ** Each table's rows are held in an alias index, keyed by normalized text
+ ** (folded to ASCII and lower-cased, as GeoNameFolding does, with periods
+ ** dropped and other punctuation as spaces - so "U.S.A." is "usa"):
+ ** - countries: alpha-2, alpha-3 and numeric codes, name, official name
+ ** - states/provinces: code and name, within their country, and across all
+ **   countries for inputs with no country
+ ** An input that matches no alias, but is (3+ characters of) the start of
+ ** exactly one name, resolves as a PREFIX match ("Calif." -> California).
+ ** An alias shared by rows at the same confidence (e.g., state code "CA"
+ ** with no country) is AMBIGUOUS, and resolves to no id.
+ **
+ ** Lookups are hashed, and each distinct input in a batch is normalized and
+ ** looked up once - the results for repeated inputs are shared - so large
+ ** batches with the usual few hundred distinct values resolve in one pass.
+ **
+ ** One resolver is held per table name prefix, built on first use from the
+ ** tables' active rows.  The geo data sync step calls refreshIfLoaded()
+ ** after it writes the country or state table.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.resolve;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.GeoDataActiveRows;
+import com.kingsrook.qbits.geodata.matching.GeoNameFolding;
+import com.kingsrook.qbits.geodata.resolve.GeoDataResolution.MatchType;
+import com.kingsrook.qbits.geodata.sync.GeoDataSyncTable;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataAddressResolver
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataAddressResolver.class);
+
+   public static final int MIN_PREFIX_LENGTH = 3;
+
+   private static final Pattern PERIODS     = Pattern.compile("\\.");
+   private static final Pattern PUNCTUATION = Pattern.compile("[\\p{Punct}\\s]+");
+   private static final Pattern DIGITS      = Pattern.compile("\\d+");
+
+   private static final Map<String, GeoDataAddressResolver> byPrefix = new ConcurrentHashMap<>();
+
+   private final AliasTable               countries       = new AliasTable();
+   private final AliasTable               allStates       = new AliasTable();
+   private final Map<Integer, AliasTable> statesByCountry = new HashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes country rows (id, alpha2Code, alpha3Code,
+    ** numericCode, name, officialName) and state rows (id, countryId, code,
+    ** name).
+    *******************************************************************************/
+   GeoDataAddressResolver(List<QRecord> countryRows, List<QRecord> stateRows)
+   {
+      for(QRecord country : countryRows)
+      {
+         Integer id = country.getValueInteger("id");
+         if(id != null)
+         {
+            countries.add(country.getValueString("alpha2Code"), id, MatchType.CODE, false);
+            countries.add(country.getValueString("alpha3Code"), id, MatchType.CODE, false);
+            countries.add(country.getValueString("numericCode"), id, MatchType.CODE, false);
+            countries.add(country.getValueString("name"), id, MatchType.NAME, true);
+            countries.add(country.getValueString("officialName"), id, MatchType.OFFICIAL_NAME, true);
+         }
+      }
+      countries.freeze();
+
+      for(QRecord state : stateRows)
+      {
+         Integer id = state.getValueInteger("id");
+         Integer countryId = state.getValueInteger("countryId");
+         if(id != null)
+         {
+            List<AliasTable> tables = new ArrayList<>(List.of(allStates));
+            if(countryId != null)
+            {
+               tables.add(statesByCountry.computeIfAbsent(countryId, k -> new AliasTable()));
+            }
+            for(AliasTable table : tables)
+            {
+               table.add(state.getValueString("code"), id, MatchType.CODE, false);
+               table.add(state.getValueString("name"), id, MatchType.NAME, true);
+            }
+         }
+      }
+      allStates.freeze();
+      statesByCountry.values().forEach(AliasTable::freeze);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the resolver of a table name prefix, building it on first use.
+    *******************************************************************************/
+   public static GeoDataAddressResolver get(String tableNamePrefix) throws QException
+   {
+      GeoDataAddressResolver resolver = byPrefix.get(tableNamePrefix);
+      return resolver != null ? resolver : rebuild(tableNamePrefix);
+   }
+
+
+
+   /*******************************************************************************
+    ** (Re)build the resolver of a table name prefix from its active rows.
+    *******************************************************************************/
+   public static GeoDataAddressResolver rebuild(String tableNamePrefix) throws QException
+   {
+      long start = System.currentTimeMillis();
+      List<QRecord> countryRows = GeoDataActiveRows.read(GeoDataSyncTable.COUNTRY.getTableName(tableNamePrefix), Set.of("alpha2Code", "alpha3Code", "numericCode", "name", "officialName"));
+      List<QRecord> stateRows = GeoDataActiveRows.read(GeoDataSyncTable.STATE_PROVINCE.getTableName(tableNamePrefix), Set.of("countryId", "code", "name"));
+
+      GeoDataAddressResolver resolver = new GeoDataAddressResolver(countryRows, stateRows);
+      byPrefix.put(tableNamePrefix, resolver);
+
+      LOG.info("Built address resolver", logPair("prefix", tableNamePrefix), logPair("countries", countryRows.size()), logPair("states", stateRows.size()),
+         logPair("millis", System.currentTimeMillis() - start));
+      return resolver;
+   }
+
+
+
+   /*******************************************************************************
+    ** Rebuild the resolver of a table name prefix if it has been built - e.g.,
+    ** after a sync has changed the tables' rows.
+    *******************************************************************************/
+   public static void refreshIfLoaded(String tableNamePrefix) throws QException
+   {
+      if(byPrefix.containsKey(tableNamePrefix))
+      {
+         rebuild(tableNamePrefix);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Drop the resolver of a table name prefix (if built), so the next get()
+    ** rebuilds it.
+    *******************************************************************************/
+   public static void clear(String tableNamePrefix)
+   {
+      byPrefix.remove(tableNamePrefix);
+   }
+
+
+
+   /*******************************************************************************
+    ** Resolve raw country strings to country ids.  Results are in input order
+    ** (one per input, null inputs included).
+    *******************************************************************************/
+   public List<GeoDataResolution> resolveCountries(List<String> inputs)
+   {
+      Map<String, GeoDataResolution> distinct = new HashMap<>();
+      List<GeoDataResolution> results = new ArrayList<>(inputs.size());
+      for(String input : inputs)
+      {
+         results.add(distinct.computeIfAbsent(input == null ? "" : input, countries::resolve));
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Resolve raw state/province strings to state ids.  If countryInputs is
+    ** given (one per state input, in the same order, entries may be null),
+    ** each state is looked up within its resolved country; otherwise, or
+    ** when its country does not resolve, across all countries.  Results are
+    ** in input order.
+    *******************************************************************************/
+   public List<GeoDataResolution> resolveStateProvinces(List<String> inputs, List<String> countryInputs)
+   {
+      if(countryInputs != null && countryInputs.size() != inputs.size())
+      {
+         throw new IllegalArgumentException("countryInputs must have one entry per state input (" + countryInputs.size() + " != " + inputs.size() + ")");
+      }
+
+      List<GeoDataResolution> countryResults = countryInputs == null ? null : resolveCountries(countryInputs);
+      Map<Long, Map<String, GeoDataResolution>> distinctByCountry = new HashMap<>();
+      List<GeoDataResolution> results = new ArrayList<>(inputs.size());
+      for(int i = 0; i < inputs.size(); i++)
+      {
+         Integer countryId = countryResults == null ? null : countryResults.get(i).getId();
+         AliasTable table = countryId == null ? null : statesByCountry.get(countryId);
+         AliasTable scope = table == null ? allStates : table;
+
+         String input = inputs.get(i);
+         long scopeKey = table == null ? Long.MIN_VALUE : countryId;
+         results.add(distinctByCountry.computeIfAbsent(scopeKey, k -> new HashMap<>()).computeIfAbsent(input == null ? "" : input, scope::resolve));
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Normalize raw text to an alias key: folded to ASCII, lower case, periods
+    ** dropped, other punctuation and whitespace as single spaces, and numbers
+    ** without leading zeros.  Empty for null or blank.
+    *******************************************************************************/
+   static String aliasKey(String text)
+   {
+      String normalized = GeoNameFolding.normalize(text);
+      if(normalized == null)
+      {
+         return "";
+      }
+
+      String key = PUNCTUATION.matcher(PERIODS.matcher(normalized).replaceAll("")).replaceAll(" ").trim();
+      if(DIGITS.matcher(key).matches())
+      {
+         key = key.replaceFirst("^0+(?=.)", "");
+      }
+      return key;
+   }
+
+
+
+   /*******************************************************************************
+    ** The aliases of one set of rows (all countries, or the states of one
+    ** country, or all states): a hash of alias key to row, and the name keys
+    ** sorted, for unique-prefix matches.
+    *******************************************************************************/
+   private static class AliasTable
+   {
+      private final Map<String, Alias> aliases = new HashMap<>();
+
+      private List<Alias> nameList = new ArrayList<>();
+      private String[]    nameKeys;
+      private int[]       nameIds;
+
+
+
+      /*******************************************************************************
+       ** Add an alias of a row (if the text is not blank).  Names are also
+       ** candidates for prefix matches.
+       *******************************************************************************/
+      void add(String text, int id, MatchType matchType, boolean isName)
+      {
+         String key = aliasKey(text);
+         if(key.isEmpty())
+         {
+            return;
+         }
+
+         Alias alias = new Alias(key, id, matchType);
+         Alias existing = aliases.get(key);
+         if(existing == null || matchType.getConfidence() > existing.matchType.getConfidence())
+         {
+            aliases.put(key, alias);
+         }
+         else if(existing.id != id && matchType.getConfidence() == existing.matchType.getConfidence())
+         {
+            existing.ambiguous = true;
+         }
+
+         if(isName)
+         {
+            nameList.add(alias);
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Sort the names for prefix search, once all aliases are added.
+       *******************************************************************************/
+      void freeze()
+      {
+         nameList.sort((a, b) -> a.key.compareTo(b.key));
+         nameKeys = new String[nameList.size()];
+         nameIds = new int[nameList.size()];
+         for(int i = 0; i < nameList.size(); i++)
+         {
+            nameKeys[i] = nameList.get(i).key;
+            nameIds[i] = nameList.get(i).id;
+         }
+         nameList = null;
+      }
+
+
+
+      /*******************************************************************************
+       ** Resolve one raw input.
+       *******************************************************************************/
+      GeoDataResolution resolve(String input)
+      {
+         String key = aliasKey(input);
+         if(key.isEmpty())
+         {
+            return new GeoDataResolution(input, null, MatchType.NONE);
+         }
+
+         Alias alias = aliases.get(key);
+         if(alias != null)
+         {
+            return alias.ambiguous ? new GeoDataResolution(input, null, MatchType.AMBIGUOUS) : new GeoDataResolution(input, alias.id, alias.matchType);
+         }
+
+         if(key.length() < MIN_PREFIX_LENGTH)
+         {
+            return new GeoDataResolution(input, null, MatchType.NONE);
+         }
+
+         int from = Arrays.binarySearch(nameKeys, key);
+         from = from < 0 ? -from - 1 : from;
+         Integer id = null;
+         for(int i = from; i < nameKeys.length && nameKeys[i].startsWith(key); i++)
+         {
+            if(id != null && id != nameIds[i])
+            {
+               return new GeoDataResolution(input, null, MatchType.AMBIGUOUS);
+            }
+            id = nameIds[i];
+         }
+         return new GeoDataResolution(input, id, id == null ? MatchType.NONE : MatchType.PREFIX);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** An alias of a row.
+    *******************************************************************************/
+   private static class Alias
+   {
+      private final String    key;
+      private final int       id;
+      private final MatchType matchType;
+
+      private boolean ambiguous;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      Alias(String key, int id, MatchType matchType)
+      {
+         this.key = key;
+         this.id = id;
+         this.matchType = matchType;
+      }
+   }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ ** The result of resolving one raw country or state/province string (e.g.,
+ ** "U.S.A.", "Calif.") to a row id: the id (null if unresolved), how it
+ ** matched, and a confidence from 0 to 1.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.resolve;
+
+
+import java.io.Serializable;
+
+
+public class GeoDataResolution implements Serializable
+{
+   private final String    input;
+   private final Integer   id;
+   private final MatchType matchType;
+
+
+
+   /*******************************************************************************
+    ** How an input matched, with the confidence each kind of match carries.
+    *******************************************************************************/
+   public enum MatchType
+   {
+      CODE(1.0),
+      NAME(1.0),
+      OFFICIAL_NAME(0.95),
+      PREFIX(0.75),
+      AMBIGUOUS(0.0),
+      NONE(0.0);
+
+      private final double confidence;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      MatchType(double confidence)
+      {
+         this.confidence = confidence;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the confidence of a match of this type.
+       *******************************************************************************/
+      public double getConfidence()
+      {
+         return confidence;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataResolution(String input, Integer id, MatchType matchType)
+   {
+      this.input = input;
+      this.id = id;
+      this.matchType = matchType;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether the input resolved to an id.
+    *******************************************************************************/
+   public boolean isResolved()
+   {
+      return id != null;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getInput()
+   {
+      return input;
+   }
+
+
+   public Integer getId()
+   {
+      return id;
+   }
+
+
+   public MatchType getMatchType()
+   {
+      return matchType;
+   }
+
+
+   public double getConfidence()
+   {
+      return matchType.getConfidence();
+   }
+}
@@ -0,0 +1,53 @@
+/*******************************************************************************
+ ** MetaData producer for the Geo Data Resolve process.
+ **
+ ** Defines a process that resolves a batch of raw country and state/province
+ ** strings (e.g., from an address import) to the ids of the geo data tables'
+ ** rows, with a match type and confidence for each.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.resolve;
+
+
+import com.kingsrook.qqq.backend.core.model.metadata.MetaDataProducerInterface;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeReference;
+import com.kingsrook.qqq.backend.core.model.metadata.code.QCodeType;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.fields.QFieldType;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QBackendStepMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QFunctionInputMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.processes.QProcessMetaData;
+
+
+public class GeoDataResolveProcessMetaDataProducer implements MetaDataProducerInterface<QProcessMetaData>
+{
+   public static final String NAME = "geoDataResolve";
+
+
+
+   /*******************************************************************************
+    ** Produce the process metadata.
+    *******************************************************************************/
+   @Override
+   public QProcessMetaData produce(QInstance qInstance)
+   {
+      QBackendStepMetaData resolveStep = new QBackendStepMetaData()
+         .withName("resolve")
+         .withCode(new QCodeReference()
+            .withName(GeoDataResolveStep.class.getName())
+            .withCodeType(QCodeType.JAVA))
+         .withInputData(new QFunctionInputMetaData()
+            .withField(new QFieldMetaData(GeoDataResolveStep.FIELD_TABLE_NAME_PREFIX, QFieldType.STRING)
+               .withIsRequired(true)
+               .withLabel("Table Name Prefix"))
+            .withField(new QFieldMetaData(GeoDataResolveStep.FIELD_COUNTRIES, QFieldType.TEXT)
+               .withLabel("Countries"))
+            .withField(new QFieldMetaData(GeoDataResolveStep.FIELD_STATE_PROVINCES, QFieldType.TEXT)
+               .withLabel("States/Provinces")));
+
+      return new QProcessMetaData()
+         .withName(NAME)
+         .withLabel("Resolve Geographic Names")
+         .withStep(resolveStep);
+   }
+}
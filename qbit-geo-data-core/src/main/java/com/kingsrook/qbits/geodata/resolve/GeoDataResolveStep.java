@@ -0,0 +1,141 @@
+/*******************************************************************************
+ ** Backend step of the geo data resolve process: resolves a batch of raw
+ ** country and/or state/province strings (e.g., from an address import) to
+ ** the ids of a prefix's rows - see GeoDataAddressResolver.
+ **
+ ** Inputs (besides tableNamePrefix) are each a List of Strings, or one
+ ** String of newline-separated values:
+ ** - countries: raw country strings
+ ** - stateProvinces: raw state/province strings; if countries is also given,
+ **   it must have one entry per state (blank for none), and each state is
+ **   resolved within its country
+ **
+ ** Outputs countryResults and stateProvinceResults (lists of
+ ** GeoDataResolution, in input order), and the resolvedCount and
+ ** unresolvedCount over both.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.resolve;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.actions.processes.BackendStep;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataResolveStep implements BackendStep
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataResolveStep.class);
+
+   public static final String FIELD_TABLE_NAME_PREFIX = "tableNamePrefix";
+   public static final String FIELD_COUNTRIES         = "countries";
+   public static final String FIELD_STATE_PROVINCES   = "stateProvinces";
+
+   public static final String OUTPUT_COUNTRY_RESULTS        = "countryResults";
+   public static final String OUTPUT_STATE_PROVINCE_RESULTS = "stateProvinceResults";
+   public static final String OUTPUT_RESOLVED_COUNT         = "resolvedCount";
+   public static final String OUTPUT_UNRESOLVED_COUNT       = "unresolvedCount";
+
+
+
+   /*******************************************************************************
+    ** Run the resolve step.
+    *******************************************************************************/
+   @Override
+   public void run(RunBackendStepInput input, RunBackendStepOutput output) throws QException
+   {
+      String prefix = input.getValueString(FIELD_TABLE_NAME_PREFIX);
+      if(prefix == null || prefix.isEmpty())
+      {
+         throw new QException("tableNamePrefix is required");
+      }
+
+      List<String> countries = getStrings(input, FIELD_COUNTRIES);
+      List<String> stateProvinces = getStrings(input, FIELD_STATE_PROVINCES);
+      if(countries == null && stateProvinces == null)
+      {
+         throw new QException("countries or stateProvinces is required");
+      }
+      if(countries != null && stateProvinces != null && countries.size() != stateProvinces.size())
+      {
+         throw new QException("countries must have one entry per stateProvince (" + countries.size() + " != " + stateProvinces.size() + ")");
+      }
+
+      long start = System.currentTimeMillis();
+      GeoDataAddressResolver resolver = GeoDataAddressResolver.get(prefix);
+
+      ArrayList<GeoDataResolution> countryResults = new ArrayList<>();
+      ArrayList<GeoDataResolution> stateProvinceResults = new ArrayList<>();
+      if(countries != null)
+      {
+         countryResults.addAll(resolver.resolveCountries(countries));
+      }
+      if(stateProvinces != null)
+      {
+         stateProvinceResults.addAll(resolver.resolveStateProvinces(stateProvinces, countries));
+      }
+
+      int resolved = 0;
+      int unresolved = 0;
+      for(List<GeoDataResolution> results : List.of(countryResults, stateProvinceResults))
+      {
+         for(GeoDataResolution result : results)
+         {
+            if(result.isResolved())
+            {
+               resolved++;
+            }
+            else
+            {
+               unresolved++;
+            }
+         }
+      }
+
+      LOG.info("Resolved address components", logPair("prefix", prefix), logPair("countries", countryResults.size()), logPair("stateProvinces", stateProvinceResults.size()),
+         logPair("resolved", resolved), logPair("unresolved", unresolved), logPair("millis", System.currentTimeMillis() - start));
+
+      output.addValue(OUTPUT_COUNTRY_RESULTS, countryResults);
+      output.addValue(OUTPUT_STATE_PROVINCE_RESULTS, stateProvinceResults);
+      output.addValue(OUTPUT_RESOLVED_COUNT, resolved);
+      output.addValue(OUTPUT_UNRESOLVED_COUNT, unresolved);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get an input as a list of strings - from a collection, or a string of
+    ** newline-separated values - or null if it is not given.
+    *******************************************************************************/
+   static List<String> getStrings(RunBackendStepInput input, String fieldName) throws QException
+   {
+      Serializable value = input.getValue(fieldName);
+      if(value == null)
+      {
+         return null;
+      }
+
+      if(value instanceof Collection<?> collection)
+      {
+         List<String> strings = new ArrayList<>(collection.size());
+         for(Object element : collection)
+         {
+            strings.add(element == null ? null : element.toString());
+         }
+         return strings;
+      }
+
+      if(value instanceof String string)
+      {
+         return string.isEmpty() ? List.of() : List.of(string.split("\\r?\\n", -1));
+      }
+
+      throw new QException(fieldName + " must be a list of strings, or a newline-separated string");
+   }
+}
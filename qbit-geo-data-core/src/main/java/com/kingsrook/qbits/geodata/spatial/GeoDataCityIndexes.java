@@ -0,0 +1,122 @@
+/*******************************************************************************
+ ** Spatial indexes over the synced city tables, for nearest, radius and
+ ** bounding-box queries against the database's own rows (and ids).
+ **
+ ** One index is held per city table name (so each prefixed instance has its
+ ** own), built on first use from the table's active rows - paging through
+ ** just id, latitude and longitude - and indexed by city id.  Queries then
+ ** never touch the database; callers look the matched ids up as needed.
+ **
+ ** The geo data sync step calls refreshIfLoaded() after it writes a city
+ ** table, so an index that is in use is rebuilt from the new rows, and one
+ ** that is not stays unbuilt.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.spatial;
+
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.GeoDataActiveRows;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataCityIndexes
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataCityIndexes.class);
+
+   private static final Map<String, GeoSpatialIndex<Integer>> indexes = new ConcurrentHashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Get the index of a city table, building it on first use.
+    *******************************************************************************/
+   public static GeoSpatialIndex<Integer> get(String cityTableName) throws QException
+   {
+      GeoSpatialIndex<Integer> index = indexes.get(cityTableName);
+      return index != null ? index : rebuild(cityTableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** (Re)build the index of a city table from its active rows.  Queries
+    ** against the old index keep working until the new one replaces it.
+    *******************************************************************************/
+   public static GeoSpatialIndex<Integer> rebuild(String cityTableName) throws QException
+   {
+      long start = System.currentTimeMillis();
+      List<QRecord> records = GeoDataActiveRows.read(cityTableName, Set.of("latitude", "longitude"));
+
+      GeoSpatialIndex<Integer> index = build(records);
+      indexes.put(cityTableName, index);
+
+      LOG.info("Built city spatial index", logPair("table", cityTableName), logPair("cities", index.size()), logPair("millis", System.currentTimeMillis() - start));
+      return index;
+   }
+
+
+
+   /*******************************************************************************
+    ** Rebuild the index of a city table if it has been built - e.g., after a
+    ** sync has changed the table's rows.
+    *******************************************************************************/
+   public static void refreshIfLoaded(String cityTableName) throws QException
+   {
+      if(indexes.containsKey(cityTableName))
+      {
+         rebuild(cityTableName);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Drop the index of a city table (if built), so the next get() rebuilds it.
+    *******************************************************************************/
+   public static void clear(String cityTableName)
+   {
+      indexes.remove(cityTableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Build an index of city ids from rows holding id, latitude and longitude.
+    ** Rows without an id or coordinates are left out.
+    *******************************************************************************/
+   static GeoSpatialIndex<Integer> build(Collection<QRecord> records)
+   {
+      Map<Integer, QRecord> recordsById = new HashMap<>();
+      for(QRecord record : records)
+      {
+         Integer id = record.getValueInteger("id");
+         if(id != null)
+         {
+            recordsById.put(id, record);
+         }
+      }
+
+      return new GeoSpatialIndex<>(recordsById.keySet(),
+         id -> toDegrees(recordsById.get(id).getValueBigDecimal("latitude")),
+         id -> toDegrees(recordsById.get(id).getValueBigDecimal("longitude")));
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a stored coordinate to degrees - NaN (not indexed) if missing.
+    *******************************************************************************/
+   private static double toDegrees(BigDecimal value)
+   {
+      return value == null ? Double.NaN : value.doubleValue();
+   }
+}
@@ -0,0 +1,164 @@
+/*******************************************************************************
+ ** Index of a partition's existing rows, for diffing source rows against.
+ **
+ ** Only what the diff needs is kept, in flat arrays indexed by slot: id,
+ ** stored row hash, active flag, and whether a source row has matched the
+ ** row yet.  Slots are found by packed natural key (see GeoDataKeyCodec) in
+ ** a LongIntHashMap, so matching a source row allocates nothing, and the
+ ** queried QRecords can be dropped once indexed.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public class GeoDataExistingIndex
+{
+   public static final int NOT_FOUND = -1;
+
+   private final GeoDataKeyCodec codec;
+   private final LongIntHashMap  slotByKey;
+
+   private Serializable[] ids;
+   private long[]         rowHashes;
+   private final BitSet   hasRowHash = new BitSet();
+   private final BitSet   active     = new BitSet();
+   private final BitSet   matched    = new BitSet();
+   private int            size;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataExistingIndex(List<String> naturalKeyFields, int expectedSize)
+   {
+      this.codec = new GeoDataKeyCodec(naturalKeyFields);
+      this.slotByKey = new LongIntHashMap(expectedSize);
+      this.ids = new Serializable[Math.max(expectedSize, 1)];
+      this.rowHashes = new long[ids.length];
+   }
+
+
+
+   /*******************************************************************************
+    ** Build an index of existing rows.
+    *******************************************************************************/
+   public static GeoDataExistingIndex of(List<String> naturalKeyFields, List<QRecord> existingRows)
+   {
+      GeoDataExistingIndex index = new GeoDataExistingIndex(naturalKeyFields, existingRows.size());
+      for(QRecord existing : existingRows)
+      {
+         index.add(existing);
+      }
+      return index;
+   }
+
+
+
+   /*******************************************************************************
+    ** Add an existing row.  If two rows share a natural key, the later one is
+    ** matched, and the earlier is left unmatched (so it gets deactivated).
+    *******************************************************************************/
+   public void add(QRecord existing)
+   {
+      if(size == ids.length)
+      {
+         ids = Arrays.copyOf(ids, size * 2);
+         rowHashes = Arrays.copyOf(rowHashes, size * 2);
+      }
+
+      int slot = size++;
+      ids[slot] = existing.getValue("id");
+
+      Long rowHash = existing.getValueLong(GeoDataRowHasher.FIELD_ROW_HASH);
+      if(rowHash != null)
+      {
+         rowHashes[slot] = rowHash;
+         hasRowHash.set(slot);
+      }
+      active.set(slot, Boolean.TRUE.equals(existing.getValueBoolean("isActive")));
+
+      slotByKey.put(codec.encode(existing), slot);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the existing row with a source row's natural key, and mark it
+    ** matched.  Returns its slot, or NOT_FOUND.
+    *******************************************************************************/
+   public int match(QRecord source)
+   {
+      long key = codec.lookup(source);
+      if(key == GeoDataKeyCodec.NO_KEY)
+      {
+         return NOT_FOUND;
+      }
+
+      int slot = slotByKey.get(key, NOT_FOUND);
+      if(slot != NOT_FOUND)
+      {
+         matched.set(slot);
+      }
+      return slot;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a source row's hash differs from the hash stored on the row in
+    ** a slot.  Rows with no stored hash always count as changed.
+    *******************************************************************************/
+   public boolean hasChanged(int slot, long sourceHash)
+   {
+      return !hasRowHash.get(slot) || rowHashes[slot] != sourceHash;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the ids of active rows that no source row matched.
+    *******************************************************************************/
+   public List<Serializable> getUnmatchedActiveIds()
+   {
+      BitSet unmatchedActive = (BitSet) active.clone();
+      unmatchedActive.andNot(matched);
+
+      List<Serializable> unmatchedIds = new ArrayList<>(unmatchedActive.cardinality());
+      for(int slot = unmatchedActive.nextSetBit(0); slot >= 0; slot = unmatchedActive.nextSetBit(slot + 1))
+      {
+         unmatchedIds.add(ids[slot]);
+      }
+      return unmatchedIds;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public Serializable getId(int slot)
+   {
+      return ids[slot];
+   }
+
+
+   public boolean isActive(int slot)
+   {
+      return active.get(slot);
+   }
+
+
+   public int size()
+   {
+      return size;
+   }
+}
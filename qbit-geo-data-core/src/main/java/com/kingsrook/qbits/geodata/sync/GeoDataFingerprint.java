@@ -0,0 +1,183 @@
+/*******************************************************************************
+ ** Computes fingerprints of the bundled geo datasets.
+ **
+ ** Dataset checksums come from the manifest written alongside the data files
+ ** by the tools module (data/manifest.json), so checking whether a dataset
+ ** changed costs no more than reading that small file.  Resources missing
+ ** from the manifest are digested directly.
+ **
+ ** A table's fingerprint combines its dataset checksum with
+ ** SYNC_FORMAT_VERSION, so a change to what the sync writes forces a re-sync
+ ** even when the bundled data itself is unchanged.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.TreeSet;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qbits.geodata.GeoDataQBitProducer;
+import org.json.JSONObject;
+
+
+public class GeoDataFingerprint
+{
+   public static final String MANIFEST_RESOURCE = "/data/manifest.json";
+
+   ///////////////////////////////////////////////////////////////////////////
+   // Bump when a change to the sync means previously-synced tables must be //
+   // re-synced even though their bundled data has not changed.             //
+   ///////////////////////////////////////////////////////////////////////////
+   public static final int SYNC_FORMAT_VERSION = 2;
+
+   private static JSONObject manifest;
+
+
+
+   /*******************************************************************************
+    ** Compute the fingerprint for syncing a table from its bundled resource.
+    *******************************************************************************/
+   public static String compute(GeoDataSyncTable table) throws QException
+   {
+      return compute(table, null, null);
+   }
+
+
+
+   /*******************************************************************************
+    ** Compute the fingerprint for syncing a table from its bundled resource,
+    ** limited to a country filter (null for all countries) and, for the city
+    ** table, a minimum population (null for none) - so changing a prefix's
+    ** filters re-syncs its tables even if the data has not changed.
+    *******************************************************************************/
+   public static String compute(GeoDataSyncTable table, Collection<String> countryFilter, Integer minCityPopulation) throws QException
+   {
+      return compute(table, getDatasetChecksum(table.getResourcePath()), countryFilter, minCityPopulation);
+   }
+
+
+
+   /*******************************************************************************
+    ** Compute the fingerprint a table would have had when synced from a
+    ** dataset with the given checksum (e.g., the one a data patch applies
+    ** to), with the same filters.
+    *******************************************************************************/
+   public static String compute(GeoDataSyncTable table, String datasetChecksum, Collection<String> countryFilter, Integer minCityPopulation) throws QException
+   {
+      String input = datasetChecksum + "|" + SYNC_FORMAT_VERSION;
+      if(countryFilter != null)
+      {
+         input += "|" + String.join(",", new TreeSet<>(countryFilter));
+      }
+      if(table == GeoDataSyncTable.CITY && minCityPopulation != null)
+      {
+         input += "|population>=" + minCityPopulation;
+      }
+      return HexFormat.of().formatHex(newDigest().digest(input.getBytes(StandardCharsets.UTF_8)));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the SHA-256 checksum of a bundled resource - from the manifest if it
+    ** lists the resource, otherwise by digesting the resource.
+    *******************************************************************************/
+   public static String getDatasetChecksum(String resourcePath) throws QException
+   {
+      JSONObject datasets = getManifest().optJSONObject("datasets");
+      String fileName = resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+      if(datasets != null && datasets.optJSONObject(fileName) != null)
+      {
+         String checksum = datasets.getJSONObject(fileName).optString("sha256", null);
+         if(checksum != null)
+         {
+            return checksum;
+         }
+      }
+
+      return digestResource(resourcePath);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the version of the bundled data, as recorded in the manifest.
+    *******************************************************************************/
+   public static String getDataVersion() throws QException
+   {
+      return getManifest().optString("version", GeoDataQBitProducer.VERSION);
+   }
+
+
+
+   /*******************************************************************************
+    ** Compute the SHA-256 of a classpath resource, streaming it.
+    *******************************************************************************/
+   static String digestResource(String resourcePath) throws QException
+   {
+      try(InputStream is = GeoDataFingerprint.class.getResourceAsStream(resourcePath))
+      {
+         if(is == null)
+         {
+            throw new QException("Resource not found: " + resourcePath);
+         }
+
+         MessageDigest digest = newDigest();
+         try(DigestInputStream dis = new DigestInputStream(is, digest))
+         {
+            dis.transferTo(OutputStream.nullOutputStream());
+         }
+         return HexFormat.of().formatHex(digest.digest());
+      }
+      catch(IOException e)
+      {
+         throw new QException("Error digesting " + resourcePath, e);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Load (once) the bundled data manifest - empty if none is bundled.
+    *******************************************************************************/
+   private static synchronized JSONObject getManifest() throws QException
+   {
+      if(manifest == null)
+      {
+         try(InputStream is = GeoDataFingerprint.class.getResourceAsStream(MANIFEST_RESOURCE))
+         {
+            manifest = is == null ? new JSONObject() : new JSONObject(new String(is.readAllBytes(), StandardCharsets.UTF_8));
+         }
+         catch(Exception e)
+         {
+            throw new QException("Error loading " + MANIFEST_RESOURCE, e);
+         }
+      }
+      return manifest;
+   }
+
+
+
+   /*******************************************************************************
+    ** Create a SHA-256 digest.
+    *******************************************************************************/
+   private static MessageDigest newDigest() throws QException
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new QException("SHA-256 is not available", e);
+      }
+   }
+}
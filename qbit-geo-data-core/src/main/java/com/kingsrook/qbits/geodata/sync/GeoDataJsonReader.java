@@ -0,0 +1,242 @@
+/*******************************************************************************
+ ** Streaming reader for the bundled geographic JSON data files.
+ **
+ ** The data files are a single top-level JSON array of flat objects. Rather
+ ** than reading the whole resource into a String and parsing it into one
+ ** JSONArray, this reader walks the array with a JSONTokener over a buffered
+ ** stream and materializes one element at a time, as the caller iterates,
+ ** so peak memory does not grow with the file size.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.exceptions.QRuntimeException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+
+public class GeoDataJsonReader implements GeoDataRowSource
+{
+   private static final int BUFFER_SIZE = 64 * 1024;
+
+   private final String      resourcePath;
+   private final Reader      reader;
+   private final JSONTokener tokener;
+
+   private QRecord     nextRecord;
+   private boolean     started;
+   private boolean     finished;
+   private String      filterField;
+   private Set<String> filterValues;
+   private String      populationField;
+   private Integer     minPopulation;
+
+
+
+   /*******************************************************************************
+    ** Constructor - wraps an already-open stream.  The stream is closed when this
+    ** reader is closed.
+    *******************************************************************************/
+   public GeoDataJsonReader(InputStream inputStream, String resourcePath)
+   {
+      this.resourcePath = resourcePath;
+      this.reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8), BUFFER_SIZE);
+      this.tokener = new JSONTokener(reader);
+   }
+
+
+
+   /*******************************************************************************
+    ** Open a reader over a JSON resource file on the classpath.
+    *******************************************************************************/
+   public static GeoDataJsonReader open(String resourcePath) throws QException
+   {
+      InputStream is = GeoDataJsonReader.class.getResourceAsStream(resourcePath);
+      if(is == null)
+      {
+         throw new QException("Resource not found: " + resourcePath);
+      }
+      return new GeoDataJsonReader(is, resourcePath);
+   }
+
+
+
+   /*******************************************************************************
+    ** Limit the records to those whose value of a field is one of values (null
+    ** for no limit).  Skipped elements are parsed, but never made into
+    ** records.
+    *******************************************************************************/
+   public GeoDataJsonReader withCountryFilter(String fieldName, Set<String> values)
+   {
+      this.filterField = fieldName;
+      this.filterValues = values;
+      return this;
+   }
+
+
+
+   /*******************************************************************************
+    ** Limit the records to those whose population (a field) is at least
+    ** minPopulation (null for no limit).  A missing population counts as 0,
+    ** as in the tools' CityTransformer.
+    *******************************************************************************/
+   public GeoDataJsonReader withMinPopulation(String fieldName, Integer minPopulation)
+   {
+      this.populationField = fieldName;
+      this.minPopulation = minPopulation;
+      return this;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if there is another record in the array.
+    *******************************************************************************/
+   @Override
+   public boolean hasNext()
+   {
+      if(nextRecord == null && !finished)
+      {
+         nextRecord = readNext();
+      }
+      return nextRecord != null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Return the next record from the array.
+    *******************************************************************************/
+   @Override
+   public QRecord next()
+   {
+      if(!hasNext())
+      {
+         throw new NoSuchElementException("No more records in " + resourcePath);
+      }
+      QRecord record = nextRecord;
+      nextRecord = null;
+      return record;
+   }
+
+
+
+   /*******************************************************************************
+    ** Close the underlying stream.
+    *******************************************************************************/
+   @Override
+   public void close() throws QException
+   {
+      try
+      {
+         reader.close();
+      }
+      catch(IOException e)
+      {
+         throw new QException("Error closing JSON data from " + resourcePath, e);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Read the next element that passes the filter, as a record, or null when
+    ** the closing bracket is reached.
+    *******************************************************************************/
+   private QRecord readNext()
+   {
+      JSONObject obj;
+      while((obj = readNextObject()) != null)
+      {
+         boolean inCountries = filterValues == null || filterValues.contains(obj.optString(filterField, null));
+         if(inCountries && (minPopulation == null || obj.optInt(populationField, 0) >= minPopulation))
+         {
+            return toRecord(obj);
+         }
+      }
+      return null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Advance the tokener past the next array element, returning it, or null
+    ** when the closing bracket is reached.
+    *******************************************************************************/
+   private JSONObject readNextObject()
+   {
+      try
+      {
+         if(!started)
+         {
+            started = true;
+            if(tokener.nextClean() != '[')
+            {
+               throw tokener.syntaxError("Expected a JSON array");
+            }
+            if(tokener.nextClean() == ']')
+            {
+               finished = true;
+               return null;
+            }
+            tokener.back();
+         }
+         else
+         {
+            char separator = tokener.nextClean();
+            if(separator == ']')
+            {
+               finished = true;
+               return null;
+            }
+            if(separator != ',')
+            {
+               throw tokener.syntaxError("Expected ',' or ']'");
+            }
+         }
+
+         Object value = tokener.nextValue();
+         if(!(value instanceof JSONObject obj))
+         {
+            throw tokener.syntaxError("Expected a JSON object");
+         }
+
+         return obj;
+      }
+      catch(JSONException e)
+      {
+         finished = true;
+         throw new QRuntimeException("Error loading JSON data from " + resourcePath, e);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Copy a JSON object's non-null values into a new record.
+    *******************************************************************************/
+   static QRecord toRecord(JSONObject obj)
+   {
+      QRecord record = new QRecord();
+      for(String key : obj.keySet())
+      {
+         Object value = obj.get(key);
+         if(!JSONObject.NULL.equals(value))
+         {
+            record.setValue(key, value);
+         }
+      }
+      return record;
+   }
+}
@@ -0,0 +1,158 @@
+/*******************************************************************************
+ ** Packs a geo table's natural key (one or two fields) into a primitive
+ ** long, so matching source rows to existing rows builds no key strings.
+ **
+ ** Each key field becomes 32 bits:
+ ** - integer values (the countryId / stateProvinceId foreign keys) as-is
+ ** - short ASCII strings (alpha2 codes, state codes - up to 4 chars) packed
+ **   one byte per char
+ ** - any other string (city names, long codes) as an id from a name
+ **   dictionary held by the codec, with the top bit set so dictionary ids
+ **   never collide with packed codes
+ **
+ ** A two-field key is the first field's bits followed by the second's.
+ ** Existing rows are encoded with encode(), which adds new names to the
+ ** dictionary; source rows with lookup(), which does not - a name the
+ ** dictionary has never seen cannot match an existing row.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public class GeoDataKeyCodec
+{
+   ///////////////////////////////////////////////////////////////////////////
+   // Returned by lookup for a key that no encoded row can have.  Dictionary //
+   // ids start at 1, so no encoded key is ever this value.                  //
+   ///////////////////////////////////////////////////////////////////////////
+   public static final long NO_KEY = Long.MIN_VALUE;
+
+   private static final long MISSING_PART     = -1L;
+   private static final int  DICTIONARY_FLAG  = 0x80000000;
+   private static final int  MAX_PACKED_CHARS = 4;
+
+   private final String               firstField;
+   private final String               secondField;
+   private final Map<String, Integer> dictionary = new HashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataKeyCodec(List<String> keyFields)
+   {
+      if(keyFields.isEmpty() || keyFields.size() > 2)
+      {
+         throw new IllegalArgumentException("Natural keys of 1 or 2 fields can be packed, not " + keyFields);
+      }
+
+      this.firstField = keyFields.get(0);
+      this.secondField = keyFields.size() > 1 ? keyFields.get(1) : null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Encode a record's key, adding any new names to the dictionary.
+    *******************************************************************************/
+   public long encode(QRecord record)
+   {
+      return combine(encodePart(record.getValue(firstField), true), secondField == null ? 0 : encodePart(record.getValue(secondField), true));
+   }
+
+
+
+   /*******************************************************************************
+    ** Encode a record's key without adding to the dictionary - NO_KEY if it
+    ** has a name the dictionary does not know (so no encoded row matches it).
+    *******************************************************************************/
+   public long lookup(QRecord record)
+   {
+      long first = encodePart(record.getValue(firstField), false);
+      long second = secondField == null ? 0 : encodePart(record.getValue(secondField), false);
+      return first == MISSING_PART || second == MISSING_PART ? NO_KEY : combine(first, second);
+   }
+
+
+
+   /*******************************************************************************
+    ** Number of names in the dictionary.
+    *******************************************************************************/
+   public int getDictionarySize()
+   {
+      return dictionary.size();
+   }
+
+
+
+   /*******************************************************************************
+    ** Join two 32-bit parts into a key.
+    *******************************************************************************/
+   private long combine(long first, long second)
+   {
+      return secondField == null ? first : (first << 32) | second;
+   }
+
+
+
+   /*******************************************************************************
+    ** Encode one key field's value as an unsigned 32-bit part, or MISSING_PART
+    ** for a name not in the dictionary when not adding.  Null and blank are
+    ** encoded the same (as 0).
+    *******************************************************************************/
+   private long encodePart(Serializable value, boolean addToDictionary)
+   {
+      if(value == null)
+      {
+         return 0;
+      }
+
+      if(value instanceof Number number)
+      {
+         return Integer.toUnsignedLong(number.intValue());
+      }
+
+      String string = value.toString();
+      int packed = pack(string);
+      if(packed != -1)
+      {
+         return Integer.toUnsignedLong(packed);
+      }
+
+      Integer id = addToDictionary ? dictionary.computeIfAbsent(string, s -> dictionary.size() + 1) : dictionary.get(string);
+      return id == null ? MISSING_PART : Integer.toUnsignedLong(DICTIONARY_FLAG | id);
+   }
+
+
+
+   /*******************************************************************************
+    ** Pack a string of up to 4 ASCII (non-NUL) chars one byte per char, or
+    ** -1 if it does not fit.  The top bit stays clear.
+    *******************************************************************************/
+   static int pack(String string)
+   {
+      if(string.length() > MAX_PACKED_CHARS)
+      {
+         return -1;
+      }
+
+      int packed = 0;
+      for(int i = 0; i < string.length(); i++)
+      {
+         char c = string.charAt(i);
+         if(c == 0 || c > 0x7f)
+         {
+            return -1;
+         }
+         packed = (packed << 8) | c;
+      }
+      return packed;
+   }
+}
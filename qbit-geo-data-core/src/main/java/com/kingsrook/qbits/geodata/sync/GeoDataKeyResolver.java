@@ -0,0 +1,198 @@
+/*******************************************************************************
+ ** Resolves the natural keys carried by bundled source rows into the foreign
+ ** keys stored on the geo tables:
+ ** - StateProvince: countryAlpha2 -> countryId
+ ** - City: countryAlpha2 + stateCode -> stateProvinceId
+ **
+ ** The id maps are filled as the sync goes - from the ids of existing rows
+ ** matched by the diff, and from the ids InsertAction returns for new rows -
+ ** so resolving a row is a map lookup (with no key string built), never a
+ ** query.  When a parent table is skipped (its data is unchanged), its ids
+ ** are loaded with one query instead, via load().
+ **
+ ** Maps are concurrent, as state partitions may be synced (and registered)
+ ** in parallel.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataKeyResolver
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataKeyResolver.class);
+
+   public static final String FIELD_COUNTRY_ALPHA2 = "countryAlpha2";
+   public static final String FIELD_STATE_CODE     = "stateCode";
+
+   private final Map<String, Integer>              countryIdByAlpha2     = new ConcurrentHashMap<>();
+   private final Map<Integer, String>              alpha2ByCountryId     = new ConcurrentHashMap<>();
+   private final Map<String, Map<String, Integer>> stateIdByCodeByAlpha2 = new ConcurrentHashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Resolve a source row's foreign keys in place, and remove the source-only
+    ** natural key fields (which are not columns of the table).  Returns false
+    ** if the row's parent is not known, in which case the row cannot be
+    ** written.
+    *******************************************************************************/
+   public boolean resolve(GeoDataSyncTable table, QRecord source)
+   {
+      switch(table)
+      {
+         case STATE_PROVINCE ->
+         {
+            Integer countryId = getCountryId(source.getValueString(FIELD_COUNTRY_ALPHA2));
+            source.removeValue(FIELD_COUNTRY_ALPHA2);
+            source.setValue("countryId", countryId);
+            return countryId != null;
+         }
+         case CITY ->
+         {
+            Integer stateProvinceId = getStateProvinceId(source.getValueString(FIELD_COUNTRY_ALPHA2), source.getValueString(FIELD_STATE_CODE));
+            source.removeValue(FIELD_COUNTRY_ALPHA2);
+            source.removeValue(FIELD_STATE_CODE);
+            source.setValue("stateProvinceId", stateProvinceId);
+            return stateProvinceId != null;
+         }
+         default ->
+         {
+            return true;
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Register the id of a synced (inserted or matched) row, so rows of
+    ** dependent tables can be resolved to it.  countryAlpha2 is the row's
+    ** partition - states no longer carry it once resolved.
+    *******************************************************************************/
+   public void register(GeoDataSyncTable table, String countryAlpha2, QRecord record)
+   {
+      Integer id = record.getValueInteger("id");
+      if(id == null)
+      {
+         return;
+      }
+
+      switch(table)
+      {
+         case COUNTRY ->
+         {
+            String alpha2 = record.getValueString("alpha2Code");
+            countryIdByAlpha2.put(alpha2, id);
+            alpha2ByCountryId.put(id, alpha2);
+         }
+         case STATE_PROVINCE -> stateIdByCodeByAlpha2.computeIfAbsent(countryAlpha2, k -> new ConcurrentHashMap<>()).put(record.getValueString("code"), id);
+         default ->
+         {
+            // nothing references cities
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Load the ids of a table's active rows, for when the table was not synced
+    ** in this run but a dependent table is.  States can only be loaded once
+    ** countries are known.
+    *******************************************************************************/
+   public void load(GeoDataSyncTable table, String tableName) throws QException
+   {
+      if(table == GeoDataSyncTable.CITY)
+      {
+         return;
+      }
+
+      QueryInput queryInput = new QueryInput();
+      queryInput.setTableName(tableName);
+      queryInput.setFilter(new QQueryFilter(new QFilterCriteria("isActive", QCriteriaOperator.EQUALS, true)));
+      queryInput.setFieldNamesToInclude(table == GeoDataSyncTable.COUNTRY ? Set.of("id", "alpha2Code") : Set.of("id", "countryId", "code"));
+
+      int count = 0;
+      for(QRecord record : new QueryAction().execute(queryInput).getRecords())
+      {
+         String countryAlpha2 = table == GeoDataSyncTable.COUNTRY ? null : alpha2ByCountryId.get(record.getValueInteger("countryId"));
+         if(table == GeoDataSyncTable.COUNTRY || countryAlpha2 != null)
+         {
+            register(table, countryAlpha2, record);
+            count++;
+         }
+      }
+
+      LOG.info("Loaded ids for unsynced table", logPair("table", tableName), logPair("count", count));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the values of a table's partitionIdField that hold the existing rows
+    ** of a source partition (country) - the country's id for states, its
+    ** states' ids for cities.  Empty if the country is not known.
+    *******************************************************************************/
+   public List<Integer> getPartitionIds(GeoDataSyncTable table, String countryAlpha2)
+   {
+      List<Integer> ids = new ArrayList<>();
+      switch(table)
+      {
+         case STATE_PROVINCE ->
+         {
+            Integer countryId = getCountryId(countryAlpha2);
+            if(countryId != null)
+            {
+               ids.add(countryId);
+            }
+         }
+         case CITY -> ids.addAll(stateIdByCodeByAlpha2.getOrDefault(countryAlpha2, Map.of()).values());
+         default ->
+         {
+            // unpartitioned
+         }
+      }
+      return ids;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a country's id by its alpha-2 code.
+    *******************************************************************************/
+   public Integer getCountryId(String countryAlpha2)
+   {
+      return countryAlpha2 == null ? null : countryIdByAlpha2.get(countryAlpha2);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a state/province's id by its country's alpha-2 code and its code.
+    *******************************************************************************/
+   public Integer getStateProvinceId(String countryAlpha2, String stateCode)
+   {
+      if(countryAlpha2 == null || stateCode == null)
+      {
+         return null;
+      }
+
+      Map<String, Integer> stateIdByCode = stateIdByCodeByAlpha2.get(countryAlpha2);
+      return stateIdByCode == null ? null : stateIdByCode.get(stateCode);
+   }
+}
@@ -0,0 +1,177 @@
+/*******************************************************************************
+ ** The bundled data patch (data/patch.json, written by the tools module's
+ ** PatchWriter): for each dataset that changed since the previous data
+ ** version, the entries to upsert (new or changed, in full) and to delete
+ ** (by natural key), with the dataset checksums it patches from and to.
+ **
+ ** A dataset's patch is only offered while its toSha256 is the bundled
+ ** dataset's checksum - a patch left over from an older build is ignored.
+ ** Whether a prefix's table is at the patch's starting point is up to the
+ ** caller (see GeoDataSyncStep, which compares the fingerprint recorded at
+ ** the table's last sync with one computed from fromSha256).
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+public class GeoDataPatch
+{
+   public static final String PATCH_RESOURCE = "/data/patch.json";
+
+   private static GeoDataPatch bundled;
+   private static boolean      bundledLoaded;
+
+   private final String     fromVersion;
+   private final String     toVersion;
+   private final JSONObject datasets;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   GeoDataPatch(JSONObject json)
+   {
+      this.fromVersion = json.optString("fromVersion", null);
+      this.toVersion = json.optString("toVersion", null);
+      this.datasets = json.optJSONObject("datasets") == null ? new JSONObject() : json.getJSONObject("datasets");
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the bundled patch (loaded once), or null if none is bundled.
+    *******************************************************************************/
+   public static synchronized GeoDataPatch getBundled() throws QException
+   {
+      if(!bundledLoaded)
+      {
+         try(InputStream is = GeoDataPatch.class.getResourceAsStream(PATCH_RESOURCE))
+         {
+            bundled = is == null ? null : new GeoDataPatch(new JSONObject(new String(is.readAllBytes(), StandardCharsets.UTF_8)));
+         }
+         catch(Exception e)
+         {
+            throw new QException("Error loading " + PATCH_RESOURCE, e);
+         }
+         bundledLoaded = true;
+      }
+      return bundled;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the patch for a table's dataset - or null if the patch does not
+    ** cover it, or does not lead to the bundled dataset.
+    *******************************************************************************/
+   public DatasetPatch getDatasetPatch(GeoDataSyncTable table) throws QException
+   {
+      String resourcePath = table.getResourcePath();
+      JSONObject dataset = datasets.optJSONObject(resourcePath.substring(resourcePath.lastIndexOf('/') + 1));
+      if(dataset == null || dataset.optString("fromSha256", null) == null)
+      {
+         return null;
+      }
+
+      if(!dataset.optString("toSha256", "").equals(GeoDataFingerprint.getDatasetChecksum(resourcePath)))
+      {
+         return null;
+      }
+
+      return new DatasetPatch(dataset);
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getFromVersion()
+   {
+      return fromVersion;
+   }
+
+
+   public String getToVersion()
+   {
+      return toVersion;
+   }
+
+
+
+   /*******************************************************************************
+    ** One dataset's patch.  Its rows are built fresh on each call (as the sync
+    ** resolves them in place), just as GeoDataJsonReader builds them, so they
+    ** hash the same as a full read's rows.
+    *******************************************************************************/
+   public static class DatasetPatch
+   {
+      private final JSONObject dataset;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      DatasetPatch(JSONObject dataset)
+      {
+         this.dataset = dataset;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the checksum of the dataset this patch applies to.
+       *******************************************************************************/
+      public String getFromChecksum()
+      {
+         return dataset.getString("fromSha256");
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the new and changed rows, in full.
+       *******************************************************************************/
+      public List<QRecord> getUpserts()
+      {
+         return toRecords(dataset.optJSONArray("upserts"));
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the removed rows - just their natural key fields.
+       *******************************************************************************/
+      public List<QRecord> getDeletes()
+      {
+         return toRecords(dataset.optJSONArray("deletes"));
+      }
+
+
+
+      /*******************************************************************************
+       ** Build records from a JSON array of objects (empty for null).
+       *******************************************************************************/
+      private static List<QRecord> toRecords(JSONArray array)
+      {
+         List<QRecord> records = new ArrayList<>();
+         for(int i = 0; array != null && i < array.length(); i++)
+         {
+            records.add(GeoDataJsonReader.toRecord(array.getJSONObject(i)));
+         }
+         return records;
+      }
+   }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ ** A bounded, blocking hand-off between two stages of a streamed sync (see
+ ** GeoDataTableSync): the producing stage put()s items and then close()s the
+ ** pipe; the consuming stage take()s them until null.
+ **
+ ** put() blocks while the pipe is full, so a fast producer waits for a slow
+ ** consumer (backpressure), and heap use stays bounded by the capacity.  A
+ ** stage that fails calls fail(), which wakes any stage waiting on either
+ ** side at once; from then on put() and take() throw instead of blocking,
+ ** so no stage waits on a dead one.  Waits are on conditions of one lock,
+ ** so a failure can never slip in between a check and a wait, and nothing
+ ** polls.  close() is a flag rather than an item, so it never waits for
+ ** room.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.ArrayDeque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+
+
+public class GeoDataRecordPipe<T>
+{
+   private final int           capacity;
+   private final ArrayDeque<T> items;
+
+   private final ReentrantLock lock     = new ReentrantLock();
+   private final Condition     notEmpty = lock.newCondition();
+   private final Condition     notFull  = lock.newCondition();
+
+   private boolean   closed;
+   private Throwable failure;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataRecordPipe(int capacity)
+   {
+      this.capacity = capacity;
+      this.items = new ArrayDeque<>(capacity);
+   }
+
+
+
+   /*******************************************************************************
+    ** Add an item, waiting while the pipe is full.
+    *******************************************************************************/
+   public void put(T item) throws QException
+   {
+      lock.lock();
+      try
+      {
+         while(failure == null && items.size() >= capacity)
+         {
+            notFull.await();
+         }
+         checkFailure();
+         items.addLast(item);
+         notEmpty.signal();
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new QException("Interrupted while putting to a sync pipe", e);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Mark the end of the items - take() returns null once it is reached.
+    *******************************************************************************/
+   public void close() throws QException
+   {
+      lock.lock();
+      try
+      {
+         checkFailure();
+         closed = true;
+         notEmpty.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Take the next item, waiting while the pipe is empty - or null once the
+    ** pipe has been closed and drained.
+    *******************************************************************************/
+   public T take() throws QException
+   {
+      lock.lock();
+      try
+      {
+         while(failure == null && items.isEmpty() && !closed)
+         {
+            notEmpty.await();
+         }
+         checkFailure();
+         T item = items.pollFirst();
+         if(item != null)
+         {
+            notFull.signal();
+         }
+         return item;
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new QException("Interrupted while taking from a sync pipe", e);
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Fail the pipe, waking every stage waiting on it.  The first failure is
+    ** kept.
+    *******************************************************************************/
+   public void fail(Throwable cause)
+   {
+      lock.lock();
+      try
+      {
+         if(failure == null)
+         {
+            failure = cause;
+         }
+         items.clear();
+         notEmpty.signalAll();
+         notFull.signalAll();
+      }
+      finally
+      {
+         lock.unlock();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Throw if the pipe has failed - the failing stage's own exception, so
+    ** whichever stage reports first reports the cause.
+    *******************************************************************************/
+   private void checkFailure() throws QException
+   {
+      if(failure instanceof QException qe)
+      {
+         throw qe;
+      }
+      if(failure != null)
+      {
+         throw new QException("Sync pipe failed", failure);
+      }
+   }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ ** Computes the rowHash stored on each synced geo data row.
+ **
+ ** The hash is a 64-bit FNV-1a over the record's data fields in field-name
+ ** order (id, isActive, audit dates and rowHash itself are excluded), with
+ ** decimals normalized so that 34.0500000 and 34.05 hash the same.  It is
+ ** computed from source rows only, so change detection is a comparison of
+ ** the source row's hash against the hash stored at its last sync - the
+ ** existing row's other fields never need to be read back.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public class GeoDataRowHasher
+{
+   public static final String FIELD_ROW_HASH = "rowHash";
+
+   private static final Set<String> EXCLUDED_FIELDS = Set.of("id", "isActive", "createDate", "modifyDate", FIELD_ROW_HASH);
+
+   private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+   private static final long FNV_PRIME        = 0x100000001b3L;
+
+
+
+   /*******************************************************************************
+    ** Compute the row hash for a record.
+    *******************************************************************************/
+   public static long hash(QRecord record)
+   {
+      long hash = FNV_OFFSET_BASIS;
+      for(Map.Entry<String, Serializable> entry : new TreeMap<>(record.getValues()).entrySet())
+      {
+         if(entry.getValue() == null || EXCLUDED_FIELDS.contains(entry.getKey()))
+         {
+            continue;
+         }
+
+         hash = mix(hash, entry.getKey());
+         hash = mix(hash, '=');
+         hash = mix(hash, canonicalValue(entry.getValue()));
+         hash = mix(hash, '\u0001');
+      }
+      return hash;
+   }
+
+
+
+   /*******************************************************************************
+    ** Canonical string form of a value for hashing.
+    *******************************************************************************/
+   private static String canonicalValue(Serializable value)
+   {
+      if(value instanceof BigDecimal bd)
+      {
+         return bd.signum() == 0 ? "0" : bd.stripTrailingZeros().toPlainString();
+      }
+      return value.toString();
+   }
+
+
+
+   /*******************************************************************************
+    ** Fold a string into the hash.
+    *******************************************************************************/
+   private static long mix(long hash, String value)
+   {
+      for(int i = 0; i < value.length(); i++)
+      {
+         hash = mix(hash, value.charAt(i));
+      }
+      return hash;
+   }
+
+
+
+   /*******************************************************************************
+    ** Fold a single character into the hash.
+    *******************************************************************************/
+   private static long mix(long hash, char c)
+   {
+      return (hash ^ c) * FNV_PRIME;
+   }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ ** A stream of source rows for one geo data table, read from the bundled
+ ** data.
+ **
+ ** Rows come from the binary snapshot when one is bundled and has the
+ ** table's dataset (see GeoDataSnapshotRowSource), otherwise from the JSON
+ ** data file (see GeoDataJsonReader).  Both yield the same records, in the
+ ** same order.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.Iterator;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public interface GeoDataRowSource extends Iterator<QRecord>, AutoCloseable
+{
+
+   /*******************************************************************************
+    ** Open the source rows for a table, limited to the countries (alpha-2
+    ** codes) in countryFilter, and - for the city table - to cities with a
+    ** population of at least minCityPopulation (each if not null).  Rows
+    ** filtered out are skipped before they are made into records.
+    *******************************************************************************/
+   static GeoDataRowSource open(GeoDataSyncTable table, Set<String> countryFilter, Integer minCityPopulation) throws QException
+   {
+      Integer minPopulation = table == GeoDataSyncTable.CITY ? minCityPopulation : null;
+      GeoDataSnapshotRowSource snapshotSource = GeoDataSnapshotRowSource.open(table.getDatasetName());
+      if(snapshotSource != null)
+      {
+         return snapshotSource
+            .withCountryFilter(table.getCountryField(), countryFilter)
+            .withMinPopulation(GeoDataSyncTable.FIELD_POPULATION, minPopulation);
+      }
+      return GeoDataJsonReader.open(table.getResourcePath())
+         .withCountryFilter(table.getCountryField(), countryFilter)
+         .withMinPopulation(GeoDataSyncTable.FIELD_POPULATION, minPopulation);
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether a table's data is bundled - in the snapshot, or as JSON.
+    *******************************************************************************/
+   static boolean isBundled(GeoDataSyncTable table) throws QException
+   {
+      GeoDataSnapshotRowSource snapshotSource = GeoDataSnapshotRowSource.open(table.getDatasetName());
+      if(snapshotSource != null)
+      {
+         snapshotSource.close();
+         return true;
+      }
+      return GeoDataRowSource.class.getResource(table.getResourcePath()) != null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Release the source.
+    *******************************************************************************/
+   @Override
+   void close() throws QException;
+}
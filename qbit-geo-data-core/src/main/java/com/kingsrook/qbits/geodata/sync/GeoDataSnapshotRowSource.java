@@ -0,0 +1,177 @@
+/*******************************************************************************
+ ** Source rows for one dataset, read from the bundled binary snapshot.
+ **
+ ** The snapshot is mapped once per JVM (see GeoDataSnapshot.getBundled()),
+ ** so opening a dataset costs nothing beyond a section lookup, and rows are
+ ** materialized one at a time straight from the mapped pages.  Null values
+ ** are left out of the records, as GeoDataJsonReader does.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshot;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshotSection;
+
+
+public class GeoDataSnapshotRowSource implements GeoDataRowSource
+{
+   private final GeoDataSnapshotSection section;
+   private final List<String>           columnNames;
+
+   private int         nextRow;
+   private int         filterColumn     = -1;
+   private Set<String> filterValues;
+   private int         populationColumn = -1;
+   private Integer     minPopulation;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataSnapshotRowSource(GeoDataSnapshotSection section)
+   {
+      this.section = section;
+      this.columnNames = section.getColumnNames();
+   }
+
+
+
+   /*******************************************************************************
+    ** Open a dataset (e.g., "states") from the bundled snapshot - null if no
+    ** snapshot is bundled, or it does not have the dataset.
+    *******************************************************************************/
+   public static GeoDataSnapshotRowSource open(String datasetName) throws QException
+   {
+      GeoDataSnapshot snapshot = getBundledSnapshot();
+      GeoDataSnapshotSection section = snapshot == null ? null : snapshot.getSection(datasetName);
+      return section == null ? null : new GeoDataSnapshotRowSource(section);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the bundled snapshot (mapped once per JVM, and shared with
+    ** GeoDataRegistry), or null if none is bundled.
+    *******************************************************************************/
+   public static GeoDataSnapshot getBundledSnapshot() throws QException
+   {
+      try
+      {
+         return GeoDataSnapshot.getBundled();
+      }
+      catch(IOException e)
+      {
+         throw new QException("Error opening " + GeoDataSnapshot.SNAPSHOT_RESOURCE, e);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if there is another row.
+    *******************************************************************************/
+   @Override
+   public boolean hasNext()
+   {
+      if(filterValues != null || minPopulation != null)
+      {
+         while(nextRow < section.getRowCount() && !accepts(nextRow))
+         {
+            nextRow++;
+         }
+      }
+      return nextRow < section.getRowCount();
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a row passes the filters, from just the filtered columns.  A
+    ** missing population counts as 0.
+    *******************************************************************************/
+   private boolean accepts(int row)
+   {
+      if(filterValues != null && !filterValues.contains(filterColumn < 0 ? null : section.getString(row, filterColumn)))
+      {
+         return false;
+      }
+      if(minPopulation != null)
+      {
+         int population = populationColumn < 0 || section.isNull(row, populationColumn) ? 0 : section.getInt(row, populationColumn);
+         return population >= minPopulation;
+      }
+      return true;
+   }
+
+
+
+   /*******************************************************************************
+    ** Materialize the next row as a record.
+    *******************************************************************************/
+   @Override
+   public QRecord next()
+   {
+      if(!hasNext())
+      {
+         throw new NoSuchElementException();
+      }
+
+      QRecord record = new QRecord();
+      for(int column = 0; column < columnNames.size(); column++)
+      {
+         Serializable value = section.getValue(nextRow, column);
+         if(value != null)
+         {
+            record.setValue(columnNames.get(column), value);
+         }
+      }
+      nextRow++;
+      return record;
+   }
+
+
+
+   /*******************************************************************************
+    ** Limit the rows to those whose value in a column is one of values (null
+    ** for no limit).  Skipped rows are never materialized - just their one
+    ** value is read.
+    *******************************************************************************/
+   public GeoDataSnapshotRowSource withCountryFilter(String columnName, Set<String> values)
+   {
+      this.filterColumn = section.getColumnIndex(columnName);
+      this.filterValues = values;
+      return this;
+   }
+
+
+
+   /*******************************************************************************
+    ** Limit the rows to those whose population (in a column) is at least
+    ** minPopulation (null for no limit).
+    *******************************************************************************/
+   public GeoDataSnapshotRowSource withMinPopulation(String columnName, Integer minPopulation)
+   {
+      this.populationColumn = section.getColumnIndex(columnName);
+      this.minPopulation = minPopulation;
+      return this;
+   }
+
+
+
+   /*******************************************************************************
+    ** Nothing to release - the mapping is shared, and lives as long as the
+    ** snapshot.
+    *******************************************************************************/
+   @Override
+   public void close()
+   {
+   }
+}
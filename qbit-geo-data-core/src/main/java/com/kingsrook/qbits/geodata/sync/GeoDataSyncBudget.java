@@ -0,0 +1,62 @@
+/*******************************************************************************
+ ** The time budget of a sync run, and its cancellation.
+ **
+ ** A sync checks its budget before starting each partition (and each table);
+ ** once it is exhausted - its deadline has passed, or cancelAll() was called
+ ** after it started - no further partition is started, partitions in flight
+ ** are finished, and the sync yields, leaving the table's checkpoint for the
+ ** next run to resume from (see GeoDataTableSync and GeoDataSyncStateStore).
+ **
+ ** A budget is made inside GeoDataSyncStep and never handed out, so there
+ ** is no way to cancel one run: cancelAll() is a JVM-wide kill switch (e.g.,
+ ** for a shutdown hook), stopping every sync running at the time.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+public class GeoDataSyncBudget
+{
+   private static final AtomicLong CANCELLATIONS = new AtomicLong();
+
+   private final Instant deadline;
+   private final long    cancellationsAtStart;
+
+
+
+   /*******************************************************************************
+    ** Constructor - starts a budget of the given time from now, or with no
+    ** time limit for null.
+    *******************************************************************************/
+   public GeoDataSyncBudget(Duration timeBudget)
+   {
+      this.deadline = timeBudget == null ? null : Instant.now().plus(timeBudget);
+      this.cancellationsAtStart = CANCELLATIONS.get();
+   }
+
+
+
+   /*******************************************************************************
+    ** Cancel every sync running in this JVM now, of every prefix: each yields
+    ** before its next partition.  Syncs started afterwards are not affected.
+    *******************************************************************************/
+   public static void cancelAll()
+   {
+      CANCELLATIONS.incrementAndGet();
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether the sync must yield: its time is up, or it was cancelled.
+    *******************************************************************************/
+   public boolean isExhausted()
+   {
+      return CANCELLATIONS.get() != cancellationsAtStart
+         || (deadline != null && Instant.now().isAfter(deadline));
+   }
+}
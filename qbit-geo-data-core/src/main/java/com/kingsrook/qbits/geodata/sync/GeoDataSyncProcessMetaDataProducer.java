@@ -2,7 +2,8 @@
  ** MetaData producer for the Geo Data Sync process.
  **
  ** Defines a process that syncs all geographic reference data (countries,
- ** states/provinces, cities) from bundled JSON files into database tables.
+ ** states/provinces, cities) from bundled JSON files into database tables,
+ ** for one or more table name prefixes.
  *******************************************************************************/
 package com.kingsrook.qbits.geodata.sync;
 
@@ -37,8 +38,33 @@ public class GeoDataSyncProcessMetaDataProducer implements MetaDataProducerInter
             .withCodeType(QCodeType.JAVA))
          .withInputData(new QFunctionInputMetaData()
             .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, QFieldType.STRING)
-               .withIsRequired(true)
-               .withLabel("Table Name Prefix")));
+               .withLabel("Table Name Prefix"))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIXES, QFieldType.STRING)
+               .withLabel("Table Name Prefixes"))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_ALL_PREFIXES, QFieldType.BOOLEAN)
+               .withLabel("All Prefixes")
+               .withDefaultValue(false))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_COUNTRY_FILTER, QFieldType.STRING)
+               .withLabel("Country Filter"))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_MIN_CITY_POPULATION, QFieldType.INTEGER)
+               .withLabel("Minimum City Population"))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_PAGE_SIZE, QFieldType.INTEGER)
+               .withLabel("Page Size")
+               .withDefaultValue(GeoDataSyncStep.DEFAULT_PAGE_SIZE))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_BULK_PAGE_SIZE, QFieldType.INTEGER)
+               .withLabel("Bulk Load Page Size")
+               .withDefaultValue(GeoDataTableSync.DEFAULT_BULK_PAGE_SIZE))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_CONCURRENCY, QFieldType.INTEGER)
+               .withLabel("Concurrency")
+               .withDefaultValue(GeoDataSyncStep.DEFAULT_CONCURRENCY))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_TIME_BUDGET_SECONDS, QFieldType.INTEGER)
+               .withLabel("Time Budget (Seconds)"))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_FORCE, QFieldType.BOOLEAN)
+               .withLabel("Force Full Sync")
+               .withDefaultValue(false))
+            .withField(new QFieldMetaData(GeoDataSyncStep.FIELD_DRY_RUN, QFieldType.BOOLEAN)
+               .withLabel("Dry Run")
+               .withDefaultValue(false)));
 
       return new QProcessMetaData()
          .withName(NAME)
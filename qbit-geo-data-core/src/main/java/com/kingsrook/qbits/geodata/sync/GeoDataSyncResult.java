@@ -0,0 +1,233 @@
+/*******************************************************************************
+ ** Counts produced by syncing one geo data table, or one partition of it -
+ ** or, for a dry run, the changes a sync would make.
+ **
+ ** Alongside the counts are up to SAMPLE_SIZE sample keys of the inserted,
+ ** updated and deactivated rows: for inserts and updates, the natural key
+ ** within the partition (e.g., a state's code); for deactivations, the
+ ** row's id.  A table's result prefixes its partitions' samples with the
+ ** partition (e.g., "US/CA").
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+
+public class GeoDataSyncResult implements Serializable
+{
+   public static final int SAMPLE_SIZE = 5;
+
+   private String tableName;
+   private String partition;
+   private int    sourceCount;
+   private int    inserted;
+   private int    updated;
+   private int    deactivated;
+   private int    partitions;
+   private int    unresolved;
+
+   private final ArrayList<String> sampleInserted    = new ArrayList<>();
+   private final ArrayList<String> sampleUpdated     = new ArrayList<>();
+   private final ArrayList<String> sampleDeactivated = new ArrayList<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataSyncResult(String tableName)
+   {
+      this.tableName = tableName;
+   }
+
+
+
+   /*******************************************************************************
+    ** Add another result's counts into this one.
+    *******************************************************************************/
+   public GeoDataSyncResult add(GeoDataSyncResult other)
+   {
+      sourceCount += other.sourceCount;
+      inserted += other.inserted;
+      updated += other.updated;
+      deactivated += other.deactivated;
+      partitions += other.partitions;
+      unresolved += other.unresolved;
+      addSamples(sampleInserted, other, other.sampleInserted);
+      addSamples(sampleUpdated, other, other.sampleUpdated);
+      addSamples(sampleDeactivated, other, other.sampleDeactivated);
+      return this;
+   }
+
+
+
+   /*******************************************************************************
+    ** Add another result's samples to one of this result's, up to SAMPLE_SIZE -
+    ** prefixed by the other's partition, if this result is not a partition's.
+    *******************************************************************************/
+   private void addSamples(List<String> samples, GeoDataSyncResult other, List<String> otherSamples)
+   {
+      for(String sample : otherSamples)
+      {
+         if(samples.size() >= SAMPLE_SIZE)
+         {
+            return;
+         }
+         samples.add(partition == null && other.partition != null ? other.partition + "/" + sample : sample);
+      }
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Fluent setters                                                           //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public GeoDataSyncResult withPartition(String partition)
+   {
+      this.partition = partition;
+      return this;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Incrementers                                                             //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public void addSourceCount(int count)
+   {
+      sourceCount += count;
+   }
+
+
+   public void addInserted(int count)
+   {
+      inserted += count;
+   }
+
+
+   public void addUpdated(int count)
+   {
+      updated += count;
+   }
+
+
+   public void addDeactivated(int count)
+   {
+      deactivated += count;
+   }
+
+
+   public void addPartition()
+   {
+      partitions++;
+   }
+
+
+   public void addUnresolved(int count)
+   {
+      unresolved += count;
+   }
+
+
+   public void addSampleInserted(String key)
+   {
+      addSample(sampleInserted, key);
+   }
+
+
+   public void addSampleUpdated(String key)
+   {
+      addSample(sampleUpdated, key);
+   }
+
+
+   public void addSampleDeactivated(String key)
+   {
+      addSample(sampleDeactivated, key);
+   }
+
+
+   private void addSample(List<String> samples, String key)
+   {
+      if(samples.size() < SAMPLE_SIZE)
+      {
+         samples.add(key);
+      }
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getTableName()
+   {
+      return tableName;
+   }
+
+
+   public String getPartition()
+   {
+      return partition;
+   }
+
+
+   public int getSourceCount()
+   {
+      return sourceCount;
+   }
+
+
+   public int getInserted()
+   {
+      return inserted;
+   }
+
+
+   public int getUpdated()
+   {
+      return updated;
+   }
+
+
+   public int getDeactivated()
+   {
+      return deactivated;
+   }
+
+
+   public int getPartitions()
+   {
+      return partitions;
+   }
+
+
+   public int getUnresolved()
+   {
+      return unresolved;
+   }
+
+
+   public List<String> getSampleInserted()
+   {
+      return sampleInserted;
+   }
+
+
+   public List<String> getSampleUpdated()
+   {
+      return sampleUpdated;
+   }
+
+
+   public List<String> getSampleDeactivated()
+   {
+      return sampleDeactivated;
+   }
+}
@@ -0,0 +1,169 @@
+/*******************************************************************************
+ ** Reads and writes the per-prefix geoDataSyncState table.
+ **
+ ** All of a prefix's state rows (one per dataset) are loaded with a single
+ ** query when the store is created.  If the prefix has no sync state table
+ ** in the QInstance (e.g., the host app has not applied the changeset that
+ ** creates it yet), the store is disabled: nothing is ever current, and
+ ** nothing is saved.
+ **
+ ** While a partitioned table is being synced, its row also holds a
+ ** checkpoint: the fingerprint being synced to, and the last partition
+ ** (e.g., country) known to be synced, so that a sync that stopped part way
+ ** (out of time, cancelled, or failed) can be resumed by the next run with
+ ** the same fingerprint.  Completing the table clears the checkpoint.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.model.GeoDataSyncState;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataSyncStateStore
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataSyncStateStore.class);
+
+   private static final String CHECKPOINT_SEPARATOR = "|";
+
+   private final String               tableName;
+   private final boolean              enabled;
+   private final Map<String, QRecord> stateByDataset = new HashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor - loads the current state rows for a table prefix.
+    *******************************************************************************/
+   public GeoDataSyncStateStore(String prefix) throws QException
+   {
+      this.tableName = prefix + "_" + GeoDataSyncState.TABLE_NAME;
+      this.enabled = QContext.getQInstance() != null && QContext.getQInstance().getTable(tableName) != null;
+
+      if(!enabled)
+      {
+         LOG.info("No sync state table - fingerprint checks disabled", logPair("table", tableName));
+         return;
+      }
+
+      QueryInput queryInput = new QueryInput();
+      queryInput.setTableName(tableName);
+      queryInput.setFilter(new QQueryFilter());
+      for(QRecord record : new QueryAction().execute(queryInput).getRecords())
+      {
+         stateByDataset.put(record.getValueString("datasetName"), record);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a dataset was last synced with the given fingerprint.
+    *******************************************************************************/
+   public synchronized boolean isCurrent(GeoDataSyncTable table, String fingerprint)
+   {
+      QRecord state = stateByDataset.get(table.getTableName());
+      return state != null && fingerprint.equals(state.getValueString("checksum"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the last partition of a dataset known to be synced towards the given
+    ** fingerprint by a sync that did not complete - or null if there is none.
+    *******************************************************************************/
+   public synchronized String getCheckpoint(GeoDataSyncTable table, String fingerprint)
+   {
+      QRecord state = stateByDataset.get(table.getTableName());
+      String checkpoint = state == null ? null : state.getValueString("checkpoint");
+      String fingerprintPrefix = fingerprint + CHECKPOINT_SEPARATOR;
+      return checkpoint != null && checkpoint.startsWith(fingerprintPrefix) ? checkpoint.substring(fingerprintPrefix.length()) : null;
+   }
+
+
+
+   /*******************************************************************************
+    ** Record that a dataset has been synced with the given fingerprint (which
+    ** clears its checkpoint).
+    *******************************************************************************/
+   public synchronized void save(GeoDataSyncTable table, String fingerprint, String version) throws QException
+   {
+      write(table, new QRecord()
+         .withValue("checksum", fingerprint)
+         .withValue("version", version)
+         .withValue("lastSyncDate", Instant.now())
+         .withValue("checkpoint", null));
+   }
+
+
+
+   /*******************************************************************************
+    ** Record that a dataset has been synced towards the given fingerprint up
+    ** to (and including) a partition.  The recorded checksum and version are
+    ** left as they are - the dataset is not current until save() is called.
+    *******************************************************************************/
+   public synchronized void saveCheckpoint(GeoDataSyncTable table, String fingerprint, String partition) throws QException
+   {
+      write(table, new QRecord()
+         .withValue("checkpoint", fingerprint + CHECKPOINT_SEPARATOR + partition));
+   }
+
+
+
+   /*******************************************************************************
+    ** Insert or update a dataset's state row with the given values.
+    *******************************************************************************/
+   private void write(GeoDataSyncTable table, QRecord values) throws QException
+   {
+      if(!enabled)
+      {
+         return;
+      }
+
+      QRecord existing = stateByDataset.get(table.getTableName());
+      QRecord record = new QRecord(values).withValue("datasetName", table.getTableName());
+
+      if(existing == null)
+      {
+         InsertInput insertInput = new InsertInput();
+         insertInput.setTableName(tableName);
+         insertInput.setRecords(List.of(record));
+         record.setValue("id", new InsertAction().execute(insertInput).getRecords().get(0).getValue("id"));
+         stateByDataset.put(table.getTableName(), record);
+      }
+      else
+      {
+         record.setValue("id", existing.getValue("id"));
+         UpdateInput updateInput = new UpdateInput();
+         updateInput.setTableName(tableName);
+         updateInput.setRecords(List.of(record));
+         new UpdateAction().execute(updateInput);
+         existing.getValues().putAll(record.getValues());
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Whether this prefix has a sync state table.
+    *******************************************************************************/
+   public boolean isEnabled()
+   {
+      return enabled;
+   }
+}
@@ -4,35 +4,101 @@
  ** Syncs all three entity types (Country, StateProvince, City) from bundled
  ** JSON files into database tables. Performs natural key upsert:
  ** - Country: by alpha2Code
- ** - StateProvince: by countryAlpha2 + code
- ** - City: by countryAlpha2 + stateCode + name
+ ** - StateProvince: by countryId + code
+ ** - City: by stateProvinceId + name
+ **
+ ** Source rows identify their parents by natural key (countryAlpha2,
+ ** stateCode); a GeoDataKeyResolver shared across the tables resolves these
+ ** to the stored foreign keys, from the ids of rows synced earlier in the run.
+ **
+ ** Each table is synced one partition (country) at a time, with writes
+ ** batched by the optional pageSize input - see GeoDataTableSync.  A table
+ ** that is still empty (e.g., a new tenant's) is bulk loaded instead, in
+ ** batches of the optional bulkPageSize input.  With the
+ ** optional concurrency input above 1, up to that many partitions of a table
+ ** are synced in parallel; tables themselves are always synced in dependency
+ ** order.  Per-partition counts are returned in the partitionResults output.
+ **
+ ** One run can sync several table name prefixes: tableNamePrefix, plus any
+ ** in tableNamePrefixes (a list, or comma-separated), plus - with
+ ** allPrefixes - every prefix of a GeoData QBit in the QInstance.  Each
+ ** table's source is then read once, and each partition synced into every
+ ** prefix that needs the table in parallel (see GeoDataTableSync.runAll()),
+ ** with concurrency applying per prefix.  Counts are summed over prefixes.
+ **
+ ** A prefix can be limited to some countries (alpha-2 codes): by the
+ ** countryFilter input (a list, or comma-separated), or else by the
+ ** countryFilter of the prefix's GeoData QBit config.  Only those
+ ** countries' rows are read and synced, and other countries' rows are
+ ** deactivated - see GeoDataTableSync.  Likewise, cities can be limited to
+ ** a minimum population, by the minCityPopulation input or config, and
+ ** existing cities below it are deactivated.
+ **
+ ** Tables with no bundled data (e.g., cities, when the data build has not
+ ** bundled them) are skipped, as they are by the Liquibase generator.
+ ** Tables whose bundled data fingerprint matches the one recorded in the
+ ** prefix's geoDataSyncState table at the last sync are skipped, unless the
+ ** force input is true.  The fingerprint covers the country filter and
+ ** minimum city population, so changing either re-syncs the prefix.
+ **
+ ** A changed table whose recorded fingerprint is the one it would have had
+ ** at the bundled data patch's starting point (the previous data version,
+ ** with the same filters) gets just the patch applied - see GeoDataPatch and
+ ** GeoDataTableSync.runPatch().  Any other changed table gets a full diff,
+ ** as does every table when force is true.
+ **
+ ** A full sync records a checkpoint as partitions finish, and a run that
+ ** stops part way is resumed after it by the next run with the same
+ ** fingerprint - see GeoDataTableSync and GeoDataSyncStateStore.  The
+ ** optional timeBudgetSeconds input bounds a run: once it has passed (or
+ ** GeoDataSyncBudget.cancelAll() is called), no further partition or table
+ ** is started, the tables in progress are left at their checkpoints, and
+ ** the step returns normally with the complete output false.
+ **
+ ** With the dryRun input true, the run reads and diffs as usual but writes
+ ** nothing (see GeoDataTableSync), and records no sync state, checkpoints
+ ** or cache rebuilds: its output is the plan - per table (tableResults) and
+ ** per partition (partitionResults), the rows that would be inserted,
+ ** updated and deactivated, with sample keys of each.  Diffs compare stored
+ ** row hashes, so a dry run costs about the same reads as a sync.
+ **
+ ** After the city table is synced, its spatial index is rebuilt if one has
+ ** been built (see GeoDataCityIndexes); likewise the prefix's typeahead
+ ** indexes, after the state or city table is (see GeoDataTypeaheadIndexes),
+ ** and its address resolver, after the country or state table is (see
+ ** GeoDataAddressResolver).  Each synced table's possible value cache is
+ ** rebuilt too, if built (see GeoDataPossibleValueCache).
  *******************************************************************************/
 package com.kingsrook.qbits.geodata.sync;
 
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.Serializable;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
 import com.kingsrook.qqq.backend.core.actions.processes.BackendStep;
-import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
-import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
-import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
-import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
-import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.logging.QLogger;
-import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
-import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
-import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
-import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryOutput;
-import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
-import com.kingsrook.qqq.backend.core.model.data.QRecord;
-import org.json.JSONArray;
-import org.json.JSONObject;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
+import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
+import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitMetaData;
+import com.kingsrook.qqq.backend.core.utils.StringUtils;
+import com.kingsrook.qbits.geodata.GeoDataQBitConfig;
+import com.kingsrook.qbits.geodata.possiblevalues.GeoDataPossibleValueCache;
+import com.kingsrook.qbits.geodata.resolve.GeoDataAddressResolver;
+import com.kingsrook.qbits.geodata.spatial.GeoDataCityIndexes;
+import com.kingsrook.qbits.geodata.typeahead.GeoDataTypeaheadIndexes;
 import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
 
 
@@ -40,262 +106,438 @@ public class GeoDataSyncStep implements BackendStep
 {
    private static final QLogger LOG = QLogger.getLogger(GeoDataSyncStep.class);
 
-   public static final String FIELD_TABLE_NAME_PREFIX = "tableNamePrefix";
+   public static final String FIELD_TABLE_NAME_PREFIX   = "tableNamePrefix";
+   public static final String FIELD_TABLE_NAME_PREFIXES = "tableNamePrefixes";
+   public static final String FIELD_ALL_PREFIXES        = "allPrefixes";
+   public static final String FIELD_COUNTRY_FILTER      = "countryFilter";
+   public static final String FIELD_MIN_CITY_POPULATION = "minCityPopulation";
+   public static final String FIELD_PAGE_SIZE           = "pageSize";
+   public static final String FIELD_BULK_PAGE_SIZE      = "bulkPageSize";
+   public static final String FIELD_FORCE               = "force";
+   public static final String FIELD_CONCURRENCY         = "concurrency";
+   public static final String FIELD_TIME_BUDGET_SECONDS = "timeBudgetSeconds";
+   public static final String FIELD_DRY_RUN             = "dryRun";
+
+   public static final int DEFAULT_PAGE_SIZE   = 1000;
+   public static final int DEFAULT_CONCURRENCY = 1;
 
 
 
    /*******************************************************************************
-    ** Run the sync step - syncs all three entity types.
+    ** Run the sync step - syncs all three entity types, for each prefix.
     *******************************************************************************/
    @Override
    public void run(RunBackendStepInput input, RunBackendStepOutput output) throws QException
    {
-      String prefix = input.getValueString(FIELD_TABLE_NAME_PREFIX);
-      if(prefix == null || prefix.isEmpty())
+      Set<String> prefixes = getPrefixes(input);
+      if(prefixes.isEmpty())
+      {
+         throw new QException("tableNamePrefix is required (or tableNamePrefixes, or allPrefixes)");
+      }
+
+      Integer pageSize = input.getValueInteger(FIELD_PAGE_SIZE);
+      if(pageSize == null)
+      {
+         pageSize = DEFAULT_PAGE_SIZE;
+      }
+      if(pageSize < 1)
+      {
+         throw new QException("pageSize must be greater than 0");
+      }
+
+      Integer bulkPageSize = input.getValueInteger(FIELD_BULK_PAGE_SIZE);
+      if(bulkPageSize == null)
+      {
+         bulkPageSize = GeoDataTableSync.DEFAULT_BULK_PAGE_SIZE;
+      }
+      if(bulkPageSize < 1)
       {
-         throw new QException("tableNamePrefix is required");
+         throw new QException("bulkPageSize must be greater than 0");
       }
 
-      LOG.info("Starting geo data sync", logPair("prefix", prefix));
+      Integer concurrency = input.getValueInteger(FIELD_CONCURRENCY);
+      if(concurrency == null)
+      {
+         concurrency = DEFAULT_CONCURRENCY;
+      }
+      if(concurrency < 1)
+      {
+         throw new QException("concurrency must be greater than 0");
+      }
+
+      Integer inputMinCityPopulation = input.getValueInteger(FIELD_MIN_CITY_POPULATION);
+      if(inputMinCityPopulation != null && inputMinCityPopulation < 0)
+      {
+         throw new QException("minCityPopulation must not be negative");
+      }
+
+      Integer timeBudgetSeconds = input.getValueInteger(FIELD_TIME_BUDGET_SECONDS);
+      if(timeBudgetSeconds != null && timeBudgetSeconds < 1)
+      {
+         throw new QException("timeBudgetSeconds must be greater than 0");
+      }
+      GeoDataSyncBudget budget = new GeoDataSyncBudget(timeBudgetSeconds == null ? null : Duration.ofSeconds(timeBudgetSeconds));
+
+      boolean force = Boolean.TRUE.equals(input.getValueBoolean(FIELD_FORCE));
+      boolean dryRun = Boolean.TRUE.equals(input.getValueBoolean(FIELD_DRY_RUN));
+
+      LOG.info("Starting geo data sync", logPair("prefixes", prefixes), logPair("pageSize", pageSize), logPair("bulkPageSize", bulkPageSize), logPair("concurrency", concurrency), logPair("timeBudgetSeconds", timeBudgetSeconds), logPair("force", force), logPair("dryRun", dryRun));
+
+      Set<String> inputCountryFilter = toCountryFilter(getStrings(input.getValue(FIELD_COUNTRY_FILTER)));
+      Map<String, PrefixSync> prefixSyncs = new LinkedHashMap<>();
+      for(String prefix : prefixes)
+      {
+         GeoDataQBitConfig config = getConfig(prefix);
+         Set<String> countryFilter = inputCountryFilter != null ? inputCountryFilter : toCountryFilter(config == null ? null : config.getCountryFilter());
+         Integer minCityPopulation = inputMinCityPopulation != null ? inputMinCityPopulation : (config == null ? null : config.getMinCityPopulation());
+         prefixSyncs.put(prefix, new PrefixSync(prefix, countryFilter, minCityPopulation, force));
+      }
 
       //////////////////////////////////////////////////////////////////////////
       // Sync in order: countries first (no dependencies), then states, then //
-      // cities (which may reference states)                                  //
+      // cities (which reference states)                                      //
       //////////////////////////////////////////////////////////////////////////
-      int countriesInserted = syncTable(prefix + "_country", "/data/countries.json", List.of("alpha2Code"));
-      int statesInserted = syncTable(prefix + "_stateProvince", "/data/states.json", List.of("countryAlpha2", "code"));
-      int citiesInserted = syncTable(prefix + "_city", "/data/cities.json", List.of("countryAlpha2", "stateCode", "name"));
+      int tablesSkipped = 0;
+      int tablesPatched = 0;
+      int countriesInserted = 0;
+      int statesInserted = 0;
+      int citiesInserted = 0;
+      boolean complete = true;
+      ArrayList<GeoDataSyncResult> tableResults = new ArrayList<>();
+      ArrayList<GeoDataSyncResult> partitionResults = new ArrayList<>();
+
+      for(GeoDataSyncTable table : GeoDataSyncTable.values())
+      {
+         if(budget.isExhausted())
+         {
+            LOG.info("Sync budget exhausted - starting no further tables", logPair("table", table.getTableName()));
+            complete = false;
+            break;
+         }
 
-      LOG.info("Geo data sync complete",
-         logPair("prefix", prefix),
-         logPair("countries", countriesInserted),
-         logPair("states", statesInserted),
-         logPair("cities", citiesInserted));
+         if(!GeoDataRowSource.isBundled(table))
+         {
+            LOG.info("No bundled data for table - skipping it", logPair("table", table.getTableName()));
+            continue;
+         }
 
-      output.addValue("countriesSynced", countriesInserted);
-      output.addValue("statesSynced", statesInserted);
-      output.addValue("citiesSynced", citiesInserted);
-   }
+         List<PrefixSync> targets = new ArrayList<>();
+         List<GeoDataTableSync> tableSyncs = new ArrayList<>();
+         for(PrefixSync prefixSync : prefixSyncs.values())
+         {
+            String tableName = table.getTableName(prefixSync.prefix);
+            if(!prefixSync.tablesToSync.contains(table))
+            {
+               LOG.info("Bundled data unchanged since last sync - skipping table", logPair("table", tableName));
+               tablesSkipped++;
+
+               //////////////////////////////////////////////////////////////
+               // a later table still needs this table's ids to resolve    //
+               // its foreign keys                                         //
+               //////////////////////////////////////////////////////////////
+               if(prefixSync.tablesToSync.stream().anyMatch(t -> t.ordinal() > table.ordinal()))
+               {
+                  prefixSync.keyResolver.load(table, tableName);
+               }
+               continue;
+            }
 
+            targets.add(prefixSync);
+            tableSyncs.add(new GeoDataTableSync(table, tableName, pageSize)
+               .withConcurrency(concurrency)
+               .withBulkPageSize(bulkPageSize)
+               .withKeyResolver(prefixSync.keyResolver)
+               .withCountryFilter(prefixSync.countryFilter)
+               .withMinPopulation(prefixSync.minCityPopulation)
+               .withBudget(budget)
+               .withDryRun(dryRun)
+               .withCheckpoints(dryRun ? null : prefixSync.stateStore, prefixSync.fingerprints.get(table)));
+         }
 
+         //////////////////////////////////////////////////////////////////////
+         // prefixes at the patch's starting point get just the patch; the  //
+         // rest share one full read of the source                           //
+         //////////////////////////////////////////////////////////////////////
+         List<GeoDataSyncResult> results = new ArrayList<>(Collections.nCopies(targets.size(), null));
+         List<GeoDataTableSync> fullSyncs = new ArrayList<>();
+         List<Integer> fullSyncIndexes = new ArrayList<>();
+         for(int i = 0; i < targets.size(); i++)
+         {
+            GeoDataPatch.DatasetPatch patch = targets.get(i).patches.get(table);
+            if(patch != null)
+            {
+               results.set(i, tableSyncs.get(i).runPatch(patch));
+               tablesPatched++;
+            }
+            else
+            {
+               fullSyncs.add(tableSyncs.get(i));
+               fullSyncIndexes.add(i);
+            }
+         }
 
-   /*******************************************************************************
-    ** Sync a single table from JSON resource.
-    ** Returns count of records processed.
-    *******************************************************************************/
-   private int syncTable(String tableName, String resourcePath, List<String> naturalKeyFields) throws QException
-   {
-      LOG.info("Syncing table",
-         logPair("table", tableName),
-         logPair("resource", resourcePath),
-         logPair("naturalKey", naturalKeyFields));
-
-      /////////////////////////////////////////////////////////////////////////
-      // 1. Load source data from classpath JSON                             //
-      /////////////////////////////////////////////////////////////////////////
-      List<QRecord> sourceRecords = loadJsonData(resourcePath);
-      LOG.info("Loaded source data", logPair("count", sourceRecords.size()));
-
-      /////////////////////////////////////////////////////////////////////////
-      // 2. Query existing records by natural key                            //
-      /////////////////////////////////////////////////////////////////////////
-      Map<String, QRecord> existingByKey = queryExisting(tableName, naturalKeyFields);
-      LOG.info("Queried existing records", logPair("count", existingByKey.size()));
-
-      /////////////////////////////////////////////////////////////////////////
-      // 3. Categorize: insert new, update changed, deactivate removed       //
-      /////////////////////////////////////////////////////////////////////////
-      List<QRecord> toInsert = new ArrayList<>();
-      List<QRecord> toUpdate = new ArrayList<>();
-      List<QRecord> toDeactivate = new ArrayList<>();
-
-      for(QRecord source : sourceRecords)
-      {
-         String key = buildNaturalKey(source, naturalKeyFields);
-         QRecord existing = existingByKey.remove(key);
+         List<GeoDataSyncResult> fullResults = GeoDataTableSync.runAll(fullSyncs);
+         for(int i = 0; i < fullResults.size(); i++)
+         {
+            results.set(fullSyncIndexes.get(i), fullResults.get(i));
+         }
 
-         if(existing == null)
+         for(int i = 0; i < targets.size(); i++)
          {
-            source.setValue("isActive", true);
-            toInsert.add(source);
+            PrefixSync prefixSync = targets.get(i);
+            GeoDataTableSync tableSync = tableSyncs.get(i);
+            String tableName = table.getTableName(prefixSync.prefix);
+
+            //////////////////////////////////////////////////////////////////
+            // a patch, or a resumed sync, only registered the ids it       //
+            // touched - a later table needs them all                       //
+            //////////////////////////////////////////////////////////////////
+            if((prefixSync.patches.containsKey(table) || tableSync.isResumed()) && prefixSync.tablesToSync.stream().anyMatch(t -> t.ordinal() > table.ordinal()))
+            {
+               prefixSync.keyResolver.load(table, tableName);
+            }
+
+            int synced = results.get(i).getSourceCount();
+            tableResults.add(results.get(i));
+            partitionResults.addAll(tableSync.getPartitionResults());
+            if(!tableSync.isComplete())
+            {
+               complete = false;
+            }
+            else if(!dryRun)
+            {
+               prefixSync.stateStore.save(table, prefixSync.fingerprints.get(table), GeoDataFingerprint.getDataVersion());
+            }
+
+            if(!dryRun)
+            {
+               GeoDataPossibleValueCache.refreshIfLoaded(tableName);
+               if(table == GeoDataSyncTable.CITY)
+               {
+                  GeoDataCityIndexes.refreshIfLoaded(tableName);
+               }
+            }
+
+            switch(table)
+            {
+               case COUNTRY -> countriesInserted += synced;
+               case STATE_PROVINCE -> statesInserted += synced;
+               case CITY -> citiesInserted += synced;
+            }
          }
-         else if(hasChanges(source, existing))
+
+         if(!complete)
          {
-            source.setValue("id", existing.getValue("id"));
-            source.setValue("isActive", true);
-            toUpdate.add(source);
+            break;
          }
       }
 
-      //////////////////////////////////////////////////////////////////////////
-      // Records remaining in existingByKey are no longer in source          //
-      //////////////////////////////////////////////////////////////////////////
-      for(QRecord orphan : existingByKey.values())
+      for(PrefixSync prefixSync : prefixSyncs.values())
       {
-         if(Boolean.TRUE.equals(orphan.getValueBoolean("isActive")))
+         if(!dryRun && (prefixSync.tablesToSync.contains(GeoDataSyncTable.STATE_PROVINCE) || prefixSync.tablesToSync.contains(GeoDataSyncTable.CITY)))
          {
-            orphan.setValue("isActive", false);
-            toDeactivate.add(orphan);
+            GeoDataTypeaheadIndexes.refreshIfLoaded(prefixSync.prefix);
+         }
+         if(!dryRun && (prefixSync.tablesToSync.contains(GeoDataSyncTable.COUNTRY) || prefixSync.tablesToSync.contains(GeoDataSyncTable.STATE_PROVINCE)))
+         {
+            GeoDataAddressResolver.refreshIfLoaded(prefixSync.prefix);
          }
       }
 
-      /////////////////////////////////////////////////////////////////////////
-      // 4. Execute operations                                               //
-      /////////////////////////////////////////////////////////////////////////
-      if(!toInsert.isEmpty())
+      String message = complete ? "Geo data sync complete" : "Geo data sync stopped - to be resumed by the next run";
+      if(dryRun)
       {
-         insertRecords(tableName, toInsert);
+         message = complete ? "Geo data sync dry run complete - nothing written" : "Geo data sync dry run stopped - nothing written";
       }
-      if(!toUpdate.isEmpty())
-      {
-         updateRecords(tableName, toUpdate);
-      }
-      if(!toDeactivate.isEmpty())
-      {
-         updateRecords(tableName, toDeactivate);
-      }
-
-      /////////////////////////////////////////////////////////////////////////
-      // 5. Log summary                                                      //
-      /////////////////////////////////////////////////////////////////////////
-      LOG.info("Table sync complete",
-         logPair("table", tableName),
-         logPair("inserted", toInsert.size()),
-         logPair("updated", toUpdate.size()),
-         logPair("deactivated", toDeactivate.size()));
+      LOG.info(message,
+         logPair("prefixes", prefixes),
+         logPair("countries", countriesInserted),
+         logPair("states", statesInserted),
+         logPair("cities", citiesInserted),
+         logPair("tablesSkipped", tablesSkipped),
+         logPair("tablesPatched", tablesPatched),
+         logPair("complete", complete));
 
-      return sourceRecords.size();
+      output.addValue("prefixesSynced", new ArrayList<>(prefixes));
+      output.addValue("countriesSynced", countriesInserted);
+      output.addValue("statesSynced", statesInserted);
+      output.addValue("citiesSynced", citiesInserted);
+      output.addValue("tablesSkipped", tablesSkipped);
+      output.addValue("tablesPatched", tablesPatched);
+      output.addValue("tableResults", tableResults);
+      output.addValue("partitionResults", partitionResults);
+      output.addValue("dryRun", dryRun);
+      output.addValue("complete", complete);
    }
 
 
 
    /*******************************************************************************
-    ** Build a composite natural key string from record values.
+    ** Get the table name prefixes to sync, in order, without duplicates: the
+    ** tableNamePrefix input, those in tableNamePrefixes (a collection, or a
+    ** comma/newline-separated string), and, if allPrefixes is true, those of
+    ** every GeoData QBit in the QInstance.
     *******************************************************************************/
-   private String buildNaturalKey(QRecord record, List<String> keyFields)
+   static Set<String> getPrefixes(RunBackendStepInput input)
    {
-      StringBuilder key = new StringBuilder();
-      for(String field : keyFields)
+      Set<String> prefixes = new LinkedHashSet<>();
+
+      String prefix = input.getValueString(FIELD_TABLE_NAME_PREFIX);
+      if(StringUtils.hasContent(prefix))
+      {
+         prefixes.add(prefix.trim());
+      }
+
+      List<String> listed = getStrings(input.getValue(FIELD_TABLE_NAME_PREFIXES));
+      if(listed != null)
       {
-         if(key.length() > 0)
+         prefixes.addAll(listed);
+      }
+
+      if(Boolean.TRUE.equals(input.getValueBoolean(FIELD_ALL_PREFIXES)) && QContext.getQInstance() != null && QContext.getQInstance().getQBits() != null)
+      {
+         for(QBitMetaData qBit : QContext.getQInstance().getQBits().values())
          {
-            key.append("|");
+            if(qBit.getConfig() instanceof GeoDataQBitConfig config && StringUtils.hasContent(config.getTableNamePrefix()))
+            {
+               prefixes.add(config.getTableNamePrefix());
+            }
          }
-         Object value = record.getValue(field);
-         key.append(value != null ? value.toString() : "");
       }
-      return key.toString();
+
+      return prefixes;
    }
 
 
 
    /*******************************************************************************
-    ** Load records from a JSON resource file on the classpath.
+    ** Get the GeoData QBit config with a table name prefix, or null if there
+    ** is none.
     *******************************************************************************/
-   private List<QRecord> loadJsonData(String resourcePath) throws QException
+   private static GeoDataQBitConfig getConfig(String prefix)
    {
-      try(InputStream is = getClass().getResourceAsStream(resourcePath))
+      if(QContext.getQInstance() == null || QContext.getQInstance().getQBits() == null)
       {
-         if(is == null)
-         {
-            throw new QException("Resource not found: " + resourcePath);
-         }
-
-         String json = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-         JSONArray array = new JSONArray(json);
-         List<QRecord> records = new ArrayList<>();
+         return null;
+      }
 
-         for(int i = 0; i < array.length(); i++)
+      for(QBitMetaData qBit : QContext.getQInstance().getQBits().values())
+      {
+         if(qBit.getConfig() instanceof GeoDataQBitConfig config && prefix.equals(config.getTableNamePrefix()))
          {
-            JSONObject obj = array.getJSONObject(i);
-            QRecord record = new QRecord();
-            for(String key : obj.keySet())
-            {
-               Object value = obj.get(key);
-               if(!JSONObject.NULL.equals(value))
-               {
-                  record.setValue(key, value);
-               }
-            }
-            records.add(record);
+            return config;
          }
-
-         return records;
-      }
-      catch(Exception e)
-      {
-         throw new QException("Error loading JSON data from " + resourcePath, e);
       }
+      return null;
    }
 
 
 
    /*******************************************************************************
-    ** Query existing records and index by natural key.
+    ** Normalize a country filter to a set of upper-case alpha-2 codes - null
+    ** (no filter) if it is null or empty.
     *******************************************************************************/
-   private Map<String, QRecord> queryExisting(String tableName, List<String> naturalKeyFields) throws QException
+   public static Set<String> toCountryFilter(Collection<String> codes)
    {
-      QueryInput queryInput = new QueryInput();
-      queryInput.setTableName(tableName);
-      queryInput.setFilter(new QQueryFilter());
-
-      QueryOutput queryOutput = new QueryAction().execute(queryInput);
+      if(codes == null || codes.isEmpty())
+      {
+         return null;
+      }
 
-      Map<String, QRecord> byKey = new HashMap<>();
-      for(QRecord record : queryOutput.getRecords())
+      Set<String> filter = new TreeSet<>();
+      for(String code : codes)
       {
-         String key = buildNaturalKey(record, naturalKeyFields);
-         byKey.put(key, record);
+         if(StringUtils.hasContent(code))
+         {
+            filter.add(code.trim().toUpperCase(Locale.ROOT));
+         }
       }
-      return byKey;
+      return filter.isEmpty() ? null : filter;
    }
 
 
 
    /*******************************************************************************
-    ** Check if source record has changes compared to existing.
+    ** Get an input value as a list of non-blank, trimmed strings - from a
+    ** collection, or a comma/newline-separated string - or null if it is not
+    ** given.
     *******************************************************************************/
-   private boolean hasChanges(QRecord source, QRecord existing)
+   static List<String> getStrings(Serializable value)
    {
-      for(String fieldName : source.getValues().keySet())
+      if(value == null)
       {
-         if(fieldName.equals("id") || fieldName.equals("createDate") || fieldName.equals("modifyDate"))
-         {
-            continue;
-         }
-         Object sourceValue = source.getValue(fieldName);
-         Object existingValue = existing.getValue(fieldName);
-         if(!Objects.equals(sourceValue, existingValue))
+         return null;
+      }
+
+      List<?> elements = value instanceof Collection<?> collection ? new ArrayList<>(collection) : List.of(value.toString().split("[,\\r\\n]"));
+      List<String> strings = new ArrayList<>();
+      for(Object element : elements)
+      {
+         if(element != null && StringUtils.hasContent(element.toString()))
          {
-            return true;
+            strings.add(element.toString().trim());
          }
       }
-      return false;
+      return strings;
    }
 
 
 
    /*******************************************************************************
-    ** Insert new records.
+    ** The per-prefix state of a sync: its filters, fingerprints, sync
+    ** state store, key resolver, the tables whose data (or filter) has
+    ** changed since its last sync, and the data patches that can bring
+    ** some of them up to date.
     *******************************************************************************/
-   private void insertRecords(String tableName, List<QRecord> records) throws QException
+   private static class PrefixSync
    {
-      InsertInput insertInput = new InsertInput();
-      insertInput.setTableName(tableName);
-      insertInput.setRecords(records);
-      new InsertAction().execute(insertInput);
-   }
+      private final String                        prefix;
+      private final Set<String>                   countryFilter;
+      private final Integer                       minCityPopulation;
+      private final Map<GeoDataSyncTable, String> fingerprints = new EnumMap<>(GeoDataSyncTable.class);
+      private final GeoDataSyncStateStore         stateStore;
+      private final GeoDataKeyResolver            keyResolver  = new GeoDataKeyResolver();
+      private final EnumSet<GeoDataSyncTable>     tablesToSync = EnumSet.noneOf(GeoDataSyncTable.class);
 
+      private final Map<GeoDataSyncTable, GeoDataPatch.DatasetPatch> patches = new EnumMap<>(GeoDataSyncTable.class);
 
 
-   /*******************************************************************************
-    ** Update existing records.
-    *******************************************************************************/
-   private void updateRecords(String tableName, List<QRecord> records) throws QException
-   {
-      UpdateInput updateInput = new UpdateInput();
-      updateInput.setTableName(tableName);
-      updateInput.setRecords(records);
-      new UpdateAction().execute(updateInput);
+
+      /*******************************************************************************
+       ** Constructor - loads the prefix's sync state, and picks the tables to
+       ** sync (of those with bundled data), and which of them a patch
+       ** applies to.
+       *******************************************************************************/
+      PrefixSync(String prefix, Set<String> countryFilter, Integer minCityPopulation, boolean force) throws QException
+      {
+         this.prefix = prefix;
+         this.countryFilter = countryFilter;
+         this.minCityPopulation = minCityPopulation;
+         this.stateStore = new GeoDataSyncStateStore(prefix);
+         for(GeoDataSyncTable table : GeoDataSyncTable.values())
+         {
+            if(!GeoDataRowSource.isBundled(table))
+            {
+               continue;
+            }
+
+            fingerprints.put(table, GeoDataFingerprint.compute(table, countryFilter, minCityPopulation));
+            if(force || !stateStore.isCurrent(table, fingerprints.get(table)))
+            {
+               tablesToSync.add(table);
+
+               GeoDataPatch patch = force ? null : GeoDataPatch.getBundled();
+               GeoDataPatch.DatasetPatch datasetPatch = patch == null ? null : patch.getDatasetPatch(table);
+               if(datasetPatch != null && stateStore.isCurrent(table, GeoDataFingerprint.compute(table, datasetPatch.getFromChecksum(), countryFilter, minCityPopulation)))
+               {
+                  LOG.info("Table is at the previous data version - applying the data patch",
+                     logPair("table", table.getTableName(prefix)),
+                     logPair("fromVersion", patch.getFromVersion()),
+                     logPair("toVersion", patch.getToVersion()));
+                  patches.put(table, datasetPatch);
+               }
+            }
+         }
+      }
    }
 }
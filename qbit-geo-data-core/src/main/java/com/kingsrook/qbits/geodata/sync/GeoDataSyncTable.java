@@ -0,0 +1,126 @@
+/*******************************************************************************
+ ** Describes each table synced by the geo data sync process: the bundled
+ ** resource it is loaded from, its natural key (as stored, after foreign keys
+ ** are resolved - see GeoDataKeyResolver), the source field its rows are
+ ** partitioned by, the stored field that scopes a partition's existing
+ ** rows, and the source field holding a row's country (alpha-2 code), for
+ ** country filters.
+ **
+ ** Tables are listed in dependency order (countries, then states, then
+ ** cities).  Bundled resources are sorted by partition field first (see the
+ ** tools module's JsonDataWriter), so each partition is a contiguous run of
+ ** source rows.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.model.City;
+import com.kingsrook.qbits.geodata.model.Country;
+import com.kingsrook.qbits.geodata.model.StateProvince;
+
+
+public enum GeoDataSyncTable
+{
+   COUNTRY(Country.TABLE_NAME, "/data/countries.json", List.of("alpha2Code"), null, null, "alpha2Code"),
+   STATE_PROVINCE(StateProvince.TABLE_NAME, "/data/states.json", List.of("countryId", "code"), "countryAlpha2", "countryId", "countryAlpha2"),
+   CITY(City.TABLE_NAME, "/data/cities.json", List.of("stateProvinceId", "name"), "countryAlpha2", "stateProvinceId", "countryAlpha2");
+
+   public static final String FIELD_POPULATION = "population";
+
+   private final String       tableName;
+   private final String       resourcePath;
+   private final List<String> naturalKeyFields;
+   private final String       partitionField;
+   private final String       partitionIdField;
+   private final String       countryField;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   GeoDataSyncTable(String tableName, String resourcePath, List<String> naturalKeyFields, String partitionField, String partitionIdField, String countryField)
+   {
+      this.tableName = tableName;
+      this.resourcePath = resourcePath;
+      this.naturalKeyFields = naturalKeyFields;
+      this.partitionField = partitionField;
+      this.partitionIdField = partitionIdField;
+      this.countryField = countryField;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the table name with the given prefix applied.
+    *******************************************************************************/
+   public String getTableName(String prefix)
+   {
+      return prefix + "_" + tableName;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the name of the table's bundled dataset - its data file's name
+    ** without extension (e.g., "states"), which is also its section name in
+    ** the binary snapshot.
+    *******************************************************************************/
+   public String getDatasetName()
+   {
+      return resourcePath.substring(resourcePath.lastIndexOf('/') + 1, resourcePath.lastIndexOf('.'));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the partition a record belongs to - null for unpartitioned tables.
+    *******************************************************************************/
+   public String getPartitionValue(QRecord record)
+   {
+      return partitionField == null ? null : record.getValueString(partitionField);
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getTableName()
+   {
+      return tableName;
+   }
+
+
+   public String getResourcePath()
+   {
+      return resourcePath;
+   }
+
+
+   public List<String> getNaturalKeyFields()
+   {
+      return naturalKeyFields;
+   }
+
+
+   public String getPartitionField()
+   {
+      return partitionField;
+   }
+
+
+   public String getPartitionIdField()
+   {
+      return partitionIdField;
+   }
+
+
+   public String getCountryField()
+   {
+      return countryField;
+   }
+}
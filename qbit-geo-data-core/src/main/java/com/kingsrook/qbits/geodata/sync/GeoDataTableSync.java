@@ -0,0 +1,1409 @@
+/*******************************************************************************
+ ** Syncs one geo data table from its bundled resource, one partition at a
+ ** time.
+ **
+ ** Source rows are streamed from the bundled data (the binary snapshot, or
+ ** the JSON resource - see GeoDataRowSource) and grouped into partitions by
+ ** the table's partition field (e.g., country).  Each partition is synced on
+ ** its own:
+ ** - source rows' foreign keys are resolved from their natural keys (rows
+ **   whose parent is unknown are skipped and counted as unresolved)
+ ** - existing rows for just that partition are queried
+ ** - source rows are matched to them by natural key, and diffed by row hash
+ ** - inserts and updates are written in batches of at most pageSize
+ ** - existing rows not matched by any source row are deactivated
+ **
+ ** With a concurrency of 1, the sync is streamed through three stages,
+ ** connected by bounded GeoDataRecordPipes, so reading, diffing and writing
+ ** overlap rather than taking turns:
+ ** - extract (the calling thread): reads the source a partition at a time
+ ** - transform (a virtual thread): resolves keys, queries the partition's
+ **   existing rows, and diffs, handing off each batch of writes
+ ** - load (a virtual thread): writes the batches, in order
+ ** A full pipe blocks the stage feeding it, so at most READ_AHEAD_PARTITIONS
+ ** partitions wait to be diffed, and LOAD_AHEAD_BATCHES batches to be
+ ** written.  A failing stage fails both pipes, so the others stop too.
+ **
+ ** With a concurrency above 1, partitions are synced in parallel on virtual
+ ** threads, at most that many at once, each diffing and writing its own.
+ ** The next partition is only read from the source once a worker is free to
+ ** take it, so heap use stays bounded by concurrency times the largest
+ ** partition, rather than by the whole table.
+ **
+ ** runAll() syncs one table into several targets (e.g., the tables of
+ ** several prefixes) from a single read of the source, each partition
+ ** fanned out to every target in parallel.
+ **
+ ** With a country filter, only those countries' source rows are read (the
+ ** rest are skipped before they become records), the country table's
+ ** existing rows are queried for just those countries, and active rows of
+ ** other countries are deactivated - so a regional deployment holds only
+ ** its own data.  Likewise, a minimum population (for the city table) reads
+ ** only the cities at or above it, so existing cities now below it are left
+ ** unmatched, and deactivated with the rest of their partition's leftovers.
+ **
+ ** After the last partition, active rows in partitions that no longer appear
+ ** in the source are deactivated.
+ **
+ ** A target table with no rows at all (e.g., a new tenant's) is bulk loaded:
+ ** there is nothing to query, match or deactivate, so every source row is
+ ** inserted, in batches of bulkPageSize, without DML audits, automations or
+ ** unique key checks (the natural keys are unique in the source, and
+ ** nothing is there to collide with).  Inserted ids are still registered
+ ** with the key resolver from each batch's output, so the next table
+ ** resolves its foreign keys from memory.
+ **
+ ** runPatch() applies a data patch (see GeoDataPatch) instead of the whole
+ ** source, to a table known to be at the patch's starting point: only the
+ ** partitions the patch touches are queried; its upserts are diffed as
+ ** usual, and its deletes (and upserts now outside the filters) are
+ ** deactivated - but no other existing row is, as unchanged rows are not in
+ ** the patch.
+ **
+ ** Writes are committed a batch at a time (each insert or update of at most
+ ** pageSize rows is its own action), so a sync that stops part way leaves
+ ** every finished partition in place.  With a checkpoint store (see
+ ** withCheckpoints()), each partition of a partitioned table is recorded as
+ ** it finishes - in parallel, the checkpoint only moves past a partition
+ ** once every partition read before it has finished too.  A later run with
+ ** the same fingerprint resumes after the checkpoint: partitions up to it
+ ** are read but not synced again (nor swept as unseen).  A bulk load starts
+ ** over instead, as its table is empty again.
+ **
+ ** With a budget (see GeoDataSyncBudget), no further partition is started
+ ** once it is exhausted; partitions in flight finish, the leftover sweeps
+ ** are skipped (the unread partitions were not seen, not removed), and the
+ ** sync is left incomplete (see isComplete()) for the next run to resume.
+ **
+ ** A dry run (see withDryRun()) reads, queries and diffs just the same, but
+ ** writes nothing: its results are the changes a sync would make, with
+ ** sample keys of each (see GeoDataSyncResult).  Rows it would insert are
+ ** given placeholder (negative) ids, registered with the key resolver like
+ ** real ones, so the next table's rows under them resolve - and, having no
+ ** existing rows, are planned as inserts too.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import com.kingsrook.qqq.backend.core.actions.tables.CountAction;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.CapturedContext;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.actions.tables.count.CountInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataTableSync
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataTableSync.class);
+
+   public static final int DEFAULT_BULK_PAGE_SIZE = 10_000;
+   public static final int READ_AHEAD_PARTITIONS  = 1;
+   public static final int LOAD_AHEAD_BATCHES     = 4;
+
+   private final GeoDataSyncTable table;
+   private final String           tableName;
+   private final int              pageSize;
+
+   private int                concurrency = 1;
+   private GeoDataKeyResolver keyResolver = new GeoDataKeyResolver();
+   private Set<String>        countryFilter;
+   private Integer            minPopulation;
+   private int                bulkPageSize = DEFAULT_BULK_PAGE_SIZE;
+   private boolean            bulkLoad;
+
+   private GeoDataSyncBudget     budget;
+   private GeoDataSyncStateStore checkpointStore;
+   private String                fingerprint;
+   private String                resumeAfter;
+   private boolean               resuming;
+   private boolean               stopped;
+   private boolean               dryRun;
+
+   private final GeoDataSyncResult       result;
+   private final List<GeoDataSyncResult> partitionResults = new ArrayList<>();
+   private final Set<String>             seenPartitions   = new LinkedHashSet<>();
+   private final Set<String>             readPartitions   = new HashSet<>();
+
+   private final List<String> startedPartitions  = new ArrayList<>();
+   private final Set<String>  finishedPartitions = new HashSet<>();
+
+   private int checkpointedPartitions;
+
+   private final AtomicInteger plannedIds = new AtomicInteger();
+
+   private QRecord lookahead;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public GeoDataTableSync(GeoDataSyncTable table, String tableName, int pageSize)
+   {
+      this.table = table;
+      this.tableName = tableName;
+      this.pageSize = pageSize;
+      this.result = new GeoDataSyncResult(tableName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Run the sync for this table.
+    *******************************************************************************/
+   public GeoDataSyncResult run() throws QException
+   {
+      return runAll(List.of(this)).get(0);
+   }
+
+
+
+   /*******************************************************************************
+    ** Run several syncs of the same table (e.g., one per table name prefix)
+    ** from one read of its source: each partition is read and decoded once,
+    ** then synced into every target, on virtual threads - each target with at
+    ** most its concurrency partitions in flight.  Every target but the last
+    ** gets its own copy of the partition's rows, as syncing resolves and
+    ** stamps them in place.  Returns the targets' results, in order.
+    *******************************************************************************/
+   public static List<GeoDataSyncResult> runAll(List<GeoDataTableSync> syncs) throws QException
+   {
+      if(syncs.isEmpty())
+      {
+         return List.of();
+      }
+
+      GeoDataTableSync lead = syncs.get(0);
+      GeoDataSyncTable table = lead.table;
+      for(GeoDataTableSync sync : syncs)
+      {
+         if(sync.table != table)
+         {
+            throw new IllegalArgumentException("Cannot sync " + sync.tableName + " from the source of " + table);
+         }
+
+         LOG.info("Syncing table",
+            logPair("table", sync.tableName),
+            logPair("resource", table.getResourcePath()),
+            logPair("naturalKey", table.getNaturalKeyFields()),
+            logPair("partitionField", table.getPartitionField()),
+            logPair("pageSize", sync.pageSize),
+            logPair("concurrency", sync.concurrency),
+            logPair("dryRun", sync.dryRun));
+
+         sync.bulkLoad = sync.isTableEmpty();
+         if(sync.bulkLoad)
+         {
+            LOG.info("Table is empty - bulk loading", logPair("table", sync.tableName), logPair("bulkPageSize", sync.bulkPageSize));
+         }
+
+         sync.resumeAfter = sync.bulkLoad || sync.checkpointStore == null || table.getPartitionField() == null ? null : sync.checkpointStore.getCheckpoint(table, sync.fingerprint);
+         sync.resuming = sync.resumeAfter != null;
+         if(sync.resuming)
+         {
+            LOG.info("Resuming table sync after its checkpoint", logPair("table", sync.tableName), logPair("partition", sync.resumeAfter));
+         }
+      }
+
+      ////////////////////////////////////////////////////////////////////////
+      // read the union of the targets' countries, down to the lowest of    //
+      // their minimum populations - no limit, if any target has none       //
+      ////////////////////////////////////////////////////////////////////////
+      Set<String> readFilter = new HashSet<>();
+      Integer readMinPopulation = lead.minPopulation;
+      for(GeoDataTableSync sync : syncs)
+      {
+         if(sync.countryFilter == null)
+         {
+            readFilter = null;
+         }
+         else if(readFilter != null)
+         {
+            readFilter.addAll(sync.countryFilter);
+         }
+         readMinPopulation = sync.minPopulation == null || readMinPopulation == null ? null : Math.min(readMinPopulation, sync.minPopulation);
+      }
+
+      try(GeoDataRowSource reader = GeoDataRowSource.open(table, readFilter, readMinPopulation))
+      {
+         if(syncs.size() == 1 && (lead.concurrency <= 1 || table.getPartitionField() == null))
+         {
+            lead.syncPartitionsInSequence(reader);
+         }
+         else
+         {
+            syncPartitionsInParallel(syncs, reader);
+         }
+      }
+
+      List<GeoDataSyncResult> results = new ArrayList<>();
+      for(GeoDataTableSync sync : syncs)
+      {
+         ////////////////////////////////////////////////////////////////////
+         // after a bulk load nothing can be left over - nothing existed;  //
+         // after a stop, the unread partitions are not known to be gone   //
+         ////////////////////////////////////////////////////////////////////
+         if(!sync.bulkLoad && !sync.stopped)
+         {
+            if(table.getPartitionField() != null)
+            {
+               sync.deactivateUnseenPartitions();
+            }
+            else if(sync.countryFilter != null)
+            {
+               sync.deactivateOutsideCountryFilter();
+            }
+         }
+
+         GeoDataSyncResult result = sync.result;
+         LOG.info(sync.stopped ? "Table sync stopped - to be resumed by the next run" : "Table sync complete",
+            logPair("table", sync.tableName),
+            logPair("source", result.getSourceCount()),
+            logPair("partitions", result.getPartitions()),
+            logPair("inserted", result.getInserted()),
+            logPair("updated", result.getUpdated()),
+            logPair("deactivated", result.getDeactivated()),
+            logPair("unresolved", result.getUnresolved()));
+         results.add(result);
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Apply a data patch to this table, one touched partition at a time, on
+    ** the calling thread (patches are small).  Upserts that this target's
+    ** filters now exclude are deactivated along with the patch's deletes.
+    *******************************************************************************/
+   public GeoDataSyncResult runPatch(GeoDataPatch.DatasetPatch patch) throws QException
+   {
+      List<QRecord> upserts = patch.getUpserts();
+      List<QRecord> deletes = patch.getDeletes();
+      LOG.info("Applying data patch to table",
+         logPair("table", tableName),
+         logPair("upserts", upserts.size()),
+         logPair("deletes", deletes.size()));
+
+      Map<String, List<QRecord>> upsertsByPartition = new LinkedHashMap<>();
+      Map<String, List<QRecord>> deletesByPartition = new LinkedHashMap<>();
+      for(QRecord row : upserts)
+      {
+         Map<String, List<QRecord>> byPartition = isSelected(row) ? upsertsByPartition : deletesByPartition;
+         byPartition.computeIfAbsent(table.getPartitionValue(row), k -> new ArrayList<>()).add(row);
+      }
+      for(QRecord row : deletes)
+      {
+         deletesByPartition.computeIfAbsent(table.getPartitionValue(row), k -> new ArrayList<>()).add(row);
+      }
+
+      Set<String> partitions = new LinkedHashSet<>(upsertsByPartition.keySet());
+      partitions.addAll(deletesByPartition.keySet());
+      for(String partition : partitions)
+      {
+         List<QRecord> partitionUpserts = upsertsByPartition.getOrDefault(partition, new ArrayList<>());
+         List<QRecord> partitionDeletes = deletesByPartition.getOrDefault(partition, new ArrayList<>());
+         addPartitionResult(new PartitionSync(partitionUpserts, partitionDeletes).run());
+      }
+
+      LOG.info("Table patch complete",
+         logPair("table", tableName),
+         logPair("partitions", result.getPartitions()),
+         logPair("inserted", result.getInserted()),
+         logPair("updated", result.getUpdated()),
+         logPair("deactivated", result.getDeactivated()),
+         logPair("unresolved", result.getUnresolved()));
+      return result;
+   }
+
+
+
+   /*******************************************************************************
+    ** Sync each partition in turn, streamed through the extract (this thread),
+    ** transform and load stages.  Each worker runs with the caller's QContext.
+    *******************************************************************************/
+   private void syncPartitionsInSequence(GeoDataRowSource reader) throws QException
+   {
+      GeoDataRecordPipe<PartitionSync> transformPipe = new GeoDataRecordPipe<>(READ_AHEAD_PARTITIONS);
+      GeoDataRecordPipe<SyncTask>      loadPipe      = new GeoDataRecordPipe<>(LOAD_AHEAD_BATCHES);
+      List<GeoDataRecordPipe<?>>       pipes         = List.of(transformPipe, loadPipe);
+      CapturedContext                  context       = QContext.capture();
+
+      try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+      {
+         Future<?> transform = executor.submit(() -> runStage(context, pipes, () ->
+         {
+            PartitionSync partitionSync;
+            while((partitionSync = transformPipe.take()) != null)
+            {
+               String partition = partitionSync.partition;
+               addPartitionResult(partitionSync.run(loadPipe));
+               loadPipe.put(() -> partitionFinished(partition));
+            }
+            loadPipe.close();
+         }));
+
+         Future<?> load = executor.submit(() -> runStage(context, pipes, () ->
+         {
+            SyncTask batch;
+            while((batch = loadPipe.take()) != null)
+            {
+               batch.run();
+            }
+         }));
+
+         runStage(null, pipes, () ->
+         {
+            List<QRecord> partitionRows;
+            while(!isOutOfBudget(List.of(this), reader) && (partitionRows = readNextPartition(reader)) != null)
+            {
+               String partition = table.getPartitionValue(partitionRows.get(0));
+               seenPartitions.add(partition);
+               if(!isAlreadySynced(partition))
+               {
+                  partitionStarted(partition);
+                  transformPipe.put(new PartitionSync(partitionRows));
+               }
+            }
+            transformPipe.close();
+         });
+
+         awaitStage(transform);
+         awaitStage(load);
+      }
+
+      syncEmptySourceIfUnpartitioned();
+   }
+
+
+
+   /*******************************************************************************
+    ** Run one stage of a streamed sync - with the given QContext, if any (for
+    ** a worker thread).  If it fails in any way (an Error too), every pipe
+    ** fails, so no other stage waits on it.
+    *******************************************************************************/
+   private Void runStage(CapturedContext context, List<GeoDataRecordPipe<?>> pipes, SyncTask stage) throws QException
+   {
+      try
+      {
+         if(context != null)
+         {
+            QContext.init(context);
+         }
+         stage.run();
+         return null;
+      }
+      catch(Throwable t)
+      {
+         pipes.forEach(pipe -> pipe.fail(t));
+         throw t;
+      }
+      finally
+      {
+         if(context != null)
+         {
+            QContext.clear();
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Wait for a streamed sync's stage to finish, rethrowing its failure.
+    *******************************************************************************/
+   private void awaitStage(Future<?> stage) throws QException
+   {
+      try
+      {
+         stage.get();
+      }
+      catch(ExecutionException e)
+      {
+         if(e.getCause() instanceof QException qe)
+         {
+            throw qe;
+         }
+         throw new QException("Error syncing " + tableName, e.getCause());
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new QException("Interrupted while syncing " + tableName, e);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** An unpartitioned table with an empty source is still one partition (so
+    ** all of its existing rows get deactivated); a partitioned table is
+    ** covered by the unseen-partition sweep.
+    *******************************************************************************/
+   private void syncEmptySourceIfUnpartitioned() throws QException
+   {
+      if(partitionResults.isEmpty() && table.getPartitionField() == null)
+      {
+         addPartitionResult(new PartitionSync(new ArrayList<>()).run());
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Sync partitions into one or more targets on virtual threads, at most
+    ** each target's concurrency at a time per target.  The lead (first)
+    ** target reads the source.  Each worker runs with the caller's QContext.
+    ** After the first failure, or once the budget is exhausted, no further
+    ** partitions are started.
+    *******************************************************************************/
+   private static void syncPartitionsInParallel(List<GeoDataTableSync> syncs, GeoDataRowSource reader) throws QException
+   {
+      GeoDataTableSync                      lead    = syncs.get(0);
+      List<Semaphore>                       permits = new ArrayList<>();
+      List<List<Future<GeoDataSyncResult>>> futures = new ArrayList<>();
+      AtomicBoolean                         failed  = new AtomicBoolean(false);
+      CapturedContext                       context = QContext.capture();
+      for(GeoDataTableSync sync : syncs)
+      {
+         permits.add(new Semaphore(sync.concurrency));
+         futures.add(new ArrayList<>());
+      }
+
+      try(ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor())
+      {
+         while(true)
+         {
+            for(Semaphore targetPermits : permits)
+            {
+               targetPermits.acquire();
+            }
+
+            List<QRecord> partitionRows = failed.get() || isOutOfBudget(syncs, reader) ? null : lead.readNextPartition(reader);
+            if(partitionRows == null)
+            {
+               permits.forEach(Semaphore::release);
+               break;
+            }
+
+            String partition = lead.table.getPartitionValue(partitionRows.get(0));
+            for(int i = 0; i < syncs.size(); i++)
+            {
+               GeoDataTableSync sync = syncs.get(i);
+               Semaphore targetPermits = permits.get(i);
+
+               List<QRecord> selectedRows = sync.selectRows(partitionRows);
+               if(selectedRows.isEmpty() && lead.table.getPartitionField() != null)
+               {
+                  targetPermits.release();
+                  continue;
+               }
+               sync.seenPartitions.add(partition);
+               if(sync.isAlreadySynced(partition))
+               {
+                  targetPermits.release();
+                  continue;
+               }
+
+               ////////////////////////////////////////////////////////////////
+               // copies are taken before the last target (which keeps the  //
+               // read rows) can start changing them                        //
+               ////////////////////////////////////////////////////////////////
+               List<QRecord> rows = i == syncs.size() - 1 ? selectedRows : copyRows(selectedRows);
+               PartitionSync partitionSync = sync.new PartitionSync(rows);
+               sync.partitionStarted(partition);
+               futures.get(i).add(executor.submit(() ->
+               {
+                  try
+                  {
+                     QContext.init(context);
+                     GeoDataSyncResult partitionResult = partitionSync.run();
+                     sync.partitionFinished(partition);
+                     return partitionResult;
+                  }
+                  catch(Exception e)
+                  {
+                     failed.set(true);
+                     throw e;
+                  }
+                  finally
+                  {
+                     QContext.clear();
+                     targetPermits.release();
+                  }
+               }));
+            }
+         }
+      }
+      catch(InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+         throw new QException("Interrupted while syncing " + lead.tableName, e);
+      }
+
+      /////////////////////////////////////////////////////////////////////////
+      // The executor's close waited for every worker - collect in source   //
+      // order, so results (and the first reported error) are deterministic //
+      /////////////////////////////////////////////////////////////////////////
+      for(int i = 0; i < syncs.size(); i++)
+      {
+         GeoDataTableSync sync = syncs.get(i);
+         for(Future<GeoDataSyncResult> future : futures.get(i))
+         {
+            try
+            {
+               sync.addPartitionResult(future.get());
+            }
+            catch(ExecutionException e)
+            {
+               if(e.getCause() instanceof QException qe)
+               {
+                  throw qe;
+               }
+               throw new QException("Error syncing a partition of " + sync.tableName, e.getCause());
+            }
+            catch(InterruptedException e)
+            {
+               Thread.currentThread().interrupt();
+               throw new QException("Interrupted while syncing " + sync.tableName, e);
+            }
+         }
+         sync.syncEmptySourceIfUnpartitioned();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether the budget is exhausted with source partitions left to
+    ** read - if so, every target is stopped (left incomplete).
+    *******************************************************************************/
+   private static boolean isOutOfBudget(List<GeoDataTableSync> syncs, GeoDataRowSource reader)
+   {
+      GeoDataTableSync lead = syncs.get(0);
+      if(lead.budget == null || !lead.budget.isExhausted() || (lead.lookahead == null && !reader.hasNext()))
+      {
+         return false;
+      }
+
+      LOG.info("Sync budget exhausted - starting no further partitions", logPair("table", lead.table.getTableName()));
+      for(GeoDataTableSync sync : syncs)
+      {
+         sync.stopped = true;
+      }
+      return true;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether a partition was synced by the run being resumed - one at
+    ** or before the checkpoint.  Called for each partition, in source order.
+    *******************************************************************************/
+   private boolean isAlreadySynced(String partition)
+   {
+      if(!resuming)
+      {
+         return false;
+      }
+
+      if(Objects.equals(partition, resumeAfter))
+      {
+         resuming = false;
+      }
+      return true;
+   }
+
+
+
+   /*******************************************************************************
+    ** Note that a partition's sync has started (in source order), for the
+    ** checkpoint.
+    *******************************************************************************/
+   private synchronized void partitionStarted(String partition)
+   {
+      if(checkpointStore != null && partition != null)
+      {
+         startedPartitions.add(partition);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Note that a partition's sync has finished, and move the checkpoint to the
+    ** last partition before which every started partition has finished.
+    *******************************************************************************/
+   private synchronized void partitionFinished(String partition) throws QException
+   {
+      if(checkpointStore == null || partition == null)
+      {
+         return;
+      }
+
+      finishedPartitions.add(partition);
+      String checkpoint = null;
+      while(checkpointedPartitions < startedPartitions.size() && finishedPartitions.contains(startedPartitions.get(checkpointedPartitions)))
+      {
+         checkpoint = startedPartitions.get(checkpointedPartitions++);
+      }
+
+      if(checkpoint != null)
+      {
+         checkpointStore.saveCheckpoint(table, fingerprint, checkpoint);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the rows of a partition that pass this target's country filter and
+    ** minimum population - all of them if it has neither.
+    *******************************************************************************/
+   private List<QRecord> selectRows(List<QRecord> rows)
+   {
+      if(countryFilter == null && minPopulation == null)
+      {
+         return rows;
+      }
+
+      List<QRecord> selected = new ArrayList<>(rows.size());
+      for(QRecord row : rows)
+      {
+         if(isSelected(row))
+         {
+            selected.add(row);
+         }
+      }
+      return selected;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether a source row passes this target's country filter and
+    ** minimum population.
+    *******************************************************************************/
+   private boolean isSelected(QRecord row)
+   {
+      boolean inCountries = countryFilter == null || countryFilter.contains(row.getValueString(table.getCountryField()));
+      Integer population = row.getValueInteger(GeoDataSyncTable.FIELD_POPULATION);
+      return inCountries && (minPopulation == null || (population == null ? 0 : population) >= minPopulation);
+   }
+
+
+
+   /*******************************************************************************
+    ** Copy a partition's source rows, for another target to sync.
+    *******************************************************************************/
+   private static List<QRecord> copyRows(List<QRecord> rows)
+   {
+      List<QRecord> copies = new ArrayList<>(rows.size());
+      for(QRecord row : rows)
+      {
+         copies.add(new QRecord(row));
+      }
+      return copies;
+   }
+
+
+
+   /*******************************************************************************
+    ** Read the next partition's source rows - the run of consecutive rows that
+    ** share a partition value - or null when the source is exhausted.
+    *******************************************************************************/
+   private List<QRecord> readNextPartition(GeoDataRowSource reader) throws QException
+   {
+      if(lookahead == null && !reader.hasNext())
+      {
+         return null;
+      }
+
+      List<QRecord> rows = new ArrayList<>();
+      QRecord first = lookahead != null ? lookahead : reader.next();
+      lookahead = null;
+      rows.add(first);
+
+      String partition = table.getPartitionValue(first);
+      if(table.getPartitionField() != null && !readPartitions.add(partition))
+      {
+         throw new QException("Source data in " + table.getResourcePath() + " is not grouped by "
+            + table.getPartitionField() + " (partition " + partition + " appears more than once)");
+      }
+
+      while(reader.hasNext())
+      {
+         QRecord next = reader.next();
+         if(!Objects.equals(partition, table.getPartitionValue(next)))
+         {
+            lookahead = next;
+            break;
+         }
+         rows.add(next);
+      }
+
+      return rows;
+   }
+
+
+
+   /*******************************************************************************
+    ** Record a finished partition's counts.
+    *******************************************************************************/
+   private void addPartitionResult(GeoDataSyncResult partitionResult)
+   {
+      partitionResults.add(partitionResult);
+      result.add(partitionResult);
+   }
+
+
+
+   /*******************************************************************************
+    ** Deactivate active rows in partitions that have no source rows at all -
+    ** including rows with no partition id, which no partition will ever
+    ** match - paging through them by id.
+    *******************************************************************************/
+   private void deactivateUnseenPartitions() throws QException
+   {
+      List<Integer> seenPartitionIds = new ArrayList<>();
+      for(String partition : seenPartitions)
+      {
+         seenPartitionIds.addAll(keyResolver.getPartitionIds(table, partition));
+      }
+
+      Serializable lastId = null;
+      while(true)
+      {
+         QQueryFilter filter = new QQueryFilter()
+            .withCriteria(new QFilterCriteria("isActive", QCriteriaOperator.EQUALS, true))
+            .withOrderBy(new QFilterOrderBy("id"))
+            .withLimit(pageSize);
+         if(!seenPartitionIds.isEmpty())
+         {
+            ///////////////////////////////////////////////////////////////////
+            // NOT_IN does not match nulls, so blank partition ids are added //
+            ///////////////////////////////////////////////////////////////////
+            filter.withSubFilter(new QQueryFilter()
+               .withBooleanOperator(QQueryFilter.BooleanOperator.OR)
+               .withCriteria(new QFilterCriteria(table.getPartitionIdField(), QCriteriaOperator.NOT_IN, seenPartitionIds))
+               .withCriteria(new QFilterCriteria(table.getPartitionIdField(), QCriteriaOperator.IS_BLANK)));
+         }
+         if(lastId != null)
+         {
+            filter.withCriteria(new QFilterCriteria("id", QCriteriaOperator.GREATER_THAN, lastId));
+         }
+
+         List<QRecord> orphans = query(filter);
+         if(orphans.isEmpty())
+         {
+            return;
+         }
+
+         List<Serializable> orphanIds = new ArrayList<>(orphans.size());
+         for(QRecord orphan : orphans)
+         {
+            orphanIds.add(orphan.getValue("id"));
+         }
+
+         lastId = orphanIds.get(orphanIds.size() - 1);
+         addSampleIds(result, orphanIds);
+         result.addDeactivated(deactivate(orphanIds));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Deactivate active rows of countries outside the country filter (for the
+    ** unpartitioned country table), paging through them by id.
+    *******************************************************************************/
+   private void deactivateOutsideCountryFilter() throws QException
+   {
+      Serializable lastId = null;
+      while(true)
+      {
+         QQueryFilter filter = new QQueryFilter()
+            .withCriteria(new QFilterCriteria("isActive", QCriteriaOperator.EQUALS, true))
+            .withOrderBy(new QFilterOrderBy("id"))
+            .withLimit(pageSize);
+         if(!countryFilter.isEmpty())
+         {
+            filter.withCriteria(new QFilterCriteria(table.getCountryField(), QCriteriaOperator.NOT_IN, new ArrayList<>(countryFilter)));
+         }
+         if(lastId != null)
+         {
+            filter.withCriteria(new QFilterCriteria("id", QCriteriaOperator.GREATER_THAN, lastId));
+         }
+
+         List<QRecord> outside = query(filter);
+         if(outside.isEmpty())
+         {
+            return;
+         }
+
+         List<Serializable> outsideIds = new ArrayList<>(outside.size());
+         for(QRecord row : outside)
+         {
+            outsideIds.add(row.getValue("id"));
+         }
+
+         lastId = outsideIds.get(outsideIds.size() - 1);
+         addSampleIds(result, outsideIds);
+         result.addDeactivated(deactivate(outsideIds));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Mark existing rows inactive by id, in batches of at most pageSize.
+    ** Returns the number of rows deactivated.
+    *******************************************************************************/
+   private int deactivate(List<Serializable> ids) throws QException
+   {
+      for(int i = 0; i < ids.size(); i += pageSize)
+      {
+         List<QRecord> batch = new ArrayList<>();
+         for(Serializable id : ids.subList(i, Math.min(i + pageSize, ids.size())))
+         {
+            batch.add(new QRecord()
+               .withValue("id", id)
+               .withValue("isActive", false));
+         }
+         updateRecords(batch);
+      }
+      return ids.size();
+   }
+
+
+
+   /*******************************************************************************
+    ** Check whether this table has no rows at all - active or not.
+    *******************************************************************************/
+   private boolean isTableEmpty() throws QException
+   {
+      CountInput countInput = new CountInput();
+      countInput.setTableName(tableName);
+      countInput.setFilter(new QQueryFilter());
+      Integer count = new CountAction().execute(countInput).getCount();
+      return count != null && count == 0;
+   }
+
+
+
+   /*******************************************************************************
+    ** Run a query against this table.  Only the fields the diff needs are
+    ** selected: id, active flag, stored row hash and the natural key.
+    *******************************************************************************/
+   private List<QRecord> query(QQueryFilter filter) throws QException
+   {
+      Set<String> fieldNames = new HashSet<>(table.getNaturalKeyFields());
+      fieldNames.add("id");
+      fieldNames.add("isActive");
+      fieldNames.add(GeoDataRowHasher.FIELD_ROW_HASH);
+
+      QueryInput queryInput = new QueryInput();
+      queryInput.setTableName(tableName);
+      queryInput.setFilter(filter);
+      queryInput.setFieldNamesToInclude(fieldNames);
+
+      QueryOutput queryOutput = new QueryAction().execute(queryInput);
+      return queryOutput.getRecords();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's sample key: its natural key within its partition (e.g., a
+    ** state's code, a city's name).
+    *******************************************************************************/
+   private String getSampleKey(QRecord row)
+   {
+      StringJoiner key = new StringJoiner("/");
+      for(String field : table.getNaturalKeyFields())
+      {
+         if(!field.equals(table.getPartitionIdField()))
+         {
+            key.add(row.getValueString(field));
+         }
+      }
+      return key.toString();
+   }
+
+
+
+   /*******************************************************************************
+    ** Add the first of the ids being deactivated to a result's samples.
+    *******************************************************************************/
+   private void addSampleIds(GeoDataSyncResult target, List<Serializable> ids)
+   {
+      for(int i = 0; i < Math.min(ids.size(), GeoDataSyncResult.SAMPLE_SIZE); i++)
+      {
+         target.addSampleDeactivated(String.valueOf(ids.get(i)));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Insert new records, returning them with their new ids.  A bulk load
+    ** skips DML audits, automations and unique key checks; a dry run inserts
+    ** nothing, and returns the records with placeholder ids.
+    *******************************************************************************/
+   private List<QRecord> insertRecords(List<QRecord> records) throws QException
+   {
+      if(dryRun)
+      {
+         for(QRecord record : records)
+         {
+            record.setValue("id", plannedIds.decrementAndGet());
+         }
+         return records;
+      }
+
+      InsertInput insertInput = new InsertInput();
+      insertInput.setTableName(tableName);
+      insertInput.setRecords(records);
+      if(bulkLoad)
+      {
+         insertInput.withOmitDmlAudit(true).withOmitTriggeringAutomations(true).withSkipUniqueKeyCheck(true);
+      }
+      return new InsertAction().execute(insertInput).getRecords();
+   }
+
+
+
+   /*******************************************************************************
+    ** Update existing records (but not in a dry run).
+    *******************************************************************************/
+   private void updateRecords(List<QRecord> records) throws QException
+   {
+      if(dryRun)
+      {
+         return;
+      }
+
+      UpdateInput updateInput = new UpdateInput();
+      updateInput.setTableName(tableName);
+      updateInput.setRecords(records);
+      new UpdateAction().execute(updateInput);
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Fluent setters and getters                                               //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public GeoDataTableSync withConcurrency(int concurrency)
+   {
+      this.concurrency = concurrency;
+      return this;
+   }
+
+
+   public GeoDataTableSync withKeyResolver(GeoDataKeyResolver keyResolver)
+   {
+      this.keyResolver = keyResolver;
+      return this;
+   }
+
+
+   public GeoDataTableSync withCountryFilter(Set<String> countryFilter)
+   {
+      this.countryFilter = countryFilter;
+      return this;
+   }
+
+
+   public GeoDataTableSync withMinPopulation(Integer minPopulation)
+   {
+      this.minPopulation = table == GeoDataSyncTable.CITY ? minPopulation : null;
+      return this;
+   }
+
+
+   public GeoDataTableSync withBulkPageSize(int bulkPageSize)
+   {
+      this.bulkPageSize = bulkPageSize;
+      return this;
+   }
+
+
+   public GeoDataTableSync withBudget(GeoDataSyncBudget budget)
+   {
+      this.budget = budget;
+      return this;
+   }
+
+
+   public GeoDataTableSync withDryRun(boolean dryRun)
+   {
+      this.dryRun = dryRun;
+      return this;
+   }
+
+
+   public GeoDataTableSync withCheckpoints(GeoDataSyncStateStore checkpointStore, String fingerprint)
+   {
+      this.checkpointStore = checkpointStore;
+      this.fingerprint = fingerprint;
+      return this;
+   }
+
+
+   public boolean isBulkLoad()
+   {
+      return bulkLoad;
+   }
+
+
+   public boolean isResumed()
+   {
+      return resumeAfter != null;
+   }
+
+
+   public boolean isComplete()
+   {
+      return !stopped;
+   }
+
+
+   public List<GeoDataSyncResult> getPartitionResults()
+   {
+      return partitionResults;
+   }
+
+
+
+   /*******************************************************************************
+    ** A unit of work in a streamed sync: a stage, or a batch of writes handed
+    ** to the load stage.
+    *******************************************************************************/
+   @FunctionalInterface
+   private interface SyncTask
+   {
+      void run() throws QException;
+   }
+
+
+
+   /*******************************************************************************
+    ** The sync of a single partition - existing-row lookup, diff and writes
+    ** for just that partition's source rows.  Shares no mutable state with
+    ** other partitions, so partitions can be synced concurrently.
+    **
+    ** For a patch, the source rows are just the partition's upserts, and
+    ** only the given deleted rows are deactivated, not every unmatched one.
+    *******************************************************************************/
+   private class PartitionSync
+   {
+      private final String            partition;
+      private final List<QRecord>     sourceRows;
+      private final GeoDataSyncResult partitionResult;
+      private final List<QRecord>     toInsert = new ArrayList<>();
+      private final List<QRecord>     toUpdate = new ArrayList<>();
+      private final List<QRecord>     patchDeletes;
+
+      private GeoDataExistingIndex        existingIndex;
+      private GeoDataRecordPipe<SyncTask> loadPipe;
+
+
+
+      /*******************************************************************************
+       ** Constructor - for a full sync of the partition.
+       *******************************************************************************/
+      PartitionSync(List<QRecord> sourceRows)
+      {
+         this(sourceRows, null);
+      }
+
+
+
+      /*******************************************************************************
+       ** Constructor - for a patch of the partition, if patchDeletes is not
+       ** null.
+       *******************************************************************************/
+      PartitionSync(List<QRecord> sourceRows, List<QRecord> patchDeletes)
+      {
+         this.sourceRows = sourceRows;
+         this.patchDeletes = patchDeletes;
+
+         QRecord first = !sourceRows.isEmpty() ? sourceRows.get(0) : patchDeletes != null && !patchDeletes.isEmpty() ? patchDeletes.get(0) : null;
+         this.partition = first == null ? null : table.getPartitionValue(first);
+         this.partitionResult = new GeoDataSyncResult(tableName).withPartition(partition);
+      }
+
+
+
+      /*******************************************************************************
+       ** Sync the partition, handing its writes to the load stage's pipe
+       ** rather than writing them - returning its counts.
+       *******************************************************************************/
+      GeoDataSyncResult run(GeoDataRecordPipe<SyncTask> loadPipe) throws QException
+      {
+         this.loadPipe = loadPipe;
+         return run();
+      }
+
+
+
+      /*******************************************************************************
+       ** Sync the partition, returning its counts.
+       *******************************************************************************/
+      GeoDataSyncResult run() throws QException
+      {
+         ////////////////////////////////////////////////////////////////////
+         // a bulk load started from an empty table - nothing to query     //
+         ////////////////////////////////////////////////////////////////////
+         List<QRecord> existingRows = bulkLoad ? new ArrayList<>() : queryExistingRows();
+         existingIndex = GeoDataExistingIndex.of(table.getNaturalKeyFields(), existingRows);
+
+         for(QRecord source : sourceRows)
+         {
+            categorize(source);
+         }
+         flushInserts();
+         flushUpdates();
+
+         List<Serializable> deactivateIds = patchDeletes == null ? existingIndex.getUnmatchedActiveIds() : getPatchDeletedActiveIds();
+         if(!deactivateIds.isEmpty())
+         {
+            load(() -> deactivate(deactivateIds));
+            addSampleIds(partitionResult, deactivateIds);
+            partitionResult.addDeactivated(deactivateIds.size());
+         }
+         partitionResult.addSourceCount(sourceRows.size());
+         partitionResult.addPartition();
+
+         if(partitionResult.getUnresolved() > 0)
+         {
+            LOG.warn("Skipped source rows whose parent is not known",
+               logPair("table", tableName),
+               logPair("partition", partition),
+               logPair("unresolved", partitionResult.getUnresolved()));
+         }
+
+         LOG.debug("Partition sync complete",
+            logPair("table", tableName),
+            logPair("partition", partition),
+            logPair("source", partitionResult.getSourceCount()),
+            logPair("inserted", partitionResult.getInserted()),
+            logPair("updated", partitionResult.getUpdated()),
+            logPair("deactivated", partitionResult.getDeactivated()));
+
+         return partitionResult;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the ids of the active existing rows that the patch deletes (rows
+       ** with an unknown parent, or not in the table, have nothing to
+       ** deactivate).
+       *******************************************************************************/
+      private List<Serializable> getPatchDeletedActiveIds()
+      {
+         List<Serializable> ids = new ArrayList<>();
+         for(QRecord deleted : patchDeletes)
+         {
+            if(keyResolver.resolve(table, deleted))
+            {
+               int slot = existingIndex.match(deleted);
+               if(slot != GeoDataExistingIndex.NOT_FOUND && existingIndex.isActive(slot))
+               {
+                  ids.add(existingIndex.getId(slot));
+               }
+            }
+         }
+         return ids;
+      }
+
+
+
+      /*******************************************************************************
+       ** Query the partition's existing rows (active or not).
+       *******************************************************************************/
+      private List<QRecord> queryExistingRows() throws QException
+      {
+         List<QRecord> existingRows = new ArrayList<>();
+         if(table.getPartitionIdField() == null && countryFilter != null)
+         {
+            ////////////////////////////////////////////////////////////////////
+            // just the filter's countries - the rest are deactivated by the //
+            // sweep after the table                                         //
+            ////////////////////////////////////////////////////////////////////
+            if(!countryFilter.isEmpty())
+            {
+               existingRows = query(new QQueryFilter(new QFilterCriteria(table.getCountryField(), QCriteriaOperator.IN, new ArrayList<>(countryFilter))));
+            }
+         }
+         else if(table.getPartitionIdField() == null)
+         {
+            existingRows = query(new QQueryFilter());
+         }
+         else
+         {
+            ////////////////////////////////////////////////////////////////////
+            // a country with no known id (or no known states) has no        //
+            // existing rows to query                                        //
+            ////////////////////////////////////////////////////////////////////
+            List<Integer> partitionIds = keyResolver.getPartitionIds(table, partition);
+            if(!partitionIds.isEmpty())
+            {
+               existingRows = query(new QQueryFilter(new QFilterCriteria(table.getPartitionIdField(), QCriteriaOperator.IN, partitionIds)));
+            }
+         }
+         return existingRows;
+      }
+
+
+
+      /*******************************************************************************
+       ** Categorize one source record against the partition's existing rows:
+       ** insert new, update changed (by row hash) or previously deactivated.
+       ** Matched rows' ids are registered with the key resolver here; inserted
+       ** rows' ids once the insert is written.
+       *******************************************************************************/
+      private void categorize(QRecord source) throws QException
+      {
+         if(!keyResolver.resolve(table, source))
+         {
+            partitionResult.addUnresolved(1);
+            return;
+         }
+
+         int slot = existingIndex.match(source);
+
+         long rowHash = GeoDataRowHasher.hash(source);
+         source.setValue(GeoDataRowHasher.FIELD_ROW_HASH, rowHash);
+
+         if(slot == GeoDataExistingIndex.NOT_FOUND)
+         {
+            source.setValue("isActive", true);
+            toInsert.add(source);
+            if(toInsert.size() >= (bulkLoad ? bulkPageSize : pageSize))
+            {
+               flushInserts();
+            }
+            return;
+         }
+
+         source.setValue("id", existingIndex.getId(slot));
+         keyResolver.register(table, partition, source);
+
+         if(existingIndex.hasChanged(slot, rowHash) || !existingIndex.isActive(slot))
+         {
+            source.setValue("isActive", true);
+            toUpdate.add(source);
+            if(toUpdate.size() >= pageSize)
+            {
+               flushUpdates();
+            }
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Write pending inserts.
+       *******************************************************************************/
+      private void flushInserts() throws QException
+      {
+         if(!toInsert.isEmpty())
+         {
+            List<QRecord> batch = new ArrayList<>(toInsert);
+            addSampleKeys(batch, partitionResult::addSampleInserted);
+            load(() ->
+            {
+               for(QRecord inserted : insertRecords(batch))
+               {
+                  keyResolver.register(table, partition, inserted);
+               }
+            });
+            partitionResult.addInserted(batch.size());
+            toInsert.clear();
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Write pending updates.
+       *******************************************************************************/
+      private void flushUpdates() throws QException
+      {
+         if(!toUpdate.isEmpty())
+         {
+            List<QRecord> batch = new ArrayList<>(toUpdate);
+            addSampleKeys(batch, partitionResult::addSampleUpdated);
+            load(() -> updateRecords(batch));
+            partitionResult.addUpdated(batch.size());
+            toUpdate.clear();
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Add the sample keys of a batch's first rows to the partition's result.
+       *******************************************************************************/
+      private void addSampleKeys(List<QRecord> batch, Consumer<String> addSample)
+      {
+         for(int i = 0; i < Math.min(batch.size(), GeoDataSyncResult.SAMPLE_SIZE); i++)
+         {
+            addSample.accept(getSampleKey(batch.get(i)));
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Write a batch - now, or in the load stage of a streamed sync.
+       *******************************************************************************/
+      private void load(SyncTask batch) throws QException
+      {
+         if(loadPipe == null)
+         {
+            batch.run();
+         }
+         else
+         {
+            loadPipe.put(batch);
+         }
+      }
+   }
+}
@@ -0,0 +1,172 @@
+/*******************************************************************************
+ ** Open-addressing hash map from primitive long keys to primitive int
+ ** values.
+ **
+ ** Keys and values live in flat arrays (linear probing, power-of-two
+ ** capacity, at most half full), so puts and gets do not box or allocate
+ ** per entry - only when the table grows.  There is no remove; the sync's
+ ** existing-row index marks matched rows instead.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+public class LongIntHashMap
+{
+   private static final int MIN_CAPACITY = 16;
+
+   private long[]    keys;
+   private int[]     values;
+   private boolean[] used;
+   private int       mask;
+   private int       size;
+
+
+
+   /*******************************************************************************
+    ** Constructor - sized to hold expectedSize entries without growing.
+    *******************************************************************************/
+   public LongIntHashMap(int expectedSize)
+   {
+      allocate(capacityFor(expectedSize));
+   }
+
+
+
+   /*******************************************************************************
+    ** Map a key to a value, replacing any previous value.
+    *******************************************************************************/
+   public void put(long key, int value)
+   {
+      int slot = findSlot(key);
+      if(used[slot])
+      {
+         values[slot] = value;
+         return;
+      }
+
+      used[slot] = true;
+      keys[slot] = key;
+      values[slot] = value;
+      size++;
+
+      if(size * 2 > keys.length)
+      {
+         grow();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the value for a key, or missingValue if the key is not mapped.
+    *******************************************************************************/
+   public int get(long key, int missingValue)
+   {
+      int slot = findSlot(key);
+      return used[slot] ? values[slot] : missingValue;
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a key is mapped.
+    *******************************************************************************/
+   public boolean containsKey(long key)
+   {
+      return used[findSlot(key)];
+   }
+
+
+
+   /*******************************************************************************
+    ** Number of mapped keys.
+    *******************************************************************************/
+   public int size()
+   {
+      return size;
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the slot holding a key, or the empty slot where it would go.
+    *******************************************************************************/
+   private int findSlot(long key)
+   {
+      int slot = mix(key) & mask;
+      while(used[slot] && keys[slot] != key)
+      {
+         slot = (slot + 1) & mask;
+      }
+      return slot;
+   }
+
+
+
+   /*******************************************************************************
+    ** Double the capacity, re-inserting every entry.
+    *******************************************************************************/
+   private void grow()
+   {
+      long[]    oldKeys   = keys;
+      int[]     oldValues = values;
+      boolean[] oldUsed   = used;
+
+      allocate(oldKeys.length * 2);
+      for(int i = 0; i < oldKeys.length; i++)
+      {
+         if(oldUsed[i])
+         {
+            int slot = findSlot(oldKeys[i]);
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Allocate empty arrays of the given (power-of-two) capacity.
+    *******************************************************************************/
+   private void allocate(int capacity)
+   {
+      keys = new long[capacity];
+      values = new int[capacity];
+      used = new boolean[capacity];
+      mask = capacity - 1;
+   }
+
+
+
+   /*******************************************************************************
+    ** Smallest power-of-two capacity that keeps expectedSize entries at most
+    ** half full.
+    *******************************************************************************/
+   private static int capacityFor(int expectedSize)
+   {
+      int capacity = MIN_CAPACITY;
+      while(capacity < expectedSize * 2L)
+      {
+         capacity <<= 1;
+      }
+      return capacity;
+   }
+
+
+
+   /*******************************************************************************
+    ** Spread a key's bits (the murmur3 64-bit finalizer), so packed keys that
+    ** differ only in their high bits do not all probe from the same slot.
+    *******************************************************************************/
+   private static int mix(long key)
+   {
+      key ^= key >>> 33;
+      key *= 0xff51afd7ed558ccdL;
+      key ^= key >>> 33;
+      key *= 0xc4ceb9fe1a85ec53L;
+      key ^= key >>> 33;
+      return (int) key;
+   }
+}
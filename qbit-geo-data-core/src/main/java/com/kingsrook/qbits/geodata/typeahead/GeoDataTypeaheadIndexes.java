@@ -0,0 +1,205 @@
+/*******************************************************************************
+ ** Typeahead indexes over a prefix's synced state/province and city tables,
+ ** for most-populous-first name searches (e.g., as a user types into a
+ ** city or state field) without a LIKE query per keystroke.
+ **
+ ** One instance is held per table name prefix, built on first use from the
+ ** tables' active rows, and indexed by row id: cities by name, ranked by
+ ** population, searchable within a country or state/province; states by
+ ** name, ranked by the total population of their cities, searchable within
+ ** a country.  See GeoTypeaheadIndex for how searches work, and for their
+ ** per-index LRU cache of recent results.
+ **
+ ** The geo data sync step calls refreshIfLoaded() after it writes the state
+ ** or city table, so indexes that are in use are rebuilt from the new rows
+ ** (which also empties their caches), and ones that are not stay unbuilt.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.typeahead;
+
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.logging.QLogger;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.GeoDataActiveRows;
+import com.kingsrook.qbits.geodata.sync.GeoDataSyncTable;
+import static com.kingsrook.qqq.backend.core.logging.LogUtils.logPair;
+
+
+public class GeoDataTypeaheadIndexes
+{
+   private static final QLogger LOG = QLogger.getLogger(GeoDataTypeaheadIndexes.class);
+
+   private static final Map<String, GeoDataTypeaheadIndexes> byPrefix = new ConcurrentHashMap<>();
+
+   private final GeoTypeaheadIndex<Integer> stateProvinces;
+   private final GeoTypeaheadIndex<Integer> cities;
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes state rows (id, name, countryId) and city rows
+    ** (id, name, population, stateProvinceId).
+    *******************************************************************************/
+   GeoDataTypeaheadIndexes(List<QRecord> stateRows, List<QRecord> cityRows)
+   {
+      Map<Integer, QRecord> statesById = byId(stateRows);
+      Map<Integer, QRecord> citiesById = byId(cityRows);
+
+      Map<Integer, Long> statePopulations = new HashMap<>();
+      for(QRecord city : citiesById.values())
+      {
+         Integer stateProvinceId = city.getValueInteger("stateProvinceId");
+         Integer population = city.getValueInteger("population");
+         if(stateProvinceId != null && population != null)
+         {
+            statePopulations.merge(stateProvinceId, population.longValue(), Long::sum);
+         }
+      }
+
+      stateProvinces = new GeoTypeaheadIndex<>(statesById.keySet(),
+         id -> statesById.get(id).getValueString("name"),
+         id -> (int) Math.min(statePopulations.getOrDefault(id, 0L), Integer.MAX_VALUE),
+         id -> orNone(statesById.get(id).getValueInteger("countryId")),
+         id -> GeoTypeaheadIndex.NONE);
+
+      cities = new GeoTypeaheadIndex<>(citiesById.keySet(),
+         id -> citiesById.get(id).getValueString("name"),
+         id -> orNone(citiesById.get(id).getValueInteger("population")),
+         id -> getCountryId(statesById, citiesById.get(id).getValueInteger("stateProvinceId")),
+         id -> orNone(citiesById.get(id).getValueInteger("stateProvinceId")));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the indexes of a table name prefix, building them on first use.
+    *******************************************************************************/
+   public static GeoDataTypeaheadIndexes get(String tableNamePrefix) throws QException
+   {
+      GeoDataTypeaheadIndexes indexes = byPrefix.get(tableNamePrefix);
+      return indexes != null ? indexes : rebuild(tableNamePrefix);
+   }
+
+
+
+   /*******************************************************************************
+    ** (Re)build the indexes of a table name prefix from its active rows.
+    ** Searches against the old indexes keep working until the new ones
+    ** replace them.
+    *******************************************************************************/
+   public static GeoDataTypeaheadIndexes rebuild(String tableNamePrefix) throws QException
+   {
+      long start = System.currentTimeMillis();
+      List<QRecord> stateRows = GeoDataActiveRows.read(GeoDataSyncTable.STATE_PROVINCE.getTableName(tableNamePrefix), Set.of("name", "countryId"));
+      List<QRecord> cityRows = GeoDataActiveRows.read(GeoDataSyncTable.CITY.getTableName(tableNamePrefix), Set.of("name", "population", "stateProvinceId"));
+
+      GeoDataTypeaheadIndexes indexes = new GeoDataTypeaheadIndexes(stateRows, cityRows);
+      byPrefix.put(tableNamePrefix, indexes);
+
+      LOG.info("Built typeahead indexes", logPair("prefix", tableNamePrefix), logPair("states", indexes.stateProvinces.size()), logPair("cities", indexes.cities.size()),
+         logPair("millis", System.currentTimeMillis() - start));
+      return indexes;
+   }
+
+
+
+   /*******************************************************************************
+    ** Rebuild the indexes of a table name prefix if they have been built -
+    ** e.g., after a sync has changed the tables' rows.
+    *******************************************************************************/
+   public static void refreshIfLoaded(String tableNamePrefix) throws QException
+   {
+      if(byPrefix.containsKey(tableNamePrefix))
+      {
+         rebuild(tableNamePrefix);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Drop the indexes of a table name prefix (if built), so the next get()
+    ** rebuilds them.
+    *******************************************************************************/
+   public static void clear(String tableNamePrefix)
+   {
+      byPrefix.remove(tableNamePrefix);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the ids of the (up to) limit most populous cities whose name starts
+    ** with text (ignoring case and accents) - within a state/province if
+    ** stateProvinceId is given, else within a country if countryId is given.
+    *******************************************************************************/
+   public List<Integer> searchCities(String text, Integer countryId, Integer stateProvinceId, int limit)
+   {
+      if(stateProvinceId != null)
+      {
+         return cities.searchState(stateProvinceId, text, limit);
+      }
+      if(countryId != null)
+      {
+         return cities.searchCountry(countryId, text, limit);
+      }
+      return cities.search(text, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the ids of the (up to) limit most populous states/provinces whose
+    ** name starts with text (ignoring case and accents) - within a country if
+    ** countryId is given.
+    *******************************************************************************/
+   public List<Integer> searchStateProvinces(String text, Integer countryId, int limit)
+   {
+      return countryId == null ? stateProvinces.search(text, limit) : stateProvinces.searchCountry(countryId, text, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Map rows by id, leaving out any without one.
+    *******************************************************************************/
+   private static Map<Integer, QRecord> byId(List<QRecord> rows)
+   {
+      Map<Integer, QRecord> rowsById = new HashMap<>();
+      for(QRecord row : rows)
+      {
+         Integer id = row.getValueInteger("id");
+         if(id != null)
+         {
+            rowsById.put(id, row);
+         }
+      }
+      return rowsById;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the country id of a state, or NONE.
+    *******************************************************************************/
+   private static int getCountryId(Map<Integer, QRecord> statesById, Integer stateProvinceId)
+   {
+      QRecord state = stateProvinceId == null ? null : statesById.get(stateProvinceId);
+      return state == null ? GeoTypeaheadIndex.NONE : orNone(state.getValueInteger("countryId"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Unbox an int, with null as NONE.
+    *******************************************************************************/
+   private static int orNone(Integer value)
+   {
+      return value == null ? GeoTypeaheadIndex.NONE : value;
+   }
+}
@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.List;
 import com.kingsrook.qqq.backend.core.model.metadata.QBackendMetaData;
 import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.qbits.QBitMetaData;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -179,4 +180,77 @@ class GeoDataQBitConfigTest
 
       assertThat(config.applyPrefix("country")).isEqualTo("country");
    }
+
+
+
+   /*******************************************************************************
+    ** Test that validation fails when the country filter holds a value that
+    ** is not an alpha-2 code.
+    *******************************************************************************/
+   @Test
+   void testValidate_invalidCountryFilter_addsError()
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withBackendName("rdbms")
+         .withCountryFilter(List.of("US", "USA"));
+      List<String> errors = new ArrayList<>();
+
+      config.validate(new QInstance(), errors);
+
+      assertThat(errors).contains("countryFilter must hold alpha-2 country codes: USA");
+      assertThat(errors).noneMatch(error -> error.contains(": US") && !error.contains("USA"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that validation fails when the minimum city population is negative.
+    *******************************************************************************/
+   @Test
+   void testValidate_negativeMinCityPopulation_addsError()
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withBackendName("rdbms")
+         .withMinCityPopulation(-1);
+      List<String> errors = new ArrayList<>();
+
+      config.validate(new QInstance(), errors);
+
+      assertThat(errors).contains("minCityPopulation must not be negative");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that validation fails when another instance in the QInstance
+    ** already caches its possible values, but not when it doesn't.
+    *******************************************************************************/
+   @Test
+   void testValidate_cachePossibleValuesOnTwoInstances_addsError()
+   {
+      QInstance qInstance = new QInstance();
+      qInstance.addBackend(new QBackendMetaData().withName("rdbms"));
+      qInstance.addQBit(new QBitMetaData().withConfig(new GeoDataQBitConfig()
+         .withBackendName("rdbms")
+         .withTableNamePrefix("billing")));
+
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withBackendName("rdbms")
+         .withTableNamePrefix("shipping")
+         .withCachePossibleValues(true);
+      qInstance.addQBit(new QBitMetaData().withConfig(config));
+
+      List<String> errors = new ArrayList<>();
+      config.validate(qInstance, errors);
+      assertThat(errors).isEmpty();
+
+      GeoDataQBitConfig second = new GeoDataQBitConfig()
+         .withBackendName("rdbms")
+         .withTableNamePrefix("returns")
+         .withCachePossibleValues(true);
+      qInstance.addQBit(new QBitMetaData().withConfig(second));
+
+      second.validate(qInstance, errors);
+      assertThat(errors).containsExactly("cachePossibleValues can only be enabled on one GeoDataQBit instance (it is already enabled for prefix shipping)");
+   }
 }
@@ -5,8 +5,12 @@ package com.kingsrook.qbits.geodata.liquibase;
 
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import com.kingsrook.qbits.geodata.GeoDataQBitConfig;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import static org.assertj.core.api.Assertions.assertThat;
 
 
@@ -137,4 +141,109 @@ class GeoDataLiquibaseGeneratorTest
       assertThat(result).contains("referencedTableName=\"billing_state_province\"");
       assertThat(result).contains("constraintName=\"billing_fk_state_province_country\"");
    }
+
+
+
+   /*******************************************************************************
+    ** Test that each enabled table gets a row hash column changeset.
+    *******************************************************************************/
+   @Test
+   void testGenerate_addsRowHashColumns() throws IOException
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withTableNamePrefix("shipping")
+         .withEnableCountries(true)
+         .withEnableStateProvinces(true)
+         .withEnableCities(false);
+
+      String result = GeoDataLiquibaseGenerator.generate(config);
+
+      assertThat(result).contains("id=\"shipping-add-country-row-hash-v2\"");
+      assertThat(result).contains("id=\"shipping-add-state-province-row-hash-v2\"");
+      assertThat(result).doesNotContain("shipping-add-city-row-hash-v2");
+      assertThat(result).contains("<column name=\"row_hash\" type=\"BIGINT\"/>");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the sync state table is generated when any table is enabled.
+    *******************************************************************************/
+   @Test
+   void testGenerate_includesSyncStateTable() throws IOException
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withTableNamePrefix("shipping")
+         .withEnableCountries(true)
+         .withEnableStateProvinces(false)
+         .withEnableCities(false);
+
+      String result = GeoDataLiquibaseGenerator.generate(config);
+
+      assertThat(result).contains("tableName=\"shipping_geo_data_sync_state\"");
+      assertThat(result).contains("id=\"shipping-create-geo-data-sync-state-v1\"");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that data changesets and CSV files are generated for the enabled,
+    ** bundled tables - states keyed to the generated country ids.
+    *******************************************************************************/
+   @Test
+   void testGenerateWithData_writesCsvAndLoadData(@TempDir Path directory) throws IOException
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withTableNamePrefix("shipping")
+         .withEnableCountries(true)
+         .withEnableStateProvinces(true)
+         .withEnableCities(false)
+         .withCountryFilter(List.of("us", "CA"));
+
+      Path changelog = directory.resolve("changelog.xml");
+      GeoDataLiquibaseGenerator.generateWithData(config, changelog);
+      String result = Files.readString(changelog);
+
+      assertThat(result).contains("id=\"shipping-load-country-data\"");
+      assertThat(result).contains("id=\"shipping-load-state-province-data\"");
+      assertThat(result).contains("file=\"shipping-data/countries.csv\"");
+      assertThat(result).contains("SELECT COUNT(*) FROM shipping_state_province");
+      assertThat(result).contains("<comment>2 rows</comment>");
+      assertThat(result).doesNotContain("runOnChange");
+      assertThat(result).doesNotContain("shipping-load-city-data");
+      assertThat(result).doesNotContain("${prefix}");
+
+      List<String> countries = Files.readAllLines(directory.resolve("shipping-data/countries.csv"));
+      assertThat(countries).hasSize(3);
+      assertThat(countries.get(0)).isEqualTo("id,alpha2_code,alpha3_code,numeric_code,name,official_name,is_active,row_hash");
+      assertThat(countries.get(1)).startsWith("1,\"CA\",");
+      assertThat(countries.get(2)).startsWith("2,\"US\",");
+
+      List<String> states = Files.readAllLines(directory.resolve("shipping-data/states.csv"));
+      assertThat(states.get(0)).isEqualTo("id,country_id,code,name,subdivision_type,is_active,row_hash");
+      assertThat(states).hasSizeGreaterThan(50);
+      assertThat(states.subList(1, states.size())).allMatch(line -> line.split(",")[1].equals("1") || line.split(",")[1].equals("2"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that, with no prefix, the data directory and names lose it too.
+    *******************************************************************************/
+   @Test
+   void testGenerateWithData_noPrefix(@TempDir Path directory) throws IOException
+   {
+      GeoDataQBitConfig config = new GeoDataQBitConfig()
+         .withEnableCountries(true)
+         .withEnableStateProvinces(false)
+         .withEnableCities(false);
+
+      Path changelog = directory.resolve("changelog.xml");
+      GeoDataLiquibaseGenerator.generateWithData(config, changelog);
+      String result = Files.readString(changelog);
+
+      assertThat(result).contains("id=\"load-country-data\"");
+      assertThat(result).contains("tableName=\"country\" file=\"data/countries.csv\"");
+      assertThat(Files.readAllLines(directory.resolve("data/countries.csv"))).hasSize(251);
+   }
 }
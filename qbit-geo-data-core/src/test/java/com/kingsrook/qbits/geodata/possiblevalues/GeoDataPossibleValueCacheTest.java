@@ -0,0 +1,67 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataPossibleValueCache.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.possiblevalues;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataPossibleValueCacheTest
+{
+   private static final GeoDataPossibleValueCache CACHE = new GeoDataPossibleValueCache(List.of(
+      row(30, "Colorado", true),
+      row(10, "California", true),
+      row(20, "Ceará", true),
+      row(40, "Old Colony", false),
+      row(50, "Connecticut", null),
+      new QRecord().withValue("name", "No Id")));
+
+
+
+   /*******************************************************************************
+    ** Test translating ids to labels, including inactive rows.
+    *******************************************************************************/
+   @Test
+   void testGetLabel_allRows_translated()
+   {
+      assertThat(CACHE.size()).isEqualTo(5);
+      assertThat(CACHE.getLabel(10)).isEqualTo("California");
+      assertThat(CACHE.getLabel(40)).isEqualTo("Old Colony");
+      assertThat(CACHE.getLabel(99)).isNull();
+      assertThat(CACHE.contains(50)).isTrue();
+      assertThat(CACHE.contains(60)).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test searching active rows by label prefix, ignoring case and accents,
+    ** in label order, with skip and limit.
+    *******************************************************************************/
+   @Test
+   void testSearch_byPrefix_activeInLabelOrder()
+   {
+      assertThat(CACHE.search("c", 0, null)).containsExactly(10, 20, 30, 50);
+      assertThat(CACHE.search("CEA", 0, null)).containsExactly(20);
+      assertThat(CACHE.search("co", 0, null)).containsExactly(30, 50);
+      assertThat(CACHE.search("old", 0, null)).isEmpty();
+      assertThat(CACHE.search(null, 1, 2)).containsExactly(20, 30);
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a row.
+    *******************************************************************************/
+   private static QRecord row(Integer id, String name, Boolean isActive)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("name", name)
+         .withValue("isActive", isActive);
+   }
+}
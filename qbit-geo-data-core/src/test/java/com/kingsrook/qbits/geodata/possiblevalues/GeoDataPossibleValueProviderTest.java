@@ -0,0 +1,195 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataPossibleValueProvider, against two prefixes' geo
+ ** tables in a QQQ memory backend.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.possiblevalues;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.values.SearchPossibleValueSourceInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.QBackendMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.possiblevalues.QPossibleValue;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.memory.MemoryBackendModule;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.memory.MemoryRecordStore;
+import com.kingsrook.qbits.geodata.model.City;
+import com.kingsrook.qbits.geodata.model.Country;
+import com.kingsrook.qbits.geodata.model.StateProvince;
+import com.kingsrook.qbits.geodata.typeahead.GeoDataTypeaheadIndexes;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataPossibleValueProviderTest
+{
+   private static final String BACKEND_NAME = "memory";
+   private static final String EAST_COUNTRY = "east_" + Country.TABLE_NAME;
+   private static final String WEST_COUNTRY = "west_" + Country.TABLE_NAME;
+   private static final String EAST_STATE   = "east_" + StateProvince.TABLE_NAME;
+   private static final String EAST_CITY    = "east_" + City.TABLE_NAME;
+
+
+
+   /*******************************************************************************
+    ** Set up a QContext with both prefixes' country tables, each holding one
+    ** row with id 1 - a different country in each - and the east prefix's
+    ** (empty) state and city tables.
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach() throws QException
+   {
+      MemoryRecordStore.getInstance().reset();
+
+      QInstance qInstance = new QInstance();
+      qInstance.addBackend(new QBackendMetaData()
+         .withName(BACKEND_NAME)
+         .withBackendType(MemoryBackendModule.class));
+      addTable(qInstance, EAST_COUNTRY, Country.class);
+      addTable(qInstance, WEST_COUNTRY, Country.class);
+      addTable(qInstance, EAST_STATE, StateProvince.class);
+      addTable(qInstance, EAST_CITY, City.class);
+      QContext.init(qInstance, new QSession());
+
+      insert(EAST_COUNTRY, new QRecord().withValue("name", "Canada").withValue("alpha2Code", "CA").withValue("isActive", true));
+      insert(WEST_COUNTRY, new QRecord().withValue("name", "Mexico").withValue("alpha2Code", "MX").withValue("isActive", true));
+   }
+
+
+
+   /*******************************************************************************
+    ** Clear the QContext and the caches and indexes built from it.
+    *******************************************************************************/
+   @AfterEach
+   void afterEach()
+   {
+      GeoDataPossibleValueCache.clear(EAST_COUNTRY);
+      GeoDataPossibleValueCache.clear(WEST_COUNTRY);
+      GeoDataPossibleValueCache.clear(EAST_STATE);
+      GeoDataPossibleValueCache.clear(EAST_CITY);
+      GeoDataTypeaheadIndexes.clear("east");
+      QContext.clear();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a single id is translated from the one registered source only,
+    ** though the other prefix's table has a row with the same id, and that
+    ** registering another source replaces it.
+    *******************************************************************************/
+   @Test
+   void testGetPossibleValue_collidingIds_registeredSourceOnly()
+   {
+      GeoDataPossibleValueProvider.register(Country.TABLE_NAME, EAST_COUNTRY);
+
+      QPossibleValue<Integer> value = new GeoDataPossibleValueProvider.CountryProvider().getPossibleValue(1);
+      assertThat(value.getId()).isEqualTo(1);
+      assertThat(value.getLabel()).isEqualTo("Canada");
+      assertThat(new GeoDataPossibleValueProvider.CountryProvider().getPossibleValue(2)).isNull();
+
+      assertThat(GeoDataPossibleValueProvider.isRegistered(EAST_COUNTRY)).isTrue();
+      assertThat(GeoDataPossibleValueProvider.isRegistered(WEST_COUNTRY)).isFalse();
+
+      GeoDataPossibleValueProvider.register(Country.TABLE_NAME, WEST_COUNTRY);
+      assertThat(new GeoDataPossibleValueProvider.CountryProvider().getPossibleValue(1).getLabel()).isEqualTo("Mexico");
+      assertThat(GeoDataPossibleValueProvider.isRegistered(EAST_COUNTRY)).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that searches by id answer from the source they name.
+    *******************************************************************************/
+   @Test
+   void testSearch_byIdList_namedSource() throws QException
+   {
+      GeoDataPossibleValueProvider.register(Country.TABLE_NAME, EAST_COUNTRY);
+
+      List<QPossibleValue<Integer>> results = new GeoDataPossibleValueProvider.CountryProvider().search(new SearchPossibleValueSourceInput()
+         .withPossibleValueSourceName(WEST_COUNTRY)
+         .withIdList(List.of(1)));
+      assertThat(results).extracting(QPossibleValue::getLabel).containsExactly("Mexico");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that city and state searches by label prefix come most populous
+    ** first, with skip and limit applied to that order, while an id search
+    ** term still comes first.
+    *******************************************************************************/
+   @Test
+   void testSearch_citiesAndStates_mostPopulousFirst() throws QException
+   {
+      insert(EAST_STATE,
+         new QRecord().withValue("name", "Maine").withValue("code", "ME").withValue("countryId", 1).withValue("isActive", true),
+         new QRecord().withValue("name", "Massachusetts").withValue("code", "MA").withValue("countryId", 1).withValue("isActive", true));
+      insert(EAST_CITY,
+         new QRecord().withValue("name", "Portland").withValue("population", 68_408).withValue("stateProvinceId", 1).withValue("isActive", true),
+         new QRecord().withValue("name", "Boston").withValue("population", 675_647).withValue("stateProvinceId", 2).withValue("isActive", true),
+         new QRecord().withValue("name", "Bangor").withValue("population", 31_753).withValue("stateProvinceId", 1).withValue("isActive", true),
+         new QRecord().withValue("name", "Brockton").withValue("population", 105_643).withValue("stateProvinceId", 2).withValue("isActive", true),
+         new QRecord().withValue("name", "Bath").withValue("population", 8_766).withValue("stateProvinceId", 1).withValue("isActive", false));
+
+      GeoDataPossibleValueProvider cities = new GeoDataPossibleValueProvider.CityProvider();
+      assertThat(cities.search(searchInput(EAST_CITY, "b", null, null))).extracting(QPossibleValue::getLabel).containsExactly("Boston", "Brockton", "Bangor");
+      assertThat(cities.search(searchInput(EAST_CITY, "b", 1, 1))).extracting(QPossibleValue::getLabel).containsExactly("Brockton");
+      assertThat(cities.search(searchInput(EAST_CITY, "3", null, 2))).extracting(QPossibleValue::getLabel).containsExactly("Bangor");
+
+      GeoDataPossibleValueProvider states = new GeoDataPossibleValueProvider.StateProvinceProvider();
+      assertThat(states.search(searchInput(EAST_STATE, "ma", null, null))).extracting(QPossibleValue::getLabel).containsExactly("Massachusetts", "Maine");
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a search input for a search term.
+    *******************************************************************************/
+   private static SearchPossibleValueSourceInput searchInput(String possibleValueSourceName, String searchTerm, Integer skip, Integer limit)
+   {
+      return new SearchPossibleValueSourceInput()
+         .withPossibleValueSourceName(possibleValueSourceName)
+         .withSearchTerm(searchTerm)
+         .withSkip(skip)
+         .withLimit(limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Add a memory table with an entity's fields, with no possible value sources.
+    *******************************************************************************/
+   private static void addTable(QInstance qInstance, String tableName, Class<? extends QRecordEntity> entityClass) throws QException
+   {
+      QTableMetaData table = new QTableMetaData()
+         .withName(tableName)
+         .withBackendName(BACKEND_NAME)
+         .withPrimaryKeyField("id")
+         .withFieldsFromEntity(entityClass);
+      table.getFields().values().forEach(field -> field.setPossibleValueSourceName(null));
+      qInstance.addTable(table);
+   }
+
+
+
+   /*******************************************************************************
+    ** Insert rows into a table.
+    *******************************************************************************/
+   private static void insert(String tableName, QRecord... records) throws QException
+   {
+      InsertInput insertInput = new InsertInput();
+      insertInput.setTableName(tableName);
+      insertInput.setRecords(List.of(records));
+      new InsertAction().execute(insertInput);
+   }
+}
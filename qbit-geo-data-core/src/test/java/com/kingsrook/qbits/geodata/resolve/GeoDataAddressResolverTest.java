@@ -0,0 +1,128 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataAddressResolver.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.resolve;
+
+
+import java.util.Arrays;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.resolve.GeoDataResolution.MatchType;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataAddressResolverTest
+{
+   private static final GeoDataAddressResolver RESOLVER = new GeoDataAddressResolver(
+      List.of(
+         country(1, "US", "USA", "840", "United States", "United States of America"),
+         country(2, "DE", "DEU", "276", "Germany", "Deutschland"),
+         country(3, "AU", "AUS", "036", "Australia", "Australia")),
+      List.of(
+         state(11, 1, "CA", "California"),
+         state(12, 1, "WA", "Washington"),
+         state(13, 3, "WA", "Western Australia"),
+         state(14, 2, "BY", "Bayern")));
+
+
+
+   /*******************************************************************************
+    ** Test resolving countries by code, name, official name and prefix,
+    ** ignoring case, accents and punctuation.
+    *******************************************************************************/
+   @Test
+   void testResolveCountries_aliases_resolvedWithConfidence()
+   {
+      List<GeoDataResolution> results = RESOLVER.resolveCountries(List.of("us", "U.S.A.", "0840", " united  states ", "DEUTSCHLAND", "Ger", "Atlantis", "", "36"));
+
+      assertThat(results).extracting(GeoDataResolution::getId).containsExactly(1, 1, 1, 1, 2, 2, null, null, 3);
+      assertThat(results).extracting(GeoDataResolution::getMatchType).containsExactly(
+         MatchType.CODE, MatchType.CODE, MatchType.CODE, MatchType.NAME, MatchType.OFFICIAL_NAME, MatchType.PREFIX, MatchType.NONE, MatchType.NONE, MatchType.CODE);
+      assertThat(results.get(4).getConfidence()).isLessThan(results.get(3).getConfidence());
+      assertThat(results.get(5).getConfidence()).isLessThan(results.get(4).getConfidence());
+      assertThat(results.get(6).isResolved()).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test resolving states within their rows' countries, and across all
+    ** countries when there are none - where a shared code is ambiguous.
+    *******************************************************************************/
+   @Test
+   void testResolveStateProvinces_scopedByCountry_ambiguousWithout()
+   {
+      List<GeoDataResolution> results = RESOLVER.resolveStateProvinces(
+         List.of("WA", "WA", "WA", "Calif.", "bayern", "Wash"),
+         Arrays.asList("USA", "Australia", null, "US", "Atlantis", "US"));
+
+      assertThat(results).extracting(GeoDataResolution::getId).containsExactly(12, 13, null, 11, 14, 12);
+      assertThat(results).extracting(GeoDataResolution::getMatchType).containsExactly(
+         MatchType.CODE, MatchType.CODE, MatchType.AMBIGUOUS, MatchType.PREFIX, MatchType.NAME, MatchType.PREFIX);
+
+      assertThat(RESOLVER.resolveStateProvinces(List.of("W"), null).get(0).getMatchType()).isEqualTo(MatchType.NONE);
+      assertThat(RESOLVER.resolveStateProvinces(List.of("Wa"), null).get(0).getMatchType()).isEqualTo(MatchType.AMBIGUOUS);
+      assertThatThrownBy(() -> RESOLVER.resolveStateProvinces(List.of("WA"), List.of())).isInstanceOf(IllegalArgumentException.class);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that repeated inputs in a batch are resolved once, sharing a result.
+    *******************************************************************************/
+   @Test
+   void testResolveCountries_repeatedInputs_shareResult()
+   {
+      List<GeoDataResolution> results = RESOLVER.resolveCountries(List.of("Germany", "USA", "Germany"));
+      assertThat(results.get(2)).isSameAs(results.get(0));
+      assertThat(results.get(1)).isNotSameAs(results.get(0));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test normalizing raw text to alias keys.
+    *******************************************************************************/
+   @Test
+   void testAliasKey_normalized()
+   {
+      assertThat(GeoDataAddressResolver.aliasKey("U.S.A.")).isEqualTo("usa");
+      assertThat(GeoDataAddressResolver.aliasKey("Côte d'Ivoire")).isEqualTo("cote d ivoire");
+      assertThat(GeoDataAddressResolver.aliasKey("  Bosnia-and   Herzegovina ")).isEqualTo("bosnia and herzegovina");
+      assertThat(GeoDataAddressResolver.aliasKey("004")).isEqualTo("4");
+      assertThat(GeoDataAddressResolver.aliasKey("000")).isEqualTo("0");
+      assertThat(GeoDataAddressResolver.aliasKey(null)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a country row.
+    *******************************************************************************/
+   private static QRecord country(Integer id, String alpha2Code, String alpha3Code, String numericCode, String name, String officialName)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("alpha2Code", alpha2Code)
+         .withValue("alpha3Code", alpha3Code)
+         .withValue("numericCode", numericCode)
+         .withValue("name", name)
+         .withValue("officialName", officialName);
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a state row.
+    *******************************************************************************/
+   private static QRecord state(Integer id, Integer countryId, String code, String name)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("countryId", countryId)
+         .withValue("code", code)
+         .withValue("name", name);
+   }
+}
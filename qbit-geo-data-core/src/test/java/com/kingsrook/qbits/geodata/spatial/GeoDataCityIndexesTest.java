@@ -0,0 +1,60 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataCityIndexes.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.spatial;
+
+
+import java.math.BigDecimal;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataCityIndexesTest
+{
+
+   /*******************************************************************************
+    ** Test that an index built from city rows finds cities by id, leaving out
+    ** rows without an id or coordinates.
+    *******************************************************************************/
+   @Test
+   void testBuild_indexesCityIds()
+   {
+      GeoSpatialIndex<Integer> index = GeoDataCityIndexes.build(List.of(
+         city(11, "39.7392358", "-104.990251"),
+         city(12, "40.0149856", "-105.2705456"),
+         city(13, "41.8781136", "-87.6297982"),
+         city(14, null, null),
+         city(null, "0", "0")));
+
+      assertThat(index.size()).isEqualTo(3);
+      assertThat(index.nearest(39.7, -105.0, 2)).extracting(GeoSpatialMatch::item).containsExactly(11, 12);
+      assertThat(index.withinRadius(41.9, -87.6, 50)).extracting(GeoSpatialMatch::item).containsExactly(13);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that refreshing a table whose index was never built does nothing.
+    *******************************************************************************/
+   @Test
+   void testRefreshIfLoaded_notBuilt_doesNothing() throws Exception
+   {
+      GeoDataCityIndexes.clear("test_city");
+      GeoDataCityIndexes.refreshIfLoaded("test_city");
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a city row.
+    *******************************************************************************/
+   private static QRecord city(Integer id, String latitude, String longitude)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("latitude", latitude == null ? null : new BigDecimal(latitude))
+         .withValue("longitude", longitude == null ? null : new BigDecimal(longitude));
+   }
+}
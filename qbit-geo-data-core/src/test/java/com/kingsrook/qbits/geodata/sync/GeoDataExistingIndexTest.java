@@ -0,0 +1,54 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataExistingIndex.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataExistingIndexTest
+{
+
+   /*******************************************************************************
+    ** Test matching source rows, change detection, and the unmatched active
+    ** rows left for deactivation.
+    *******************************************************************************/
+   @Test
+   void testMatch_andUnmatchedActiveIds()
+   {
+      GeoDataExistingIndex index = GeoDataExistingIndex.of(List.of("stateProvinceId", "name"), List.of(
+         new QRecord().withValue("id", 1).withValue("stateProvinceId", 42).withValue("name", "Los Angeles").withValue("isActive", true).withValue("rowHash", 100L),
+         new QRecord().withValue("id", 2).withValue("stateProvinceId", 42).withValue("name", "San Diego").withValue("isActive", true),
+         new QRecord().withValue("id", 3).withValue("stateProvinceId", 42).withValue("name", "Fresno").withValue("isActive", false)));
+
+      int slot = index.match(new QRecord().withValue("stateProvinceId", 42).withValue("name", "Los Angeles"));
+      assertThat(slot).isNotEqualTo(GeoDataExistingIndex.NOT_FOUND);
+      assertThat(index.getId(slot)).isEqualTo(1);
+      assertThat(index.isActive(slot)).isTrue();
+      assertThat(index.hasChanged(slot, 100L)).isFalse();
+      assertThat(index.hasChanged(slot, 101L)).isTrue();
+
+      assertThat(index.match(new QRecord().withValue("stateProvinceId", 42).withValue("name", "Oakland"))).isEqualTo(GeoDataExistingIndex.NOT_FOUND);
+      assertThat(index.getUnmatchedActiveIds()).containsExactly(2);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that rows without a stored hash always count as changed.
+    *******************************************************************************/
+   @Test
+   void testHasChanged_noStoredHash()
+   {
+      GeoDataExistingIndex index = GeoDataExistingIndex.of(List.of("alpha2Code"), List.of(
+         new QRecord().withValue("id", 1).withValue("alpha2Code", "US").withValue("isActive", true)));
+
+      int slot = index.match(new QRecord().withValue("alpha2Code", "US"));
+      assertThat(index.hasChanged(slot, 0L)).isTrue();
+      assertThat(index.getUnmatchedActiveIds()).isEmpty();
+   }
+}
@@ -0,0 +1,86 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataFingerprint.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataFingerprintTest
+{
+
+   /*******************************************************************************
+    ** Test that the bundled manifest matches the bundled data files.
+    *******************************************************************************/
+   @Test
+   void testManifest_matchesBundledData() throws QException
+   {
+      for(String resourcePath : new String[] { "/data/countries.json", "/data/states.json", "/data/geo-data.snapshot" })
+      {
+         assertThat(GeoDataFingerprint.getDatasetChecksum(resourcePath))
+            .as("manifest checksum for " + resourcePath)
+            .isEqualTo(GeoDataFingerprint.digestResource(resourcePath));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that fingerprints are stable and differ by table.
+    *******************************************************************************/
+   @Test
+   void testCompute_stableAndDistinct() throws QException
+   {
+      String country = GeoDataFingerprint.compute(GeoDataSyncTable.COUNTRY);
+
+      assertThat(country).hasSize(64);
+      assertThat(GeoDataFingerprint.compute(GeoDataSyncTable.COUNTRY)).isEqualTo(country);
+      assertThat(GeoDataFingerprint.compute(GeoDataSyncTable.STATE_PROVINCE)).isNotEqualTo(country);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a fingerprint from an explicit dataset checksum matches the
+    ** bundled one only for the bundled checksum.
+    *******************************************************************************/
+   @Test
+   void testCompute_fromChecksum() throws QException
+   {
+      String checksum = GeoDataFingerprint.getDatasetChecksum("/data/states.json");
+
+      assertThat(GeoDataFingerprint.compute(GeoDataSyncTable.STATE_PROVINCE, checksum, List.of("US"), null))
+         .isEqualTo(GeoDataFingerprint.compute(GeoDataSyncTable.STATE_PROVINCE, List.of("US"), null));
+      assertThat(GeoDataFingerprint.compute(GeoDataSyncTable.STATE_PROVINCE, "0".repeat(64), List.of("US"), null))
+         .isNotEqualTo(GeoDataFingerprint.compute(GeoDataSyncTable.STATE_PROVINCE, List.of("US"), null));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the data version comes from the manifest.
+    *******************************************************************************/
+   @Test
+   void testGetDataVersion() throws QException
+   {
+      assertThat(GeoDataFingerprint.getDataVersion()).isEqualTo("2025-12-28");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that digesting a missing resource is reported.
+    *******************************************************************************/
+   @Test
+   void testDigestResource_missing_throwsException()
+   {
+      assertThatThrownBy(() -> GeoDataFingerprint.digestResource("/data/nope.json"))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("Resource not found");
+   }
+}
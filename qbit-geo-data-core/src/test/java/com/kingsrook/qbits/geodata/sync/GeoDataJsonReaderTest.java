@@ -0,0 +1,180 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataJsonReader.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.exceptions.QRuntimeException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataJsonReaderTest
+{
+
+   /*******************************************************************************
+    ** Test that all records in a bundled resource are streamed.
+    *******************************************************************************/
+   @Test
+   void testOpen_readsAllCountries() throws QException
+   {
+      try(GeoDataJsonReader reader = GeoDataJsonReader.open("/data/countries.json"))
+      {
+         int count = 0;
+         while(reader.hasNext())
+         {
+            QRecord record = reader.next();
+            assertThat(record.getValueString("alpha2Code")).hasSize(2);
+            count++;
+         }
+
+         assertThat(count).isEqualTo(250);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that hasNext can be asked repeatedly without advancing, and that
+    ** next fails once the array is exhausted.
+    *******************************************************************************/
+   @Test
+   void testNext_exhausted_throwsException() throws QException
+   {
+      try(GeoDataJsonReader reader = GeoDataJsonReader.open("/data/example-data.json"))
+      {
+         assertThat(reader.hasNext()).isTrue();
+         assertThat(reader.hasNext()).isTrue();
+         assertThat(readAll(reader)).hasSize(3);
+         assertThat(reader.hasNext()).isFalse();
+         assertThatThrownBy(reader::next)
+            .isInstanceOf(NoSuchElementException.class)
+            .hasMessageContaining("/data/example-data.json");
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that JSON nulls are not copied into records.
+    *******************************************************************************/
+   @Test
+   void testNext_skipsNullValues() throws QException
+   {
+      try(GeoDataJsonReader reader = readerFor("[{\"code\": \"A\", \"stateCode\": null}]"))
+      {
+         QRecord record = reader.next();
+         assertThat(record.getValues()).containsOnlyKeys("code");
+         assertThat(reader.hasNext()).isFalse();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an empty array yields no records.
+    *******************************************************************************/
+   @Test
+   void testHasNext_emptyArray() throws QException
+   {
+      try(GeoDataJsonReader reader = readerFor("  [ ]  "))
+      {
+         assertThat(reader.hasNext()).isFalse();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that malformed content surfaces as a QRuntimeException once the
+    ** reader reaches it, after the elements before it.
+    *******************************************************************************/
+   @Test
+   void testHasNext_malformed_throwsException() throws QException
+   {
+      try(GeoDataJsonReader reader = readerFor("[{\"code\": \"A\"} {\"code\": \"B\"}]"))
+      {
+         assertThat(reader.next().getValueString("code")).isEqualTo("A");
+         assertThatThrownBy(reader::hasNext)
+            .isInstanceOf(QRuntimeException.class)
+            .hasMessageContaining("Error loading JSON data from test");
+         assertThat(reader.hasNext()).isFalse();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that country and population filters skip elements, counting a
+    ** missing population as 0.
+    *******************************************************************************/
+   @Test
+   void testFilters_skipElements() throws QException
+   {
+      String json = """
+         [{"name": "Big", "countryAlpha2": "US", "population": 500000},
+          {"name": "Small", "countryAlpha2": "US", "population": 900},
+          {"name": "Unknown", "countryAlpha2": "US"},
+          {"name": "Elsewhere", "countryAlpha2": "FR", "population": 800000},
+          {"name": "Edge", "countryAlpha2": "CA", "population": 1000}]""";
+
+      try(GeoDataJsonReader reader = readerFor(json)
+         .withCountryFilter("countryAlpha2", Set.of("US", "CA"))
+         .withMinPopulation("population", 1000))
+      {
+         assertThat(readAll(reader)).extracting(record -> record.getValueString("name")).containsExactly("Big", "Edge");
+      }
+
+      try(GeoDataJsonReader reader = readerFor(json).withMinPopulation("population", 0))
+      {
+         assertThat(readAll(reader)).hasSize(5);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a missing resource is reported.
+    *******************************************************************************/
+   @Test
+   void testOpen_missingResource_throwsException()
+   {
+      assertThatThrownBy(() -> GeoDataJsonReader.open("/data/nope.json"))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("Resource not found");
+   }
+
+
+
+   /*******************************************************************************
+    ** Read all (remaining) records of a reader.
+    *******************************************************************************/
+   private static List<QRecord> readAll(GeoDataJsonReader reader)
+   {
+      List<QRecord> records = new ArrayList<>();
+      while(reader.hasNext())
+      {
+         records.add(reader.next());
+      }
+      return records;
+   }
+
+
+
+   /*******************************************************************************
+    ** Build a reader over literal JSON.
+    *******************************************************************************/
+   private GeoDataJsonReader readerFor(String json)
+   {
+      return new GeoDataJsonReader(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), "test");
+   }
+}
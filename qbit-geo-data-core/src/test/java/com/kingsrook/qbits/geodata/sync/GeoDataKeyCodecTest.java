@@ -0,0 +1,80 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataKeyCodec.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataKeyCodecTest
+{
+
+   /*******************************************************************************
+    ** Test that short ASCII codes are packed one byte per char.
+    *******************************************************************************/
+   @Test
+   void testPack_shortAscii()
+   {
+      assertThat(GeoDataKeyCodec.pack("US")).isEqualTo(0x5553);
+      assertThat(GeoDataKeyCodec.pack("A")).isNotEqualTo(GeoDataKeyCodec.pack("AA"));
+      assertThat(GeoDataKeyCodec.pack("")).isZero();
+      assertThat(GeoDataKeyCodec.pack("ABCDE")).isEqualTo(-1);
+      assertThat(GeoDataKeyCodec.pack("É")).isEqualTo(-1);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that keys combine a foreign key with a packed code, and distinct
+    ** keys encode distinctly.
+    *******************************************************************************/
+   @Test
+   void testEncode_foreignKeyAndCode()
+   {
+      GeoDataKeyCodec codec = new GeoDataKeyCodec(List.of("countryId", "code"));
+
+      long ca = codec.encode(new QRecord().withValue("countryId", 7).withValue("code", "CA"));
+      assertThat(ca).isEqualTo((7L << 32) | 0x4341);
+      assertThat(codec.encode(new QRecord().withValue("countryId", 8).withValue("code", "CA"))).isNotEqualTo(ca);
+      assertThat(codec.lookup(new QRecord().withValue("countryId", 7).withValue("code", "CA"))).isEqualTo(ca);
+      assertThat(codec.getDictionarySize()).isZero();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that names go through the dictionary, and lookup of an unknown
+    ** name finds no key.
+    *******************************************************************************/
+   @Test
+   void testLookup_names()
+   {
+      GeoDataKeyCodec codec = new GeoDataKeyCodec(List.of("stateProvinceId", "name"));
+
+      long losAngeles = codec.encode(new QRecord().withValue("stateProvinceId", 42).withValue("name", "Los Angeles"));
+      long sanDiego = codec.encode(new QRecord().withValue("stateProvinceId", 42).withValue("name", "San Diego"));
+
+      assertThat(losAngeles).isNotEqualTo(sanDiego);
+      assertThat(codec.getDictionarySize()).isEqualTo(2);
+      assertThat(codec.lookup(new QRecord().withValue("stateProvinceId", 42).withValue("name", "San Diego"))).isEqualTo(sanDiego);
+      assertThat(codec.lookup(new QRecord().withValue("stateProvinceId", 42).withValue("name", "Fresno"))).isEqualTo(GeoDataKeyCodec.NO_KEY);
+      assertThat(codec.getDictionarySize()).isEqualTo(2);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that keys of more than two fields are rejected.
+    *******************************************************************************/
+   @Test
+   void testConstructor_tooManyFields_throws()
+   {
+      assertThatThrownBy(() -> new GeoDataKeyCodec(List.of("a", "b", "c")))
+         .isInstanceOf(IllegalArgumentException.class);
+   }
+}
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataKeyResolver.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataKeyResolverTest
+{
+
+   /*******************************************************************************
+    ** Clear the QContext set up by the tests that load from tables.
+    *******************************************************************************/
+   @AfterEach
+   void afterEach()
+   {
+      QContext.clear();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a state row's country is resolved from a registered country,
+    ** and the source-only field is removed.
+    *******************************************************************************/
+   @Test
+   void testResolve_state_setsCountryId()
+   {
+      GeoDataKeyResolver resolver = new GeoDataKeyResolver();
+      resolver.register(GeoDataSyncTable.COUNTRY, null, new QRecord().withValue("id", 7).withValue("alpha2Code", "US"));
+
+      QRecord state = new QRecord()
+         .withValue("countryAlpha2", "US")
+         .withValue("code", "CA");
+
+      assertThat(resolver.resolve(GeoDataSyncTable.STATE_PROVINCE, state)).isTrue();
+      assertThat(state.getValueInteger("countryId")).isEqualTo(7);
+      assertThat(state.getValues()).doesNotContainKey("countryAlpha2");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a city row's state is resolved from a registered state, and
+    ** its states are the partition ids for its country.
+    *******************************************************************************/
+   @Test
+   void testResolve_city_setsStateProvinceId()
+   {
+      GeoDataKeyResolver resolver = new GeoDataKeyResolver();
+      resolver.register(GeoDataSyncTable.COUNTRY, null, new QRecord().withValue("id", 7).withValue("alpha2Code", "US"));
+      resolver.register(GeoDataSyncTable.STATE_PROVINCE, "US", new QRecord().withValue("id", 42).withValue("countryId", 7).withValue("code", "CA"));
+
+      QRecord city = new QRecord()
+         .withValue("countryAlpha2", "US")
+         .withValue("stateCode", "CA")
+         .withValue("name", "Los Angeles");
+
+      assertThat(resolver.resolve(GeoDataSyncTable.CITY, city)).isTrue();
+      assertThat(city.getValueInteger("stateProvinceId")).isEqualTo(42);
+      assertThat(city.getValues()).doesNotContainKeys("countryAlpha2", "stateCode");
+      assertThat(resolver.getPartitionIds(GeoDataSyncTable.STATE_PROVINCE, "US")).containsExactly(7);
+      assertThat(resolver.getPartitionIds(GeoDataSyncTable.CITY, "US")).containsExactly(42);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that rows whose parent is not known do not resolve.
+    *******************************************************************************/
+   @Test
+   void testResolve_unknownParent_returnsFalse()
+   {
+      GeoDataKeyResolver resolver = new GeoDataKeyResolver();
+
+      assertThat(resolver.resolve(GeoDataSyncTable.STATE_PROVINCE, new QRecord().withValue("countryAlpha2", "ZZ").withValue("code", "01"))).isFalse();
+      assertThat(resolver.resolve(GeoDataSyncTable.CITY, new QRecord().withValue("countryAlpha2", "US").withValue("name", "Nowhere"))).isFalse();
+      assertThat(resolver.resolve(GeoDataSyncTable.COUNTRY, new QRecord().withValue("alpha2Code", "US"))).isTrue();
+      assertThat(resolver.getPartitionIds(GeoDataSyncTable.CITY, "US")).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test loading the ids of stored country and state rows: only active rows
+    ** are registered, and states only under a known country.
+    *******************************************************************************/
+   @Test
+   void testLoad_fromTables_registersActiveRows() throws QException
+   {
+      GeoDataSyncTestUtils.initMemoryInstance();
+      List<QRecord> countries = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.COUNTRY_TABLE,
+         new QRecord().withValue("alpha2Code", "US").withValue("name", "United States").withValue("isActive", true),
+         new QRecord().withValue("alpha2Code", "MX").withValue("name", "Mexico").withValue("isActive", false));
+      Integer usId = countries.get(0).getValueInteger("id");
+      Integer mxId = countries.get(1).getValueInteger("id");
+      List<QRecord> states = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE,
+         new QRecord().withValue("countryId", usId).withValue("code", "CA").withValue("name", "California").withValue("isActive", true),
+         new QRecord().withValue("countryId", mxId).withValue("code", "JAL").withValue("name", "Jalisco").withValue("isActive", true));
+
+      GeoDataKeyResolver resolver = new GeoDataKeyResolver();
+      resolver.load(GeoDataSyncTable.COUNTRY, GeoDataSyncTestUtils.COUNTRY_TABLE);
+      resolver.load(GeoDataSyncTable.STATE_PROVINCE, GeoDataSyncTestUtils.STATE_TABLE);
+
+      assertThat(resolver.getCountryId("US")).isEqualTo(usId);
+      assertThat(resolver.getCountryId("MX")).isNull();
+      assertThat(resolver.getStateProvinceId("US", "CA")).isEqualTo(states.get(0).getValueInteger("id"));
+      assertThat(resolver.getStateProvinceId("MX", "JAL")).isNull();
+      assertThat(resolver.getPartitionIds(GeoDataSyncTable.STATE_PROVINCE, "US")).containsExactly(usId);
+   }
+}
@@ -0,0 +1,123 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataPatch.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import com.kingsrook.qbits.geodata.tools.writers.PatchWriter;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataPatchTest
+{
+
+   /*******************************************************************************
+    ** Test that a dataset's patch is offered only when it leads to the bundled
+    ** dataset, with its upserts and deletes as records.
+    *******************************************************************************/
+   @Test
+   void testGetDatasetPatch_onlyToBundledChecksum() throws QException
+   {
+      String bundledChecksum = GeoDataFingerprint.getDatasetChecksum("/data/countries.json");
+      GeoDataPatch patch = new GeoDataPatch(new JSONObject()
+         .put("fromVersion", "2025-06-01")
+         .put("toVersion", "2025-12-28")
+         .put("datasets", new JSONObject()
+            .put("countries.json", dataset("a".repeat(64), bundledChecksum))
+            .put("states.json", dataset("b".repeat(64), "c".repeat(64)))));
+
+      assertThat(patch.getFromVersion()).isEqualTo("2025-06-01");
+      assertThat(patch.getDatasetPatch(GeoDataSyncTable.STATE_PROVINCE)).isNull();
+      assertThat(patch.getDatasetPatch(GeoDataSyncTable.CITY)).isNull();
+
+      GeoDataPatch.DatasetPatch countries = patch.getDatasetPatch(GeoDataSyncTable.COUNTRY);
+      assertThat(countries).isNotNull();
+      assertThat(countries.getFromChecksum()).isEqualTo("a".repeat(64));
+
+      List<QRecord> upserts = countries.getUpserts();
+      assertThat(upserts).hasSize(1);
+      assertThat(upserts.get(0).getValueString("name")).isEqualTo("Neverland");
+      assertThat(upserts.get(0).getValue("officialName")).isNull();
+      assertThat(countries.getDeletes()).extracting(r -> r.getValueString("alpha2Code")).containsExactly("QQ");
+
+      ///////////////////////////////////////////////////////////////////////
+      // each call builds fresh records, as the sync changes them in place //
+      ///////////////////////////////////////////////////////////////////////
+      assertThat(countries.getUpserts().get(0)).isNotSameAs(upserts.get(0));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a patch written by the tools' PatchWriter, from an older
+    ** countries.json to the bundled one, reads back with the changed entries
+    ** as upserts, the removed one as a delete, and both checksums.
+    *******************************************************************************/
+   @Test
+   void testGetDatasetPatch_writtenByPatchWriter(@TempDir Path outputDir) throws Exception
+   {
+      byte[] bundled;
+      try(InputStream is = GeoDataPatchTest.class.getResourceAsStream("/data/countries.json"))
+      {
+         bundled = is.readAllBytes();
+      }
+
+      /////////////////////////////////////////////////////////////////////
+      // the previous version lacks the first country, names the second //
+      // differently, and has one the bundled data no longer has         //
+      /////////////////////////////////////////////////////////////////////
+      JSONArray previous = new JSONArray(new String(bundled, StandardCharsets.UTF_8));
+      String addedCode = previous.getJSONObject(0).getString("alpha2Code");
+      String renamedCode = previous.getJSONObject(1).getString("alpha2Code");
+      previous.remove(0);
+      previous.getJSONObject(0).put("name", "Old Name");
+      previous.put(new JSONObject().put("alpha2Code", "QQ").put("name", "Neverland"));
+
+      byte[] previousBytes = previous.toString(2).getBytes(StandardCharsets.UTF_8);
+      Files.write(outputDir.resolve("countries.json"), previousBytes);
+      Files.writeString(outputDir.resolve("manifest.json"), new JSONObject().put("version", "2025-06-01").toString());
+
+      PatchWriter patchWriter = new PatchWriter(outputDir);
+      patchWriter.capturePrevious();
+      Files.write(outputDir.resolve("countries.json"), bundled);
+      patchWriter.write("2025-12-28");
+
+      GeoDataPatch patch = new GeoDataPatch(new JSONObject(Files.readString(outputDir.resolve(PatchWriter.PATCH_FILE))));
+      assertThat(patch.getFromVersion()).isEqualTo("2025-06-01");
+      assertThat(patch.getToVersion()).isEqualTo("2025-12-28");
+      assertThat(patch.getDatasetPatch(GeoDataSyncTable.STATE_PROVINCE)).isNull();
+
+      GeoDataPatch.DatasetPatch countries = patch.getDatasetPatch(GeoDataSyncTable.COUNTRY);
+      assertThat(countries).isNotNull();
+      assertThat(countries.getFromChecksum()).isEqualTo(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(previousBytes)));
+      assertThat(countries.getUpserts()).extracting(r -> r.getValueString("alpha2Code")).containsExactly(addedCode, renamedCode);
+      assertThat(countries.getDeletes()).extracting(r -> r.getValueString("alpha2Code")).containsExactly("QQ");
+   }
+
+
+
+   /*******************************************************************************
+    ** Build a dataset patch with one upsert and one delete.
+    *******************************************************************************/
+   private static JSONObject dataset(String fromSha256, String toSha256)
+   {
+      return new JSONObject()
+         .put("fromSha256", fromSha256)
+         .put("toSha256", toSha256)
+         .put("upserts", new JSONArray().put(new JSONObject().put("alpha2Code", "NV").put("name", "Neverland").put("officialName", JSONObject.NULL)))
+         .put("deletes", new JSONArray().put(new JSONObject().put("alpha2Code", "QQ")));
+   }
+}
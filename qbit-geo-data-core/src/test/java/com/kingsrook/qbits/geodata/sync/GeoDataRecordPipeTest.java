@@ -0,0 +1,130 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataRecordPipe.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataRecordPipeTest
+{
+
+   /*******************************************************************************
+    ** Test that a consumer takes every item, in order, through a pipe smaller
+    ** than the number of items, then null once the pipe is closed.
+    *******************************************************************************/
+   @Test
+   void testTake_inOrderThenNull() throws Exception
+   {
+      GeoDataRecordPipe<Integer> pipe = new GeoDataRecordPipe<>(2);
+      CompletableFuture<List<Integer>> consumer = CompletableFuture.supplyAsync(() ->
+      {
+         List<Integer> taken = new ArrayList<>();
+         try
+         {
+            Integer item;
+            while((item = pipe.take()) != null)
+            {
+               taken.add(item);
+            }
+         }
+         catch(QException e)
+         {
+            throw new RuntimeException(e);
+         }
+         return taken;
+      });
+
+      for(int i = 0; i < 10; i++)
+      {
+         pipe.put(i);
+      }
+      pipe.close();
+
+      assertThat(consumer.get()).containsExactly(0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that once a pipe fails, a producer waiting on it (full) and a
+    ** consumer both get the failing stage's own exception.
+    *******************************************************************************/
+   @Test
+   void testFail_unblocksBothSides() throws Exception
+   {
+      GeoDataRecordPipe<Integer> pipe = new GeoDataRecordPipe<>(1);
+      pipe.put(1);
+
+      QException cause = new QException("load failed");
+      CompletableFuture<Void> producer = CompletableFuture.runAsync(() ->
+      {
+         try
+         {
+            pipe.put(2);
+         }
+         catch(QException e)
+         {
+            throw new RuntimeException(e);
+         }
+      });
+
+      pipe.fail(cause);
+      assertThatThrownBy(producer::join).hasRootCauseMessage("load failed");
+      assertThatThrownBy(pipe::take).isSameAs(cause);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that closing a full pipe does not wait for room, and that the
+    ** items before the close are still taken before null.
+    *******************************************************************************/
+   @Test
+   void testClose_fullPipe_drainsThenNull() throws QException
+   {
+      GeoDataRecordPipe<Integer> pipe = new GeoDataRecordPipe<>(1);
+      pipe.put(1);
+      pipe.close();
+
+      assertThat(pipe.take()).isEqualTo(1);
+      assertThat(pipe.take()).isNull();
+      assertThat(pipe.take()).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a consumer waiting on an empty pipe gets a failure that is not
+    ** a QException, wrapped.
+    *******************************************************************************/
+   @Test
+   void testFail_wakesWaitingConsumer() throws Exception
+   {
+      GeoDataRecordPipe<Integer> pipe = new GeoDataRecordPipe<>(2);
+      CompletableFuture<Integer> consumer = CompletableFuture.supplyAsync(() ->
+      {
+         try
+         {
+            return pipe.take();
+         }
+         catch(QException e)
+         {
+            throw new RuntimeException(e);
+         }
+      });
+
+      pipe.fail(new OutOfMemoryError("transform died"));
+      assertThatThrownBy(consumer::join)
+         .hasRootCauseInstanceOf(OutOfMemoryError.class)
+         .hasMessageContaining("Sync pipe failed");
+      assertThatThrownBy(() -> pipe.put(1)).hasMessage("Sync pipe failed");
+   }
+}
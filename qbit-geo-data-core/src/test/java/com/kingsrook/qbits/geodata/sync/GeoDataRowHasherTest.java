@@ -0,0 +1,56 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataRowHasher.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.math.BigDecimal;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataRowHasherTest
+{
+
+   /*******************************************************************************
+    ** Test that field order and excluded fields do not affect the hash.
+    *******************************************************************************/
+   @Test
+   void testHash_ignoresOrderAndExcludedFields()
+   {
+      QRecord a = new QRecord().withValue("code", "CA").withValue("name", "California");
+      QRecord b = new QRecord().withValue("name", "California").withValue("code", "CA")
+         .withValue("id", 7).withValue("isActive", true).withValue("rowHash", 123L);
+
+      assertThat(GeoDataRowHasher.hash(a)).isEqualTo(GeoDataRowHasher.hash(b));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a changed value changes the hash.
+    *******************************************************************************/
+   @Test
+   void testHash_changedValue_changesHash()
+   {
+      QRecord a = new QRecord().withValue("code", "CA").withValue("name", "California");
+      QRecord b = new QRecord().withValue("code", "CA").withValue("name", "Calif.");
+
+      assertThat(GeoDataRowHasher.hash(a)).isNotEqualTo(GeoDataRowHasher.hash(b));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that decimal scale does not affect the hash.
+    *******************************************************************************/
+   @Test
+   void testHash_normalizesDecimals()
+   {
+      QRecord a = new QRecord().withValue("latitude", new BigDecimal("34.05"));
+      QRecord b = new QRecord().withValue("latitude", new BigDecimal("34.0500000"));
+
+      assertThat(GeoDataRowHasher.hash(a)).isEqualTo(GeoDataRowHasher.hash(b));
+   }
+}
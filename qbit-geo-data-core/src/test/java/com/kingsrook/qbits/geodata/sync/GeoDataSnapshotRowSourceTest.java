@@ -0,0 +1,103 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataSnapshotRowSource.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataSnapshotRowSourceTest
+{
+
+   /*******************************************************************************
+    ** Test that the bundled snapshot yields the same rows, in the same order,
+    ** as the bundled JSON files.
+    *******************************************************************************/
+   @Test
+   void testRows_matchBundledJson() throws QException
+   {
+      for(GeoDataSyncTable table : new GeoDataSyncTable[] { GeoDataSyncTable.COUNTRY, GeoDataSyncTable.STATE_PROVINCE })
+      {
+         int count = 0;
+         try(GeoDataJsonReader json = GeoDataJsonReader.open(table.getResourcePath());
+            GeoDataSnapshotRowSource snapshot = GeoDataSnapshotRowSource.open(table.getDatasetName()))
+         {
+            while(json.hasNext())
+            {
+               QRecord expected = json.next();
+               QRecord actual = snapshot.next();
+               assertThat(actual.getValues().keySet()).as(table + " row " + count).isEqualTo(expected.getValues().keySet());
+               assertThat(GeoDataRowHasher.hash(actual)).as(table + " row " + count).isEqualTo(GeoDataRowHasher.hash(expected));
+               count++;
+            }
+            assertThat(snapshot.hasNext()).isFalse();
+         }
+         assertThat(count).isPositive();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that datasets missing from the snapshot fall back to JSON.
+    *******************************************************************************/
+   @Test
+   void testOpen_missingDataset_returnsNull() throws QException
+   {
+      assertThat(GeoDataSnapshotRowSource.open(GeoDataSyncTable.CITY.getDatasetName())).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a country filter limits the snapshot and JSON sources to the
+    ** same rows, of just those countries.
+    *******************************************************************************/
+   @Test
+   void testCountryFilter_snapshotAndJson_sameFilteredRows() throws QException
+   {
+      Set<String> filter = Set.of("US", "CA", "MX");
+      for(GeoDataSyncTable table : new GeoDataSyncTable[] { GeoDataSyncTable.COUNTRY, GeoDataSyncTable.STATE_PROVINCE })
+      {
+         List<Long> jsonHashes = new ArrayList<>();
+         try(GeoDataJsonReader json = GeoDataJsonReader.open(table.getResourcePath()).withCountryFilter(table.getCountryField(), filter))
+         {
+            while(json.hasNext())
+            {
+               QRecord record = json.next();
+               assertThat(record.getValueString(table.getCountryField())).isIn(filter);
+               jsonHashes.add(GeoDataRowHasher.hash(record));
+            }
+         }
+
+         List<Long> snapshotHashes = new ArrayList<>();
+         try(GeoDataRowSource snapshot = GeoDataRowSource.open(table, filter, null))
+         {
+            assertThat(snapshot).isInstanceOf(GeoDataSnapshotRowSource.class);
+            while(snapshot.hasNext())
+            {
+               snapshotHashes.add(GeoDataRowHasher.hash(snapshot.next()));
+            }
+         }
+
+         assertThat(snapshotHashes).as(table.name()).isEqualTo(jsonHashes);
+      }
+
+      try(GeoDataRowSource countries = GeoDataRowSource.open(GeoDataSyncTable.COUNTRY, filter, null))
+      {
+         int count = 0;
+         for(; countries.hasNext(); countries.next())
+         {
+            count++;
+         }
+         assertThat(count).isEqualTo(3);
+      }
+   }
+}
@@ -0,0 +1,42 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataSyncBudget.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataSyncBudgetTest
+{
+
+   /*******************************************************************************
+    ** Test that a budget is exhausted once its time has passed, and not before.
+    *******************************************************************************/
+   @Test
+   void testIsExhausted_afterDeadline()
+   {
+      assertThat(new GeoDataSyncBudget(null).isExhausted()).isFalse();
+      assertThat(new GeoDataSyncBudget(Duration.ofHours(1)).isExhausted()).isFalse();
+      assertThat(new GeoDataSyncBudget(Duration.ofSeconds(-1)).isExhausted()).isTrue();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that cancelAll exhausts the budgets running at the time, but not
+    ** those started afterwards.
+    *******************************************************************************/
+   @Test
+   void testCancel_runningBudgetsOnly()
+   {
+      GeoDataSyncBudget running = new GeoDataSyncBudget(null);
+      GeoDataSyncBudget.cancelAll();
+      GeoDataSyncBudget later = new GeoDataSyncBudget(null);
+
+      assertThat(running.isExhausted()).isTrue();
+      assertThat(later.isExhausted()).isFalse();
+   }
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataSyncResult.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataSyncResultTest
+{
+
+   /*******************************************************************************
+    ** Test that adding partition results sums their counts, and gathers their
+    ** samples into the table's, prefixed by partition and capped at
+    ** SAMPLE_SIZE.
+    *******************************************************************************/
+   @Test
+   void testAdd_samplesPrefixedAndCapped()
+   {
+      GeoDataSyncResult us = new GeoDataSyncResult("geo_stateProvince").withPartition("US");
+      us.addInserted(2);
+      us.addSampleInserted("CA");
+      us.addSampleInserted("TX");
+      us.addDeactivated(1);
+      us.addSampleDeactivated("17");
+
+      GeoDataSyncResult ca = new GeoDataSyncResult("geo_stateProvince").withPartition("CA");
+      for(int i = 0; i < GeoDataSyncResult.SAMPLE_SIZE + 2; i++)
+      {
+         ca.addInserted(1);
+         ca.addSampleInserted("P" + i);
+      }
+      assertThat(ca.getSampleInserted()).hasSize(GeoDataSyncResult.SAMPLE_SIZE);
+
+      GeoDataSyncResult table = new GeoDataSyncResult("geo_stateProvince").add(us).add(ca);
+      assertThat(table.getInserted()).isEqualTo(2 + GeoDataSyncResult.SAMPLE_SIZE + 2);
+      assertThat(table.getDeactivated()).isEqualTo(1);
+      assertThat(table.getSampleInserted()).containsExactly("US/CA", "US/TX", "CA/P0", "CA/P1", "CA/P2");
+      assertThat(table.getSampleDeactivated()).containsExactly("US/17");
+      assertThat(table.getSampleUpdated()).isEmpty();
+   }
+}
@@ -4,9 +4,13 @@
 package com.kingsrook.qbits.geodata.sync;
 
 
+import java.util.ArrayList;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.context.QContext;
 import com.kingsrook.qqq.backend.core.exceptions.QException;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepInput;
 import com.kingsrook.qqq.backend.core.model.actions.processes.RunBackendStepOutput;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -15,6 +19,17 @@ import static org.assertj.core.api.Assertions.assertThatThrownBy;
 class GeoDataSyncStepTest
 {
 
+   /*******************************************************************************
+    ** Clear the QContext set up by the tests that sync into tables.
+    *******************************************************************************/
+   @AfterEach
+   void afterEach()
+   {
+      QContext.clear();
+   }
+
+
+
    /*******************************************************************************
     ** Test that constant is correctly defined.
     *******************************************************************************/
@@ -58,4 +73,159 @@ class GeoDataSyncStepTest
          .isInstanceOf(QException.class)
          .hasMessageContaining("tableNamePrefix is required");
    }
+
+
+
+   /*******************************************************************************
+    ** Test that run throws exception when page size is not positive.
+    *******************************************************************************/
+   @Test
+   void testRun_invalidPageSize_throwsException()
+   {
+      GeoDataSyncStep step = new GeoDataSyncStep();
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, "geo");
+      input.addValue(GeoDataSyncStep.FIELD_PAGE_SIZE, 0);
+      RunBackendStepOutput output = new RunBackendStepOutput();
+
+      assertThatThrownBy(() -> step.run(input, output))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("pageSize must be greater than 0");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that run throws exception when bulk page size is not positive.
+    *******************************************************************************/
+   @Test
+   void testRun_invalidBulkPageSize_throwsException()
+   {
+      GeoDataSyncStep step = new GeoDataSyncStep();
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, "geo");
+      input.addValue(GeoDataSyncStep.FIELD_BULK_PAGE_SIZE, 0);
+      RunBackendStepOutput output = new RunBackendStepOutput();
+
+      assertThatThrownBy(() -> step.run(input, output))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("bulkPageSize must be greater than 0");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that run throws exception when concurrency is not positive.
+    *******************************************************************************/
+   @Test
+   void testRun_invalidConcurrency_throwsException()
+   {
+      GeoDataSyncStep step = new GeoDataSyncStep();
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, "geo");
+      input.addValue(GeoDataSyncStep.FIELD_CONCURRENCY, 0);
+      RunBackendStepOutput output = new RunBackendStepOutput();
+
+      assertThatThrownBy(() -> step.run(input, output))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("concurrency must be greater than 0");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that run throws exception when the time budget is not positive.
+    *******************************************************************************/
+   @Test
+   void testRun_invalidTimeBudget_throwsException()
+   {
+      GeoDataSyncStep step = new GeoDataSyncStep();
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, "geo");
+      input.addValue(GeoDataSyncStep.FIELD_TIME_BUDGET_SECONDS, 0);
+      RunBackendStepOutput output = new RunBackendStepOutput();
+
+      assertThatThrownBy(() -> step.run(input, output))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("timeBudgetSeconds must be greater than 0");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that prefixes are gathered from the single and list inputs, in
+    ** order and without duplicates.
+    *******************************************************************************/
+   @Test
+   void testGetPrefixes_singleAndList_mergedInOrder()
+   {
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, "shipping");
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIXES, "billing, shipping,\nwarehouse,");
+      assertThat(GeoDataSyncStep.getPrefixes(input)).containsExactly("shipping", "billing", "warehouse");
+
+      input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIXES, new ArrayList<>(List.of("a", " b ", "")));
+      assertThat(GeoDataSyncStep.getPrefixes(input)).containsExactly("a", "b");
+
+      assertThat(GeoDataSyncStep.getPrefixes(new RunBackendStepInput())).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test normalizing country filters - upper case, sorted, and null for
+    ** none.
+    *******************************************************************************/
+   @Test
+   void testToCountryFilter_normalized()
+   {
+      assertThat(GeoDataSyncStep.toCountryFilter(GeoDataSyncStep.getStrings("us, ca,MX"))).containsExactly("CA", "MX", "US");
+      assertThat(GeoDataSyncStep.toCountryFilter(List.of(" ", ""))).isNull();
+      assertThat(GeoDataSyncStep.toCountryFilter(null)).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test a sync of the bundled data into empty tables: the countries and
+    ** states are loaded, the city table (whose data is not bundled) is skipped
+    ** rather than failing the run, and a second run finds nothing changed.
+    *******************************************************************************/
+   @Test
+   void testRun_bundledData_syncsBundledTables() throws QException
+   {
+      GeoDataSyncTestUtils.initMemoryInstance();
+
+      RunBackendStepOutput output = runSync();
+      assertThat(output.getValue("countriesSynced")).isEqualTo(250);
+      assertThat(output.getValue("statesSynced")).isEqualTo(5296);
+      assertThat(output.getValue("citiesSynced")).isEqualTo(0);
+      assertThat(output.getValue("tablesSkipped")).isEqualTo(0);
+      assertThat(output.getValue("complete")).isEqualTo(true);
+
+      assertThat(GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.COUNTRY_TABLE)).hasSize(250);
+      assertThat(GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE)).hasSize(5296)
+         .allSatisfy(state -> assertThat(state.getValueInteger("countryId")).isNotNull());
+      assertThat(GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.CITY_TABLE)).isEmpty();
+
+      RunBackendStepOutput rerun = runSync();
+      assertThat(rerun.getValue("tablesSkipped")).isEqualTo(2);
+      assertThat(rerun.getValue("countriesSynced")).isEqualTo(0);
+      assertThat(rerun.getValue("complete")).isEqualTo(true);
+   }
+
+
+
+   /*******************************************************************************
+    ** Run the sync step for the test prefix.
+    *******************************************************************************/
+   private static RunBackendStepOutput runSync() throws QException
+   {
+      RunBackendStepInput input = new RunBackendStepInput();
+      input.addValue(GeoDataSyncStep.FIELD_TABLE_NAME_PREFIX, GeoDataSyncTestUtils.PREFIX);
+      RunBackendStepOutput output = new RunBackendStepOutput();
+      new GeoDataSyncStep().run(input, output);
+      return output;
+   }
 }
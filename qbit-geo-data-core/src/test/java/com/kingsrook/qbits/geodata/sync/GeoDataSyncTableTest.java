@@ -0,0 +1,70 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataSyncTable.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataSyncTableTest
+{
+
+   /*******************************************************************************
+    ** Test that tables are declared in dependency order.
+    *******************************************************************************/
+   @Test
+   void testValues_dependencyOrder()
+   {
+      assertThat(GeoDataSyncTable.values()).containsExactly(
+         GeoDataSyncTable.COUNTRY,
+         GeoDataSyncTable.STATE_PROVINCE,
+         GeoDataSyncTable.CITY);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the prefix is applied to table names.
+    *******************************************************************************/
+   @Test
+   void testGetTableName_appliesPrefix()
+   {
+      assertThat(GeoDataSyncTable.COUNTRY.getTableName("shipping")).isEqualTo("shipping_country");
+      assertThat(GeoDataSyncTable.STATE_PROVINCE.getTableName("shipping")).isEqualTo("shipping_stateProvince");
+      assertThat(GeoDataSyncTable.CITY.getTableName("shipping")).isEqualTo("shipping_city");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test partition values for partitioned and unpartitioned tables.
+    *******************************************************************************/
+   @Test
+   void testGetPartitionValue()
+   {
+      QRecord record = new QRecord()
+         .withValue("alpha2Code", "US")
+         .withValue("countryAlpha2", "US")
+         .withValue("code", "CA");
+
+      assertThat(GeoDataSyncTable.COUNTRY.getPartitionValue(record)).isNull();
+      assertThat(GeoDataSyncTable.STATE_PROVINCE.getPartitionValue(record)).isEqualTo("US");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that natural keys use the stored foreign keys, not source codes.
+    *******************************************************************************/
+   @Test
+   void testGetNaturalKeyFields_useForeignKeys()
+   {
+      assertThat(GeoDataSyncTable.COUNTRY.getNaturalKeyFields()).containsExactly("alpha2Code");
+      assertThat(GeoDataSyncTable.STATE_PROVINCE.getNaturalKeyFields()).containsExactly("countryId", "code");
+      assertThat(GeoDataSyncTable.CITY.getNaturalKeyFields()).containsExactly("stateProvinceId", "name");
+      assertThat(GeoDataSyncTable.CITY.getPartitionIdField()).isEqualTo("stateProvinceId");
+   }
+}
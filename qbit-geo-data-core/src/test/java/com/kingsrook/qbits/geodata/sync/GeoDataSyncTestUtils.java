@@ -0,0 +1,145 @@
+/*******************************************************************************
+ ** Test support for syncs against real tables: a QInstance holding one
+ ** prefix's geo data tables in a QQQ memory backend, set in the QContext,
+ ** and helpers to read and write their rows.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.io.Serializable;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.actions.tables.InsertAction;
+import com.kingsrook.qqq.backend.core.actions.tables.QueryAction;
+import com.kingsrook.qqq.backend.core.actions.tables.UpdateAction;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.insert.InsertInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterOrderBy;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.update.UpdateInput;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.model.data.QRecordEntity;
+import com.kingsrook.qqq.backend.core.model.metadata.QBackendMetaData;
+import com.kingsrook.qqq.backend.core.model.metadata.QInstance;
+import com.kingsrook.qqq.backend.core.model.metadata.tables.QTableMetaData;
+import com.kingsrook.qqq.backend.core.model.session.QSession;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.memory.MemoryBackendModule;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.memory.MemoryRecordStore;
+import com.kingsrook.qbits.geodata.model.City;
+import com.kingsrook.qbits.geodata.model.Country;
+import com.kingsrook.qbits.geodata.model.GeoDataSyncState;
+import com.kingsrook.qbits.geodata.model.StateProvince;
+
+
+class GeoDataSyncTestUtils
+{
+   static final String PREFIX       = "test";
+   static final String BACKEND_NAME = "memory";
+
+   static final String COUNTRY_TABLE = GeoDataSyncTable.COUNTRY.getTableName(PREFIX);
+   static final String STATE_TABLE   = GeoDataSyncTable.STATE_PROVINCE.getTableName(PREFIX);
+   static final String CITY_TABLE    = GeoDataSyncTable.CITY.getTableName(PREFIX);
+
+
+
+   /*******************************************************************************
+    ** Empty the memory backend, and set up a QContext whose QInstance has the
+    ** prefix's country, state, city and sync state tables in it.
+    *******************************************************************************/
+   static QInstance initMemoryInstance() throws QException
+   {
+      MemoryRecordStore.getInstance().reset();
+
+      QInstance qInstance = new QInstance();
+      qInstance.addBackend(new QBackendMetaData()
+         .withName(BACKEND_NAME)
+         .withBackendType(MemoryBackendModule.class));
+
+      addTable(qInstance, COUNTRY_TABLE, Country.class);
+      addTable(qInstance, STATE_TABLE, StateProvince.class);
+      addTable(qInstance, CITY_TABLE, City.class);
+      addTable(qInstance, PREFIX + "_" + GeoDataSyncState.TABLE_NAME, GeoDataSyncState.class);
+
+      QContext.init(qInstance, new QSession());
+      return qInstance;
+   }
+
+
+
+   /*******************************************************************************
+    ** Add a memory table with an entity's fields.  The tests need no
+    ** possible value sources, so the foreign keys get none.
+    *******************************************************************************/
+   private static void addTable(QInstance qInstance, String tableName, Class<? extends QRecordEntity> entityClass) throws QException
+   {
+      QTableMetaData table = new QTableMetaData()
+         .withName(tableName)
+         .withBackendName(BACKEND_NAME)
+         .withPrimaryKeyField("id")
+         .withFieldsFromEntity(entityClass);
+      table.getFields().values().forEach(field -> field.setPossibleValueSourceName(null));
+      qInstance.addTable(table);
+   }
+
+
+
+   /*******************************************************************************
+    ** Insert rows into a table, returning them with their ids.
+    *******************************************************************************/
+   static List<QRecord> insert(String tableName, QRecord... records) throws QException
+   {
+      InsertInput insertInput = new InsertInput();
+      insertInput.setTableName(tableName);
+      insertInput.setRecords(List.of(records));
+      return new InsertAction().execute(insertInput).getRecords();
+   }
+
+
+
+   /*******************************************************************************
+    ** Update rows of a table, by id.
+    *******************************************************************************/
+   static void update(String tableName, QRecord... records) throws QException
+   {
+      UpdateInput updateInput = new UpdateInput();
+      updateInput.setTableName(tableName);
+      updateInput.setRecords(List.of(records));
+      new UpdateAction().execute(updateInput);
+   }
+
+
+
+   /*******************************************************************************
+    ** Query all rows of a table, in id order.
+    *******************************************************************************/
+   static List<QRecord> queryAll(String tableName) throws QException
+   {
+      return query(tableName, new QQueryFilter());
+   }
+
+
+
+   /*******************************************************************************
+    ** Query a table's rows with a field equal to a value, in id order.
+    *******************************************************************************/
+   static List<QRecord> queryWhere(String tableName, String fieldName, Serializable value) throws QException
+   {
+      return query(tableName, new QQueryFilter(new QFilterCriteria(fieldName, QCriteriaOperator.EQUALS, value)));
+   }
+
+
+
+   /*******************************************************************************
+    ** Query a table, in id order.
+    *******************************************************************************/
+   private static List<QRecord> query(String tableName, QQueryFilter filter) throws QException
+   {
+      QueryInput queryInput = new QueryInput();
+      queryInput.setTableName(tableName);
+      queryInput.setFilter(filter.withOrderBy(new QFilterOrderBy("id")));
+      return new QueryAction().execute(queryInput).getRecords();
+   }
+}
@@ -0,0 +1,540 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataTableSync, syncing the bundled data into memory
+ ** backend tables (see GeoDataSyncTestUtils).  The state table is synced for
+ ** the US and Canada only, to keep the partitions few.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.context.QContext;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataTableSyncTest
+{
+   private static final Set<String> COUNTRY_FILTER = Set.of("US", "CA");
+
+   private GeoDataKeyResolver keyResolver;
+
+
+
+   /*******************************************************************************
+    ** Set up empty tables, and sync the filtered countries into them.
+    *******************************************************************************/
+   @BeforeEach
+   void beforeEach() throws QException
+   {
+      GeoDataSyncTestUtils.initMemoryInstance();
+      keyResolver = new GeoDataKeyResolver();
+      new GeoDataTableSync(GeoDataSyncTable.COUNTRY, GeoDataSyncTestUtils.COUNTRY_TABLE, 100)
+         .withKeyResolver(keyResolver)
+         .withCountryFilter(COUNTRY_FILTER)
+         .run();
+   }
+
+
+
+   /*******************************************************************************
+    ** Clear the QContext.
+    *******************************************************************************/
+   @AfterEach
+   void afterEach()
+   {
+      QContext.clear();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an empty table gets every source row inserted, resolved and
+    ** hashed - and that syncing again changes nothing.
+    *******************************************************************************/
+   @Test
+   void testRun_emptyTable_insertsAllRows() throws QException
+   {
+      GeoDataSyncResult result = syncStates();
+      List<QRecord> states = GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE);
+
+      assertThat(result.getInserted()).isPositive().isEqualTo(result.getSourceCount()).isEqualTo(states.size());
+      assertThat(result.getPartitions()).isEqualTo(2);
+      assertThat(states).allSatisfy(state ->
+      {
+         assertThat(state.getValueInteger("countryId")).isIn(countryId("US"), countryId("CA"));
+         assertThat(state.getValueBoolean("isActive")).isTrue();
+         assertThat(state.getValueLong(GeoDataRowHasher.FIELD_ROW_HASH)).isNotNull();
+      });
+
+      GeoDataSyncResult rerun = syncStates();
+      assertThat(rerun.getSourceCount()).isEqualTo(result.getSourceCount());
+      assertThat(rerun.getInserted()).isZero();
+      assertThat(rerun.getUpdated()).isZero();
+      assertThat(rerun.getDeactivated()).isZero();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test the diff of one partition: a row whose natural key no longer
+    ** matches the source is deactivated, and the source row is inserted
+    ** afresh, while the other rows are left alone.
+    *******************************************************************************/
+   @Test
+   void testRun_changedNaturalKey_insertsAndDeactivates() throws QException
+   {
+      syncStates();
+      QRecord state = firstState("US");
+      String code = state.getValueString("code");
+      GeoDataSyncTestUtils.update(GeoDataSyncTestUtils.STATE_TABLE, new QRecord().withValue("id", state.getValue("id")).withValue("code", "ZZ9"));
+
+      GeoDataTableSync sync = newStateSync();
+      GeoDataSyncResult result = sync.run();
+      assertThat(result.getInserted()).isEqualTo(1);
+      assertThat(result.getUpdated()).isZero();
+      assertThat(result.getDeactivated()).isEqualTo(1);
+      assertThat(result.getSampleInserted()).containsExactly("US/" + code);
+
+      GeoDataSyncResult usResult = sync.getPartitionResults().stream().filter(r -> "US".equals(r.getPartition())).findFirst().orElseThrow();
+      assertThat(usResult.getInserted()).isEqualTo(1);
+      assertThat(usResult.getDeactivated()).isEqualTo(1);
+
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "code", "ZZ9").get(0).getValueBoolean("isActive")).isFalse();
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "code", code))
+         .anySatisfy(row -> assertThat(row.getValueBoolean("isActive")).isTrue());
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a row whose stored hash differs from its source row's is
+    ** updated back to the source values.
+    *******************************************************************************/
+   @Test
+   void testRun_changedRow_updates() throws QException
+   {
+      syncStates();
+      QRecord state = firstState("US");
+      GeoDataSyncTestUtils.update(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("id", state.getValue("id"))
+         .withValue("name", "Renamed")
+         .withValue(GeoDataRowHasher.FIELD_ROW_HASH, 0L));
+
+      GeoDataSyncResult result = syncStates();
+      assertThat(result.getUpdated()).isEqualTo(1);
+      assertThat(result.getInserted()).isZero();
+      assertThat(result.getDeactivated()).isZero();
+
+      QRecord updated = GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", state.getValue("id")).get(0);
+      assertThat(updated.getValueString("name")).isEqualTo(state.getValueString("name"));
+      assertThat(updated.getValueLong(GeoDataRowHasher.FIELD_ROW_HASH)).isEqualTo(state.getValueLong(GeoDataRowHasher.FIELD_ROW_HASH));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an inactive row that is back in the source is reactivated.
+    *******************************************************************************/
+   @Test
+   void testRun_inactiveRow_reactivates() throws QException
+   {
+      syncStates();
+      QRecord state = firstState("CA");
+      GeoDataSyncTestUtils.update(GeoDataSyncTestUtils.STATE_TABLE, new QRecord().withValue("id", state.getValue("id")).withValue("isActive", false));
+
+      GeoDataSyncResult result = syncStates();
+      assertThat(result.getUpdated()).isEqualTo(1);
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", state.getValue("id")).get(0).getValueBoolean("isActive")).isTrue();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a row of a synced partition that is not in the source is
+    ** deactivated.
+    *******************************************************************************/
+   @Test
+   void testRun_rowNotInSource_deactivates() throws QException
+   {
+      syncStates();
+      QRecord extra = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("countryId", countryId("US"))
+         .withValue("code", "ZZ9")
+         .withValue("name", "Nowhere")
+         .withValue("isActive", true)).get(0);
+
+      GeoDataSyncResult result = syncStates();
+      assertThat(result.getDeactivated()).isEqualTo(1);
+      assertThat(result.getSampleDeactivated()).containsExactly("US/" + extra.getValue("id"));
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", extra.getValue("id")).get(0).getValueBoolean("isActive")).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that active rows of a partition with no source rows (here, a
+    ** country outside the filter) are swept and deactivated after the table.
+    *******************************************************************************/
+   @Test
+   void testRun_unseenPartition_deactivates() throws QException
+   {
+      Integer mexicoId = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.COUNTRY_TABLE, new QRecord()
+         .withValue("alpha2Code", "MX")
+         .withValue("name", "Mexico")
+         .withValue("isActive", true)).get(0).getValueInteger("id");
+      QRecord orphan = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("countryId", mexicoId)
+         .withValue("code", "JAL")
+         .withValue("name", "Jalisco")
+         .withValue("isActive", true)).get(0);
+
+      GeoDataSyncResult result = syncStates();
+      assertThat(result.getDeactivated()).isEqualTo(1);
+      assertThat(result.getSampleDeactivated()).containsExactly(String.valueOf(orphan.getValue("id")));
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", orphan.getValue("id")).get(0).getValueBoolean("isActive")).isFalse();
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "isActive", true)).hasSize(result.getInserted());
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an active row with no partition id at all is swept and
+    ** deactivated along with the unseen partitions.
+    *******************************************************************************/
+   @Test
+   void testRun_nullPartitionId_deactivates() throws QException
+   {
+      syncStates();
+      QRecord orphan = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("code", "ZZ9")
+         .withValue("name", "Nowhere")
+         .withValue("isActive", true)).get(0);
+
+      GeoDataSyncResult result = syncStates();
+      assertThat(result.getDeactivated()).isEqualTo(1);
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", orphan.getValue("id")).get(0).getValueBoolean("isActive")).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an empty table is bulk loaded - every source row inserted, and
+    ** registered with the key resolver - and that a rerun is not.
+    *******************************************************************************/
+   @Test
+   void testRun_emptyTable_bulkLoads() throws QException
+   {
+      GeoDataTableSync sync = newStateSync().withBulkPageSize(7);
+      GeoDataSyncResult result = sync.run();
+      assertThat(sync.isBulkLoad()).isTrue();
+      assertThat(sync.isComplete()).isTrue();
+
+      List<QRecord> states = GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE);
+      assertThat(states).hasSize(result.getSourceCount()).hasSize(result.getInserted());
+      assertThat(states).allSatisfy(state ->
+      {
+         String alpha2Code = state.getValueInteger("countryId").equals(countryId("US")) ? "US" : "CA";
+         assertThat(keyResolver.getStateProvinceId(alpha2Code, state.getValueString("code"))).isEqualTo(state.getValueInteger("id"));
+      });
+
+      GeoDataTableSync rerun = newStateSync();
+      assertThat(rerun.run().getInserted()).isZero();
+      assertThat(rerun.isBulkLoad()).isFalse();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a sync stopped by its budget after its first partition is
+    ** checkpointed, and that the next run resumes after the checkpoint - to
+    ** the same rows as an uninterrupted sync.
+    *******************************************************************************/
+   @Test
+   void testRun_stoppedWithCheckpoints_resumes() throws QException
+   {
+      syncStates();
+      List<String> expected = describeStates();
+
+      List<QRecord> stale = new ArrayList<>();
+      for(QRecord state : GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE))
+      {
+         stale.add(new QRecord().withValue("id", state.getValue("id")).withValue("name", "Stale").withValue(GeoDataRowHasher.FIELD_ROW_HASH, 0L));
+      }
+      GeoDataSyncTestUtils.update(GeoDataSyncTestUtils.STATE_TABLE, stale.toArray(new QRecord[0]));
+
+      GeoDataTableSync first = newStateSync()
+         .withBudget(new ExhaustedAfterBudget(1))
+         .withCheckpoints(new GeoDataSyncStateStore(GeoDataSyncTestUtils.PREFIX), "fingerprint");
+      GeoDataSyncResult firstResult = first.run();
+      assertThat(first.isComplete()).isFalse();
+      assertThat(first.isResumed()).isFalse();
+      assertThat(firstResult.getPartitions()).isEqualTo(1);
+      assertThat(firstResult.getUpdated()).isPositive().isLessThan(stale.size());
+
+      GeoDataSyncStateStore store = new GeoDataSyncStateStore(GeoDataSyncTestUtils.PREFIX);
+      assertThat(store.getCheckpoint(GeoDataSyncTable.STATE_PROVINCE, "fingerprint")).isEqualTo(first.getPartitionResults().get(0).getPartition());
+      assertThat(store.getCheckpoint(GeoDataSyncTable.STATE_PROVINCE, "other")).isNull();
+
+      GeoDataTableSync second = newStateSync().withCheckpoints(store, "fingerprint");
+      GeoDataSyncResult secondResult = second.run();
+      assertThat(second.isResumed()).isTrue();
+      assertThat(second.isComplete()).isTrue();
+      assertThat(secondResult.getPartitions()).isEqualTo(1);
+      assertThat(firstResult.getUpdated() + secondResult.getUpdated()).isEqualTo(stale.size());
+      assertThat(secondResult.getDeactivated()).isZero();
+      assertThat(describeStates()).isEqualTo(expected);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a cancelled sync starts no partition, and skips the sweep of
+    ** unseen partitions (as they were not read, rather than removed).
+    *******************************************************************************/
+   @Test
+   void testRun_cancelled_stopsWithoutSweeping() throws QException
+   {
+      syncStates();
+      Integer mexicoId = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.COUNTRY_TABLE, new QRecord()
+         .withValue("alpha2Code", "MX")
+         .withValue("name", "Mexico")
+         .withValue("isActive", true)).get(0).getValueInteger("id");
+      QRecord orphan = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("countryId", mexicoId)
+         .withValue("code", "JAL")
+         .withValue("name", "Jalisco")
+         .withValue("isActive", true)).get(0);
+
+      GeoDataSyncBudget budget = new GeoDataSyncBudget(Duration.ofHours(1));
+      GeoDataSyncBudget.cancelAll();
+      GeoDataTableSync sync = newStateSync().withBudget(budget);
+      GeoDataSyncResult result = sync.run();
+
+      assertThat(sync.isComplete()).isFalse();
+      assertThat(result.getPartitions()).isZero();
+      assertThat(result.getDeactivated()).isZero();
+      assertThat(GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "id", orphan.getValue("id")).get(0).getValueBoolean("isActive")).isTrue();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the streamed (extract / transform / load) sync of one
+    ** partition at a time writes the same rows as the parallel sync.
+    *******************************************************************************/
+   @Test
+   void testRun_streamedPipeline_matchesParallel() throws QException
+   {
+      GeoDataSyncResult streamed = newStateSync().withConcurrency(1).run();
+      List<String> streamedStates = describeStates();
+      assertThat(streamed.getInserted()).isEqualTo(streamedStates.size());
+
+      GeoDataSyncTestUtils.initMemoryInstance();
+      keyResolver = new GeoDataKeyResolver();
+      new GeoDataTableSync(GeoDataSyncTable.COUNTRY, GeoDataSyncTestUtils.COUNTRY_TABLE, 100)
+         .withKeyResolver(keyResolver)
+         .withCountryFilter(COUNTRY_FILTER)
+         .run();
+      GeoDataSyncResult parallel = newStateSync().withConcurrency(4).run();
+
+      assertThat(parallel.getInserted()).isEqualTo(streamed.getInserted());
+      assertThat(describeStates()).containsExactlyInAnyOrderElementsOf(streamedStates);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an Error in the load stage of a streamed sync fails the sync,
+    ** rather than leaving the other stages waiting on their pipes.
+    *******************************************************************************/
+   @Test
+   @Timeout(30)
+   void testRun_errorInLoadStage_failsWithoutHanging() throws QException
+   {
+      GeoDataKeyResolver failingResolver = new GeoDataKeyResolver()
+      {
+         @Override
+         public void register(GeoDataSyncTable table, String countryAlpha2, QRecord record)
+         {
+            if(table == GeoDataSyncTable.STATE_PROVINCE)
+            {
+               throw new Error("register failed");
+            }
+            super.register(table, countryAlpha2, record);
+         }
+      };
+      failingResolver.load(GeoDataSyncTable.COUNTRY, GeoDataSyncTestUtils.COUNTRY_TABLE);
+
+      GeoDataTableSync sync = new GeoDataTableSync(GeoDataSyncTable.STATE_PROVINCE, GeoDataSyncTestUtils.STATE_TABLE, 10)
+         .withKeyResolver(failingResolver)
+         .withCountryFilter(COUNTRY_FILTER)
+         .withBulkPageSize(10)
+         .withConcurrency(1);
+      assertThatThrownBy(sync::run).hasRootCauseMessage("register failed");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test a dry run into empty tables: nothing is written, but every row is
+    ** planned as an insert - the states too, as the countries they would be
+    ** under get placeholder (negative) ids.
+    *******************************************************************************/
+   @Test
+   void testRun_dryRunIntoEmptyTables_plansInsertsWithoutWriting() throws QException
+   {
+      GeoDataSyncTestUtils.initMemoryInstance();
+      keyResolver = new GeoDataKeyResolver();
+      GeoDataSyncResult countries = new GeoDataTableSync(GeoDataSyncTable.COUNTRY, GeoDataSyncTestUtils.COUNTRY_TABLE, 100)
+         .withKeyResolver(keyResolver)
+         .withCountryFilter(COUNTRY_FILTER)
+         .withDryRun(true)
+         .run();
+      assertThat(countries.getInserted()).isEqualTo(2);
+      assertThat(countries.getSampleInserted()).containsExactlyInAnyOrder("US", "CA");
+      assertThat(countryId("US")).isNegative();
+      assertThat(countryId("CA")).isNegative().isNotEqualTo(countryId("US"));
+
+      GeoDataSyncResult states = newStateSync().withDryRun(true).run();
+      assertThat(states.getSourceCount()).isPositive();
+      assertThat(states.getInserted()).isEqualTo(states.getSourceCount());
+      assertThat(states.getUnresolved()).isZero();
+      assertThat(states.getSampleInserted()).isNotEmpty();
+
+      assertThat(GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.COUNTRY_TABLE)).isEmpty();
+      assertThat(GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test a dry run over synced tables: the changes are counted, with sample
+    ** keys, but no row is updated or deactivated.
+    *******************************************************************************/
+   @Test
+   void testRun_dryRun_plansChangesWithoutWriting() throws QException
+   {
+      syncStates();
+      QRecord state = firstState("US");
+      GeoDataSyncTestUtils.update(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("id", state.getValue("id"))
+         .withValue("name", "Renamed")
+         .withValue(GeoDataRowHasher.FIELD_ROW_HASH, 0L));
+      QRecord extra = GeoDataSyncTestUtils.insert(GeoDataSyncTestUtils.STATE_TABLE, new QRecord()
+         .withValue("countryId", countryId("CA"))
+         .withValue("code", "ZZ9")
+         .withValue("name", "Nowhere")
+         .withValue("isActive", true)).get(0);
+      List<String> before = describeStates();
+
+      GeoDataSyncResult result = newStateSync().withDryRun(true).run();
+      assertThat(result.getInserted()).isZero();
+      assertThat(result.getUpdated()).isEqualTo(1);
+      assertThat(result.getDeactivated()).isEqualTo(1);
+      assertThat(result.getSampleUpdated()).containsExactly("US/" + state.getValueString("code"));
+      assertThat(result.getSampleDeactivated()).containsExactly("CA/" + extra.getValue("id"));
+
+      assertThat(describeStates()).isEqualTo(before);
+   }
+
+
+
+   /*******************************************************************************
+    ** Sync the state table.
+    *******************************************************************************/
+   private GeoDataSyncResult syncStates() throws QException
+   {
+      return newStateSync().run();
+   }
+
+
+
+   /*******************************************************************************
+    ** Build a sync of the state table, for the filtered countries.
+    *******************************************************************************/
+   private GeoDataTableSync newStateSync()
+   {
+      return new GeoDataTableSync(GeoDataSyncTable.STATE_PROVINCE, GeoDataSyncTestUtils.STATE_TABLE, 10)
+         .withKeyResolver(keyResolver)
+         .withCountryFilter(COUNTRY_FILTER);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the synced id of a country.
+    *******************************************************************************/
+   private Integer countryId(String alpha2Code)
+   {
+      return keyResolver.getCountryId(alpha2Code);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the first stored state of a country.
+    *******************************************************************************/
+   private QRecord firstState(String alpha2Code) throws QException
+   {
+      return GeoDataSyncTestUtils.queryWhere(GeoDataSyncTestUtils.STATE_TABLE, "countryId", countryId(alpha2Code)).get(0);
+   }
+
+
+
+   /*******************************************************************************
+    ** Describe every stored state (in id order), for comparing whole tables.
+    *******************************************************************************/
+   private List<String> describeStates() throws QException
+   {
+      List<String> descriptions = new ArrayList<>();
+      for(QRecord state : GeoDataSyncTestUtils.queryAll(GeoDataSyncTestUtils.STATE_TABLE))
+      {
+         descriptions.add(state.getValue("id") + "/" + state.getValue("countryId") + "/" + state.getValue("code") + "/" + state.getValue("name")
+            + "/" + state.getValue("isActive") + "/" + state.getValue(GeoDataRowHasher.FIELD_ROW_HASH));
+      }
+      return descriptions;
+   }
+
+
+
+   /*******************************************************************************
+    ** A budget that is exhausted after it has been checked a given number of
+    ** times - that is, once that many partitions have been started.
+    *******************************************************************************/
+   private static class ExhaustedAfterBudget extends GeoDataSyncBudget
+   {
+      private final int allowedChecks;
+      private int       checks;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      ExhaustedAfterBudget(int allowedChecks)
+      {
+         super(null);
+         this.allowedChecks = allowedChecks;
+      }
+
+
+
+      /*******************************************************************************
+       ** Exhausted once the allowed checks are used up.
+       *******************************************************************************/
+      @Override
+      public boolean isExhausted()
+      {
+         return checks++ >= allowedChecks;
+      }
+   }
+}
@@ -0,0 +1,52 @@
+/*******************************************************************************
+ ** Unit tests for LongIntHashMap.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.sync;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class LongIntHashMapTest
+{
+
+   /*******************************************************************************
+    ** Test put, replace and get, including missing keys.
+    *******************************************************************************/
+   @Test
+   void testPutAndGet()
+   {
+      LongIntHashMap map = new LongIntHashMap(4);
+      map.put(1L, 10);
+      map.put(Long.MIN_VALUE, 20);
+      map.put(1L, 11);
+
+      assertThat(map.get(1L, -1)).isEqualTo(11);
+      assertThat(map.get(Long.MIN_VALUE, -1)).isEqualTo(20);
+      assertThat(map.get(2L, -1)).isEqualTo(-1);
+      assertThat(map.containsKey(2L)).isFalse();
+      assertThat(map.size()).isEqualTo(2);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the map grows past its expected size without losing entries.
+    *******************************************************************************/
+   @Test
+   void testPut_growsPastExpectedSize()
+   {
+      LongIntHashMap map = new LongIntHashMap(1);
+      for(int i = 0; i < 10_000; i++)
+      {
+         map.put(((long) i << 32) | 0x4341, i);
+      }
+
+      assertThat(map.size()).isEqualTo(10_000);
+      for(int i = 0; i < 10_000; i++)
+      {
+         assertThat(map.get(((long) i << 32) | 0x4341, -1)).isEqualTo(i);
+      }
+   }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataTypeaheadIndexes.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.typeahead;
+
+
+import java.util.List;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataTypeaheadIndexesTest
+{
+
+   /*******************************************************************************
+    ** Test searching cities and states built from table rows, by id, ranked
+    ** by population and scoped by country or state.
+    *******************************************************************************/
+   @Test
+   void testSearch_byIdRankedAndScoped()
+   {
+      GeoDataTypeaheadIndexes indexes = new GeoDataTypeaheadIndexes(
+         List.of(
+            state(1, "California", 100),
+            state(2, "Colorado", 100),
+            state(3, "Ceará", 200)),
+         List.of(
+            city(11, "Los Angeles", 3_898_747, 1),
+            city(12, "Colorado Springs", 478_961, 2),
+            city(13, "Denver", 715_522, 2),
+            city(14, "Fortaleza", 2_428_708, 3),
+            city(15, "Longmont", 98_885, 2),
+            city(16, "Nowhere", null, null)));
+
+      assertThat(indexes.searchCities("lo", null, null, 5)).containsExactly(11, 15);
+      assertThat(indexes.searchCities("lo", 100, null, 5)).containsExactly(11, 15);
+      assertThat(indexes.searchCities("lo", null, 2, 5)).containsExactly(15);
+      assertThat(indexes.searchCities("", 200, null, 5)).containsExactly(14);
+      assertThat(indexes.searchCities("no", null, null, 5)).containsExactly(16);
+
+      assertThat(indexes.searchStateProvinces("c", null, 5)).containsExactly(1, 3, 2);
+      assertThat(indexes.searchStateProvinces("cea", 200, 5)).containsExactly(3);
+      assertThat(indexes.searchStateProvinces("c", 300, 5)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a state row.
+    *******************************************************************************/
+   private static QRecord state(Integer id, String name, Integer countryId)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("name", name)
+         .withValue("countryId", countryId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Make a city row.
+    *******************************************************************************/
+   private static QRecord city(Integer id, String name, Integer population, Integer stateProvinceId)
+   {
+      return new QRecord()
+         .withValue("id", id)
+         .withValue("name", name)
+         .withValue("population", population)
+         .withValue("stateProvinceId", stateProvinceId);
+   }
+}
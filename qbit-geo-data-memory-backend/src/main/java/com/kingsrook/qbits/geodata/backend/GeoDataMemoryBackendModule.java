@@ -0,0 +1,76 @@
+/*******************************************************************************
+ ** Read-only QQQ backend module that serves the geo tables (country,
+ ** stateProvince, city - prefixed or not) straight from the bundled data,
+ ** with no database.
+ **
+ ** Point GeoDataQBitConfig.backendName at a backend of this type, and
+ ** QueryAction, GetAction and CountAction - and so the tables' possible
+ ** value sources, which search through QueryAction - are answered from
+ ** in-memory indexes (see GeoDataMemoryTable).  There is nothing to create,
+ ** sync or load, so Liquibase and the sync process are not needed.  Inserts,
+ ** updates and deletes are not supported.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import com.kingsrook.qqq.backend.core.actions.interfaces.CountInterface;
+import com.kingsrook.qqq.backend.core.actions.interfaces.GetInterface;
+import com.kingsrook.qqq.backend.core.actions.interfaces.QueryInterface;
+import com.kingsrook.qqq.backend.core.modules.backend.QBackendModuleDispatcher;
+import com.kingsrook.qqq.backend.core.modules.backend.QBackendModuleInterface;
+
+
+public class GeoDataMemoryBackendModule implements QBackendModuleInterface
+{
+   public static final String BACKEND_TYPE = "geoDataMemory";
+
+   static
+   {
+      QBackendModuleDispatcher.registerBackendModule(new GeoDataMemoryBackendModule());
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the type of backend this module serves.
+    *******************************************************************************/
+   @Override
+   public String getBackendType()
+   {
+      return BACKEND_TYPE;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the module's query implementation.
+    *******************************************************************************/
+   @Override
+   public QueryInterface getQueryInterface()
+   {
+      return new GeoDataMemoryQueryAction();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the module's count implementation.
+    *******************************************************************************/
+   @Override
+   public CountInterface getCountInterface()
+   {
+      return new GeoDataMemoryCountAction();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the module's get implementation (a lookup by id, rather than a
+    ** query).
+    *******************************************************************************/
+   @Override
+   public GetInterface getGetInterface()
+   {
+      return new GeoDataMemoryGetAction();
+   }
+}
@@ -0,0 +1,28 @@
+/*******************************************************************************
+ ** Count implementation for GeoDataMemoryBackendModule.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import com.kingsrook.qqq.backend.core.actions.interfaces.CountInterface;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.count.CountInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.count.CountOutput;
+
+
+public class GeoDataMemoryCountAction implements CountInterface
+{
+
+   /*******************************************************************************
+    ** Count the rows of the in-memory table matching the input's filter.
+    *******************************************************************************/
+   @Override
+   public CountOutput execute(CountInput countInput) throws QException
+   {
+      GeoDataMemoryTable table = GeoDataMemoryTables.getBundled().getTable(countInput.getTableName());
+
+      CountOutput countOutput = new CountOutput();
+      countOutput.setCount(table.count(countInput.getFilter()));
+      return countOutput;
+   }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ ** Get implementation for GeoDataMemoryBackendModule: by primary key, an
+ ** index lookup; by unique key, a query of EQUALS criteria (which the
+ ** table's indexes also answer).
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import com.kingsrook.qqq.backend.core.actions.interfaces.GetInterface;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.get.GetInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.get.GetOutput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+
+
+public class GeoDataMemoryGetAction implements GetInterface
+{
+
+   /*******************************************************************************
+    ** Get one row of the in-memory table.
+    *******************************************************************************/
+   @Override
+   public GetOutput execute(GetInput getInput) throws QException
+   {
+      GeoDataMemoryTable table = GeoDataMemoryTables.getBundled().getTable(getInput.getTableName());
+
+      GetOutput getOutput = new GetOutput();
+      if(getInput.getPrimaryKey() != null)
+      {
+         getOutput.setRecord(table.getById(getInput.getPrimaryKey(), null));
+      }
+      else if(getInput.getUniqueKey() != null)
+      {
+         QQueryFilter filter = new QQueryFilter();
+         for(Map.Entry<String, Serializable> entry : getInput.getUniqueKey().entrySet())
+         {
+            filter.addCriteria(new QFilterCriteria(entry.getKey(), QCriteriaOperator.EQUALS, entry.getValue()));
+         }
+
+         List<QRecord> records = table.query(filter.withLimit(1), null);
+         getOutput.setRecord(records.isEmpty() ? null : records.get(0));
+      }
+      else
+      {
+         throw new QException("Either a primary key or a unique key is required to get a " + table.getName());
+      }
+      return getOutput;
+   }
+}
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ ** Query implementation for GeoDataMemoryBackendModule.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import com.kingsrook.qqq.backend.core.actions.interfaces.QueryInterface;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryInput;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QueryOutput;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+
+
+public class GeoDataMemoryQueryAction implements QueryInterface
+{
+
+   /*******************************************************************************
+    ** Run a query against the in-memory table.
+    *******************************************************************************/
+   @Override
+   public QueryOutput execute(QueryInput queryInput) throws QException
+   {
+      if(CollectionUtils.nullSafeHasContents(queryInput.getQueryJoins()))
+      {
+         throw new QException("Joins are not supported by the geo data memory backend");
+      }
+
+      GeoDataMemoryTable table = GeoDataMemoryTables.getBundled().getTable(queryInput.getTableName());
+
+      QueryOutput queryOutput = new QueryOutput(queryInput);
+      queryOutput.addRecords(table.query(queryInput.getFilter(), queryInput.getFieldNamesToInclude()));
+      return queryOutput;
+   }
+}
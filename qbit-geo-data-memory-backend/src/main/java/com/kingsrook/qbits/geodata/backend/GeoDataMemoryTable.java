@@ -0,0 +1,296 @@
+/*******************************************************************************
+ ** One geo table's rows, held in memory and indexed for filtering.
+ **
+ ** Rows are built once and never change.  Each indexed field (id, natural
+ ** keys, foreign keys) maps a normalized value to the slots of the rows
+ ** holding it, so a filter that ANDs an EQUALS or IN criterion on an indexed
+ ** field only evaluates the rows that criterion can match, rather than
+ ** scanning the table.  Candidates are then checked against the whole
+ ** filter with QQQ's BackendQueryFilterUtils (as the memory backend does),
+ ** so the index only has to find a superset of the matches.
+ **
+ ** Callers get copies of the rows, so the shared rows are never modified.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qqq.backend.core.modules.backend.implementations.utils.BackendQueryFilterUtils;
+import com.kingsrook.qqq.backend.core.utils.CollectionUtils;
+
+
+public class GeoDataMemoryTable
+{
+   private static final int[] NO_SLOTS = new int[0];
+
+   private final String                          name;
+   private final List<QRecord>                   rows;
+   private final Map<String, Map<String, int[]>> indexes = new HashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes the rows by each of the given fields.
+    *******************************************************************************/
+   public GeoDataMemoryTable(String name, List<QRecord> rows, Collection<String> indexedFields)
+   {
+      this.name = name;
+      this.rows = List.copyOf(rows);
+
+      for(String fieldName : indexedFields)
+      {
+         Map<String, List<Integer>> slotLists = new HashMap<>();
+         for(int slot = 0; slot < this.rows.size(); slot++)
+         {
+            String key = indexKey(this.rows.get(slot).getValue(fieldName));
+            if(key != null)
+            {
+               slotLists.computeIfAbsent(key, k -> new ArrayList<>()).add(slot);
+            }
+         }
+
+         Map<String, int[]> index = new HashMap<>();
+         slotLists.forEach((key, slots) -> index.put(key, slots.stream().mapToInt(Integer::intValue).toArray()));
+         indexes.put(fieldName, index);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get copies of the rows matching a filter (all rows if null), sorted, and
+    ** with the filter's skip and limit applied.  If fieldNames is given, only
+    ** those fields are copied.
+    *******************************************************************************/
+   public List<QRecord> query(QQueryFilter filter, Set<String> fieldNames)
+   {
+      List<QRecord> matches = new ArrayList<>(getMatches(filter));
+      if(filter != null)
+      {
+         BackendQueryFilterUtils.sortRecordList(filter, matches);
+         matches = BackendQueryFilterUtils.applySkipAndLimit(filter, matches);
+      }
+
+      List<QRecord> copies = new ArrayList<>(matches.size());
+      for(QRecord match : matches)
+      {
+         copies.add(copy(match, fieldNames));
+      }
+      return copies;
+   }
+
+
+
+   /*******************************************************************************
+    ** Count the rows matching a filter (all rows if null).
+    *******************************************************************************/
+   public int count(QQueryFilter filter)
+   {
+      return getMatches(filter).size();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a copy of the row with an id, or null.
+    *******************************************************************************/
+   public QRecord getById(Serializable id, Set<String> fieldNames)
+   {
+      int[] slots = indexes.getOrDefault("id", Map.of()).getOrDefault(indexKey(id), NO_SLOTS);
+      return slots.length == 0 ? null : copy(rows.get(slots[0]), fieldNames);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (shared, uncopied) rows matching a filter.
+    *******************************************************************************/
+   private List<QRecord> getMatches(QQueryFilter filter)
+   {
+      List<QRecord> candidates = getCandidates(filter);
+      if(filter == null)
+      {
+         return candidates;
+      }
+
+      List<QRecord> matches = new ArrayList<>();
+      for(QRecord candidate : candidates)
+      {
+         if(BackendQueryFilterUtils.doesRecordMatch(filter, candidate))
+         {
+            matches.add(candidate);
+         }
+      }
+      return matches;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the rows a filter could match: if the filter's top level ANDs an
+    ** EQUALS or IN criterion on an indexed field, the rows that criterion's
+    ** values select (from the most selective such criterion), otherwise all
+    ** rows.
+    *******************************************************************************/
+   List<QRecord> getCandidates(QQueryFilter filter)
+   {
+      if(filter == null || CollectionUtils.nullSafeIsEmpty(filter.getCriteria()))
+      {
+         return rows;
+      }
+
+      int clauseCount = filter.getCriteria().size() + (filter.getSubFilters() == null ? 0 : filter.getSubFilters().size());
+      if(filter.getBooleanOperator() == QQueryFilter.BooleanOperator.OR && clauseCount > 1)
+      {
+         return rows;
+      }
+
+      int[] best = null;
+      for(QFilterCriteria criteria : filter.getCriteria())
+      {
+         int[] slots = getSlots(criteria);
+         if(slots != null && (best == null || slots.length < best.length))
+         {
+            best = slots;
+         }
+      }
+
+      if(best == null)
+      {
+         return rows;
+      }
+
+      List<QRecord> candidates = new ArrayList<>(best.length);
+      for(int slot : best)
+      {
+         candidates.add(rows.get(slot));
+      }
+      return candidates;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the (sorted, distinct) slots of the rows a criterion can match, using
+    ** its field's index - or null if it cannot be answered from an index.
+    *******************************************************************************/
+   private int[] getSlots(QFilterCriteria criteria)
+   {
+      Map<String, int[]> index = indexes.get(criteria.getFieldName());
+      if(index == null || criteria.getOtherFieldName() != null || CollectionUtils.nullSafeIsEmpty(criteria.getValues()))
+      {
+         return null;
+      }
+      if(criteria.getOperator() != QCriteriaOperator.EQUALS && criteria.getOperator() != QCriteriaOperator.IN)
+      {
+         return null;
+      }
+
+      List<int[]> slotLists = new ArrayList<>();
+      int total = 0;
+      for(Serializable value : criteria.getValues())
+      {
+         //////////////////////////////////////////////////////////////////////
+         // a value that is not a plain string or number (e.g., an           //
+         // expression) cannot be looked up - fall back to a scan            //
+         //////////////////////////////////////////////////////////////////////
+         if(!(value instanceof String) && !(value instanceof Number))
+         {
+            return null;
+         }
+
+         int[] slots = index.getOrDefault(indexKey(value), NO_SLOTS);
+         slotLists.add(slots);
+         total += slots.length;
+         if(criteria.getOperator() == QCriteriaOperator.EQUALS)
+         {
+            break;
+         }
+      }
+
+      int[] slots = new int[total];
+      int position = 0;
+      for(int[] slotList : slotLists)
+      {
+         System.arraycopy(slotList, 0, slots, position, slotList.length);
+         position += slotList.length;
+      }
+      return Arrays.stream(slots).sorted().distinct().toArray();
+   }
+
+
+
+   /*******************************************************************************
+    ** Normalize a value for indexing: numbers (or numeric strings) as their
+    ** canonical digits, other strings upper-cased - so a lookup finds
+    ** every row a case-insensitive or type-coercing comparison could match.
+    *******************************************************************************/
+   static String indexKey(Serializable value)
+   {
+      if(value == null)
+      {
+         return null;
+      }
+
+      String string = String.valueOf(value).trim();
+      try
+      {
+         return new BigDecimal(string).stripTrailingZeros().toPlainString();
+      }
+      catch(NumberFormatException e)
+      {
+         return string.toUpperCase(Locale.ROOT);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Copy a row - only the given fields, if any are given.
+    *******************************************************************************/
+   private static QRecord copy(QRecord row, Set<String> fieldNames)
+   {
+      if(fieldNames == null)
+      {
+         return new QRecord(row);
+      }
+
+      QRecord copy = new QRecord();
+      copy.setTableName(row.getTableName());
+      for(String fieldName : fieldNames)
+      {
+         copy.setValue(fieldName, row.getValue(fieldName));
+      }
+      return copy;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getName()
+   {
+      return name;
+   }
+
+
+   public int size()
+   {
+      return rows.size();
+   }
+}
@@ -0,0 +1,170 @@
+/*******************************************************************************
+ ** The geo tables served by GeoDataMemoryBackendModule, built from a
+ ** GeoDataRegistry as QRecords in the tables' own layout.
+ **
+ ** There is no database to assign ids, so they are derived from codes:
+ ** - country: its alpha-2 code as a base-26 number, plus 1 (1..676)
+ ** - stateProvince: (countryId << 16) + its code (up to 3 letters or
+ **   digits) as a base-37 number
+ ** - city: its position in the bundled data, plus 1
+ ** Country and state ids therefore stay the same across data versions; city
+ ** ids only within one.  They are not the ids a synced database assigns.
+ **
+ ** Tables are looked up by name with or without the QBit's table name prefix
+ ** (e.g., "shipping_country"), so any number of prefixed instances can share
+ ** the one set of rows.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import com.kingsrook.qbits.geodata.model.City;
+import com.kingsrook.qbits.geodata.model.Country;
+import com.kingsrook.qbits.geodata.model.StateProvince;
+import com.kingsrook.qbits.geodata.registry.GeoCity;
+import com.kingsrook.qbits.geodata.registry.GeoCountry;
+import com.kingsrook.qbits.geodata.registry.GeoDataRegistry;
+import com.kingsrook.qbits.geodata.registry.GeoStateProvince;
+
+
+public class GeoDataMemoryTables
+{
+   private static final int STATE_CODE_RADIX = 37;
+
+   private static GeoDataMemoryTables bundled;
+
+   private final GeoDataMemoryTable countries;
+   private final GeoDataMemoryTable stateProvinces;
+   private final GeoDataMemoryTable cities;
+
+
+
+   /*******************************************************************************
+    ** Constructor - builds and indexes the tables' rows.
+    *******************************************************************************/
+   public GeoDataMemoryTables(GeoDataRegistry registry)
+   {
+      List<QRecord> countryRows = new ArrayList<>();
+      List<QRecord> stateRows = new ArrayList<>();
+      List<QRecord> cityRows = new ArrayList<>();
+
+      for(GeoCountry country : registry.getCountries())
+      {
+         Integer countryId = getCountryId(country.alpha2Code());
+         countryRows.add(new QRecord()
+            .withTableName(Country.TABLE_NAME)
+            .withValue("id", countryId)
+            .withValue("alpha2Code", country.alpha2Code())
+            .withValue("alpha3Code", country.alpha3Code())
+            .withValue("numericCode", country.numericCode())
+            .withValue("name", country.name())
+            .withValue("officialName", country.officialName())
+            .withValue("isActive", true));
+
+         for(GeoStateProvince state : registry.getStateProvinces(country.alpha2Code()))
+         {
+            stateRows.add(new QRecord()
+               .withTableName(StateProvince.TABLE_NAME)
+               .withValue("id", getStateProvinceId(country.alpha2Code(), state.code()))
+               .withValue("countryId", countryId)
+               .withValue("code", state.code())
+               .withValue("name", state.name())
+               .withValue("subdivisionType", state.subdivisionType())
+               .withValue("isActive", true));
+         }
+
+         for(GeoCity city : registry.getCountryCities(country.alpha2Code()))
+         {
+            cityRows.add(new QRecord()
+               .withTableName(City.TABLE_NAME)
+               .withValue("id", cityRows.size() + 1)
+               .withValue("stateProvinceId", city.stateCode() == null ? null : getStateProvinceId(country.alpha2Code(), city.stateCode()))
+               .withValue("name", city.name())
+               .withValue("asciiName", city.asciiName())
+               .withValue("population", city.population())
+               .withValue("latitude", city.latitude())
+               .withValue("longitude", city.longitude())
+               .withValue("timezone", city.timezone())
+               .withValue("isActive", true));
+         }
+      }
+
+      this.countries = new GeoDataMemoryTable(Country.TABLE_NAME, countryRows, List.of("id", "alpha2Code", "alpha3Code", "numericCode"));
+      this.stateProvinces = new GeoDataMemoryTable(StateProvince.TABLE_NAME, stateRows, List.of("id", "countryId", "code"));
+      this.cities = new GeoDataMemoryTable(City.TABLE_NAME, cityRows, List.of("id", "stateProvinceId", "name"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the tables of the bundled data, building them on first use.
+    *******************************************************************************/
+   public static synchronized GeoDataMemoryTables getBundled()
+   {
+      if(bundled == null)
+      {
+         bundled = new GeoDataMemoryTables(GeoDataRegistry.getBundled());
+      }
+      return bundled;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a table by its (possibly prefixed) name.
+    *******************************************************************************/
+   public GeoDataMemoryTable getTable(String tableName) throws QException
+   {
+      for(GeoDataMemoryTable table : List.of(countries, stateProvinces, cities))
+      {
+         if(tableName != null && (tableName.equals(table.getName()) || tableName.endsWith("_" + table.getName())))
+         {
+            return table;
+         }
+      }
+      throw new QException("Table [" + tableName + "] is not a geo data table, so cannot be served by the geo data memory backend");
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the id of a country, by alpha-2 code - or null for a code that is
+    ** not two letters.
+    *******************************************************************************/
+   public static Integer getCountryId(String alpha2Code)
+   {
+      int index = GeoDataRegistry.alphaIndex(alpha2Code, 2);
+      return index < 0 ? null : index + 1;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the id of a state/province, by its country's alpha-2 code and its
+    ** own code - or null if either cannot be encoded.
+    *******************************************************************************/
+   public static Integer getStateProvinceId(String countryAlpha2, String code)
+   {
+      Integer countryId = getCountryId(countryAlpha2);
+      if(countryId == null || code == null || code.isEmpty() || code.length() > 3)
+      {
+         return null;
+      }
+
+      int codeValue = 0;
+      for(int i = 0; i < code.length(); i++)
+      {
+         char c = Character.toUpperCase(code.charAt(i));
+         int digit = c >= '0' && c <= '9' ? c - '0' + 1 : (c >= 'A' && c <= 'Z' ? c - 'A' + 11 : -1);
+         if(digit < 0)
+         {
+            return null;
+         }
+         codeValue = codeValue * STATE_CODE_RADIX + digit;
+      }
+      return (countryId << 16) + codeValue;
+   }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataMemoryTable.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import java.util.List;
+import java.util.Set;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QCriteriaOperator;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QFilterCriteria;
+import com.kingsrook.qqq.backend.core.model.actions.tables.query.QQueryFilter;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataMemoryTableTest
+{
+
+   /*******************************************************************************
+    ** Build a small table of states, indexed by id and countryId.
+    *******************************************************************************/
+   private static GeoDataMemoryTable buildTable()
+   {
+      return new GeoDataMemoryTable("stateProvince", List.of(
+         new QRecord().withValue("id", 1).withValue("countryId", 10).withValue("code", "CA").withValue("name", "California"),
+         new QRecord().withValue("id", 2).withValue("countryId", 10).withValue("code", "CO").withValue("name", "Colorado"),
+         new QRecord().withValue("id", 3).withValue("countryId", 20).withValue("code", "ON").withValue("name", "Ontario")
+      ), List.of("id", "countryId", "code"));
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an EQUALS criterion on an indexed field narrows the candidates.
+    *******************************************************************************/
+   @Test
+   void testGetCandidates_indexedEquals_narrowsToIndexedRows()
+   {
+      GeoDataMemoryTable table = buildTable();
+
+      QQueryFilter filter = new QQueryFilter(new QFilterCriteria("countryId", QCriteriaOperator.EQUALS, 10));
+      assertThat(table.getCandidates(filter)).hasSize(2);
+
+      filter = new QQueryFilter(new QFilterCriteria("countryId", QCriteriaOperator.IN, 20, "10"));
+      assertThat(table.getCandidates(filter)).hasSize(3);
+
+      filter = new QQueryFilter(new QFilterCriteria("name", QCriteriaOperator.EQUALS, "Ontario"));
+      assertThat(table.getCandidates(filter)).hasSize(3);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that an OR filter is not narrowed by any one of its criteria.
+    *******************************************************************************/
+   @Test
+   void testGetCandidates_orFilter_scansAllRows()
+   {
+      QQueryFilter filter = new QQueryFilter(
+         new QFilterCriteria("countryId", QCriteriaOperator.EQUALS, 20),
+         new QFilterCriteria("code", QCriteriaOperator.EQUALS, "CA"))
+         .withBooleanOperator(QQueryFilter.BooleanOperator.OR);
+
+      assertThat(buildTable().getCandidates(filter)).hasSize(3);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test querying and counting with a filter that is partly indexed.
+    *******************************************************************************/
+   @Test
+   void testQueryAndCount_filtersCandidates()
+   {
+      GeoDataMemoryTable table = buildTable();
+
+      QQueryFilter filter = new QQueryFilter(
+         new QFilterCriteria("countryId", QCriteriaOperator.EQUALS, 10),
+         new QFilterCriteria("name", QCriteriaOperator.STARTS_WITH, "Col"));
+
+      List<QRecord> records = table.query(filter, null);
+      assertThat(records).hasSize(1);
+      assertThat(records.get(0).getValueString("code")).isEqualTo("CO");
+      assertThat(table.count(filter)).isEqualTo(1);
+      assertThat(table.count(null)).isEqualTo(3);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that queries return copies, limited to requested fields if given.
+    *******************************************************************************/
+   @Test
+   void testQuery_returnsCopies()
+   {
+      GeoDataMemoryTable table = buildTable();
+
+      QRecord record = table.query(null, null).get(0);
+      record.setValue("name", "changed");
+      assertThat(table.getById(1, null).getValueString("name")).isEqualTo("California");
+
+      QRecord idOnly = table.query(null, Set.of("id")).get(0);
+      assertThat(idOnly.getValues()).containsOnlyKeys("id");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test getting rows by id, given as any type.
+    *******************************************************************************/
+   @Test
+   void testGetById()
+   {
+      GeoDataMemoryTable table = buildTable();
+
+      assertThat(table.getById(3, null).getValueString("code")).isEqualTo("ON");
+      assertThat(table.getById(3L, null).getValueString("code")).isEqualTo("ON");
+      assertThat(table.getById("3", null).getValueString("code")).isEqualTo("ON");
+      assertThat(table.getById(4, null)).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test index key normalization.
+    *******************************************************************************/
+   @Test
+   void testIndexKey()
+   {
+      assertThat(GeoDataMemoryTable.indexKey(5)).isEqualTo("5");
+      assertThat(GeoDataMemoryTable.indexKey("05")).isEqualTo("5");
+      assertThat(GeoDataMemoryTable.indexKey("ca")).isEqualTo("CA");
+      assertThat(GeoDataMemoryTable.indexKey(null)).isNull();
+   }
+}
@@ -0,0 +1,73 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataMemoryTables.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.backend;
+
+
+import com.kingsrook.qqq.backend.core.exceptions.QException;
+import com.kingsrook.qqq.backend.core.model.data.QRecord;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataMemoryTablesTest
+{
+
+   /*******************************************************************************
+    ** Test that tables are found by name, with or without a prefix.
+    *******************************************************************************/
+   @Test
+   void testGetTable_prefixedOrNot() throws QException
+   {
+      GeoDataMemoryTables tables = GeoDataMemoryTables.getBundled();
+
+      assertThat(tables.getTable("country").size()).isEqualTo(250);
+      assertThat(tables.getTable("shipping_country").size()).isEqualTo(250);
+      assertThat(tables.getTable("shipping_stateProvince").size()).isEqualTo(5296);
+      assertThat(tables.getTable("shipping_city").getName()).isEqualTo("city");
+
+      assertThatThrownBy(() -> tables.getTable("shipping_order"))
+         .isInstanceOf(QException.class)
+         .hasMessageContaining("not a geo data table");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that states reference their country's id.
+    *******************************************************************************/
+   @Test
+   void testRows_statesReferenceCountryIds() throws QException
+   {
+      GeoDataMemoryTables tables = GeoDataMemoryTables.getBundled();
+
+      Integer usId = GeoDataMemoryTables.getCountryId("US");
+      QRecord us = tables.getTable("country").getById(usId, null);
+      assertThat(us.getValueString("alpha3Code")).isEqualTo("USA");
+
+      QRecord california = tables.getTable("stateProvince").getById(GeoDataMemoryTables.getStateProvinceId("US", "CA"), null);
+      assertThat(california.getValueString("name")).isEqualTo("California");
+      assertThat(california.getValueInteger("countryId")).isEqualTo(usId);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test deriving ids from codes.
+    *******************************************************************************/
+   @Test
+   void testIds()
+   {
+      assertThat(GeoDataMemoryTables.getCountryId("AA")).isEqualTo(1);
+      assertThat(GeoDataMemoryTables.getCountryId("ZZ")).isEqualTo(676);
+      assertThat(GeoDataMemoryTables.getCountryId("U")).isNull();
+
+      assertThat(GeoDataMemoryTables.getStateProvinceId("US", "CA")).isNotEqualTo(GeoDataMemoryTables.getStateProvinceId("US", "CO"));
+      assertThat(GeoDataMemoryTables.getStateProvinceId("US", "ca")).isEqualTo(GeoDataMemoryTables.getStateProvinceId("US", "CA"));
+      assertThat(GeoDataMemoryTables.getStateProvinceId("US", "1")).isNotEqualTo(GeoDataMemoryTables.getStateProvinceId("US", "01"));
+      assertThat(GeoDataMemoryTables.getStateProvinceId("ZZ", "ZZZ")).isPositive();
+      assertThat(GeoDataMemoryTables.getStateProvinceId("US", "ABCD")).isNull();
+      assertThat(GeoDataMemoryTables.getStateProvinceId("US", "C-")).isNull();
+   }
+}
@@ -0,0 +1,302 @@
+/*******************************************************************************
+ ** Immutable fuzzy-match index over named items (e.g., cities), finding the
+ ** items whose name is within an edit-distance budget of some text - for
+ ** cleaning up misspelled or unaccented place names in bulk, without
+ ** scanning every name.
+ **
+ ** Names are normalized first (see GeoNameFolding), so case and accents cost
+ ** nothing: "zurich" is distance 0 from "Zürich", "sao paolo" distance 1
+ ** from "São Paulo".  Distance is Levenshtein (insert, delete, substitute).
+ **
+ ** Distinct names are held in a BK-tree: each node's children are keyed by
+ ** their distance from it, so by the triangle inequality a search for text
+ ** within distance k of some node at distance d need only visit children
+ ** keyed d - k .. d + k.  A small budget visits a small fraction of the
+ ** tree.  Items sharing a name share its node.
+ **
+ ** Matches rank by distance, then by population (greater first), then by
+ ** name.  An index never changes once built, so it can be shared by any
+ ** number of threads.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.matching;
+
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+
+public class GeoFuzzyIndex<T>
+{
+   private final Node root;
+   private final int  size;
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes the items that have a name.  Missing populations
+    ** may be given as Integer.MIN_VALUE.
+    *******************************************************************************/
+   public GeoFuzzyIndex(Collection<? extends T> source, Function<? super T, String> name, ToIntFunction<? super T> population)
+   {
+      Map<String, Node> nodes = new LinkedHashMap<>();
+      int count = 0;
+      for(T item : source)
+      {
+         String normalized = GeoNameFolding.normalize(name.apply(item));
+         if(normalized != null && !normalized.isEmpty())
+         {
+            nodes.computeIfAbsent(normalized, Node::new).add(item, population.applyAsInt(item));
+            count++;
+         }
+      }
+      size = count;
+
+      Node tree = null;
+      for(Node node : nodes.values())
+      {
+         if(tree == null)
+         {
+            tree = node;
+         }
+         else
+         {
+            insert(tree, node);
+         }
+      }
+      root = tree;
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit best-ranked items whose name is within
+    ** maxDistance edits of text.
+    *******************************************************************************/
+   public List<GeoFuzzyMatch<T>> search(String text, int maxDistance, int limit)
+   {
+      return search(text, maxDistance, limit, item -> true);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit best-ranked items accepted by filter (e.g., those
+    ** in one country) whose name is within maxDistance edits of text.
+    *******************************************************************************/
+   @SuppressWarnings("unchecked")
+   public List<GeoFuzzyMatch<T>> search(String text, int maxDistance, int limit, Predicate<? super T> filter)
+   {
+      String query = GeoNameFolding.normalize(text);
+      if(root == null || query == null || maxDistance < 0 || limit < 1)
+      {
+         return List.of();
+      }
+
+      List<Candidate> candidates = new ArrayList<>();
+      int[][] rows = new int[2][query.length() + 1];
+      Deque<Node> pending = new ArrayDeque<>();
+      pending.push(root);
+      while(!pending.isEmpty())
+      {
+         Node node = pending.pop();
+         int distance = distance(query, node.name, rows);
+         if(distance <= maxDistance)
+         {
+            for(int i = 0; i < node.items.size(); i++)
+            {
+               if(filter.test((T) node.items.get(i)))
+               {
+                  candidates.add(new Candidate(node.items.get(i), node.populations[i], node.name, distance));
+               }
+            }
+         }
+
+         for(int i = 0; i < node.childCount; i++)
+         {
+            if(Math.abs(node.childDistances[i] - distance) <= maxDistance)
+            {
+               pending.push(node.children[i]);
+            }
+         }
+      }
+
+      candidates.sort(Comparator.comparingInt(Candidate::distance)
+         .thenComparing(Comparator.comparingInt(Candidate::population).reversed())
+         .thenComparing(Candidate::name));
+
+      List<GeoFuzzyMatch<T>> matches = new ArrayList<>(Math.min(limit, candidates.size()));
+      for(Candidate candidate : candidates.subList(0, Math.min(limit, candidates.size())))
+      {
+         matches.add(new GeoFuzzyMatch<>((T) candidate.item(), candidate.distance()));
+      }
+      return matches;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the Levenshtein distance between two strings.
+    *******************************************************************************/
+   public static int distance(String a, String b)
+   {
+      return distance(a, b, new int[2][a.length() + 1]);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the Levenshtein distance between two strings, using two rows of at
+    ** least a.length() + 1 ints as work space (so a search does not allocate
+    ** per comparison).
+    *******************************************************************************/
+   private static int distance(String a, String b, int[][] rows)
+   {
+      int[] previous = rows[0];
+      int[] current = rows[1];
+      for(int i = 0; i <= a.length(); i++)
+      {
+         previous[i] = i;
+      }
+
+      for(int j = 1; j <= b.length(); j++)
+      {
+         current[0] = j;
+         char bj = b.charAt(j - 1);
+         for(int i = 1; i <= a.length(); i++)
+         {
+            int substitute = previous[i - 1] + (a.charAt(i - 1) == bj ? 0 : 1);
+            current[i] = Math.min(substitute, Math.min(previous[i], current[i - 1]) + 1);
+         }
+         int[] swap = previous;
+         previous = current;
+         current = swap;
+      }
+      return previous[a.length()];
+   }
+
+
+
+   /*******************************************************************************
+    ** Insert a node into the tree under root.
+    *******************************************************************************/
+   private static void insert(Node root, Node node)
+   {
+      Node parent = root;
+      while(true)
+      {
+         int distance = distance(node.name, parent.name);
+         Node child = parent.getChild(distance);
+         if(child == null)
+         {
+            parent.addChild(distance, node);
+            return;
+         }
+         parent = child;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the number of items indexed.
+    *******************************************************************************/
+   public int size()
+   {
+      return size;
+   }
+
+
+
+   /*******************************************************************************
+    ** An item that matched, before ranking.
+    *******************************************************************************/
+   private record Candidate(Object item, int population, String name, int distance)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** A distinct name in the tree, with its items and its children (by their
+    ** distance from it).
+    *******************************************************************************/
+   private static class Node
+   {
+      private final String       name;
+      private final List<Object> items       = new ArrayList<>(1);
+      private int[]              populations = new int[1];
+
+      private int    childCount;
+      private int[]  childDistances = new int[0];
+      private Node[] children       = new Node[0];
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      Node(String name)
+      {
+         this.name = name;
+      }
+
+
+
+      /*******************************************************************************
+       ** Add an item with this name.
+       *******************************************************************************/
+      void add(Object item, int population)
+      {
+         if(items.size() == populations.length)
+         {
+            populations = Arrays.copyOf(populations, populations.length * 2);
+         }
+         populations[items.size()] = population;
+         items.add(item);
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the child at a distance, or null.
+       *******************************************************************************/
+      Node getChild(int distance)
+      {
+         for(int i = 0; i < childCount; i++)
+         {
+            if(childDistances[i] == distance)
+            {
+               return children[i];
+            }
+         }
+         return null;
+      }
+
+
+
+      /*******************************************************************************
+       ** Add a child at a distance.
+       *******************************************************************************/
+      void addChild(int distance, Node child)
+      {
+         if(childCount == children.length)
+         {
+            childDistances = Arrays.copyOf(childDistances, Math.max(4, childCount * 2));
+            children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+         }
+         childDistances[childCount] = distance;
+         children[childCount] = child;
+         childCount++;
+      }
+   }
+}
@@ -0,0 +1,10 @@
+/*******************************************************************************
+ ** An item found by a GeoFuzzyIndex search, with the edit distance between
+ ** its (normalized) name and the text searched for.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.matching;
+
+
+public record GeoFuzzyMatch<T>(T item, int distance)
+{
+}
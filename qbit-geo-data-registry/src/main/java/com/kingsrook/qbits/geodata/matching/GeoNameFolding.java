@@ -0,0 +1,97 @@
+/*******************************************************************************
+ ** Folds place names to plain ASCII, so names can be matched as people
+ ** type them: "São Paulo" -> "Sao Paulo", "Zürich" -> "Zurich", "Łódź" ->
+ ** "Lodz", "Straße" -> "Strasse".
+ **
+ ** Accents and other combining marks are stripped (Unicode decomposition),
+ ** and the Latin letters that do not decompose (ß, æ, ø, ł, đ, þ, ...) are
+ ** spelled out.  Anything still not ASCII (e.g., a name in another script)
+ ** is dropped.  The tools use fold() to fill City.asciiName, and the
+ ** typeahead and fuzzy indexes use normalize(), so both agree.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.matching;
+
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+
+public class GeoNameFolding
+{
+   private static final Pattern MARKS      = Pattern.compile("\\p{M}+");
+   private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+   private static final Map<Character, String> LETTERS = Map.ofEntries(
+      Map.entry('ß', "ss"), Map.entry('ẞ', "SS"),
+      Map.entry('æ', "ae"), Map.entry('Æ', "AE"),
+      Map.entry('œ', "oe"), Map.entry('Œ', "OE"),
+      Map.entry('ø', "o"), Map.entry('Ø', "O"),
+      Map.entry('ł', "l"), Map.entry('Ł', "L"),
+      Map.entry('đ', "d"), Map.entry('Đ', "D"),
+      Map.entry('ð', "d"), Map.entry('Ð', "D"),
+      Map.entry('þ', "th"), Map.entry('Þ', "Th"),
+      Map.entry('ħ', "h"), Map.entry('Ħ', "H"),
+      Map.entry('ı', "i"), Map.entry('ŀ', "l"), Map.entry('Ŀ', "L"),
+      Map.entry('ŋ', "n"), Map.entry('Ŋ', "N"),
+      Map.entry('ŧ', "t"), Map.entry('Ŧ', "T"),
+      Map.entry('ʻ', "'"), Map.entry('ʼ', "'"), Map.entry('‘', "'"), Map.entry('’', "'"),
+      Map.entry('–', "-"), Map.entry('—', "-"));
+
+
+
+   /*******************************************************************************
+    ** Fold a name to ASCII, keeping its case and spacing - or null if it is
+    ** null, or has no ASCII rendering (nothing left after folding).
+    *******************************************************************************/
+   public static String fold(String name)
+   {
+      if(name == null)
+      {
+         return null;
+      }
+
+      String stripped = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+      StringBuilder folded = new StringBuilder(stripped.length());
+      for(int i = 0; i < stripped.length(); i++)
+      {
+         char c = stripped.charAt(i);
+         if(c < 128)
+         {
+            folded.append(c);
+         }
+         else
+         {
+            String replacement = LETTERS.get(c);
+            if(replacement != null)
+            {
+               folded.append(replacement);
+            }
+         }
+      }
+
+      String result = WHITESPACE.matcher(folded).replaceAll(" ").trim();
+      return result.isEmpty() ? null : result;
+   }
+
+
+
+   /*******************************************************************************
+    ** Normalize a name (or typed text) for matching: folded to ASCII where it
+    ** can be, lower case, with whitespace collapsed.  A name with no ASCII
+    ** rendering is kept as is (just lower-cased), so it can still match
+    ** itself.  Null for null.
+    *******************************************************************************/
+   public static String normalize(String name)
+   {
+      if(name == null)
+      {
+         return null;
+      }
+
+      String folded = fold(name);
+      String result = folded != null ? folded : WHITESPACE.matcher(name).replaceAll(" ").trim();
+      return result.toLowerCase(Locale.ROOT);
+   }
+}
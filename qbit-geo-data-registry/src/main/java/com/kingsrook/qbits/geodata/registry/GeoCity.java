@@ -0,0 +1,14 @@
+/*******************************************************************************
+ ** A city, as held by GeoDataRegistry.  Its country and state/province are
+ ** referenced by code, as in the bundled data; stateCode may be null.
+ ** Coordinates are at scale 7 (see GeoCityColumns).
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+import java.math.BigDecimal;
+
+
+public record GeoCity(String countryAlpha2, String stateCode, String name, String asciiName, Integer population, BigDecimal latitude, BigDecimal longitude, String timezone)
+{
+}
@@ -0,0 +1,260 @@
+/*******************************************************************************
+ ** Columnar, in-memory store of cities: one primitive (or String) array per
+ ** field, indexed by a city's row.
+ **
+ ** Coordinates are held as ints, in units of 1e-7 degrees - the precision of
+ ** the tables' DECIMAL(10,7) latitude and longitude columns - rather than as
+ ** a pair of BigDecimals per city.  A city costs a few ints and its strings,
+ ** where a GeoCity costs an object header, two BigDecimals and a boxed
+ ** population, and distance math runs on the primitives without allocating.
+ ** toFixed() and toDecimal() convert between the two forms without loss: a
+ ** coordinate with at most 7 decimal places survives the round trip exactly,
+ ** and comes back at scale 7, as the database returns it.
+ **
+ ** Foreign keys (countryId, stateProvinceId) are ints whose meaning is up to
+ ** the owner - GeoDataRegistry uses country alpha-2 indexes and state
+ ** ordinals.  Missing ints (no state, population or coordinates) are NONE.
+ **
+ ** Rows are added by the owner while it is built (add() is package-private),
+ ** and never change after, so a store can be shared by any number of threads.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import com.kingsrook.qbits.geodata.spatial.GeoSpatialIndex;
+
+
+public class GeoCityColumns
+{
+   public static final int    NONE             = Integer.MIN_VALUE;
+   public static final int    COORDINATE_SCALE = 7;
+   public static final double UNITS_PER_DEGREE = 1e7;
+
+   private int      size;
+   private int[]    countryIds;
+   private int[]    stateProvinceIds;
+   private int[]    populations;
+   private int[]    latitudes;
+   private int[]    longitudes;
+   private String[] names;
+   private String[] asciiNames;
+   private String[] timezones;
+
+
+
+   /*******************************************************************************
+    ** Constructor - an empty store, with room for initialCapacity rows.
+    *******************************************************************************/
+   GeoCityColumns(int initialCapacity)
+   {
+      int capacity = Math.max(initialCapacity, 1);
+      countryIds = new int[capacity];
+      stateProvinceIds = new int[capacity];
+      populations = new int[capacity];
+      latitudes = new int[capacity];
+      longitudes = new int[capacity];
+      names = new String[capacity];
+      asciiNames = new String[capacity];
+      timezones = new String[capacity];
+   }
+
+
+
+   /*******************************************************************************
+    ** Add a city, returning its row.  stateProvinceId may be NONE.
+    *******************************************************************************/
+   int add(int countryId, int stateProvinceId, String name, String asciiName, Integer population, BigDecimal latitude, BigDecimal longitude, String timezone)
+   {
+      if(size == countryIds.length)
+      {
+         grow(size * 2);
+      }
+
+      countryIds[size] = countryId;
+      stateProvinceIds[size] = stateProvinceId;
+      populations[size] = population == null ? NONE : population;
+      latitudes[size] = toFixed(latitude);
+      longitudes[size] = toFixed(longitude);
+      names[size] = name;
+      asciiNames[size] = asciiName;
+      timezones[size] = timezone;
+      return size++;
+   }
+
+
+
+   /*******************************************************************************
+    ** Release unused capacity, once all rows are added.
+    *******************************************************************************/
+   void trim()
+   {
+      if(size < countryIds.length)
+      {
+         grow(size);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Resize every column to a capacity.
+    *******************************************************************************/
+   private void grow(int capacity)
+   {
+      countryIds = Arrays.copyOf(countryIds, capacity);
+      stateProvinceIds = Arrays.copyOf(stateProvinceIds, capacity);
+      populations = Arrays.copyOf(populations, capacity);
+      latitudes = Arrays.copyOf(latitudes, capacity);
+      longitudes = Arrays.copyOf(longitudes, capacity);
+      names = Arrays.copyOf(names, capacity);
+      asciiNames = Arrays.copyOf(asciiNames, capacity);
+      timezones = Arrays.copyOf(timezones, capacity);
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a coordinate in degrees to units of 1e-7 degrees, rounding half
+    ** up past the 7th decimal place (as a DECIMAL(10,7) column would) - or
+    ** NONE if it is null.
+    *******************************************************************************/
+   public static int toFixed(BigDecimal degrees)
+   {
+      if(degrees == null)
+      {
+         return NONE;
+      }
+
+      int fixed = degrees.setScale(COORDINATE_SCALE, RoundingMode.HALF_UP).unscaledValue().intValueExact();
+      if(fixed == NONE)
+      {
+         throw new ArithmeticException("Coordinate out of range: " + degrees);
+      }
+      return fixed;
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a coordinate in units of 1e-7 degrees back to degrees, at scale
+    ** 7 - or null if it is NONE.
+    *******************************************************************************/
+   public static BigDecimal toDecimal(int fixed)
+   {
+      return fixed == NONE ? null : BigDecimal.valueOf(fixed, COORDINATE_SCALE);
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a coordinate in units of 1e-7 degrees to degrees, as a double -
+    ** or NaN if it is NONE.
+    *******************************************************************************/
+   public static double toDegrees(int fixed)
+   {
+      return fixed == NONE ? Double.NaN : fixed / UNITS_PER_DEGREE;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the great-circle distance in km from a row's city to a point - or
+    ** NaN if the city has no coordinates.
+    *******************************************************************************/
+   public double distanceKm(int row, double latitude, double longitude)
+   {
+      return GeoSpatialIndex.haversineKm(toDegrees(latitudes[row]), toDegrees(longitudes[row]), latitude, longitude);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's population, or null if it is not known.
+    *******************************************************************************/
+   public Integer getPopulation(int row)
+   {
+      return populations[row] == NONE ? null : populations[row];
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's latitude in degrees, or null.
+    *******************************************************************************/
+   public BigDecimal getLatitude(int row)
+   {
+      return toDecimal(latitudes[row]);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's longitude in degrees, or null.
+    *******************************************************************************/
+   public BigDecimal getLongitude(int row)
+   {
+      return toDecimal(longitudes[row]);
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public int size()
+   {
+      return size;
+   }
+
+
+   public int getCountryId(int row)
+   {
+      return countryIds[row];
+   }
+
+
+   public int getStateProvinceId(int row)
+   {
+      return stateProvinceIds[row];
+   }
+
+
+   public int getPopulationOrNone(int row)
+   {
+      return populations[row];
+   }
+
+
+   public int getLatitudeFixed(int row)
+   {
+      return latitudes[row];
+   }
+
+
+   public int getLongitudeFixed(int row)
+   {
+      return longitudes[row];
+   }
+
+
+   public String getName(int row)
+   {
+      return names[row];
+   }
+
+
+   public String getAsciiName(int row)
+   {
+      return asciiNames[row];
+   }
+
+
+   public String getTimezone(int row)
+   {
+      return timezones[row];
+   }
+}
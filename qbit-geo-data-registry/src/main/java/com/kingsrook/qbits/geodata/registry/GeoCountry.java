@@ -0,0 +1,9 @@
+/*******************************************************************************
+ ** A country, as held by GeoDataRegistry.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+public record GeoCountry(String alpha2Code, String alpha3Code, Integer numericCode, String name, String officialName)
+{
+}
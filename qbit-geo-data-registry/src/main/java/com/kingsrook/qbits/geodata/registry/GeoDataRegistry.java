@@ -0,0 +1,696 @@
+/*******************************************************************************
+ ** Immutable, in-memory registry of the bundled geo data, for lookups that
+ ** need no database: countries by alpha-2, alpha-3 or numeric code, states/
+ ** provinces by country + code, and cities by state/province (or country).
+ **
+ ** Every lookup is O(1).  Country codes are turned straight into array
+ ** indexes (26^2 slots for alpha-2, 26^3 for alpha-3, 1000 for numeric), so
+ ** a country lookup neither hashes nor allocates; states are found through
+ ** a per-country map keyed by code.  Code lookups ignore case.
+ **
+ ** Cities are held column-wise in a GeoCityColumns (coordinates as ints of
+ ** 1e-7 degrees), not as one object each; the city lists returned are views
+ ** over rows of it, making GeoCity records as they are read.  Cities with
+ ** coordinates are also held, by row, in a GeoSpatialIndex (getCityIndex()),
+ ** for nearest-city, radius and bounding-box queries, and cities and states
+ ** are held in GeoTypeaheadIndexes, for most-populous-first name searches
+ ** (states ranking by the total population of their cities).  A
+ ** GeoFuzzyIndex over city names, for typo-tolerant matching, is built on
+ ** first use (see findCities()).
+ **
+ ** A registry's data is fully loaded by its constructor and never changes
+ ** after, so one instance can be shared by any number of threads.  The bundled
+ ** registry (getBundled()) is built once per JVM, from the memory-mapped
+ ** snapshot shared with the sync.
+ **
+ ** Like the snapshot reader, this depends on nothing but the JDK.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+import com.kingsrook.qbits.geodata.matching.GeoFuzzyIndex;
+import com.kingsrook.qbits.geodata.matching.GeoFuzzyMatch;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshot;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshotSection;
+import com.kingsrook.qbits.geodata.spatial.GeoSpatialIndex;
+import com.kingsrook.qbits.geodata.typeahead.GeoTypeaheadIndex;
+
+
+public class GeoDataRegistry
+{
+   public static final String COUNTRIES_SECTION = "countries";
+   public static final String STATES_SECTION    = "states";
+   public static final String CITIES_SECTION    = "cities";
+
+   private static final int LETTERS          = 26;
+   private static final int NUMERIC_CODE_MAX = 999;
+
+   private static GeoDataRegistry bundled;
+
+   private final String                     dataVersion;
+   private final List<GeoCountry>           countries;
+   private final CountryNode[]              countryByAlpha2  = new CountryNode[LETTERS * LETTERS];
+   private final CountryNode[]              countryByAlpha3  = new CountryNode[LETTERS * LETTERS * LETTERS];
+   private final CountryNode[]              countryByNumeric = new CountryNode[NUMERIC_CODE_MAX + 1];
+   private final List<GeoStateProvince>     stateProvinces   = new ArrayList<>();
+   private final GeoCityColumns             cities;
+   private final GeoSpatialIndex<Integer>   cityIndex;
+   private final GeoTypeaheadIndex<Integer> cityTypeahead;
+   private final GeoTypeaheadIndex<Integer> stateTypeahead;
+
+   private GeoFuzzyIndex<Integer> cityFuzzyIndex;
+
+
+
+   /*******************************************************************************
+    ** Constructor - builds the registry from a snapshot's countries, states
+    ** and (if present) cities sections.  States and cities whose country or
+    ** state is not in the snapshot are left out.
+    *******************************************************************************/
+   public GeoDataRegistry(GeoDataSnapshot snapshot)
+   {
+      this.dataVersion = snapshot.getDataVersion();
+
+      List<GeoCountry> countryList = new ArrayList<>();
+      List<CountryNode> countryNodes = new ArrayList<>();
+      GeoDataSnapshotSection countrySection = snapshot.getSection(COUNTRIES_SECTION);
+      if(countrySection != null)
+      {
+         Columns c = new Columns(countrySection);
+         for(int row = 0; row < countrySection.getRowCount(); row++)
+         {
+            GeoCountry country = new GeoCountry(c.string(row, "alpha2Code"), c.string(row, "alpha3Code"), c.integer(row, "numericCode"), c.string(row, "name"), c.string(row, "officialName"));
+            int alpha2Index = alphaIndex(country.alpha2Code(), 2);
+            if(alpha2Index < 0)
+            {
+               continue;
+            }
+
+            CountryNode node = new CountryNode(country);
+            countryList.add(country);
+            countryNodes.add(node);
+            countryByAlpha2[alpha2Index] = node;
+
+            int alpha3Index = alphaIndex(country.alpha3Code(), 3);
+            if(alpha3Index >= 0)
+            {
+               countryByAlpha3[alpha3Index] = node;
+            }
+            if(country.numericCode() != null && country.numericCode() >= 0 && country.numericCode() <= NUMERIC_CODE_MAX)
+            {
+               countryByNumeric[country.numericCode()] = node;
+            }
+         }
+      }
+      this.countries = Collections.unmodifiableList(countryList);
+
+      GeoDataSnapshotSection stateSection = snapshot.getSection(STATES_SECTION);
+      if(stateSection != null)
+      {
+         Columns c = new Columns(stateSection);
+         for(int row = 0; row < stateSection.getRowCount(); row++)
+         {
+            GeoStateProvince state = new GeoStateProvince(c.string(row, "countryAlpha2"), c.string(row, "code"), c.string(row, "name"), c.string(row, "subdivisionType"));
+            CountryNode countryNode = getCountryNode(state.countryAlpha2());
+            if(countryNode != null && state.code() != null)
+            {
+               countryNode.stateByCode.put(normalizeCode(state.code()), new StateNode(state, stateProvinces.size()));
+               countryNode.states.add(state);
+               stateProvinces.add(state);
+            }
+         }
+      }
+
+      GeoDataSnapshotSection citySection = snapshot.getSection(CITIES_SECTION);
+      this.cities = new GeoCityColumns(citySection == null ? 0 : citySection.getRowCount());
+      if(citySection != null)
+      {
+         Columns c = new Columns(citySection);
+         for(int row = 0; row < citySection.getRowCount(); row++)
+         {
+            String countryAlpha2 = c.string(row, "countryAlpha2");
+            CountryNode countryNode = getCountryNode(countryAlpha2);
+            if(countryNode == null)
+            {
+               continue;
+            }
+
+            String stateCode = c.string(row, "stateCode");
+            StateNode stateNode = stateCode == null ? null : countryNode.stateByCode.get(normalizeCode(stateCode));
+            int cityRow = cities.add(alphaIndex(countryAlpha2, 2), stateNode == null ? GeoCityColumns.NONE : stateNode.ordinal, c.string(row, "name"), c.string(row, "asciiName"),
+               c.integer(row, "population"), c.decimal(row, "latitude"), c.decimal(row, "longitude"), c.string(row, "timezone"));
+
+            countryNode.cityRows.add(cityRow);
+            if(stateNode != null)
+            {
+               stateNode.cityRows.add(cityRow);
+            }
+         }
+      }
+      cities.trim();
+
+      List<Integer> cityRows = new ArrayList<>(cities.size());
+      for(int row = 0; row < cities.size(); row++)
+      {
+         cityRows.add(row);
+      }
+      this.cityIndex = new GeoSpatialIndex<>(cityRows, row -> GeoCityColumns.toDegrees(cities.getLatitudeFixed(row)), row -> GeoCityColumns.toDegrees(cities.getLongitudeFixed(row)));
+      this.cityTypeahead = new GeoTypeaheadIndex<>(cityRows, cities::getName, cities::getPopulationOrNone, cities::getCountryId, cities::getStateProvinceId);
+
+      long[] statePopulations = new long[stateProvinces.size()];
+      for(int row = 0; row < cities.size(); row++)
+      {
+         if(cities.getStateProvinceId(row) != GeoCityColumns.NONE && cities.getPopulationOrNone(row) != GeoCityColumns.NONE)
+         {
+            statePopulations[cities.getStateProvinceId(row)] += cities.getPopulationOrNone(row);
+         }
+      }
+      List<Integer> stateOrdinals = new ArrayList<>(stateProvinces.size());
+      for(int ordinal = 0; ordinal < stateProvinces.size(); ordinal++)
+      {
+         stateOrdinals.add(ordinal);
+      }
+      this.stateTypeahead = new GeoTypeaheadIndex<>(stateOrdinals, ordinal -> stateProvinces.get(ordinal).name(), ordinal -> (int) Math.min(statePopulations[ordinal], Integer.MAX_VALUE),
+         ordinal -> alphaIndex(stateProvinces.get(ordinal).countryAlpha2(), 2), ordinal -> GeoTypeaheadIndex.NONE);
+
+      ///////////////////////////////////////////////////////////////////////////
+      // freeze the per-country and per-state lists, now that they are built  //
+      ///////////////////////////////////////////////////////////////////////////
+      for(CountryNode countryNode : countryNodes)
+      {
+         countryNode.freeze(this);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the registry of the bundled data, building it on first use.
+    *******************************************************************************/
+   public static synchronized GeoDataRegistry getBundled()
+   {
+      if(bundled == null)
+      {
+         try
+         {
+            GeoDataSnapshot snapshot = GeoDataSnapshot.getBundled();
+            if(snapshot == null)
+            {
+               throw new IllegalStateException("No geo data snapshot is bundled (" + GeoDataSnapshot.SNAPSHOT_RESOURCE + ")");
+            }
+            bundled = new GeoDataRegistry(snapshot);
+         }
+         catch(IOException e)
+         {
+            throw new UncheckedIOException("Error opening " + GeoDataSnapshot.SNAPSHOT_RESOURCE, e);
+         }
+      }
+      return bundled;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a country by its alpha-2 code (e.g., "US"), or null.
+    *******************************************************************************/
+   public GeoCountry getCountryByAlpha2(String alpha2Code)
+   {
+      CountryNode node = getCountryNode(alpha2Code);
+      return node == null ? null : node.country;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a country by its alpha-3 code (e.g., "USA"), or null.
+    *******************************************************************************/
+   public GeoCountry getCountryByAlpha3(String alpha3Code)
+   {
+      int index = alphaIndex(alpha3Code, 3);
+      CountryNode node = index < 0 ? null : countryByAlpha3[index];
+      return node == null ? null : node.country;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a country by its ISO 3166-1 numeric code (e.g., 840), or null.
+    *******************************************************************************/
+   public GeoCountry getCountryByNumericCode(int numericCode)
+   {
+      CountryNode node = numericCode < 0 || numericCode > NUMERIC_CODE_MAX ? null : countryByNumeric[numericCode];
+      return node == null ? null : node.country;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a state/province by its country's alpha-2 code and its own code
+    ** (e.g., "US", "CA"), or null.
+    *******************************************************************************/
+   public GeoStateProvince getStateProvince(String countryAlpha2, String code)
+   {
+      StateNode node = getStateNode(countryAlpha2, code);
+      return node == null ? null : node.state;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a country's states/provinces, in bundled order - empty if the
+    ** country is not known.
+    *******************************************************************************/
+   public List<GeoStateProvince> getStateProvinces(String countryAlpha2)
+   {
+      CountryNode node = getCountryNode(countryAlpha2);
+      return node == null ? List.of() : node.states;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a state/province's cities - empty if the state is not known.
+    *******************************************************************************/
+   public List<GeoCity> getCities(String countryAlpha2, String stateCode)
+   {
+      StateNode node = getStateNode(countryAlpha2, stateCode);
+      return node == null ? List.of() : node.cities;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a state/province's cities - empty if the state is not known.
+    *******************************************************************************/
+   public List<GeoCity> getCities(GeoStateProvince stateProvince)
+   {
+      return getCities(stateProvince.countryAlpha2(), stateProvince.code());
+   }
+
+
+
+   /*******************************************************************************
+    ** Get all of a country's cities, including any with no state/province -
+    ** empty if the country is not known.
+    *******************************************************************************/
+   public List<GeoCity> getCountryCities(String countryAlpha2)
+   {
+      CountryNode node = getCountryNode(countryAlpha2);
+      return node == null ? List.of() : node.cities;
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit most populous cities whose name starts with text
+    ** (ignoring case and accents) - within a state/province if stateCode is
+    ** given, else within a country if countryAlpha2 is given.  Empty if the
+    ** country or state is not known.
+    *******************************************************************************/
+   public List<GeoCity> searchCities(String text, String countryAlpha2, String stateCode, int limit)
+   {
+      List<Integer> rows;
+      if(stateCode != null)
+      {
+         StateNode stateNode = getStateNode(countryAlpha2, stateCode);
+         rows = stateNode == null ? List.of() : cityTypeahead.searchState(stateNode.ordinal, text, limit);
+      }
+      else if(countryAlpha2 != null)
+      {
+         int countryIndex = alphaIndex(countryAlpha2, 2);
+         rows = countryIndex < 0 ? List.of() : cityTypeahead.searchCountry(countryIndex, text, limit);
+      }
+      else
+      {
+         rows = cityTypeahead.search(text, limit);
+      }
+      return rows.stream().map(this::getCity).toList();
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit most populous states/provinces whose name starts
+    ** with text (ignoring case and accents) - within a country if
+    ** countryAlpha2 is given.
+    *******************************************************************************/
+   public List<GeoStateProvince> searchStateProvinces(String text, String countryAlpha2, int limit)
+   {
+      List<Integer> ordinals;
+      if(countryAlpha2 != null)
+      {
+         int countryIndex = alphaIndex(countryAlpha2, 2);
+         ordinals = countryIndex < 0 ? List.of() : stateTypeahead.searchCountry(countryIndex, text, limit);
+      }
+      else
+      {
+         ordinals = stateTypeahead.search(text, limit);
+      }
+      return ordinals.stream().map(stateProvinces::get).toList();
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit cities whose name is within maxDistance edits of
+    ** text (ignoring case and accents), closest (then most populous) first -
+    ** within a country if countryAlpha2 is given.  For typo-tolerant
+    ** matching, e.g., "Sao Paolo" or "Zuerich"; a budget of 1 or 2 suits most
+    ** names.
+    *******************************************************************************/
+   public List<GeoFuzzyMatch<GeoCity>> findCities(String text, String countryAlpha2, int maxDistance, int limit)
+   {
+      int countryIndex = countryAlpha2 == null ? -1 : alphaIndex(countryAlpha2, 2);
+      if(countryAlpha2 != null && countryIndex < 0)
+      {
+         return List.of();
+      }
+
+      List<GeoFuzzyMatch<Integer>> matches = getCityFuzzyIndex().search(text, maxDistance, limit, row -> countryIndex < 0 || cities.getCountryId(row) == countryIndex);
+      return matches.stream().map(m -> new GeoFuzzyMatch<>(getCity(m.item()), m.distance())).toList();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the fuzzy-match index of city names (by row), building it on first
+    ** use.
+    *******************************************************************************/
+   public synchronized GeoFuzzyIndex<Integer> getCityFuzzyIndex()
+   {
+      if(cityFuzzyIndex == null)
+      {
+         List<Integer> rows = new ArrayList<>(cities.size());
+         for(int row = 0; row < cities.size(); row++)
+         {
+            rows.add(row);
+         }
+         cityFuzzyIndex = new GeoFuzzyIndex<>(rows, cities::getName, cities::getPopulationOrNone);
+      }
+      return cityFuzzyIndex;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the city in a row of getCityColumns() (as found, e.g., by
+    ** getCityIndex()).
+    *******************************************************************************/
+   public GeoCity getCity(int row)
+   {
+      int stateOrdinal = cities.getStateProvinceId(row);
+      return new GeoCity(
+         countryByAlpha2[cities.getCountryId(row)].country.alpha2Code(),
+         stateOrdinal == GeoCityColumns.NONE ? null : stateProvinces.get(stateOrdinal).code(),
+         cities.getName(row),
+         cities.getAsciiName(row),
+         cities.getPopulation(row),
+         cities.getLatitude(row),
+         cities.getLongitude(row),
+         cities.getTimezone(row));
+   }
+
+
+
+   /*******************************************************************************
+    ** Find a country's node by alpha-2 code.
+    *******************************************************************************/
+   private CountryNode getCountryNode(String alpha2Code)
+   {
+      int index = alphaIndex(alpha2Code, 2);
+      return index < 0 ? null : countryByAlpha2[index];
+   }
+
+
+
+   /*******************************************************************************
+    ** Find a state's node by its country's alpha-2 code and its code.
+    *******************************************************************************/
+   private StateNode getStateNode(String countryAlpha2, String code)
+   {
+      CountryNode countryNode = getCountryNode(countryAlpha2);
+      return countryNode == null || code == null ? null : countryNode.stateByCode.get(normalizeCode(code));
+   }
+
+
+
+   /*******************************************************************************
+    ** Turn a code of ASCII letters (either case) into an array index, in base
+    ** 26 - or -1 if it is not exactly that many letters.
+    *******************************************************************************/
+   public static int alphaIndex(String code, int length)
+   {
+      if(code == null || code.length() != length)
+      {
+         return -1;
+      }
+
+      int index = 0;
+      for(int i = 0; i < length; i++)
+      {
+         char c = code.charAt(i);
+         if(c >= 'a' && c <= 'z')
+         {
+            c -= 'a' - 'A';
+         }
+         if(c < 'A' || c > 'Z')
+         {
+            return -1;
+         }
+         index = index * LETTERS + (c - 'A');
+      }
+      return index;
+   }
+
+
+
+   /*******************************************************************************
+    ** Normalize a state code for lookup (upper case - which returns the same
+    ** instance, without allocating, when it already is).
+    *******************************************************************************/
+   private static String normalizeCode(String code)
+   {
+      return code.toUpperCase(Locale.ROOT);
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getDataVersion()
+   {
+      return dataVersion;
+   }
+
+
+   public List<GeoCountry> getCountries()
+   {
+      return countries;
+   }
+
+
+   public int getStateProvinceCount()
+   {
+      return stateProvinces.size();
+   }
+
+
+   public int getCityCount()
+   {
+      return cities.size();
+   }
+
+
+   public GeoCityColumns getCityColumns()
+   {
+      return cities;
+   }
+
+
+   public GeoSpatialIndex<Integer> getCityIndex()
+   {
+      return cityIndex;
+   }
+
+
+
+   /*******************************************************************************
+    ** Reads a section's columns by name, tolerating columns the section does
+    ** not have (read as null).
+    *******************************************************************************/
+   private static class Columns
+   {
+      private final GeoDataSnapshotSection section;
+      private final Map<String, Integer>   indexes = new HashMap<>();
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      Columns(GeoDataSnapshotSection section)
+      {
+         this.section = section;
+         for(String columnName : section.getColumnNames())
+         {
+            indexes.put(columnName, section.getColumnIndex(columnName));
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Read a string value, or null.
+       *******************************************************************************/
+      String string(int row, String columnName)
+      {
+         Integer column = indexes.get(columnName);
+         return column == null ? null : section.getString(row, column);
+      }
+
+
+
+      /*******************************************************************************
+       ** Read an integer value, or null.
+       *******************************************************************************/
+      Integer integer(int row, String columnName)
+      {
+         Integer column = indexes.get(columnName);
+         return column == null || section.isNull(row, column) ? null : section.getInt(row, column);
+      }
+
+
+
+      /*******************************************************************************
+       ** Read a decimal value, or null.
+       *******************************************************************************/
+      BigDecimal decimal(int row, String columnName)
+      {
+         Integer column = indexes.get(columnName);
+         return column == null ? null : section.getDecimal(row, column);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** A country, with its states and cities.
+    *******************************************************************************/
+   private static class CountryNode
+   {
+      private final GeoCountry             country;
+      private final Map<String, StateNode> stateByCode = new HashMap<>();
+
+      private List<GeoStateProvince> states   = new ArrayList<>();
+      private List<Integer>          cityRows = new ArrayList<>();
+      private List<GeoCity>          cities;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      CountryNode(GeoCountry country)
+      {
+         this.country = country;
+      }
+
+
+
+      /*******************************************************************************
+       ** Make this node's lists (and its states' lists) unmodifiable, with
+       ** their cities as views over the registry's city rows.
+       *******************************************************************************/
+      void freeze(GeoDataRegistry registry)
+      {
+         states = List.copyOf(states);
+         cities = registry.new CityList(cityRows);
+         cityRows = null;
+         for(StateNode stateNode : stateByCode.values())
+         {
+            stateNode.cities = registry.new CityList(stateNode.cityRows);
+            stateNode.cityRows = null;
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** A state/province, with its cities.
+    *******************************************************************************/
+   private static class StateNode
+   {
+      private final GeoStateProvince state;
+      private final int              ordinal;
+
+      private List<Integer> cityRows = new ArrayList<>();
+      private List<GeoCity> cities;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      StateNode(GeoStateProvince state, int ordinal)
+      {
+         this.state = state;
+         this.ordinal = ordinal;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** An unmodifiable list of cities, backed by their rows in the city columns.
+    *******************************************************************************/
+   private class CityList extends AbstractList<GeoCity> implements RandomAccess
+   {
+      private final int[] rows;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      CityList(List<Integer> rows)
+      {
+         this.rows = rows.stream().mapToInt(Integer::intValue).toArray();
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the city at an index.
+       *******************************************************************************/
+      @Override
+      public GeoCity get(int index)
+      {
+         return getCity(rows[index]);
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the number of cities.
+       *******************************************************************************/
+      @Override
+      public int size()
+      {
+         return rows.length;
+      }
+   }
+}
@@ -0,0 +1,10 @@
+/*******************************************************************************
+ ** A state/province, as held by GeoDataRegistry.  Its country is referenced
+ ** by alpha-2 code, as in the bundled data.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+public record GeoStateProvince(String countryAlpha2, String code, String name, String subdivisionType)
+{
+}
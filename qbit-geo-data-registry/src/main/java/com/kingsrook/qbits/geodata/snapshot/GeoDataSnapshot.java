@@ -0,0 +1,278 @@
+/*******************************************************************************
+ ** Read-only view of a binary geo data snapshot (data/geo-data.snapshot,
+ ** written by the tools module's SnapshotWriter), backed by a
+ ** MappedByteBuffer.
+ **
+ ** Opening a snapshot maps the file and reads only its header and section
+ ** and column descriptors; values are read from the mapped pages on access,
+ ** and strings are decoded (once each) on first use.  Since the file is
+ ** mapped rather than read onto the heap, JVMs on one host that map the same
+ ** file share its page-cache pages.
+ **
+ ** A snapshot bundled inside a jar cannot be mapped in place, so it is first
+ ** extracted to a cache file in java.io.tmpdir named by its SHA-256 - every
+ ** JVM on the host with the same data maps the same file.
+ **
+ ** This package depends on nothing but the JDK, so it can be embedded by
+ ** services that do not run QQQ (see GeoDataRegistry).
+ **
+ ** The layout is documented on SnapshotWriter; FORMAT_VERSION must match.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.snapshot;
+
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+public final class GeoDataSnapshot
+{
+   public static final String SNAPSHOT_RESOURCE = "/data/geo-data.snapshot";
+
+   public static final int MAGIC          = 0x47454F53;
+   public static final int FORMAT_VERSION = 1;
+
+   private static final String CACHE_DIR_NAME = "qbit-geo-data";
+
+   private static GeoDataSnapshot bundled;
+   private static boolean         bundledLoaded;
+
+   private final ByteBuffer                          buffer;
+   private final String                              dataVersion;
+   private final int                                 stringCount;
+   private final int                                 stringOffsetsPosition;
+   private final int                                 stringBlobPosition;
+   private final String[]                            decodedStrings;
+   private final Map<String, GeoDataSnapshotSection> sections = new LinkedHashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor - reads the header and descriptors of a snapshot buffer.
+    *******************************************************************************/
+   public GeoDataSnapshot(ByteBuffer buffer) throws IOException
+   {
+      this.buffer = buffer.duplicate();
+
+      if(this.buffer.getInt(0) != MAGIC)
+      {
+         throw new IOException("Not a geo data snapshot (bad magic number)");
+      }
+      int formatVersion = this.buffer.getInt(4);
+      if(formatVersion != FORMAT_VERSION)
+      {
+         throw new IOException("Unsupported geo data snapshot format version " + formatVersion + " (expected " + FORMAT_VERSION + ")");
+      }
+
+      int versionIndex = this.buffer.getInt(8);
+      this.stringCount = this.buffer.getInt(12);
+      this.stringOffsetsPosition = 16;
+      this.stringBlobPosition = stringOffsetsPosition + (stringCount + 1) * Integer.BYTES;
+      this.decodedStrings = new String[stringCount];
+      this.dataVersion = getString(versionIndex);
+
+      int position = stringBlobPosition + this.buffer.getInt(stringOffsetsPosition + stringCount * Integer.BYTES);
+      int sectionCount = this.buffer.getInt(position);
+      position += Integer.BYTES;
+      for(int i = 0; i < sectionCount; i++)
+      {
+         GeoDataSnapshotSection section = new GeoDataSnapshotSection(this, position);
+         sections.put(section.getName(), section);
+         position = section.getEndPosition();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Open (map) a snapshot file.
+    *******************************************************************************/
+   public static GeoDataSnapshot open(Path path) throws IOException
+   {
+      try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ))
+      {
+         MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+         return new GeoDataSnapshot(mapped);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get (mapping it on first use) the snapshot bundled on the classpath, or
+    ** null if none is bundled.  The one mapping is shared by all callers.
+    *******************************************************************************/
+   public static synchronized GeoDataSnapshot getBundled() throws IOException
+   {
+      if(!bundledLoaded)
+      {
+         bundled = openResource(SNAPSHOT_RESOURCE);
+         bundledLoaded = true;
+      }
+      return bundled;
+   }
+
+
+
+   /*******************************************************************************
+    ** Open a snapshot classpath resource - mapped in place if it is a plain
+    ** file, otherwise extracted (once per content checksum) to the cache
+    ** directory and mapped from there.  Returns null if there is no such
+    ** resource.
+    *******************************************************************************/
+   public static GeoDataSnapshot openResource(String resourcePath) throws IOException
+   {
+      URL url = GeoDataSnapshot.class.getResource(resourcePath);
+      if(url == null)
+      {
+         return null;
+      }
+
+      if("file".equals(url.getProtocol()))
+      {
+         try
+         {
+            return open(Path.of(url.toURI()));
+         }
+         catch(URISyntaxException e)
+         {
+            throw new IOException("Bad snapshot resource URL " + url, e);
+         }
+      }
+
+      Path cacheDir = Path.of(System.getProperty("java.io.tmpdir"), CACHE_DIR_NAME);
+      Files.createDirectories(cacheDir);
+      Path tempFile = Files.createTempFile(cacheDir, "geo-data-", ".tmp");
+      try
+      {
+         ////////////////////////////////////////////////////////////////////
+         // copy the resource out while digesting it; the copy only moves  //
+         // into place if no JVM has extracted the same content already    //
+         ////////////////////////////////////////////////////////////////////
+         MessageDigest digest = newDigest();
+         try(InputStream is = new DigestInputStream(url.openStream(), digest))
+         {
+            Files.copy(is, tempFile, StandardCopyOption.REPLACE_EXISTING);
+         }
+
+         Path cacheFile = cacheDir.resolve("geo-data-" + HexFormat.of().formatHex(digest.digest()) + ".snapshot");
+         if(!Files.exists(cacheFile))
+         {
+            try
+            {
+               Files.move(tempFile, cacheFile, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch(FileAlreadyExistsException e)
+            {
+               ////////////////////////////////////////////////////////////
+               // another JVM extracted it first - use theirs            //
+               ////////////////////////////////////////////////////////////
+            }
+         }
+         return open(cacheFile);
+      }
+      finally
+      {
+         Files.deleteIfExists(tempFile);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a section by name (e.g., "countries"), or null if not present.
+    *******************************************************************************/
+   public GeoDataSnapshotSection getSection(String name)
+   {
+      return sections.get(name);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a string from the shared string table.
+    *******************************************************************************/
+   public String getString(int index)
+   {
+      String string = decodedStrings[index];
+      if(string == null)
+      {
+         int start = buffer.getInt(stringOffsetsPosition + index * Integer.BYTES);
+         int end = buffer.getInt(stringOffsetsPosition + (index + 1) * Integer.BYTES);
+         byte[] bytes = new byte[end - start];
+         buffer.get(stringBlobPosition + start, bytes);
+         string = new String(bytes, StandardCharsets.UTF_8);
+
+         ///////////////////////////////////////////////////////////////////
+         // a racing thread may decode the same string - both results are //
+         // equal, so the unsynchronized write is harmless                //
+         ///////////////////////////////////////////////////////////////////
+         decodedStrings[index] = string;
+      }
+      return string;
+   }
+
+
+
+   /*******************************************************************************
+    ** Create a SHA-256 digest.
+    *******************************************************************************/
+   private static MessageDigest newDigest() throws IOException
+   {
+      try
+      {
+         return MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IOException("SHA-256 is not available", e);
+      }
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getDataVersion()
+   {
+      return dataVersion;
+   }
+
+
+   public Map<String, GeoDataSnapshotSection> getSections()
+   {
+      return Collections.unmodifiableMap(sections);
+   }
+
+
+   public int getStringCount()
+   {
+      return stringCount;
+   }
+
+
+   ByteBuffer getBuffer()
+   {
+      return buffer;
+   }
+}
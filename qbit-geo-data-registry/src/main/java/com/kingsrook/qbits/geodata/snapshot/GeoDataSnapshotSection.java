@@ -0,0 +1,237 @@
+/*******************************************************************************
+ ** One section (dataset) of a GeoDataSnapshot - e.g., "countries" - read
+ ** column by column from the mapped buffer.
+ **
+ ** Values are read with absolute gets, so a section can be read from any
+ ** number of threads at once.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.snapshot;
+
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+public class GeoDataSnapshotSection
+{
+   public static final byte TYPE_STRING     = 1;
+   public static final byte TYPE_DICTIONARY = 2;
+   public static final byte TYPE_INT        = 3;
+   public static final byte TYPE_DECIMAL    = 4;
+
+   private final GeoDataSnapshot      snapshot;
+   private final ByteBuffer           buffer;
+   private final String               name;
+   private final int                  rowCount;
+   private final List<String>         columnNames   = new ArrayList<>();
+   private final List<Column>         columns       = new ArrayList<>();
+   private final Map<String, Integer> columnIndexes = new HashMap<>();
+   private final int                  endPosition;
+
+
+
+   /*******************************************************************************
+    ** Constructor - reads the section's column descriptors, starting at a
+    ** position in the snapshot's buffer.
+    *******************************************************************************/
+   GeoDataSnapshotSection(GeoDataSnapshot snapshot, int position)
+   {
+      this.snapshot = snapshot;
+      this.buffer = snapshot.getBuffer();
+      this.name = snapshot.getString(buffer.getInt(position));
+      this.rowCount = buffer.getInt(position + 4);
+      int columnCount = buffer.getInt(position + 8);
+      position += 12;
+
+      int presenceBytes = (rowCount + 7) / 8;
+      for(int i = 0; i < columnCount; i++)
+      {
+         String columnName = snapshot.getString(buffer.getInt(position));
+         byte type = buffer.get(position + 4);
+         position += 5;
+
+         int scale = 0;
+         int[] dictionary = null;
+         int valueWidth;
+         switch(type)
+         {
+            case TYPE_STRING, TYPE_INT -> valueWidth = Integer.BYTES;
+            case TYPE_DICTIONARY ->
+            {
+               dictionary = new int[buffer.getInt(position)];
+               position += 4;
+               for(int j = 0; j < dictionary.length; j++)
+               {
+                  dictionary[j] = buffer.getInt(position);
+                  position += 4;
+               }
+               valueWidth = Short.BYTES;
+            }
+            case TYPE_DECIMAL ->
+            {
+               scale = buffer.get(position);
+               position += 1;
+               valueWidth = Long.BYTES;
+            }
+            default -> throw new IllegalStateException("Unknown column type " + type + " for " + name + "." + columnName);
+         }
+
+         int presencePosition = position;
+         int valuesPosition = presencePosition + presenceBytes;
+         position = valuesPosition + rowCount * valueWidth;
+
+         columnIndexes.put(columnName, columns.size());
+         columnNames.add(columnName);
+         columns.add(new Column(type, scale, dictionary, presencePosition, valuesPosition));
+      }
+
+      this.endPosition = position;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a column's index by name, or -1 if the section has no such column.
+    *******************************************************************************/
+   public int getColumnIndex(String columnName)
+   {
+      return columnIndexes.getOrDefault(columnName, -1);
+   }
+
+
+
+   /*******************************************************************************
+    ** Check if a row's value in a column is null.
+    *******************************************************************************/
+   public boolean isNull(int row, int column)
+   {
+      Column c = columns.get(column);
+      return (buffer.get(c.presencePosition + (row >> 3)) & (1 << (row & 7))) == 0;
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's value in a column as its natural type - String, Integer or
+    ** BigDecimal - or null.
+    *******************************************************************************/
+   public Serializable getValue(int row, int column)
+   {
+      if(isNull(row, column))
+      {
+         return null;
+      }
+
+      return switch(columns.get(column).type)
+      {
+         case TYPE_STRING, TYPE_DICTIONARY -> getString(row, column);
+         case TYPE_INT -> getInt(row, column);
+         default -> getDecimal(row, column);
+      };
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's value in a string column, or null.
+    *******************************************************************************/
+   public String getString(int row, int column)
+   {
+      if(isNull(row, column))
+      {
+         return null;
+      }
+
+      Column c = columns.get(column);
+      if(c.type == TYPE_DICTIONARY)
+      {
+         return snapshot.getString(c.dictionary[buffer.getChar(c.valuesPosition + row * Short.BYTES)]);
+      }
+      return snapshot.getString(buffer.getInt(c.valuesPosition + row * Integer.BYTES));
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's value in an int column (0 if null - check isNull).
+    *******************************************************************************/
+   public int getInt(int row, int column)
+   {
+      return buffer.getInt(columns.get(column).valuesPosition + row * Integer.BYTES);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's value in a decimal column as its unscaled long (0 if null),
+    ** at the column's scale.
+    *******************************************************************************/
+   public long getUnscaled(int row, int column)
+   {
+      return buffer.getLong(columns.get(column).valuesPosition + row * Long.BYTES);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a row's value in a decimal column, or null.
+    *******************************************************************************/
+   public BigDecimal getDecimal(int row, int column)
+   {
+      return isNull(row, column) ? null : BigDecimal.valueOf(getUnscaled(row, column), columns.get(column).scale);
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a decimal column's scale.
+    *******************************************************************************/
+   public int getScale(int column)
+   {
+      return columns.get(column).scale;
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public String getName()
+   {
+      return name;
+   }
+
+
+   public int getRowCount()
+   {
+      return rowCount;
+   }
+
+
+   public List<String> getColumnNames()
+   {
+      return Collections.unmodifiableList(columnNames);
+   }
+
+
+   int getEndPosition()
+   {
+      return endPosition;
+   }
+
+
+
+   /*******************************************************************************
+    ** Descriptor of one column: its encoding and where its data starts.
+    *******************************************************************************/
+   private record Column(byte type, int scale, int[] dictionary, int presencePosition, int valuesPosition)
+   {
+   }
+}
@@ -0,0 +1,562 @@
+/*******************************************************************************
+ ** Immutable spatial index over points on the earth (latitude/longitude in
+ ** degrees), each carrying an item - e.g., a city's row or id - for
+ ** k-nearest, within-radius and bounding-box queries.
+ **
+ ** Points are held in primitive arrays, as unit vectors (x, y, z), ordered
+ ** as an implicit k-d tree: each range's median (on the axis of greatest
+ ** spread) is its node, with the lower half before it and the upper half
+ ** after.  Straight-line (chord) distance between unit vectors grows with
+ ** great-circle distance, so a 3-d nearest-neighbor search gives exact
+ ** great-circle results, with no special cases at the poles or the
+ ** antimeridian.  Distances are reported in kilometers, as the haversine
+ ** formula would give them on a sphere of EARTH_RADIUS_KM.
+ **
+ ** Bounding-box queries use a separate latitude-sorted order: a binary
+ ** search finds the latitude band, which is then filtered by longitude.
+ **
+ ** An index never changes once built, so it can be shared by any number of
+ ** threads; to reflect new data, build a new one and swap it in.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.spatial;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+
+public class GeoSpatialIndex<T>
+{
+   public static final double EARTH_RADIUS_KM = 6371.0088;
+
+   private final Object[] items;
+   private final double[] latitudes;
+   private final double[] longitudes;
+   private final double[] x;
+   private final double[] y;
+   private final double[] z;
+   private final byte[]   axes;
+   private final int[]    byLatitude;
+   private final double[] sortedLatitudes;
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes the items whose coordinates are known (the
+    ** coordinate functions return NaN for unknown).
+    *******************************************************************************/
+   public GeoSpatialIndex(Collection<? extends T> source, ToDoubleFunction<? super T> latitude, ToDoubleFunction<? super T> longitude)
+   {
+      List<T> located = new ArrayList<>(source.size());
+      List<double[]> coordinates = new ArrayList<>(source.size());
+      for(T item : source)
+      {
+         double lat = latitude.applyAsDouble(item);
+         double lon = longitude.applyAsDouble(item);
+         if(!Double.isNaN(lat) && !Double.isNaN(lon))
+         {
+            located.add(item);
+            coordinates.add(new double[] { lat, lon });
+         }
+      }
+
+      int size = located.size();
+      items = located.toArray();
+      latitudes = new double[size];
+      longitudes = new double[size];
+      x = new double[size];
+      y = new double[size];
+      z = new double[size];
+      axes = new byte[size];
+      for(int i = 0; i < size; i++)
+      {
+         latitudes[i] = coordinates.get(i)[0];
+         longitudes[i] = coordinates.get(i)[1];
+         double latRadians = Math.toRadians(latitudes[i]);
+         double lonRadians = Math.toRadians(longitudes[i]);
+         x[i] = Math.cos(latRadians) * Math.cos(lonRadians);
+         y[i] = Math.cos(latRadians) * Math.sin(lonRadians);
+         z[i] = Math.sin(latRadians);
+      }
+
+      buildTree(0, size);
+
+      byLatitude = new int[size];
+      Integer[] order = new Integer[size];
+      for(int i = 0; i < size; i++)
+      {
+         order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparingDouble(i -> latitudes[i]));
+      sortedLatitudes = new double[size];
+      for(int i = 0; i < size; i++)
+      {
+         byLatitude[i] = order[i];
+         sortedLatitudes[i] = latitudes[order[i]];
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the k items nearest a point, nearest first.
+    *******************************************************************************/
+   public List<GeoSpatialMatch<T>> nearest(double latitude, double longitude, int k)
+   {
+      return nearest(latitude, longitude, k, Double.POSITIVE_INFINITY);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) k items nearest a point, no farther than maxDistanceKm,
+    ** nearest first.
+    *******************************************************************************/
+   public List<GeoSpatialMatch<T>> nearest(double latitude, double longitude, int k, double maxDistanceKm)
+   {
+      if(k < 1 || items.length == 0)
+      {
+         return List.of();
+      }
+
+      double[] query = toUnitVector(latitude, longitude);
+      NearestHeap heap = new NearestHeap(Math.min(k, items.length), toChordSquared(maxDistanceKm));
+      searchNearest(0, items.length, query, heap);
+      return heap.toMatches();
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the items within radiusKm (great-circle) of a point, nearest first.
+    *******************************************************************************/
+   public List<GeoSpatialMatch<T>> withinRadius(double latitude, double longitude, double radiusKm)
+   {
+      List<GeoSpatialMatch<T>> matches = new ArrayList<>();
+      if(radiusKm < 0 || items.length == 0)
+      {
+         return matches;
+      }
+
+      double[] query = toUnitVector(latitude, longitude);
+      searchRadius(0, items.length, query, toChordSquared(radiusKm), matches);
+      matches.sort(Comparator.comparingDouble(GeoSpatialMatch::distanceKm));
+      return matches;
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the items inside a latitude/longitude box, in latitude order.  If
+    ** minLongitude is greater than maxLongitude, the box crosses the
+    ** antimeridian.
+    *******************************************************************************/
+   @SuppressWarnings("unchecked")
+   public List<T> withinBoundingBox(double minLatitude, double minLongitude, double maxLatitude, double maxLongitude)
+   {
+      List<T> matches = new ArrayList<>();
+      boolean crossesAntimeridian = minLongitude > maxLongitude;
+
+      int position = Arrays.binarySearch(sortedLatitudes, minLatitude);
+      if(position < 0)
+      {
+         position = -position - 1;
+      }
+      while(position > 0 && sortedLatitudes[position - 1] == minLatitude)
+      {
+         position--;
+      }
+
+      for(; position < sortedLatitudes.length && sortedLatitudes[position] <= maxLatitude; position++)
+      {
+         int slot = byLatitude[position];
+         double lon = longitudes[slot];
+         boolean inside = crossesAntimeridian ? (lon >= minLongitude || lon <= maxLongitude) : (lon >= minLongitude && lon <= maxLongitude);
+         if(inside)
+         {
+            matches.add((T) items[slot]);
+         }
+      }
+      return matches;
+   }
+
+
+
+   /*******************************************************************************
+    ** Compute the great-circle distance between two points, in kilometers, by
+    ** the haversine formula.
+    *******************************************************************************/
+   public static double haversineKm(double latitude1, double longitude1, double latitude2, double longitude2)
+   {
+      double dLat = Math.toRadians(latitude2 - latitude1);
+      double dLon = Math.toRadians(longitude2 - longitude1);
+      double a = Math.pow(Math.sin(dLat / 2), 2) + Math.cos(Math.toRadians(latitude1)) * Math.cos(Math.toRadians(latitude2)) * Math.pow(Math.sin(dLon / 2), 2);
+      return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(a)));
+   }
+
+
+
+   /*******************************************************************************
+    ** Order a range of slots as a k-d tree: its median, on the axis of
+    ** greatest spread, at the middle; then the same for each half.
+    *******************************************************************************/
+   private void buildTree(int lo, int hi)
+   {
+      if(hi - lo < 2)
+      {
+         if(hi > lo)
+         {
+            axes[lo] = 0;
+         }
+         return;
+      }
+
+      byte axis = 0;
+      double widest = -1;
+      for(byte a = 0; a < 3; a++)
+      {
+         double min = Double.POSITIVE_INFINITY;
+         double max = Double.NEGATIVE_INFINITY;
+         for(int i = lo; i < hi; i++)
+         {
+            double value = coordinate(a, i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+         }
+         if(max - min > widest)
+         {
+            widest = max - min;
+            axis = a;
+         }
+      }
+
+      int mid = (lo + hi) >>> 1;
+      select(lo, hi - 1, mid, axis);
+      axes[mid] = axis;
+      buildTree(lo, mid);
+      buildTree(mid + 1, hi);
+   }
+
+
+
+   /*******************************************************************************
+    ** Quickselect: reorder slots lo..hi (inclusive) so the one at k has the
+    ** k-th smallest value on an axis, with no greater values before it and no
+    ** smaller values after.
+    *******************************************************************************/
+   private void select(int lo, int hi, int k, byte axis)
+   {
+      while(hi > lo)
+      {
+         double pivot = coordinate(axis, (lo + hi) >>> 1);
+         int i = lo;
+         int j = hi;
+         while(i <= j)
+         {
+            while(coordinate(axis, i) < pivot)
+            {
+               i++;
+            }
+            while(coordinate(axis, j) > pivot)
+            {
+               j--;
+            }
+            if(i <= j)
+            {
+               swap(i++, j--);
+            }
+         }
+
+         if(k <= j)
+         {
+            hi = j;
+         }
+         else if(k >= i)
+         {
+            lo = i;
+         }
+         else
+         {
+            return;
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Recursive k-nearest search of a tree range.
+    *******************************************************************************/
+   private void searchNearest(int lo, int hi, double[] query, NearestHeap heap)
+   {
+      if(lo >= hi)
+      {
+         return;
+      }
+
+      int mid = (lo + hi) >>> 1;
+      heap.offer(mid, chordSquared(mid, query));
+
+      double diff = query[axes[mid]] - coordinate(axes[mid], mid);
+      if(diff < 0)
+      {
+         searchNearest(lo, mid, query, heap);
+         if(diff * diff <= heap.bound())
+         {
+            searchNearest(mid + 1, hi, query, heap);
+         }
+      }
+      else
+      {
+         searchNearest(mid + 1, hi, query, heap);
+         if(diff * diff <= heap.bound())
+         {
+            searchNearest(lo, mid, query, heap);
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Recursive radius search of a tree range.
+    *******************************************************************************/
+   @SuppressWarnings("unchecked")
+   private void searchRadius(int lo, int hi, double[] query, double maxChordSquared, List<GeoSpatialMatch<T>> matches)
+   {
+      if(lo >= hi)
+      {
+         return;
+      }
+
+      int mid = (lo + hi) >>> 1;
+      double d2 = chordSquared(mid, query);
+      if(d2 <= maxChordSquared)
+      {
+         matches.add(new GeoSpatialMatch<>((T) items[mid], toDistanceKm(d2)));
+      }
+
+      double diff = query[axes[mid]] - coordinate(axes[mid], mid);
+      if(diff < 0 || diff * diff <= maxChordSquared)
+      {
+         searchRadius(lo, mid, query, maxChordSquared, matches);
+      }
+      if(diff >= 0 || diff * diff <= maxChordSquared)
+      {
+         searchRadius(mid + 1, hi, query, maxChordSquared, matches);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a slot's coordinate on an axis (0 = x, 1 = y, 2 = z).
+    *******************************************************************************/
+   private double coordinate(int axis, int slot)
+   {
+      return switch(axis)
+      {
+         case 0 -> x[slot];
+         case 1 -> y[slot];
+         default -> z[slot];
+      };
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the squared chord distance from a slot's point to a query vector.
+    *******************************************************************************/
+   private double chordSquared(int slot, double[] query)
+   {
+      double dx = x[slot] - query[0];
+      double dy = y[slot] - query[1];
+      double dz = z[slot] - query[2];
+      return dx * dx + dy * dy + dz * dz;
+   }
+
+
+
+   /*******************************************************************************
+    ** Swap two slots, in all of the parallel arrays.
+    *******************************************************************************/
+   private void swap(int i, int j)
+   {
+      Object item = items[i];
+      items[i] = items[j];
+      items[j] = item;
+      swap(latitudes, i, j);
+      swap(longitudes, i, j);
+      swap(x, i, j);
+      swap(y, i, j);
+      swap(z, i, j);
+   }
+
+
+
+   /*******************************************************************************
+    ** Swap two values of an array.
+    *******************************************************************************/
+   private static void swap(double[] values, int i, int j)
+   {
+      double value = values[i];
+      values[i] = values[j];
+      values[j] = value;
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a latitude/longitude (degrees) to a unit vector.
+    *******************************************************************************/
+   private static double[] toUnitVector(double latitude, double longitude)
+   {
+      double latRadians = Math.toRadians(latitude);
+      double lonRadians = Math.toRadians(longitude);
+      return new double[] { Math.cos(latRadians) * Math.cos(lonRadians), Math.cos(latRadians) * Math.sin(lonRadians), Math.sin(latRadians) };
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a great-circle distance to a squared chord length (on the unit
+    ** sphere).
+    *******************************************************************************/
+   private static double toChordSquared(double distanceKm)
+   {
+      if(distanceKm >= Math.PI * EARTH_RADIUS_KM)
+      {
+         return Double.POSITIVE_INFINITY;
+      }
+      double chord = 2 * Math.sin(distanceKm / EARTH_RADIUS_KM / 2);
+      return chord * chord;
+   }
+
+
+
+   /*******************************************************************************
+    ** Convert a squared chord length (on the unit sphere) to a great-circle
+    ** distance.
+    *******************************************************************************/
+   private static double toDistanceKm(double chordSquared)
+   {
+      return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(chordSquared) / 2));
+   }
+
+
+
+   //////////////////////////////////////////////////////////////////////////////
+   // Getters                                                                  //
+   //////////////////////////////////////////////////////////////////////////////
+
+   public int size()
+   {
+      return items.length;
+   }
+
+
+
+   /*******************************************************************************
+    ** Bounded max-heap of the nearest slots found so far, on primitive arrays.
+    *******************************************************************************/
+   private class NearestHeap
+   {
+      private final int[]    slots;
+      private final double[] distances;
+      private final double   maxChordSquared;
+      private int            size;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      NearestHeap(int capacity, double maxChordSquared)
+      {
+         this.slots = new int[capacity];
+         this.distances = new double[capacity];
+         this.maxChordSquared = maxChordSquared;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the squared chord distance a slot must beat to be kept.
+       *******************************************************************************/
+      double bound()
+      {
+         return size < slots.length ? maxChordSquared : distances[0];
+      }
+
+
+
+      /*******************************************************************************
+       ** Offer a slot, keeping it if it is among the nearest so far.
+       *******************************************************************************/
+      void offer(int slot, double chordSquared)
+      {
+         if(chordSquared > bound() || (size == slots.length && chordSquared == distances[0]))
+         {
+            return;
+         }
+
+         int i;
+         if(size < slots.length)
+         {
+            i = size++;
+            while(i > 0 && distances[(i - 1) / 2] < chordSquared)
+            {
+               slots[i] = slots[(i - 1) / 2];
+               distances[i] = distances[(i - 1) / 2];
+               i = (i - 1) / 2;
+            }
+         }
+         else
+         {
+            i = 0;
+            while(true)
+            {
+               int child = 2 * i + 1;
+               if(child >= size)
+               {
+                  break;
+               }
+               if(child + 1 < size && distances[child + 1] > distances[child])
+               {
+                  child++;
+               }
+               if(distances[child] <= chordSquared)
+               {
+                  break;
+               }
+               slots[i] = slots[child];
+               distances[i] = distances[child];
+               i = child;
+            }
+         }
+         slots[i] = slot;
+         distances[i] = chordSquared;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the kept slots as matches, nearest first.
+       *******************************************************************************/
+      @SuppressWarnings("unchecked")
+      List<GeoSpatialMatch<T>> toMatches()
+      {
+         List<GeoSpatialMatch<T>> matches = new ArrayList<>(size);
+         for(int i = 0; i < size; i++)
+         {
+            matches.add(new GeoSpatialMatch<>((T) items[slots[i]], toDistanceKm(distances[i])));
+         }
+         matches.sort(Comparator.comparingDouble(GeoSpatialMatch::distanceKm));
+         return matches;
+      }
+   }
+}
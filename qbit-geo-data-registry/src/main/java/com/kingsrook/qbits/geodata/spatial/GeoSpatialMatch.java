@@ -0,0 +1,10 @@
+/*******************************************************************************
+ ** An item found by a GeoSpatialIndex query, with its great-circle distance
+ ** from the query point.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.spatial;
+
+
+public record GeoSpatialMatch<T>(T item, double distanceKm)
+{
+}
@@ -0,0 +1,388 @@
+/*******************************************************************************
+ ** Immutable typeahead index over named items (cities, states/provinces),
+ ** answering "the N most populous items whose name starts with this text",
+ ** optionally within one country or one state/province.
+ **
+ ** Names are normalized (folded to ASCII, lower case, whitespace collapsed;
+ ** see GeoNameFolding), so "sao p" finds "São Paulo" and "lod" finds
+ ** "Łódź".  Each scope - all items, each country, each state - holds its
+ ** items' positions sorted by normalized name (a sorted prefix array), so
+ ** the items matching a prefix are one contiguous range, found by two
+ ** binary searches.  A segment tree over that order gives the most
+ ** populous position in any range in O(log n); the top N are taken
+ ** best-first, splitting the range around each pick, in O(N log n) -
+ ** however many items match the prefix.
+ **
+ ** Recent results are kept in a small LRU cache (cacheSize entries, 0 for
+ ** none), as form fields tend to repeat the same few prefixes.
+ **
+ ** Country and state keys are ints whose meaning is up to the caller (e.g.,
+ ** ids); NONE for an item that has none.  Missing populations (NONE) rank
+ ** below every known one; ties rank by name.
+ **
+ ** An index never changes once built, so it can be shared by any number of
+ ** threads; to reflect new data, build a new one and swap it in.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.typeahead;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import com.kingsrook.qbits.geodata.matching.GeoNameFolding;
+
+
+public class GeoTypeaheadIndex<T>
+{
+   public static final int NONE               = Integer.MIN_VALUE;
+   public static final int DEFAULT_CACHE_SIZE = 256;
+
+   private final Object[]             items;
+   private final String[]             names;
+   private final int[]                populations;
+   private final Scope                all;
+   private final Map<Integer, Scope>  countryScopes = new HashMap<>();
+   private final Map<Integer, Scope>  stateScopes   = new HashMap<>();
+   private final Map<String, List<T>> cache;
+
+
+
+   /*******************************************************************************
+    ** Constructor - with the default cache size.
+    *******************************************************************************/
+   public GeoTypeaheadIndex(Collection<? extends T> source, Function<? super T, String> name, ToIntFunction<? super T> population, ToIntFunction<? super T> countryKey, ToIntFunction<? super T> stateKey)
+   {
+      this(source, name, population, countryKey, stateKey, DEFAULT_CACHE_SIZE);
+   }
+
+
+
+   /*******************************************************************************
+    ** Constructor - indexes the items that have a name.
+    *******************************************************************************/
+   public GeoTypeaheadIndex(Collection<? extends T> source, Function<? super T, String> name, ToIntFunction<? super T> population, ToIntFunction<? super T> countryKey, ToIntFunction<? super T> stateKey, int cacheSize)
+   {
+      List<T> named = new ArrayList<>(source.size());
+      List<String> normalizedNames = new ArrayList<>(source.size());
+      for(T item : source)
+      {
+         String normalized = normalize(name.apply(item));
+         if(normalized != null && !normalized.isEmpty())
+         {
+            named.add(item);
+            normalizedNames.add(normalized);
+         }
+      }
+
+      int size = named.size();
+      items = named.toArray();
+      names = normalizedNames.toArray(new String[0]);
+      populations = new int[size];
+
+      Map<Integer, List<Integer>> countryPositions = new HashMap<>();
+      Map<Integer, List<Integer>> statePositions = new HashMap<>();
+      for(int i = 0; i < size; i++)
+      {
+         @SuppressWarnings("unchecked")
+         T item = (T) items[i];
+         populations[i] = population.applyAsInt(item);
+
+         int country = countryKey.applyAsInt(item);
+         if(country != NONE)
+         {
+            countryPositions.computeIfAbsent(country, k -> new ArrayList<>()).add(i);
+         }
+         int state = stateKey.applyAsInt(item);
+         if(state != NONE)
+         {
+            statePositions.computeIfAbsent(state, k -> new ArrayList<>()).add(i);
+         }
+      }
+
+      int[] everything = new int[size];
+      Arrays.setAll(everything, i -> i);
+      all = new Scope(everything);
+      countryPositions.forEach((key, positions) -> countryScopes.put(key, new Scope(toArray(positions))));
+      statePositions.forEach((key, positions) -> stateScopes.put(key, new Scope(toArray(positions))));
+
+      cache = cacheSize < 1 ? null : new LinkedHashMap<>(16, 0.75f, true)
+      {
+         @Override
+         protected boolean removeEldestEntry(Map.Entry<String, List<T>> eldest)
+         {
+            return size() > cacheSize;
+         }
+      };
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit most populous items whose name starts with text.
+    *******************************************************************************/
+   public List<T> search(String text, int limit)
+   {
+      return search("*", all, text, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit most populous items in a country whose name
+    ** starts with text.
+    *******************************************************************************/
+   public List<T> searchCountry(int countryKey, String text, int limit)
+   {
+      return search("c" + countryKey, countryScopes.get(countryKey), text, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Find the (up to) limit most populous items in a state/province whose name
+    ** starts with text.
+    *******************************************************************************/
+   public List<T> searchState(int stateKey, String text, int limit)
+   {
+      return search("s" + stateKey, stateScopes.get(stateKey), text, limit);
+   }
+
+
+
+   /*******************************************************************************
+    ** Search a scope, through the cache.
+    *******************************************************************************/
+   private List<T> search(String scopeKey, Scope scope, String text, int limit)
+   {
+      String prefix = normalize(text == null ? "" : text);
+      if(scope == null || limit < 1)
+      {
+         return List.of();
+      }
+
+      if(cache == null)
+      {
+         return scope.top(prefix, limit);
+      }
+
+      String cacheKey = scopeKey + "|" + limit + "|" + prefix;
+      synchronized(cache)
+      {
+         List<T> cached = cache.get(cacheKey);
+         if(cached != null)
+         {
+            return cached;
+         }
+      }
+
+      List<T> results = scope.top(prefix, limit);
+      synchronized(cache)
+      {
+         cache.put(cacheKey, results);
+      }
+      return results;
+   }
+
+
+
+   /*******************************************************************************
+    ** Normalize a name (or typed text) for matching - see
+    ** GeoNameFolding.normalize().
+    *******************************************************************************/
+   public static String normalize(String name)
+   {
+      return GeoNameFolding.normalize(name);
+   }
+
+
+
+   /*******************************************************************************
+    ** Unbox a list of positions.
+    *******************************************************************************/
+   private static int[] toArray(List<Integer> positions)
+   {
+      return positions.stream().mapToInt(Integer::intValue).toArray();
+   }
+
+
+
+   /*******************************************************************************
+    ** Get the number of items indexed.
+    *******************************************************************************/
+   public int size()
+   {
+      return items.length;
+   }
+
+
+
+   /*******************************************************************************
+    ** The items of one scope, sorted by name, with a segment tree of the most
+    ** populous item in each range.
+    *******************************************************************************/
+   private class Scope
+   {
+      private final int[] order;
+      private final int[] tree;
+
+
+
+      /*******************************************************************************
+       ** Constructor - sorts the positions by name, and builds the tree.
+       *******************************************************************************/
+      Scope(int[] positions)
+      {
+         Integer[] boxed = Arrays.stream(positions).boxed().toArray(Integer[]::new);
+         Arrays.sort(boxed, Comparator.comparing((Integer p) -> names[p]).thenComparing(p -> -(long) populations[p]));
+         order = Arrays.stream(boxed).mapToInt(Integer::intValue).toArray();
+
+         int n = order.length;
+         tree = new int[2 * n];
+         for(int i = 0; i < n; i++)
+         {
+            tree[n + i] = i;
+         }
+         for(int i = n - 1; i > 0; i--)
+         {
+            tree[i] = better(tree[2 * i], tree[2 * i + 1]);
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the (up to) limit most populous items whose name starts with a
+       ** (normalized) prefix.
+       *******************************************************************************/
+      @SuppressWarnings("unchecked")
+      List<T> top(String prefix, int limit)
+      {
+         int from = firstAtOrAfter(prefix);
+         int to = firstNotStartingWith(prefix, from);
+
+         List<T> results = new ArrayList<>(Math.min(limit, to - from));
+         PriorityQueue<int[]> ranges = new PriorityQueue<>((a, b) -> a[2] == b[2] ? 0 : (better(a[2], b[2]) == a[2] ? -1 : 1));
+         addRange(ranges, from, to);
+         while(results.size() < limit && !ranges.isEmpty())
+         {
+            int[] range = ranges.poll();
+            results.add((T) items[order[range[2]]]);
+            addRange(ranges, range[0], range[2]);
+            addRange(ranges, range[2] + 1, range[1]);
+         }
+         return List.copyOf(results);
+      }
+
+
+
+      /*******************************************************************************
+       ** Queue a (non-empty) range, with the position of its most populous item.
+       *******************************************************************************/
+      private void addRange(PriorityQueue<int[]> ranges, int from, int to)
+      {
+         if(from < to)
+         {
+            ranges.add(new int[] { from, to, best(from, to) });
+         }
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the position (in order) of the most populous item in [from, to).
+       *******************************************************************************/
+      private int best(int from, int to)
+      {
+         int n = order.length;
+         int result = -1;
+         for(int lo = from + n, hi = to + n; lo < hi; lo >>= 1, hi >>= 1)
+         {
+            if((lo & 1) == 1)
+            {
+               result = result < 0 ? tree[lo] : better(result, tree[lo]);
+               lo++;
+            }
+            if((hi & 1) == 1)
+            {
+               hi--;
+               result = result < 0 ? tree[hi] : better(result, tree[hi]);
+            }
+         }
+         return result;
+      }
+
+
+
+      /*******************************************************************************
+       ** Of two positions (in order), get the one ranking higher: greater
+       ** population, then earlier (by name).
+       *******************************************************************************/
+      private int better(int a, int b)
+      {
+         int populationA = populations[order[a]];
+         int populationB = populations[order[b]];
+         if(populationA != populationB)
+         {
+            return populationA > populationB ? a : b;
+         }
+         return Math.min(a, b);
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the first position whose name is not before prefix.
+       *******************************************************************************/
+      private int firstAtOrAfter(String prefix)
+      {
+         int lo = 0;
+         int hi = order.length;
+         while(lo < hi)
+         {
+            int mid = (lo + hi) >>> 1;
+            if(names[order[mid]].compareTo(prefix) < 0)
+            {
+               lo = mid + 1;
+            }
+            else
+            {
+               hi = mid;
+            }
+         }
+         return lo;
+      }
+
+
+
+      /*******************************************************************************
+       ** Get the first position from start whose name does not start with
+       ** prefix - the names that do are contiguous, from start.
+       *******************************************************************************/
+      private int firstNotStartingWith(String prefix, int start)
+      {
+         int lo = start;
+         int hi = order.length;
+         while(lo < hi)
+         {
+            int mid = (lo + hi) >>> 1;
+            if(names[order[mid]].startsWith(prefix))
+            {
+               lo = mid + 1;
+            }
+            else
+            {
+               hi = mid;
+            }
+         }
+         return lo;
+      }
+   }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ ** Unit tests for GeoFuzzyIndex.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.matching;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoFuzzyIndexTest
+{
+
+   /*******************************************************************************
+    ** A named, populated place, for indexing.
+    *******************************************************************************/
+   private record Place(String name, int population, String country)
+   {
+   }
+
+
+
+   private static final List<Place> PLACES = List.of(
+      new Place("São Paulo", 11_451_245, "BR"),
+      new Place("Zürich", 421_878, "CH"),
+      new Place("Springfield", 169_176, "US"),
+      new Place("Springfield", 114_394, "US"),
+      new Place("Springfield", 30_000, "AU"),
+      new Place("Springdale", 84_161, "US"),
+      new Place("Denver", 715_522, "US"),
+      new Place("Denmark", 1_000, "US"));
+
+
+
+   /*******************************************************************************
+    ** Build an index of places.
+    *******************************************************************************/
+   private static GeoFuzzyIndex<Place> index(List<Place> places)
+   {
+      return new GeoFuzzyIndex<>(places, Place::name, Place::population);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that accents and case cost nothing, and typos cost an edit each.
+    *******************************************************************************/
+   @Test
+   void testSearch_foldsAndCountsEdits()
+   {
+      GeoFuzzyIndex<Place> index = index(PLACES);
+
+      assertThat(index.size()).isEqualTo(8);
+      assertThat(index.search("sao paulo", 0, 5)).extracting(GeoFuzzyMatch::distance).containsExactly(0);
+      assertThat(index.search("ZURICH", 0, 5)).extracting(m -> m.item().name()).containsExactly("Zürich");
+      assertThat(index.search("Sao Paolo", 1, 5)).extracting(m -> m.item().name()).containsExactly("São Paulo");
+      assertThat(index.search("Sao Paolo", 0, 5)).isEmpty();
+      assertThat(index.search("Dnever", 1, 5)).isEmpty();
+      assertThat(index.search("Dnever", 2, 5)).extracting(m -> m.item().name()).containsExactly("Denver");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test ranking (distance, then population), limit and filter.
+    *******************************************************************************/
+   @Test
+   void testSearch_ranksLimitsAndFilters()
+   {
+      GeoFuzzyIndex<Place> index = index(PLACES);
+
+      assertThat(index.search("Springfeld", 3, 10)).extracting(m -> m.item().population())
+         .containsExactly(169_176, 114_394, 30_000, 84_161);
+      assertThat(index.search("Springfeld", 3, 2)).hasSize(2);
+      assertThat(index.search("Springfeld", 3, 10, p -> p.country().equals("AU"))).extracting(m -> m.item().population()).containsExactly(30_000);
+      assertThat(index.search("Springfeld", -1, 10)).isEmpty();
+      assertThat(new GeoFuzzyIndex<Place>(List.of(), Place::name, Place::population).search("x", 2, 10)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the tree finds exactly what a brute-force scan does.
+    *******************************************************************************/
+   @Test
+   void testSearch_matchesBruteForce()
+   {
+      Random random = new Random(42);
+      List<Place> places = new ArrayList<>();
+      for(int i = 0; i < 3000; i++)
+      {
+         StringBuilder name = new StringBuilder();
+         for(int j = 0; j < 3 + random.nextInt(6); j++)
+         {
+            name.append((char) ('a' + random.nextInt(4)));
+         }
+         places.add(new Place(name.toString(), i, "XX"));
+      }
+      GeoFuzzyIndex<Place> index = index(places);
+
+      for(String query : List.of("abcd", "aaaaaa", "dcbadcba", "bb"))
+      {
+         for(int budget = 0; budget <= 2; budget++)
+         {
+            int k = budget;
+            List<Place> expected = places.stream().filter(p -> GeoFuzzyIndex.distance(query, p.name()) <= k).toList();
+            assertThat(index.search(query, budget, Integer.MAX_VALUE)).extracting(GeoFuzzyMatch::item).containsExactlyInAnyOrderElementsOf(expected);
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test the edit distance.
+    *******************************************************************************/
+   @Test
+   void testDistance()
+   {
+      assertThat(GeoFuzzyIndex.distance("kitten", "sitting")).isEqualTo(3);
+      assertThat(GeoFuzzyIndex.distance("", "abc")).isEqualTo(3);
+      assertThat(GeoFuzzyIndex.distance("abc", "abc")).isZero();
+   }
+}
@@ -0,0 +1,55 @@
+/*******************************************************************************
+ ** Unit tests for GeoNameFolding.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.matching;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoNameFoldingTest
+{
+
+   /*******************************************************************************
+    ** Test folding accented and special Latin letters to ASCII.
+    *******************************************************************************/
+   @Test
+   void testFold_latinNames()
+   {
+      assertThat(GeoNameFolding.fold("São Paulo")).isEqualTo("Sao Paulo");
+      assertThat(GeoNameFolding.fold("Zürich")).isEqualTo("Zurich");
+      assertThat(GeoNameFolding.fold("Łódź")).isEqualTo("Lodz");
+      assertThat(GeoNameFolding.fold("Großenhain")).isEqualTo("Grossenhain");
+      assertThat(GeoNameFolding.fold("Tórshavn")).isEqualTo("Torshavn");
+      assertThat(GeoNameFolding.fold("Ærøskøbing")).isEqualTo("AEroskobing");
+      assertThat(GeoNameFolding.fold("Hawaiʻi  Kai")).isEqualTo("Hawai'i Kai");
+      assertThat(GeoNameFolding.fold("Denver")).isEqualTo("Denver");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test names with no ASCII rendering, and null.
+    *******************************************************************************/
+   @Test
+   void testFold_noAsciiRendering_null()
+   {
+      assertThat(GeoNameFolding.fold("Москва")).isNull();
+      assertThat(GeoNameFolding.fold("東京 Tokyo")).isEqualTo("Tokyo");
+      assertThat(GeoNameFolding.fold(null)).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test normalizing for matching.
+    *******************************************************************************/
+   @Test
+   void testNormalize()
+   {
+      assertThat(GeoNameFolding.normalize("  São\tPaulo ")).isEqualTo("sao paulo");
+      assertThat(GeoNameFolding.normalize("Москва")).isEqualTo("москва");
+      assertThat(GeoNameFolding.normalize(null)).isNull();
+   }
+}
@@ -0,0 +1,88 @@
+/*******************************************************************************
+ ** Unit tests for GeoCityColumns.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+import java.math.BigDecimal;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+
+
+class GeoCityColumnsTest
+{
+
+   /*******************************************************************************
+    ** Test that coordinates with up to 7 decimal places survive the round
+    ** trip through fixed-point exactly, at every magnitude.
+    *******************************************************************************/
+   @Test
+   void testToFixed_roundTrip_lossless()
+   {
+      Random random = new Random(42);
+      for(int i = 0; i < 10_000; i++)
+      {
+         int fixed = random.nextInt(1_800_000_001) - 900_000_000;
+         BigDecimal degrees = GeoCityColumns.toDecimal(fixed);
+         assertThat(GeoCityColumns.toFixed(degrees)).isEqualTo(fixed);
+         assertThat(degrees.scale()).isEqualTo(7);
+      }
+
+      for(String value : new String[] { "-180", "180.0000000", "89.9999999", "-0.0000001", "40.7128", "0" })
+      {
+         BigDecimal degrees = new BigDecimal(value);
+         assertThat(GeoCityColumns.toDecimal(GeoCityColumns.toFixed(degrees))).isEqualByComparingTo(degrees);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that extra precision rounds as a DECIMAL(10,7) column would, that
+    ** null maps to NONE and back, and that out-of-range values are refused.
+    *******************************************************************************/
+   @Test
+   void testToFixed_roundingNullAndRange()
+   {
+      assertThat(GeoCityColumns.toFixed(new BigDecimal("1.00000005"))).isEqualTo(10_000_001);
+      assertThat(GeoCityColumns.toFixed(new BigDecimal("-1.00000005"))).isEqualTo(-10_000_001);
+      assertThat(GeoCityColumns.toFixed(null)).isEqualTo(GeoCityColumns.NONE);
+      assertThat(GeoCityColumns.toDecimal(GeoCityColumns.NONE)).isNull();
+      assertThat(GeoCityColumns.toDegrees(GeoCityColumns.NONE)).isNaN();
+      assertThat(GeoCityColumns.toDegrees(-1_054_321_000)).isEqualTo(-105.4321);
+      assertThatThrownBy(() -> GeoCityColumns.toFixed(new BigDecimal("999.9999999"))).isInstanceOf(ArithmeticException.class);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test adding rows (past the initial capacity) and reading them back.
+    *******************************************************************************/
+   @Test
+   void testAdd_readsBackEveryColumn()
+   {
+      GeoCityColumns columns = new GeoCityColumns(1);
+      int denver = columns.add(7, 42, "Denver", "Denver", 715522, new BigDecimal("39.7392358"), new BigDecimal("-104.990251"), "America/Denver");
+      int nowhere = columns.add(7, GeoCityColumns.NONE, "Nowhere", null, null, null, null, null);
+      columns.trim();
+
+      assertThat(columns.size()).isEqualTo(2);
+      assertThat(columns.getCountryId(denver)).isEqualTo(7);
+      assertThat(columns.getStateProvinceId(denver)).isEqualTo(42);
+      assertThat(columns.getName(denver)).isEqualTo("Denver");
+      assertThat(columns.getPopulation(denver)).isEqualTo(715522);
+      assertThat(columns.getLatitude(denver)).isEqualTo(new BigDecimal("39.7392358"));
+      assertThat(columns.getLongitude(denver)).isEqualTo(new BigDecimal("-104.9902510"));
+      assertThat(columns.getLatitudeFixed(denver)).isEqualTo(397_392_358);
+      assertThat(columns.getTimezone(denver)).isEqualTo("America/Denver");
+      assertThat(columns.distanceKm(denver, 40.0149856, -105.2705456)).isCloseTo(38.9, within(0.5));
+
+      assertThat(columns.getStateProvinceId(nowhere)).isEqualTo(GeoCityColumns.NONE);
+      assertThat(columns.getPopulation(nowhere)).isNull();
+      assertThat(columns.getLatitude(nowhere)).isNull();
+      assertThat(columns.distanceKm(nowhere, 0, 0)).isNaN();
+   }
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataRegistry.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.registry;
+
+
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoDataRegistryTest
+{
+
+   /*******************************************************************************
+    ** Test that the bundled registry has all bundled countries and states.
+    *******************************************************************************/
+   @Test
+   void testGetBundled_loadsBundledData()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      assertThat(registry.getDataVersion()).isEqualTo("2025-12-28");
+      assertThat(registry.getCountries()).hasSize(250);
+      assertThat(registry.getStateProvinceCount()).isEqualTo(5296);
+      assertThat(GeoDataRegistry.getBundled()).isSameAs(registry);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test looking countries up by each kind of code, in either case.
+    *******************************************************************************/
+   @Test
+   void testGetCountry_byEachCode_findsSameCountry()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      GeoCountry us = registry.getCountryByAlpha2("US");
+      assertThat(us.alpha3Code()).isEqualTo("USA");
+      assertThat(us.numericCode()).isEqualTo(840);
+      assertThat(registry.getCountryByAlpha2("us")).isSameAs(us);
+      assertThat(registry.getCountryByAlpha3("USA")).isSameAs(us);
+      assertThat(registry.getCountryByAlpha3("usa")).isSameAs(us);
+      assertThat(registry.getCountryByNumericCode(840)).isSameAs(us);
+      assertThat(registry.getCountryByNumericCode(20).alpha2Code()).isEqualTo("AD");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that unknown or malformed codes find nothing.
+    *******************************************************************************/
+   @Test
+   void testGetCountry_unknownCodes_returnNull()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      assertThat(registry.getCountryByAlpha2(null)).isNull();
+      assertThat(registry.getCountryByAlpha2("U")).isNull();
+      assertThat(registry.getCountryByAlpha2("U1")).isNull();
+      assertThat(registry.getCountryByAlpha2("ZZ")).isNull();
+      assertThat(registry.getCountryByAlpha3("US")).isNull();
+      assertThat(registry.getCountryByNumericCode(-1)).isNull();
+      assertThat(registry.getCountryByNumericCode(1000)).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test looking states up by country and code.
+    *******************************************************************************/
+   @Test
+   void testGetStateProvince_byCountryAndCode()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      GeoStateProvince canillo = registry.getStateProvince("AD", "02");
+      assertThat(canillo.name()).isEqualTo("Canillo");
+      assertThat(canillo.subdivisionType()).isEqualTo("Parish");
+
+      GeoStateProvince california = registry.getStateProvince("us", "ca");
+      assertThat(california.name()).isEqualTo("California");
+      assertThat(registry.getStateProvinces("US")).contains(california);
+
+      assertThat(registry.getStateProvince("US", "ZZZ")).isNull();
+      assertThat(registry.getStateProvince("ZZ", "CA")).isNull();
+      assertThat(registry.getStateProvinces("ZZ")).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that city lookups are empty when no cities dataset is bundled, and
+    ** that returned lists cannot be modified.
+    *******************************************************************************/
+   @Test
+   void testGetCities_noCitiesBundled_empty()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      assertThat(registry.getCityCount()).isZero();
+      assertThat(registry.getCities("US", "CA")).isEmpty();
+      assertThat(registry.getCities(registry.getStateProvince("US", "CA"))).isEmpty();
+      assertThat(registry.getCountryCities("US")).isEmpty();
+      assertThat(registry.getStateProvinces("US")).isUnmodifiable();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test turning alpha codes into indexes.
+    *******************************************************************************/
+   @Test
+   void testAlphaIndex()
+   {
+      assertThat(GeoDataRegistry.alphaIndex("AA", 2)).isZero();
+      assertThat(GeoDataRegistry.alphaIndex("ZZ", 2)).isEqualTo(26 * 26 - 1);
+      assertThat(GeoDataRegistry.alphaIndex("zz", 2)).isEqualTo(26 * 26 - 1);
+      assertThat(GeoDataRegistry.alphaIndex("ZZZ", 3)).isEqualTo(26 * 26 * 26 - 1);
+      assertThat(GeoDataRegistry.alphaIndex("A-", 2)).isEqualTo(-1);
+      assertThat(GeoDataRegistry.alphaIndex("AAA", 2)).isEqualTo(-1);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test typeahead searches of the bundled states (which, with no cities
+    ** bundled, all rank equally, so come back by name).
+    *******************************************************************************/
+   @Test
+   void testSearchStateProvinces_byPrefix()
+   {
+      GeoDataRegistry registry = GeoDataRegistry.getBundled();
+
+      assertThat(registry.searchStateProvinces("new ", "US", 10)).extracting(GeoStateProvince::name)
+         .containsExactly("New Hampshire", "New Jersey", "New Mexico", "New York");
+      assertThat(registry.searchStateProvinces("cali", null, 10)).extracting(GeoStateProvince::countryAlpha2).contains("US");
+      assertThat(registry.searchStateProvinces("cali", "ZZ", 10)).isEmpty();
+      assertThat(registry.searchCities("san", "US", null, 10)).isEmpty();
+   }
+}
@@ -0,0 +1,66 @@
+/*******************************************************************************
+ ** Unit tests for GeoDataSnapshot and GeoDataSnapshotSection.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.snapshot;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+
+class GeoDataSnapshotTest
+{
+
+   /*******************************************************************************
+    ** Test that the bundled snapshot has the bundled datasets.
+    *******************************************************************************/
+   @Test
+   void testOpenResource_bundledSections() throws IOException
+   {
+      GeoDataSnapshot snapshot = GeoDataSnapshot.getBundled();
+
+      assertThat(snapshot.getDataVersion()).isEqualTo("2025-12-28");
+      assertThat(snapshot.getSection("countries").getRowCount()).isEqualTo(250);
+      assertThat(snapshot.getSection("states").getRowCount()).isEqualTo(5296);
+      assertThat(snapshot.getSection("nope")).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test reading string, dictionary-encoded and numeric columns.
+    *******************************************************************************/
+   @Test
+   void testSection_readsColumns() throws IOException
+   {
+      GeoDataSnapshot snapshot = GeoDataSnapshot.getBundled();
+
+      GeoDataSnapshotSection states = snapshot.getSection("states");
+      assertThat(states.getString(0, states.getColumnIndex("countryAlpha2"))).isEqualTo("AD");
+      assertThat(states.getString(0, states.getColumnIndex("code"))).isEqualTo("02");
+      assertThat(states.getString(0, states.getColumnIndex("name"))).isEqualTo("Canillo");
+      assertThat(states.getString(0, states.getColumnIndex("subdivisionType"))).isEqualTo("Parish");
+      assertThat(states.getColumnIndex("nope")).isEqualTo(-1);
+
+      GeoDataSnapshotSection countries = snapshot.getSection("countries");
+      int numericCode = countries.getColumnIndex("numericCode");
+      assertThat(countries.getValue(0, numericCode)).isInstanceOf(Integer.class);
+      assertThat(countries.getColumnNames()).contains("alpha2Code", "alpha3Code", "name");
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a buffer that is not a snapshot is rejected.
+    *******************************************************************************/
+   @Test
+   void testConstructor_badMagic_throwsException()
+   {
+      assertThatThrownBy(() -> new GeoDataSnapshot(ByteBuffer.allocate(64)))
+         .isInstanceOf(IOException.class)
+         .hasMessageContaining("bad magic");
+   }
+}
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ ** Unit tests for GeoSpatialIndex.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.spatial;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+
+class GeoSpatialIndexTest
+{
+
+   /*******************************************************************************
+    ** A named point, for indexing.
+    *******************************************************************************/
+   private record Place(String name, double latitude, double longitude)
+   {
+   }
+
+
+
+   /*******************************************************************************
+    ** Build random places all over the earth (seeded, so reproducible).
+    *******************************************************************************/
+   private static List<Place> randomPlaces(int count)
+   {
+      Random random = new Random(42);
+      List<Place> places = new ArrayList<>();
+      for(int i = 0; i < count; i++)
+      {
+         double latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+         double longitude = random.nextDouble() * 360 - 180;
+         places.add(new Place("p" + i, latitude, longitude));
+      }
+      return places;
+   }
+
+
+
+   /*******************************************************************************
+    ** Build an index of places.
+    *******************************************************************************/
+   private static GeoSpatialIndex<Place> index(List<Place> places)
+   {
+      return new GeoSpatialIndex<>(places, Place::latitude, Place::longitude);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test the haversine distance between two known points.
+    *******************************************************************************/
+   @Test
+   void testHaversineKm_londonToParis()
+   {
+      assertThat(GeoSpatialIndex.haversineKm(51.5074, -0.1278, 48.8566, 2.3522)).isCloseTo(343.5, within(1.0));
+      assertThat(GeoSpatialIndex.haversineKm(10, 20, 10, 20)).isZero();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that nearest matches a brute-force search, at random query points.
+    *******************************************************************************/
+   @Test
+   void testNearest_matchesBruteForce()
+   {
+      List<Place> places = randomPlaces(5000);
+      GeoSpatialIndex<Place> index = index(places);
+      Random random = new Random(7);
+
+      for(int q = 0; q < 200; q++)
+      {
+         double latitude = random.nextDouble() * 180 - 90;
+         double longitude = random.nextDouble() * 360 - 180;
+
+         List<Place> expected = places.stream()
+            .sorted(Comparator.comparingDouble(p -> GeoSpatialIndex.haversineKm(latitude, longitude, p.latitude(), p.longitude())))
+            .limit(5)
+            .toList();
+         List<GeoSpatialMatch<Place>> actual = index.nearest(latitude, longitude, 5);
+
+         assertThat(actual).extracting(GeoSpatialMatch::item).containsExactlyElementsOf(expected);
+         assertThat(actual.get(0).distanceKm()).isCloseTo(GeoSpatialIndex.haversineKm(latitude, longitude, expected.get(0).latitude(), expected.get(0).longitude()), within(1e-6));
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that a radius search matches a brute-force search, including
+    ** across the antimeridian and at a pole.
+    *******************************************************************************/
+   @Test
+   void testWithinRadius_matchesBruteForce()
+   {
+      List<Place> places = randomPlaces(5000);
+      GeoSpatialIndex<Place> index = index(places);
+
+      for(double[] query : new double[][] { { 40, -100 }, { 0, 179.9 }, { 89.9, 0 }, { -33, 151 } })
+      {
+         List<Place> expected = places.stream()
+            .filter(p -> GeoSpatialIndex.haversineKm(query[0], query[1], p.latitude(), p.longitude()) <= 750)
+            .toList();
+
+         assertThat(index.withinRadius(query[0], query[1], 750))
+            .extracting(GeoSpatialMatch::item)
+            .containsExactlyInAnyOrderElementsOf(expected)
+            .isNotEmpty();
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test bounding-box searches, including one crossing the antimeridian.
+    *******************************************************************************/
+   @Test
+   void testWithinBoundingBox()
+   {
+      List<Place> places = List.of(
+         new Place("denver", 39.74, -104.99),
+         new Place("chicago", 41.88, -87.63),
+         new Place("suva", -18.14, 178.44),
+         new Place("apia", -13.83, -171.76));
+      GeoSpatialIndex<Place> index = index(places);
+
+      assertThat(index.withinBoundingBox(35, -110, 45, -100)).extracting(Place::name).containsExactly("denver");
+      assertThat(index.withinBoundingBox(-20, 170, -10, -170)).extracting(Place::name).containsExactlyInAnyOrder("suva", "apia");
+      assertThat(index.withinBoundingBox(0, -180, 10, 180)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that nearest honors its distance limit and count, and that items
+    ** without coordinates are left out.
+    *******************************************************************************/
+   @Test
+   void testNearest_limitsAndMissingCoordinates()
+   {
+      List<Place> places = List.of(
+         new Place("denver", 39.74, -104.99),
+         new Place("boulder", 40.01, -105.27),
+         new Place("chicago", 41.88, -87.63),
+         new Place("nowhere", Double.NaN, Double.NaN));
+      GeoSpatialIndex<Place> index = index(places);
+
+      assertThat(index.size()).isEqualTo(3);
+      assertThat(index.nearest(39.7, -105.0, 10)).extracting(m -> m.item().name()).containsExactly("denver", "boulder", "chicago");
+      assertThat(index.nearest(39.7, -105.0, 10, 100)).extracting(m -> m.item().name()).containsExactly("denver", "boulder");
+      assertThat(index.nearest(39.7, -105.0, 0)).isEmpty();
+   }
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ ** Unit tests for GeoTypeaheadIndex.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.typeahead;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class GeoTypeaheadIndexTest
+{
+
+   /*******************************************************************************
+    ** A named, populated place, for indexing.
+    *******************************************************************************/
+   private record Place(String name, int population, int country, int state)
+   {
+   }
+
+
+
+   private static final List<Place> PLACES = List.of(
+      new Place("San Francisco", 808_437, 1, 10),
+      new Place("San Diego", 1_388_320, 1, 10),
+      new Place("San Jose", 969_655, 1, 10),
+      new Place("Santa Fe", 89_008, 1, 11),
+      new Place("San Antonio", 1_495_295, 1, 12),
+      new Place("São Paulo", 11_451_245, 2, 20),
+      new Place("Santos", 418_608, 2, 20),
+      new Place("Springfield", GeoTypeaheadIndex.NONE, 1, GeoTypeaheadIndex.NONE),
+      new Place("  ", 1, 1, 10));
+
+
+
+   /*******************************************************************************
+    ** Build an index of places.
+    *******************************************************************************/
+   private static GeoTypeaheadIndex<Place> index(List<Place> places, int cacheSize)
+   {
+      return new GeoTypeaheadIndex<>(places, Place::name, Place::population, Place::country, Place::state, cacheSize);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that matches rank by population, ignoring case and accents.
+    *******************************************************************************/
+   @Test
+   void testSearch_ranksByPopulation()
+   {
+      GeoTypeaheadIndex<Place> index = index(PLACES, 0);
+
+      assertThat(index.size()).isEqualTo(8);
+      assertThat(index.search("san", 3)).extracting(Place::name).containsExactly("San Antonio", "San Diego", "San Jose");
+      assertThat(index.search("Sa", 3)).extracting(Place::name).containsExactly("São Paulo", "San Antonio", "San Diego");
+      assertThat(index.search("SAO P", 5)).extracting(Place::name).containsExactly("São Paulo");
+      assertThat(index.search("santa", 5)).extracting(Place::name).containsExactly("Santa Fe");
+      assertThat(index.search("", 100)).hasSize(8).last().extracting(Place::name).isEqualTo("Springfield");
+      assertThat(index.search("x", 5)).isEmpty();
+      assertThat(index.search("san", 0)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test searches scoped to a country or state.
+    *******************************************************************************/
+   @Test
+   void testSearch_scoped()
+   {
+      GeoTypeaheadIndex<Place> index = index(PLACES, 0);
+
+      assertThat(index.searchCountry(1, "san", 10)).extracting(Place::name).containsExactly("San Antonio", "San Diego", "San Jose", "San Francisco", "Santa Fe");
+      assertThat(index.searchCountry(2, "san", 10)).extracting(Place::name).containsExactly("Santos");
+      assertThat(index.searchState(10, "san", 2)).extracting(Place::name).containsExactly("San Diego", "San Jose");
+      assertThat(index.searchState(99, "san", 2)).isEmpty();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that the top N match a brute-force ranking, over many items.
+    *******************************************************************************/
+   @Test
+   void testSearch_matchesBruteForce()
+   {
+      Random random = new Random(42);
+      List<Place> places = new ArrayList<>();
+      for(int i = 0; i < 5000; i++)
+      {
+         StringBuilder name = new StringBuilder();
+         for(int j = 0; j < 1 + random.nextInt(6); j++)
+         {
+            name.append((char) ('a' + random.nextInt(3)));
+         }
+         places.add(new Place(name.toString(), random.nextInt(1000), random.nextInt(3), GeoTypeaheadIndex.NONE));
+      }
+      GeoTypeaheadIndex<Place> index = index(places, 0);
+
+      for(String prefix : List.of("", "a", "ab", "cab", "bbb"))
+      {
+         List<Integer> expected = places.stream()
+            .filter(p -> p.name().startsWith(prefix))
+            .map(Place::population)
+            .sorted(Comparator.reverseOrder())
+            .limit(20)
+            .toList();
+         assertThat(index.search(prefix, 20)).extracting(Place::population).containsExactlyElementsOf(expected);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that repeated searches are answered from the cache.
+    *******************************************************************************/
+   @Test
+   void testSearch_cached()
+   {
+      GeoTypeaheadIndex<Place> index = index(PLACES, 2);
+
+      List<Place> first = index.search("San", 3);
+      assertThat(index.search("san ", 3)).isSameAs(first);
+      assertThat(index.search("san", 2)).isNotSameAs(first);
+      index.search("s", 3);
+      index.search("sa", 3);
+      assertThat(index.search("san", 3)).isNotSameAs(first).isEqualTo(first);
+   }
+
+
+
+   /*******************************************************************************
+    ** Test name normalization.
+    *******************************************************************************/
+   @Test
+   void testNormalize()
+   {
+      assertThat(GeoTypeaheadIndex.normalize("  Zürich\tCity ")).isEqualTo("zurich city");
+      assertThat(GeoTypeaheadIndex.normalize("Île-de-France")).isEqualTo("ile-de-france");
+      assertThat(GeoTypeaheadIndex.normalize(null)).isNull();
+   }
+}
@@ -2,7 +2,9 @@
  ** Main entry point for geo-data acquisition.
  **
  ** Fetches geographic data from external sources, transforms it to our entity
- ** format, and writes it to JSON files for inclusion in the QBit.
+ ** format, and writes it to JSON files (plus a binary snapshot of them) for
+ ** inclusion in the QBit - along with a patch of what changed since the
+ ** previous data files, for the sync to apply to databases at that version.
  **
  ** Usage:
  **   mvn exec:java
@@ -14,6 +16,7 @@ package com.kingsrook.qbits.geodata.tools;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.LocalDate;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -24,12 +27,14 @@ import com.kingsrook.qbits.geodata.tools.transformers.CityTransformer;
 import com.kingsrook.qbits.geodata.tools.transformers.CountryTransformer;
 import com.kingsrook.qbits.geodata.tools.transformers.StateTransformer;
 import com.kingsrook.qbits.geodata.tools.writers.JsonDataWriter;
+import com.kingsrook.qbits.geodata.tools.writers.PatchWriter;
+import com.kingsrook.qbits.geodata.tools.writers.SnapshotWriter;
 import org.json.JSONObject;
 
 
 public class DataAcquisitionRunner
 {
-   private static final Path DEFAULT_OUTPUT_DIR = Paths.get("../qbit-geo-data-core/src/main/resources/data");
+   private static final Path DEFAULT_OUTPUT_DIR = Paths.get("../qbit-geo-data-registry/src/main/resources/data");
 
    private Path outputDir = DEFAULT_OUTPUT_DIR;
    private Integer minCityPopulation = null;
@@ -117,7 +122,7 @@ public class DataAcquisitionRunner
       System.out.println("Usage: DataAcquisitionRunner [options]");
       System.out.println();
       System.out.println("Options:");
-      System.out.println("  --output-dir=<path>          Output directory (default: ../qbit-geo-data-core/src/main/resources/data)");
+      System.out.println("  --output-dir=<path>          Output directory (default: ../qbit-geo-data-registry/src/main/resources/data)");
       System.out.println("  --min-city-population=<n>    Only include cities with population >= n");
       System.out.println("  --countries=<codes>          Comma-separated country codes to include (e.g., US,CA,MX)");
       System.out.println("  --countries-only             Only fetch and write countries");
@@ -148,6 +153,12 @@ public class DataAcquisitionRunner
       DataFetcher fetcher = new Dr5hnFetcher();
       JsonDataWriter writer = new JsonDataWriter(outputDir);
 
+      //////////////////////////////////////////////////////////////////////////
+      // Keep the previous data files, to patch from, before overwriting them //
+      //////////////////////////////////////////////////////////////////////////
+      PatchWriter patchWriter = new PatchWriter(outputDir);
+      patchWriter.capturePrevious();
+
       //////////////////////////////////////////////////////////////////////////
       // Determine what to fetch                                              //
       //////////////////////////////////////////////////////////////////////////
@@ -205,6 +216,23 @@ public class DataAcquisitionRunner
          System.out.println();
       }
 
+      //////////////////////////////////////////////////////////////////////////
+      // Rebuild the binary snapshot from the data files, then record their   //
+      // checksums for the sync's change detection                            //
+      //////////////////////////////////////////////////////////////////////////
+      String version = LocalDate.now().toString();
+      System.out.println("Snapshot:");
+      new SnapshotWriter(outputDir).write(version);
+      System.out.println();
+
+      System.out.println("Manifest:");
+      writer.writeManifest(version);
+      System.out.println();
+
+      System.out.println("Patch:");
+      patchWriter.write(version);
+      System.out.println();
+
       System.out.println("=== Complete ===");
    }
 }
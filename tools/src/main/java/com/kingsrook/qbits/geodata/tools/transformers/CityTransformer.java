@@ -5,7 +5,7 @@
  **                 "country_id": 233, "country_code": "US", "latitude": "34.05",
  **                 "longitude": "-118.24", ...}
  ** Target format: {"countryAlpha2": "US", "stateCode": "CA", "name": "...",
- **                 "latitude": 34.05, "longitude": -118.24, ...}
+ **                 "asciiName": "...", "latitude": 34.05, "longitude": -118.24, ...}
  *******************************************************************************/
 package com.kingsrook.qbits.geodata.tools.transformers;
 
@@ -14,6 +14,7 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import com.kingsrook.qbits.geodata.matching.GeoNameFolding;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
@@ -121,12 +122,13 @@ public class CityTransformer implements DataTransformer
       target.put("name", name);
 
       //////////////////////////////////////////////////////////////////////////
-      // ASCII name for search/sorting                                        //
+      // ASCII name for search/sorting ("São Paulo" -> "Sao Paulo") - left    //
+      // out when the name has no ASCII rendering (e.g., another script)      //
       //////////////////////////////////////////////////////////////////////////
-      String wikiDataId = source.optString("wikiDataId", null);
-      if(wikiDataId != null && !wikiDataId.isEmpty())
+      String asciiName = GeoNameFolding.fold(name);
+      if(asciiName != null)
       {
-         // We don't need wikiDataId, but could use it for lookups if needed
+         target.put("asciiName", asciiName);
       }
 
       //////////////////////////////////////////////////////////////////////////
@@ -2,23 +2,39 @@
  ** Writes transformed data to JSON files with consistent formatting.
  **
  ** Sorts entries for stable git diffs and uses pretty-printing for readability.
+ ** Also maintains manifest.json, recording the data version and each data
+ ** file's SHA-256 and entry count (including the binary snapshot written by
+ ** SnapshotWriter), which the sync uses to detect changes.
  *******************************************************************************/
 package com.kingsrook.qbits.geodata.tools.writers;
 
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 
 public class JsonDataWriter
 {
-   private final Path outputDir;
+   public static final String       MANIFEST_FILE   = "manifest.json";
+   public static final List<String> JSON_DATA_FILES = List.of("countries.json", "states.json", "cities.json");
+   public static final List<String> DATA_FILES      = List.of("countries.json", "states.json", "cities.json", SnapshotWriter.SNAPSHOT_FILE);
+
+   private final Path                 outputDir;
+   private final Map<String, Integer> writtenCounts = new HashMap<>();
 
 
 
@@ -70,6 +86,60 @@ public class JsonDataWriter
 
 
 
+   /*******************************************************************************
+    ** Write manifest.json for the data files in the output directory.
+    **
+    ** Checksums are recomputed for every data file present; entry counts are
+    ** updated for files written by this writer and kept from the previous
+    ** manifest for the others.
+    *******************************************************************************/
+   public void writeManifest(String version) throws IOException
+   {
+      Path manifestPath = outputDir.resolve(MANIFEST_FILE);
+
+      JSONObject datasets = null;
+      if(Files.exists(manifestPath))
+      {
+         datasets = new JSONObject(Files.readString(manifestPath, StandardCharsets.UTF_8)).optJSONObject("datasets");
+      }
+      if(datasets == null)
+      {
+         datasets = new JSONObject();
+      }
+
+      for(String filename : DATA_FILES)
+      {
+         Path filePath = outputDir.resolve(filename);
+         if(!Files.exists(filePath))
+         {
+            datasets.remove(filename);
+            continue;
+         }
+
+         JSONObject entry = datasets.optJSONObject(filename);
+         if(entry == null)
+         {
+            entry = new JSONObject();
+         }
+         entry.put("sha256", sha256(filePath));
+         if(writtenCounts.containsKey(filename))
+         {
+            entry.put("count", writtenCounts.get(filename));
+         }
+         datasets.put(filename, entry);
+      }
+
+      JSONObject manifest = new JSONObject()
+         .put("version", version)
+         .put("datasets", datasets);
+
+      Files.createDirectories(outputDir);
+      Files.writeString(manifestPath, manifest.toString(2) + "\n", StandardCharsets.UTF_8);
+      System.out.println("  Wrote manifest for " + datasets.length() + " data files to " + manifestPath);
+   }
+
+
+
    /*******************************************************************************
     ** Write a JSON array to file with pretty formatting.
     *******************************************************************************/
@@ -92,6 +162,31 @@ public class JsonDataWriter
       // Write to file                                                        //
       //////////////////////////////////////////////////////////////////////////
       Files.writeString(filePath, json + "\n", StandardCharsets.UTF_8);
+      writtenCounts.put(filename, data.size());
       System.out.println("  Wrote " + data.size() + " entries to " + filePath);
    }
+
+
+
+   /*******************************************************************************
+    ** Compute the SHA-256 of a file as lowercase hex.
+    *******************************************************************************/
+   static String sha256(Path filePath) throws IOException
+   {
+      MessageDigest digest;
+      try
+      {
+         digest = MessageDigest.getInstance("SHA-256");
+      }
+      catch(NoSuchAlgorithmException e)
+      {
+         throw new IOException("SHA-256 is not available", e);
+      }
+
+      try(InputStream is = new DigestInputStream(Files.newInputStream(filePath), digest))
+      {
+         is.transferTo(OutputStream.nullOutputStream());
+      }
+      return HexFormat.of().formatHex(digest.digest());
+   }
 }
@@ -0,0 +1,191 @@
+/*******************************************************************************
+ ** Writes patch.json: the keyed delta between the previous data files and
+ ** the ones just written, so the sync can apply just what changed to a
+ ** database that is at the previous version.
+ **
+ ** capturePrevious() must run before the data files are overwritten; it
+ ** keeps the previous version (from manifest.json) and each JSON data file's
+ ** entries and SHA-256.  write() then compares each data file's entries by
+ ** natural key:
+ ** - upserts: entries that are new, or whose content changed (in full)
+ ** - deletes: entries that are gone (just their natural key fields)
+ **
+ ** Each changed dataset records the checksum it patches from and to, which
+ ** is how the sync knows whether a table is at the patch's starting point.
+ ** Unchanged datasets are left out.  With no previous data (a first run), no
+ ** patch is written, and any old one is removed.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.tools.writers;
+
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+public class PatchWriter
+{
+   public static final String PATCH_FILE = "patch.json";
+
+   private static final Map<String, List<String>> KEY_FIELDS = Map.of(
+      "countries.json", List.of("alpha2Code"),
+      "states.json", List.of("countryAlpha2", "code"),
+      "cities.json", List.of("countryAlpha2", "stateCode", "name"));
+
+   private final Path                   outputDir;
+   private final Map<String, JSONArray> previousData      = new HashMap<>();
+   private final Map<String, String>    previousChecksums = new HashMap<>();
+
+   private String previousVersion;
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public PatchWriter(Path outputDir)
+   {
+      this.outputDir = outputDir;
+   }
+
+
+
+   /*******************************************************************************
+    ** Keep the previous version and data files, before they are overwritten.
+    *******************************************************************************/
+   public void capturePrevious() throws IOException
+   {
+      Path manifestPath = outputDir.resolve(JsonDataWriter.MANIFEST_FILE);
+      if(!Files.exists(manifestPath))
+      {
+         return;
+      }
+
+      JSONObject manifest = new JSONObject(Files.readString(manifestPath, StandardCharsets.UTF_8));
+      previousVersion = manifest.optString("version", null);
+      JSONObject datasets = manifest.optJSONObject("datasets");
+
+      for(String filename : JsonDataWriter.JSON_DATA_FILES)
+      {
+         Path filePath = outputDir.resolve(filename);
+         if(Files.exists(filePath))
+         {
+            previousData.put(filename, new JSONArray(Files.readString(filePath, StandardCharsets.UTF_8)));
+
+            JSONObject entry = datasets == null ? null : datasets.optJSONObject(filename);
+            String checksum = entry == null ? null : entry.optString("sha256", null);
+            previousChecksums.put(filename, checksum != null ? checksum : JsonDataWriter.sha256(filePath));
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Write patch.json from the previous data to the current data files.
+    *******************************************************************************/
+   public void write(String version) throws IOException
+   {
+      Path patchPath = outputDir.resolve(PATCH_FILE);
+      if(previousVersion == null || previousData.isEmpty())
+      {
+         Files.deleteIfExists(patchPath);
+         System.out.println("  No previous data - no patch written");
+         return;
+      }
+
+      JSONObject datasets = new JSONObject();
+      for(String filename : JsonDataWriter.JSON_DATA_FILES)
+      {
+         Path filePath = outputDir.resolve(filename);
+         JSONArray previous = previousData.get(filename);
+         if(previous == null || !Files.exists(filePath))
+         {
+            continue;
+         }
+
+         String checksum = JsonDataWriter.sha256(filePath);
+         if(checksum.equals(previousChecksums.get(filename)))
+         {
+            continue;
+         }
+
+         JSONObject delta = diff(KEY_FIELDS.get(filename), previous, new JSONArray(Files.readString(filePath, StandardCharsets.UTF_8)));
+         delta.put("fromSha256", previousChecksums.get(filename));
+         delta.put("toSha256", checksum);
+         datasets.put(filename, delta);
+         System.out.println("  " + filename + ": " + delta.getJSONArray("upserts").length() + " upserts, " + delta.getJSONArray("deletes").length() + " deletes");
+      }
+
+      JSONObject patch = new JSONObject()
+         .put("fromVersion", previousVersion)
+         .put("toVersion", version)
+         .put("datasets", datasets);
+
+      Files.writeString(patchPath, patch.toString(2) + "\n", StandardCharsets.UTF_8);
+      System.out.println("  Wrote patch from " + previousVersion + " for " + datasets.length() + " data files to " + patchPath);
+   }
+
+
+
+   /*******************************************************************************
+    ** Compare two versions of a data file's entries by natural key.
+    *******************************************************************************/
+   private JSONObject diff(List<String> keyFields, JSONArray previous, JSONArray current)
+   {
+      Map<String, JSONObject> previousByKey = new LinkedHashMap<>();
+      for(int i = 0; i < previous.length(); i++)
+      {
+         JSONObject entry = previous.getJSONObject(i);
+         previousByKey.put(key(keyFields, entry), entry);
+      }
+
+      JSONArray upserts = new JSONArray();
+      for(int i = 0; i < current.length(); i++)
+      {
+         JSONObject entry = current.getJSONObject(i);
+         JSONObject previousEntry = previousByKey.remove(key(keyFields, entry));
+         if(previousEntry == null || !previousEntry.similar(entry))
+         {
+            upserts.put(entry);
+         }
+      }
+
+      JSONArray deletes = new JSONArray();
+      for(JSONObject entry : previousByKey.values())
+      {
+         JSONObject deleted = new JSONObject();
+         for(String keyField : keyFields)
+         {
+            deleted.put(keyField, entry.opt(keyField));
+         }
+         deletes.put(deleted);
+      }
+
+      return new JSONObject()
+         .put("upserts", upserts)
+         .put("deletes", deletes);
+   }
+
+
+
+   /*******************************************************************************
+    ** Build an entry's natural key.
+    *******************************************************************************/
+   private String key(List<String> keyFields, JSONObject entry)
+   {
+      StringBuilder key = new StringBuilder();
+      for(String keyField : keyFields)
+      {
+         key.append(entry.optString(keyField, "")).append('\u0001');
+      }
+      return key.toString();
+   }
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ ** Writes the binary snapshot of the bundled data files (geo-data.snapshot),
+ ** which the registry module memory-maps instead of parsing JSON.
+ **
+ ** The snapshot holds one section per JSON data file present in the output
+ ** directory, in file order, with rows in the same order as the JSON.  Each
+ ** section is stored column by column:
+ ** - strings as indexes into one string table shared by all sections
+ ** - low-cardinality strings (subdivisionType, timezone, country codes...)
+ **   as 2-byte codes into a per-column dictionary
+ ** - integers as 4-byte ints, decimals as 8-byte unscaled longs at a fixed
+ **   per-column scale
+ ** Every column has a presence bitmap, so nulls round-trip.
+ **
+ ** Layout (big-endian):
+ **   int magic ("GEOS"), int formatVersion, int dataVersion (string index)
+ **   int stringCount, int[stringCount + 1] byte offsets, byte[] UTF-8 blob
+ **   int sectionCount, then per section:
+ **     int name (string index), int rowCount, int columnCount, then per column:
+ **       int name (string index), byte type
+ **       DECIMAL: byte scale / DICTIONARY: int entryCount, int[entryCount] string indexes
+ **       byte[(rowCount + 7) / 8] presence bitmap
+ **       rowCount values: int (STRING, INT), short (DICTIONARY) or long (DECIMAL)
+ **
+ ** This layout must match GeoDataSnapshot in the registry module; bump
+ ** FORMAT_VERSION in both when it changes.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.tools.writers;
+
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+
+public class SnapshotWriter
+{
+   public static final String SNAPSHOT_FILE = "geo-data.snapshot";
+
+   public static final int MAGIC          = 0x47454F53;
+   public static final int FORMAT_VERSION = 1;
+
+   public static final byte TYPE_STRING     = 1;
+   public static final byte TYPE_DICTIONARY = 2;
+   public static final byte TYPE_INT        = 3;
+   public static final byte TYPE_DECIMAL    = 4;
+
+   ///////////////////////////////////////////////////////////////////////////
+   // A string column is dictionary-encoded when its distinct values fit a  //
+   // 2-byte code and repeat on average at least this many times            //
+   ///////////////////////////////////////////////////////////////////////////
+   private static final int MAX_DICTIONARY_SIZE   = 0xFFFF;
+   private static final int MIN_ROWS_PER_DISTINCT = 4;
+
+   private final Path outputDir;
+
+   private final List<String>         strings       = new ArrayList<>();
+   private final Map<String, Integer> stringIndexes = new HashMap<>();
+
+
+
+   /*******************************************************************************
+    ** Constructor.
+    *******************************************************************************/
+   public SnapshotWriter(Path outputDir)
+   {
+      this.outputDir = outputDir;
+   }
+
+
+
+   /*******************************************************************************
+    ** Write the snapshot of the data files present in the output directory.
+    *******************************************************************************/
+   public void write(String version) throws IOException
+   {
+      strings.clear();
+      stringIndexes.clear();
+      int versionIndex = intern(version);
+
+      List<Section> sections = new ArrayList<>();
+      for(String filename : JsonDataWriter.JSON_DATA_FILES)
+      {
+         Path filePath = outputDir.resolve(filename);
+         if(Files.exists(filePath))
+         {
+            JSONArray rows = new JSONArray(Files.readString(filePath, StandardCharsets.UTF_8));
+            sections.add(buildSection(filename.substring(0, filename.lastIndexOf('.')), rows));
+         }
+      }
+
+      Path snapshotPath = outputDir.resolve(SNAPSHOT_FILE);
+      Files.createDirectories(outputDir);
+      try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(snapshotPath))))
+      {
+         out.writeInt(MAGIC);
+         out.writeInt(FORMAT_VERSION);
+         out.writeInt(versionIndex);
+         writeStringTable(out);
+
+         out.writeInt(sections.size());
+         for(Section section : sections)
+         {
+            writeSection(out, section);
+         }
+      }
+
+      System.out.println("  Wrote " + sections.size() + " sections (" + strings.size() + " distinct strings, "
+         + Files.size(snapshotPath) + " bytes) to " + snapshotPath);
+   }
+
+
+
+   /*******************************************************************************
+    ** Build one section's columns from a data file's rows.  Columns are the
+    ** union of the rows' keys, in name order.
+    *******************************************************************************/
+   private Section buildSection(String name, JSONArray rows)
+   {
+      TreeSet<String> columnNames = new TreeSet<>();
+      for(int i = 0; i < rows.length(); i++)
+      {
+         columnNames.addAll(rows.getJSONObject(i).keySet());
+      }
+
+      Section section = new Section(intern(name), rows.length());
+      for(String columnName : columnNames)
+      {
+         Object[] values = new Object[rows.length()];
+         for(int i = 0; i < rows.length(); i++)
+         {
+            Object value = rows.getJSONObject(i).opt(columnName);
+            values[i] = JSONObject.NULL.equals(value) ? null : value;
+         }
+         section.columns.add(buildColumn(section.name + "." + columnName, intern(columnName), values));
+      }
+      return section;
+   }
+
+
+
+   /*******************************************************************************
+    ** Choose a column's encoding from its values, and encode them.
+    *******************************************************************************/
+   private Column buildColumn(String label, int name, Object[] values)
+   {
+      boolean allStrings = true;
+      boolean allNumbers = true;
+      boolean allIntegers = true;
+      int scale = 0;
+      Map<String, Integer> distinct = new LinkedHashMap<>();
+
+      for(Object value : values)
+      {
+         if(value == null)
+         {
+            continue;
+         }
+
+         if(value instanceof String string)
+         {
+            allNumbers = false;
+            distinct.putIfAbsent(string, distinct.size());
+         }
+         else if(value instanceof Number number)
+         {
+            allStrings = false;
+            BigDecimal decimal = new BigDecimal(number.toString());
+            if(decimal.scale() > 0 || decimal.compareTo(BigDecimal.valueOf(Integer.MAX_VALUE)) > 0 || decimal.compareTo(BigDecimal.valueOf(Integer.MIN_VALUE)) < 0)
+            {
+               allIntegers = false;
+            }
+            scale = Math.max(scale, decimal.scale());
+         }
+         else
+         {
+            throw new IllegalArgumentException("Unsupported value type " + value.getClass().getSimpleName() + " in " + label);
+         }
+      }
+
+      Column column = new Column(name, values);
+      if(allStrings && distinct.size() <= MAX_DICTIONARY_SIZE && distinct.size() * MIN_ROWS_PER_DISTINCT <= values.length)
+      {
+         column.type = TYPE_DICTIONARY;
+         column.dictionary = new ArrayList<>(distinct.keySet());
+      }
+      else if(allStrings)
+      {
+         column.type = TYPE_STRING;
+      }
+      else if(allNumbers && allIntegers)
+      {
+         column.type = TYPE_INT;
+      }
+      else if(allNumbers)
+      {
+         column.type = TYPE_DECIMAL;
+         column.scale = scale;
+      }
+      else
+      {
+         throw new IllegalArgumentException("Mixed string and number values in " + label);
+      }
+
+      for(String entry : distinct.keySet())
+      {
+         intern(entry);
+      }
+      return column;
+   }
+
+
+
+   /*******************************************************************************
+    ** Write the shared string table: offsets, then the UTF-8 bytes.
+    *******************************************************************************/
+   private void writeStringTable(DataOutputStream out) throws IOException
+   {
+      List<byte[]> encoded = new ArrayList<>(strings.size());
+      for(String string : strings)
+      {
+         encoded.add(string.getBytes(StandardCharsets.UTF_8));
+      }
+
+      out.writeInt(strings.size());
+      int offset = 0;
+      out.writeInt(offset);
+      for(byte[] bytes : encoded)
+      {
+         offset += bytes.length;
+         out.writeInt(offset);
+      }
+      for(byte[] bytes : encoded)
+      {
+         out.write(bytes);
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Write one section and its columns.
+    *******************************************************************************/
+   private void writeSection(DataOutputStream out, Section section) throws IOException
+   {
+      out.writeInt(section.name);
+      out.writeInt(section.rowCount);
+      out.writeInt(section.columns.size());
+
+      for(Column column : section.columns)
+      {
+         out.writeInt(column.name);
+         out.writeByte(column.type);
+
+         Map<String, Integer> codes = new HashMap<>();
+         if(column.type == TYPE_DECIMAL)
+         {
+            out.writeByte(column.scale);
+         }
+         else if(column.type == TYPE_DICTIONARY)
+         {
+            out.writeInt(column.dictionary.size());
+            for(String entry : column.dictionary)
+            {
+               codes.put(entry, codes.size());
+               out.writeInt(intern(entry));
+            }
+         }
+
+         byte[] presence = new byte[(section.rowCount + 7) / 8];
+         for(int row = 0; row < section.rowCount; row++)
+         {
+            if(column.values[row] != null)
+            {
+               presence[row >> 3] |= (byte) (1 << (row & 7));
+            }
+         }
+         out.write(presence);
+
+         for(Object value : column.values)
+         {
+            switch(column.type)
+            {
+               case TYPE_STRING -> out.writeInt(value == null ? -1 : intern((String) value));
+               case TYPE_DICTIONARY -> out.writeShort(value == null ? 0 : codes.get((String) value));
+               case TYPE_INT -> out.writeInt(value == null ? 0 : ((Number) value).intValue());
+               case TYPE_DECIMAL -> out.writeLong(value == null ? 0 : new BigDecimal(value.toString()).setScale(column.scale).unscaledValue().longValueExact());
+               default -> throw new IllegalStateException("Unknown column type " + column.type);
+            }
+         }
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** Get a string's index in the shared string table, adding it if new.
+    *******************************************************************************/
+   private int intern(String string)
+   {
+      return stringIndexes.computeIfAbsent(string, s ->
+      {
+         strings.add(s);
+         return strings.size() - 1;
+      });
+   }
+
+
+
+   /*******************************************************************************
+    ** A section being written.
+    *******************************************************************************/
+   private static class Section
+   {
+      private final int          name;
+      private final int          rowCount;
+      private final List<Column> columns = new ArrayList<>();
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      Section(int name, int rowCount)
+      {
+         this.name = name;
+         this.rowCount = rowCount;
+      }
+   }
+
+
+
+   /*******************************************************************************
+    ** A column being written.
+    *******************************************************************************/
+   private static class Column
+   {
+      private final int      name;
+      private final Object[] values;
+
+      private byte         type;
+      private int          scale;
+      private List<String> dictionary;
+
+
+
+      /*******************************************************************************
+       ** Constructor.
+       *******************************************************************************/
+      Column(int name, Object[] values)
+      {
+         this.name = name;
+         this.values = values;
+      }
+   }
+}
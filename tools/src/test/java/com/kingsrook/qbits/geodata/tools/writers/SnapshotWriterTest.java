@@ -0,0 +1,89 @@
+/*******************************************************************************
+ ** Unit tests for SnapshotWriter - snapshots are read back with the registry
+ ** module's GeoDataSnapshot, so the two stay in step on the layout.
+ *******************************************************************************/
+package com.kingsrook.qbits.geodata.tools.writers;
+
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshot;
+import com.kingsrook.qbits.geodata.snapshot.GeoDataSnapshotSection;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.assertj.core.api.Assertions.assertThat;
+
+
+class SnapshotWriterTest
+{
+   @TempDir
+   Path outputDir;
+
+
+
+   /*******************************************************************************
+    ** Test that every column type, and nulls, read back as written.
+    *******************************************************************************/
+   @Test
+   void testWrite_roundTripsThroughGeoDataSnapshot() throws IOException
+   {
+      JSONArray states = new JSONArray();
+      for(int i = 0; i < 8; i++)
+      {
+         states.put(new JSONObject()
+            .put("countryAlpha2", i < 4 ? "US" : "CA")
+            .put("code", "S" + i)
+            .put("name", "State " + i)
+            .put("population", i * 1000)
+            .put("latitude", i == 3 ? JSONObject.NULL : new BigDecimal("45." + i + "5")));
+      }
+      Files.writeString(outputDir.resolve("states.json"), states.toString(), StandardCharsets.UTF_8);
+
+      new SnapshotWriter(outputDir).write("2026-01-01");
+
+      GeoDataSnapshot snapshot = GeoDataSnapshot.open(outputDir.resolve(SnapshotWriter.SNAPSHOT_FILE));
+      assertThat(snapshot.getDataVersion()).isEqualTo("2026-01-01");
+      assertThat(snapshot.getSections()).containsOnlyKeys("states");
+
+      GeoDataSnapshotSection section = snapshot.getSection("states");
+      assertThat(section.getRowCount()).isEqualTo(8);
+      assertThat(section.getColumnNames()).containsExactly("code", "countryAlpha2", "latitude", "name", "population");
+
+      int countryAlpha2 = section.getColumnIndex("countryAlpha2");
+      int name = section.getColumnIndex("name");
+      int population = section.getColumnIndex("population");
+      int latitude = section.getColumnIndex("latitude");
+
+      assertThat(section.getString(0, countryAlpha2)).isEqualTo("US");
+      assertThat(section.getString(7, countryAlpha2)).isEqualTo("CA");
+      assertThat(section.getString(5, name)).isEqualTo("State 5");
+      assertThat(section.getInt(6, population)).isEqualTo(6000);
+      assertThat(section.getDecimal(2, latitude)).isEqualByComparingTo("45.25");
+      assertThat(section.getScale(latitude)).isEqualTo(2);
+      assertThat(section.isNull(3, latitude)).isTrue();
+      assertThat(section.getValue(3, latitude)).isNull();
+   }
+
+
+
+   /*******************************************************************************
+    ** Test that only the data files present become sections, in file order.
+    *******************************************************************************/
+   @Test
+   void testWrite_sectionsInFileOrder() throws IOException
+   {
+      Files.writeString(outputDir.resolve("states.json"), new JSONArray().put(new JSONObject().put("code", "CA")).toString(), StandardCharsets.UTF_8);
+      Files.writeString(outputDir.resolve("countries.json"), new JSONArray().put(new JSONObject().put("alpha2Code", "US")).toString(), StandardCharsets.UTF_8);
+
+      new SnapshotWriter(outputDir).write("2026-01-01");
+
+      GeoDataSnapshot snapshot = GeoDataSnapshot.open(outputDir.resolve(SnapshotWriter.SNAPSHOT_FILE));
+      assertThat(snapshot.getSections().keySet()).containsExactly("countries", "states");
+      assertThat(snapshot.getSection("countries").getString(0, 0)).isEqualTo("US");
+   }
+}